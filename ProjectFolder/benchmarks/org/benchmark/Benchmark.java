@@ -0,0 +1,88 @@
+package org.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  A single benchmark measured by the {@link BenchmarkRunner}: a named operation, optionally with parameters
+ *  (map size, number of entities, etc.), and the state it needs prepared in {@link #setUp()}.
+ *  The runner calls {@link #run()} repeatedly and reports the average time and allocated memory per call, and if asked
+ *  to (see {@link #reportRetained()}) the memory kept by the benchmark's state.
+ */
+public abstract class Benchmark
+{
+    private final String name;
+
+    private final Map<String, String> params = new LinkedHashMap<>();
+
+    private boolean retained = false;
+
+    /**
+     * @param name name of the benchmark, usually the measured class and method (e.g. "AI.aStar")
+     */
+    protected Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Records a parameter of the benchmark, used to tell apart the runs of the same benchmark in the results
+     * @param key name of the parameter
+     * @param value value of the parameter
+     * @return this benchmark, for chaining
+     */
+    public Benchmark param(String key, Object value)
+    {
+        params.put(key, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Asks the runner to also report the memory kept by the benchmark's state: the heap in use once the iterations are
+     * done and the garbage collected, minus the heap in use before {@link #setUp()}
+     * @return this benchmark, for chaining
+     */
+    public Benchmark reportRetained()
+    {
+        retained = true;
+        return this;
+    }
+
+    /**
+     * Checks whether the memory kept by the benchmark's state is reported, see {@link #reportRetained()}
+     */
+    public boolean isRetainedReported() { return retained; }
+
+    /**
+     * Prepares the state needed by the benchmark. Called once, before warming up
+     */
+    public void setUp() {}
+
+    /**
+     * Performs the measured operation once. The returned value is consumed by the runner, so that the JIT cannot
+     * remove the work as dead code
+     * @return any value depending on the result of the operation
+     */
+    public abstract long run();
+
+    /**
+     * Releases the state of the benchmark. Called once, after measuring
+     */
+    public void tearDown() {}
+
+    /**
+     * Returns the name of the benchmark
+     */
+    public String getName() { return name; }
+
+    /**
+     * Returns the parameters of the benchmark, in the order they were added
+     */
+    public Map<String, String> getParams() { return params; }
+
+    @Override
+    public String toString()
+    {
+        return params.isEmpty() ? name : name + params;
+    }
+}
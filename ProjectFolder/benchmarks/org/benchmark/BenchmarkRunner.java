@@ -0,0 +1,437 @@
+package org.benchmark;
+
+import org.engine.GameLoop;
+import org.engine.graphics.AnimatorBenchmark;
+import org.engine.graphics.IsoCoordinatesBenchmark;
+import org.world.CollisionBenchmark;
+import org.world.EntityStoreBenchmark;
+import org.world.LevelBenchmark;
+import org.world.MapGeneratorBenchmark;
+import org.world.NavigationGridBenchmark;
+import org.world.NavigationRegionsBenchmark;
+import org.world.TerrainStreamingBenchmark;
+import org.world.WorldUpdateBenchmark;
+import org.world.agents.enemies.AI.FlowFieldBenchmark;
+import org.world.agents.enemies.AI.PathfindingBenchmark;
+import org.world.agents.enemies.CorpseSoakBenchmark;
+import org.world.agents.enemies.HitBoxBenchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  Runs the engine's benchmarks and exports their results.
+ *  The project has no build tool to pull in JMH, so this runner does the parts of JMH the benchmarks rely on:
+ *  - forks: each benchmark runs in new JVMs (one per fork, with the same class path and JVM options), so that the code
+ *    compiled and the profile gathered for one benchmark do not carry over to the next one
+ *  - warm up: in each fork the benchmark's operation runs for a few unmeasured iterations first, to give the JIT time to
+ *    compile it; an iteration calls the operation in batches for a fixed amount of time
+ *  - dead code: every operation returns a value computed from its work, which is summed into a field and written out
+ *    once the fork is done, so the JIT cannot prove the work useless and drop it
+ *  - clock: the clock is read once per batch, never per operation, the batch growing during warm up until it lasts long
+ *    enough to time
+ *  What it does not do is everything JMH does to stop the JIT from folding the loop around the operation (e.g. hoisting
+ *  work out of it when the benchmark's state never changes): benchmarks should change their state between calls, as
+ *  the existing ones do by cycling through inputs.
+ *  The average time per operation and the memory allocated per operation (when the JVM can report it) are printed and
+ *  written as JSON, along with the heap kept by the benchmark's state for the benchmarks that ask for it, in the same layout as JMH's JSON output so the results can be compared between builds with the usual
+ *  tools. The engine runs headless, so no window or audio device is needed.
+ *
+ *  Usage: BenchmarkRunner [-o results.json] [-f forks] [-w warmupIterations] [-i iterations] [-t iterationMillis] [filter]
+ *  where filter keeps only the benchmarks whose name contains it. With 0 forks every benchmark runs in this JVM.
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Quantile of the normal distribution used for the 99.9% confidence interval of the score
+     */
+    private static final double CONFIDENCE_Z = 3.29;
+
+    /**
+     * Minimum duration of a batch of operations between two clock reads, so that reading the clock does not weigh on
+     * very short operations
+     */
+    private static final long MIN_BATCH_NANOS = 100000;
+
+    /**
+     * Printed by a fork in front of its results
+     */
+    private static final String FORK_RESULT = "# fork result:";
+
+    private int forks = 1;
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationNanos = 1000000000L;
+
+    /**
+     * Number of operations performed between two clock reads, calibrated during warm up
+     */
+    private int batch;
+
+    /**
+     * Receives the values returned by the benchmarks
+     */
+    private long sink;
+
+    /**
+     * Receives {@link #sink} once a benchmark is measured, a write the JIT has to keep
+     */
+    private static volatile long consumed;
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Outcome of a measured benchmark
+     */
+    private static class Result
+    {
+        Benchmark benchmark;
+        double[] nanosPerOp;
+        double bytesPerOp = -1;
+
+        /**
+         * Heap kept by the benchmark's state, -1 if not reported
+         */
+        double retainedBytes = -1;
+    }
+
+    private BenchmarkRunner()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    /**
+     * Lists every benchmark of the engine
+     */
+    private static List<Benchmark> allBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(IsoCoordinatesBenchmark.benchmarks());
+        benchmarks.addAll(AnimatorBenchmark.benchmarks());
+        benchmarks.addAll(PathfindingBenchmark.benchmarks());
+        benchmarks.addAll(FlowFieldBenchmark.benchmarks());
+        benchmarks.addAll(NavigationGridBenchmark.benchmarks());
+        benchmarks.addAll(NavigationRegionsBenchmark.benchmarks());
+        benchmarks.addAll(TerrainStreamingBenchmark.benchmarks());
+        benchmarks.addAll(MapGeneratorBenchmark.benchmarks());
+        benchmarks.addAll(LevelBenchmark.benchmarks());
+        benchmarks.addAll(CollisionBenchmark.benchmarks());
+        benchmarks.addAll(HitBoxBenchmark.benchmarks());
+        benchmarks.addAll(EntityStoreBenchmark.benchmarks());
+        benchmarks.addAll(WorldUpdateBenchmark.benchmarks());
+        benchmarks.addAll(CorpseSoakBenchmark.benchmarks());
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String output = "benchmark-results.json";
+        String filter = "";
+        int fork = -1;
+
+        for(int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-o": output = args[++i];
+                    break;
+                case "-f": runner.forks = Math.max(0, Integer.parseInt(args[++i]));
+                    break;
+                case "--fork": fork = Integer.parseInt(args[++i]);
+                    break;
+                case "-w": runner.warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i": runner.iterations = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "-t": runner.iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+                    break;
+                default: filter = args[i];
+            }
+        }
+
+        GameLoop.setHeadless(true);
+        List<Benchmark> benchmarks = allBenchmarks();
+
+        if(fork >= 0)
+        {
+            //in a fork: measure a single benchmark and hand the numbers back to the parent
+            Result result = runner.measure(benchmarks.get(fork));
+            StringBuilder line = new StringBuilder(FORK_RESULT).append(' ').append(result.bytesPerOp)
+                    .append(' ').append(result.retainedBytes);
+            for(double nanos : result.nanosPerOp)
+                line.append(' ').append(nanos);
+            System.out.println(line);
+            System.exit(0);
+        }
+
+        List<Result> results = new ArrayList<>();
+        for(int b = 0; b < benchmarks.size(); b++)
+        {
+            Benchmark benchmark = benchmarks.get(b);
+            if(!benchmark.toString().contains(filter))
+                continue;
+
+            Result result = runner.forks == 0 ? runner.measure(benchmark) : runner.measureForked(benchmark, b);
+            results.add(result);
+            System.out.println(format(result));
+        }
+
+        writeJson(results, output, runner);
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * Warms up and measures a single benchmark
+     */
+    private Result measure(Benchmark benchmark)
+    {
+        Result result = new Result();
+        result.benchmark = benchmark;
+        result.nanosPerOp = new double[iterations];
+
+        long heapBefore = benchmark.isRetainedReported() ? heapUsed() : 0;
+        benchmark.setUp();
+        batch = 1;
+
+        for(int i = 0; i < warmupIterations; i++)
+            iteration(benchmark, true);
+
+        long allocatedBytes = 0, operations = 0;
+        for(int i = 0; i < iterations; i++)
+        {
+            long allocatedBefore = allocated();
+            long[] measured = iteration(benchmark, false);
+            allocatedBytes += allocated() - allocatedBefore;
+            operations += measured[1];
+            result.nanosPerOp[i] = measured[0] / (double) measured[1];
+        }
+
+        if(threads != null)
+            result.bytesPerOp = allocatedBytes / (double) operations;
+        if(benchmark.isRetainedReported())
+            result.retainedBytes = heapUsed() - heapBefore;
+
+        benchmark.tearDown();
+        consumed = sink;
+        return result;
+    }
+
+    /**
+     * Measures a benchmark in new JVMs, one per fork, and gathers the iterations of every fork
+     * @param index position of the benchmark in {@link #allBenchmarks()}
+     */
+    private Result measureForked(Benchmark benchmark, int index) throws IOException
+    {
+        Result result = new Result();
+        result.benchmark = benchmark;
+        result.nanosPerOp = new double[forks * iterations];
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), BenchmarkRunner.class.getName(),
+                "-w", String.valueOf(warmupIterations), "-i", String.valueOf(iterations),
+                "-t", String.valueOf(iterationNanos / 1000000), "--fork", String.valueOf(index)));
+
+        double bytes = 0, retained = 0;
+        for(int f = 0; f < forks; f++)
+        {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String last = null;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+            {
+                String line;
+                while((line = reader.readLine()) != null)
+                {
+                    if(line.startsWith(FORK_RESULT))
+                        last = line.substring(FORK_RESULT.length()).trim();
+                    else
+                        System.out.println(line);
+                }
+            }
+
+            try
+            {
+                if(process.waitFor() != 0 || last == null)
+                    throw new IOException("fork of " + benchmark + " failed");
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException("interrupted while waiting for a fork of " + benchmark, e);
+            }
+
+            String[] values = last.split(" ");
+            bytes += Double.parseDouble(values[0]);
+            retained += Double.parseDouble(values[1]);
+            for(int i = 0; i < iterations; i++)
+                result.nanosPerOp[f * iterations + i] = Double.parseDouble(values[i + 2]);
+        }
+        result.bytesPerOp = bytes < 0 ? -1 : bytes / forks;
+        result.retainedBytes = benchmark.isRetainedReported() ? retained / forks : -1;
+
+        return result;
+    }
+
+    /**
+     * Calls the benchmark's operation in batches until the iteration time runs out
+     * @param calibrate grow the batch size while batches are too short to time
+     * @return elapsed nanoseconds and number of operations performed
+     */
+    private long[] iteration(Benchmark benchmark, boolean calibrate)
+    {
+        long operations = 0;
+        long start = System.nanoTime();
+        long deadline = start + iterationNanos;
+        long now = start;
+
+        while(now < deadline)
+        {
+            long batchStart = now;
+            for(int i = 0; i < batch; i++)
+                sink += benchmark.run();
+            operations += batch;
+            now = System.nanoTime();
+
+            if(calibrate && now - batchStart < MIN_BATCH_NANOS && batch < (1 << 24))
+                batch *= 2;
+        }
+
+        return new long[] {now - start, operations};
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, 0 when the JVM cannot tell
+     */
+    private long allocated()
+    {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the number of bytes of the heap in use once the garbage is collected
+     */
+    private static long heapUsed()
+    {
+        for(int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static double mean(double[] values)
+    {
+        double sum = 0;
+        for(double v : values)
+            sum += v;
+        return sum / values.length;
+    }
+
+    /**
+     * Half width of the confidence interval of the mean
+     */
+    private static double error(double[] values)
+    {
+        if(values.length < 2)
+            return Double.NaN;
+
+        double mean = mean(values), squares = 0;
+        for(double v : values)
+            squares += (v - mean) * (v - mean);
+        return CONFIDENCE_Z * Math.sqrt(squares / (values.length - 1)) / Math.sqrt(values.length);
+    }
+
+    private static String format(Result result)
+    {
+        String line = String.format("%-60s %14.1f +- %10.1f ns/op", result.benchmark, mean(result.nanosPerOp), error(result.nanosPerOp));
+        if(result.bytesPerOp >= 0)
+            line += String.format("  %12.1f B/op", result.bytesPerOp);
+        if(result.retainedBytes >= 0)
+            line += String.format("  %14.0f B retained", result.retainedBytes);
+        return line;
+    }
+
+    /**
+     * Writes the results as a JSON array, one object per benchmark, laid out like JMH's JSON result format
+     */
+    private static void writeJson(List<Result> results, String path, BenchmarkRunner runner) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path)))
+        {
+            out.println("[");
+            for(int r = 0; r < results.size(); r++)
+            {
+                Result result = results.get(r);
+                out.println("    {");
+                out.println("        \"benchmark\" : " + quote(result.benchmark.getName()) + ",");
+                out.println("        \"mode\" : \"avgt\",");
+                out.println("        \"forks\" : " + runner.forks + ",");
+                out.println("        \"warmupIterations\" : " + runner.warmupIterations + ",");
+                out.println("        \"measurementIterations\" : " + runner.iterations + ",");
+                out.println("        \"measurementTime\" : \"" + runner.iterationNanos / 1000000 + " ms\",");
+
+                if(!result.benchmark.getParams().isEmpty())
+                {
+                    out.println("        \"params\" : {");
+                    int p = 0;
+                    for(Map.Entry<String, String> param : result.benchmark.getParams().entrySet())
+                    {
+                        out.print("            " + quote(param.getKey()) + " : " + quote(param.getValue()));
+                        out.println(++p < result.benchmark.getParams().size() ? "," : "");
+                    }
+                    out.println("        },");
+                }
+
+                out.println("        \"primaryMetric\" : {");
+                out.println("            \"score\" : " + number(mean(result.nanosPerOp)) + ",");
+                out.println("            \"scoreError\" : " + number(error(result.nanosPerOp)) + ",");
+                out.println("            \"scoreUnit\" : \"ns/op\",");
+                out.print("            \"rawData\" : [ [ ");
+                for(int i = 0; i < result.nanosPerOp.length; i++)
+                    out.print((i > 0 ? ", " : "") + number(result.nanosPerOp[i]));
+                out.println(" ] ]");
+                out.println("        },");
+
+                out.println("        \"secondaryMetrics\" : {");
+                if(result.bytesPerOp >= 0)
+                {
+                    out.println("            \"gc.alloc.rate.norm\" : {");
+                    out.println("                \"score\" : " + number(result.bytesPerOp) + ",");
+                    out.println("                \"scoreUnit\" : \"B/op\"");
+                    out.println(result.retainedBytes >= 0 ? "            }," : "            }");
+                }
+                if(result.retainedBytes >= 0)
+                {
+                    out.println("            \"heap.retained\" : {");
+                    out.println("                \"score\" : " + number(result.retainedBytes) + ",");
+                    out.println("                \"scoreUnit\" : \"B\"");
+                    out.println("            }");
+                }
+                out.println("        }");
+                out.println(r + 1 < results.size() ? "    }," : "    }");
+            }
+            out.println("]");
+        }
+    }
+
+    private static String quote(String value)
+    {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String number(double value)
+    {
+        return Double.isNaN(value) ? "\"NaN\"" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,57 @@
+package org.benchmark;
+
+/**
+ *  A check of the engine's behaviour run by the {@link CheckRunner}: a named scenario which sets up what it needs, drives
+ *  the engine and throws as soon as something does not come out as expected.
+ *  Checks live next to the benchmarks of the classes they cover, and are listed the same way (a static {@code checks()}
+ *  method in a {@code ...Checks} class).
+ */
+public abstract class Check
+{
+    private final String name;
+
+    /**
+     * @param name name of the check, usually the checked class and behaviour (e.g. "TextureAtlas.readback")
+     */
+    protected Check(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Runs the check
+     * @throws Exception (usually an {@link AssertionError} from {@link #expect(boolean, String)}) if the check fails
+     */
+    public abstract void run() throws Exception;
+
+    /**
+     * Fails the check unless the condition holds
+     * @param condition checked condition
+     * @param message what went wrong, reported when the check fails
+     */
+    public static void expect(boolean condition, String message)
+    {
+        if(!condition)
+            throw new AssertionError(message);
+    }
+
+    /**
+     * Fails the check unless a value is the expected one
+     * @param expected expected value
+     * @param actual value found
+     * @param what name of the value, reported when the check fails
+     */
+    public static void expectEquals(long expected, long actual, String what)
+    {
+        if(expected != actual)
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+
+    /**
+     * Returns the name of the check
+     */
+    public String getName() { return name; }
+
+    @Override
+    public String toString() { return name; }
+}
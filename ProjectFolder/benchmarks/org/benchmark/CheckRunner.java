@@ -0,0 +1,137 @@
+package org.benchmark;
+
+import org.engine.FixedTimestepChecks;
+import org.engine.graphics.SpriteBatchChecks;
+import org.engine.graphics.TextureAtlasChecks;
+import org.engine.resources.AssetManagerChecks;
+import org.engine.resources.AssetPackChecks;
+import org.engine.resources.AudioMixerChecks;
+import org.engine.resources.MusicPlayerChecks;
+import org.world.HeadlessChecks;
+import org.world.LevelChecks;
+import org.world.MapGeneratorChecks;
+import org.world.NavigationChecks;
+import org.world.TerrainChunksChecks;
+import org.world.agents.enemies.CorpseChecks;
+import org.world.agents.enemies.AI.PathfindingServiceChecks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Runs the checks of the engine's behaviour and reports which ones fail.
+ *  The engine keeps a lot of static state (the active world, the asset and animation caches, headless mode, etc.), so
+ *  every check runs in a new JVM, with the same class path and JVM options as this one, and starts from a fresh engine.
+ *  Exits with status 1 if any check failed.
+ *
+ *  Usage: CheckRunner [filter]
+ *  where filter keeps only the checks whose name contains it.
+ */
+public class CheckRunner
+{
+    /**
+     * Lists every check of the engine
+     */
+    private static List<Check> allChecks()
+    {
+        List<Check> checks = new ArrayList<>();
+        checks.addAll(FixedTimestepChecks.checks());
+        checks.addAll(SpriteBatchChecks.checks());
+        checks.addAll(TextureAtlasChecks.checks());
+        checks.addAll(AssetManagerChecks.checks());
+        checks.addAll(AssetPackChecks.checks());
+        checks.addAll(AudioMixerChecks.checks());
+        checks.addAll(MusicPlayerChecks.checks());
+        checks.addAll(HeadlessChecks.checks());
+        checks.addAll(TerrainChunksChecks.checks());
+        checks.addAll(MapGeneratorChecks.checks());
+        checks.addAll(NavigationChecks.checks());
+        checks.addAll(LevelChecks.checks());
+        checks.addAll(PathfindingServiceChecks.checks());
+        checks.addAll(CorpseChecks.checks());
+        return checks;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        List<Check> checks = allChecks();
+
+        if(args.length == 2 && args[0].equals("--check"))
+        {
+            //in a new JVM: run a single check, its outcome is the exit status
+            Check check = checks.get(Integer.parseInt(args[1]));
+            try
+            {
+                check.run();
+            }
+            catch(Throwable e)
+            {
+                e.printStackTrace(System.out);
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
+        String filter = args.length > 0 ? args[0] : "";
+        int run = 0, failed = 0;
+
+        for(int c = 0; c < checks.size(); c++)
+        {
+            Check check = checks.get(c);
+            if(!check.toString().contains(filter))
+                continue;
+
+            long start = System.nanoTime();
+            List<String> output = new ArrayList<>();
+            boolean passed = runForked(c, output);
+            long millis = (System.nanoTime() - start) / 1000000;
+
+            run++;
+            System.out.printf("%-60s %s %6d ms%n", check, passed ? "ok    " : "FAILED", millis);
+            if(!passed)
+            {
+                failed++;
+                for(String line : output)
+                    System.out.println("    " + line);
+            }
+        }
+
+        System.out.println(run + " checks, " + failed + " failed");
+        if(failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Runs a check in a new JVM
+     * @param index position of the check in {@link #allChecks()}
+     * @param output receives what the check printed
+     * @return true if the check passed
+     */
+    private static boolean runForked(int index, List<String> output) throws IOException, InterruptedException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CheckRunner.class.getName());
+        command.add("--check");
+        command.add(String.valueOf(index));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+                output.add(line);
+        }
+
+        return process.waitFor() == 0;
+    }
+}
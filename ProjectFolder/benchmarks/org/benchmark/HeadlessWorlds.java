@@ -0,0 +1,48 @@
+package org.benchmark;
+
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.agents.player.Player;
+
+import java.util.Random;
+
+/**
+ *  Builds game worlds for benchmarks, running the engine headless (see {@link GameLoop#setHeadless(boolean)})
+ */
+public class HeadlessWorlds
+{
+    /**
+     * Creates a world of the given size, makes it the active one and starts the game in it.
+     * The player is placed like in a normal game
+     * @param size width and height of the map in tiles
+     * @param withPlayer whether a player should be added
+     * @return the created world
+     */
+    public static World create(int size, boolean withPlayer)
+    {
+        return create(size, withPlayer, new Random().nextLong());
+    }
+
+    /**
+     * Creates a world of the given size from the map of a seed, makes it the active one and starts the game in it.
+     * The player is placed like in a normal game
+     * @param size width and height of the map in tiles
+     * @param withPlayer whether a player should be added
+     * @param seed seed of the map, see {@link org.world.MapGenerator}
+     * @return the created world
+     */
+    public static World create(int size, boolean withPlayer, long seed)
+    {
+        GameLoop.setHeadless(true);
+
+        World world = new World();
+        GameLoop.setWorld(world);
+        world.initialiseWorld(size, size, seed);
+
+        if(withPlayer)
+            world.addPlayer(new Player());
+
+        GameLoop.setState(GameLoop.STATES.GAME);
+        return world;
+    }
+}
@@ -0,0 +1,136 @@
+package org.benchmark;
+
+import org.engine.GameLoop;
+import org.engine.graphics.Renderer;
+import org.engine.resources.Preloader;
+import org.world.agents.enemies.SecurityBot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  Measures a cold start of the game, from the menu to the first wave, with and without the {@link Preloader}.
+ *  Caches fill up after the first start, so every sample runs in a new JVM. Each sample reports how long the game loop's
+ *  thread is blocked at each step: drawing the first text of the menu (loading the font, skipped while the preloader is
+ *  reading it), starting a new game and creating the first enemy. With the preloader, the assets are loaded while the menu is shown, which is not counted as blocking
+ *  (the wait for the loading bar is reported separately).
+ *  The engine runs without a window, so texture uploads are not part of the measure.
+ *
+ *  Usage: StartupBenchmark [samples]
+ */
+public class StartupBenchmark
+{
+    private static final String[] MODES = {"sync", "preload"};
+    private static final String[] STEPS = {"menuText", "loadingWait", "newGame", "firstEnemy", "total"};
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length == 2 && args[0].equals("--sample"))
+        {
+            sample(args[1].equals("preload"));
+            return;
+        }
+
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        System.out.printf("%-10s", "mode");
+        for(String step : STEPS)
+            System.out.printf("%14s", step + " ms");
+        System.out.println();
+
+        for(String mode : MODES)
+        {
+            double[][] results = new double[STEPS.length][samples];
+            for(int i = 0; i < samples; i++)
+            {
+                double[] result = runSample(mode);
+                for(int j = 0; j < STEPS.length; j++)
+                    results[j][i] = result[j];
+            }
+
+            System.out.printf("%-10s", mode);
+            for(double[] step : results)
+                System.out.printf("%14.1f", median(step));
+            System.out.println();
+        }
+    }
+
+    /**
+     * Runs a sample in a new JVM, with the same class path as this one
+     * @return duration of each step, in milliseconds
+     */
+    private static double[] runSample(String mode) throws IOException, InterruptedException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp",
+                System.getProperty("java.class.path"), StartupBenchmark.class.getName(), "--sample", mode);
+        builder.redirectErrorStream(true);
+
+        Process process = builder.start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+                last = line;
+        }
+
+        if(process.waitFor() != 0 || last == null)
+            throw new IllegalStateException("sample failed: " + last);
+
+        return Arrays.stream(last.trim().split(" ")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * Starts the game as the menu would, and prints the duration of each step on one line
+     */
+    private static void sample(boolean preload) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        List<Long> times = new ArrayList<>();
+
+        if(preload)
+            Preloader.start();
+
+        //the menu's first frame draws text, unless the preloader is still reading the font
+        long t = System.nanoTime();
+        if(!Preloader.isLoading())
+            Renderer.loadFonts(Renderer.FONT_PATH);
+        times.add(System.nanoTime() - t);
+
+        t = System.nanoTime();
+        Preloader.await();
+        times.add(System.nanoTime() - t);
+
+        t = System.nanoTime();
+        GameLoop.newGame();
+        GameLoop.setState(GameLoop.STATES.GAME);
+        times.add(System.nanoTime() - t);
+
+        t = System.nanoTime();
+        GameLoop.getWorld().addGameObject(new SecurityBot(2, 2));
+        times.add(System.nanoTime() - t);
+
+        times.add(System.nanoTime() - start);
+
+        StringBuilder line = new StringBuilder();
+        for(long time : times)
+            line.append(time / 1e6).append(' ');
+        System.out.println(line.toString().trim());
+
+        //the preloader's and audio threads may be alive
+        System.exit(0);
+    }
+
+    private static double median(double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,139 @@
+package org.engine;
+
+import org.benchmark.Check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks the tick counts of the {@link FixedTimestep} scheduler, driven by a simulated clock: the simulation keeps up
+ *  with real time whatever the frame rate, a stall is caught up a few ticks per frame without losing time, and only a
+ *  backlog past {@link FixedTimestep#MAX_BACKLOG_NANOS} is dropped (and counted).
+ */
+public class FixedTimestepChecks
+{
+    private static final int TICK_RATE = 60;
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Clock only moving when told to
+     */
+    private static class SimulatedClock implements FixedTimestep.Clock
+    {
+        long now = 0;
+
+        @Override
+        public long nanoTime() { return now; }
+    }
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        for(int frameRate : new int[] {30, 60, 144, 1000})
+            checks.add(new Check("FixedTimestep.ticks{fps=" + frameRate + "}")
+            {
+                @Override
+                public void run()
+                {
+                    SimulatedClock clock = new SimulatedClock();
+                    FixedTimestep timestep = new FixedTimestep(TICK_RATE, clock);
+
+                    //ten seconds of frames, as regular as the rate allows
+                    for(int frame = 1; frame <= frameRate * 10; frame++)
+                    {
+                        clock.now = frame * 10 * SECOND / (frameRate * 10L);
+                        runFrame(timestep);
+                    }
+
+                    expectEquals(TICK_RATE * 10, timestep.getTickCount(), "ticks in ten seconds");
+                    expectEquals(0, timestep.getDroppedNanos(), "dropped nanoseconds");
+                }
+            });
+
+        checks.add(new Check("FixedTimestep.ticks{jitter}")
+        {
+            @Override
+            public void run()
+            {
+                SimulatedClock clock = new SimulatedClock();
+                FixedTimestep timestep = new FixedTimestep(TICK_RATE, clock);
+                Random random = new Random(5);
+
+                //frames from 1 to 40 ms apart: whatever was not simulated yet must be less than a tick
+                while(clock.now < 30 * SECOND)
+                {
+                    clock.now += 1000000L + random.nextInt(39000000);
+                    runFrame(timestep);
+
+                    long owed = clock.now - timestep.getSimulatedNanos();
+                    expect(owed >= 0 && owed < timestep.getTickNanos(), "simulation " + owed + " ns behind after a frame");
+                    expect(timestep.getAlpha() >= 0 && timestep.getAlpha() <= 1, "interpolation factor out of [0, 1]");
+                }
+            }
+        });
+
+        checks.add(new Check("FixedTimestep.catchUp")
+        {
+            @Override
+            public void run()
+            {
+                SimulatedClock clock = new SimulatedClock();
+                FixedTimestep timestep = new FixedTimestep(TICK_RATE, clock);
+
+                //a 500 ms stall: 30 ticks owed, run at most MAX_TICKS_PER_FRAME at a time over the next frames
+                clock.now = SECOND / 2;
+                expectEquals(FixedTimestep.MAX_TICKS_PER_FRAME, runFrame(timestep), "ticks in the frame after the stall");
+
+                int frames = 1;
+                while(timestep.getTickCount() < TICK_RATE / 2)
+                {
+                    clock.now += SECOND / 1000;
+                    expect(runFrame(timestep) <= FixedTimestep.MAX_TICKS_PER_FRAME, "too many ticks in a frame");
+                    frames++;
+                }
+
+                expect(frames <= 7, "catching up took " + frames + " frames");
+                expectEquals(0, timestep.getDroppedNanos(), "dropped nanoseconds");
+            }
+        });
+
+        checks.add(new Check("FixedTimestep.dropBacklog")
+        {
+            @Override
+            public void run()
+            {
+                SimulatedClock clock = new SimulatedClock();
+                FixedTimestep timestep = new FixedTimestep(TICK_RATE, clock);
+
+                //a 3 s stall: one second is kept and caught up, the other two are dropped
+                clock.now = 3 * SECOND;
+                runFrame(timestep);
+                expectEquals(2 * SECOND, timestep.getDroppedNanos(), "dropped nanoseconds");
+
+                while(timestep.getTickCount() < TICK_RATE)
+                {
+                    clock.now += SECOND / 1000;
+                    runFrame(timestep);
+                }
+                expectEquals(TICK_RATE, timestep.getTickCount(), "ticks after catching up");
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Runs a frame the way the game loop does
+     * @return number of ticks run
+     */
+    private static int runFrame(FixedTimestep timestep)
+    {
+        timestep.beginFrame();
+        int ticks = 0;
+        while(timestep.consumeTick())
+            ticks++;
+        return ticks;
+    }
+}
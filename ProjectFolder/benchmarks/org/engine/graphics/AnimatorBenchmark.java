@@ -0,0 +1,41 @@
+package org.engine.graphics;
+
+import org.benchmark.Benchmark;
+import org.engine.resources.ImageResource;
+
+import java.util.List;
+
+/**
+ *  Measures the slicing of sprite sheets into animation frames, as done by {@link Animator#createAnimation(String, AnimationInformation[])}.
+ *  Only the slicing is measured: the sheet is decoded once (it is kept by the {@link org.engine.resources.AssetManager}),
+ *  and packing the frames into the shared atlas on every call would fill it up.
+ */
+public class AnimatorBenchmark
+{
+    /**
+     * Frames/fps of the security bot's animations
+     */
+    private static final int[][] SECURITY_BOT = {{5, 5}, {1, 1}, {12, 8}, {2, 2}, {19, 18}, {8, 12}};
+
+    public static List<Benchmark> benchmarks()
+    {
+        return List.of(new Benchmark("Animator.getTiles")
+        {
+            final AnimationInformation[] info = new AnimationInformation[SECURITY_BOT.length];
+
+            @Override
+            public void setUp()
+            {
+                for(int i = 0; i < info.length; i++)
+                    info[i] = new AnimationInformation(SECURITY_BOT[i][0], SECURITY_BOT[i][1], 80, 60, true);
+            }
+
+            @Override
+            public long run()
+            {
+                ImageResource[][] tiles = Animator.getTiles("/resources/Enemies/security_bot.png", info);
+                return tiles[tiles.length - 1].length;
+            }
+        }.param("sheet", "security_bot"));
+    }
+}
@@ -0,0 +1,67 @@
+package org.engine.graphics;
+
+import org.benchmark.Benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures the conversion of world coordinates to isometric tile coordinates
+ */
+public class IsoCoordinatesBenchmark
+{
+    private static final int POINTS = 1024;
+
+    public static List<Benchmark> benchmarks()
+    {
+        return List.of(
+                new Benchmark("Renderer.IsoCoordinates")
+                {
+                    final float[] xs = new float[POINTS], ys = new float[POINTS];
+                    int next = 0;
+
+                    @Override
+                    public void setUp()
+                    {
+                        Random random = new Random(1);
+                        for(int i = 0; i < POINTS; i++)
+                        {
+                            xs[i] = random.nextFloat() * 1280;
+                            ys[i] = random.nextFloat() * 640 - 320;
+                        }
+                    }
+
+                    @Override
+                    public long run()
+                    {
+                        next = (next + 1) & (POINTS - 1);
+                        int[] iso = Renderer.IsoCoordinates(xs[next], ys[next]);
+                        return iso[0] + iso[1];
+                    }
+                },
+
+                new Benchmark("Renderer.isoX/isoY")
+                {
+                    final float[] xs = new float[POINTS], ys = new float[POINTS];
+                    int next = 0;
+
+                    @Override
+                    public void setUp()
+                    {
+                        Random random = new Random(1);
+                        for(int i = 0; i < POINTS; i++)
+                        {
+                            xs[i] = random.nextFloat() * 1280;
+                            ys[i] = random.nextFloat() * 640 - 320;
+                        }
+                    }
+
+                    @Override
+                    public long run()
+                    {
+                        next = (next + 1) & (POINTS - 1);
+                        return Renderer.isoX(xs[next], ys[next]) + Renderer.isoY(xs[next], ys[next]);
+                    }
+                });
+    }
+}
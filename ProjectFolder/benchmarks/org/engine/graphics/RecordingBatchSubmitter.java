@@ -0,0 +1,63 @@
+package org.engine.graphics;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  A {@link BatchSubmitter} which draws nothing and keeps a copy of every batch it receives, so that the batching of a
+ *  {@link SpriteBatch} can be checked without a window
+ */
+public class RecordingBatchSubmitter implements BatchSubmitter
+{
+    /**
+     * A submitted batch: its texture and a copy of its vertex data
+     */
+    public static class Batch
+    {
+        public final int texture;
+        public final float[] vertices;
+
+        Batch(int texture, float[] vertices)
+        {
+            this.texture = texture;
+            this.vertices = vertices;
+        }
+
+        /**
+         * Returns the number of quads in the batch
+         */
+        public int getQuadCount() { return vertices.length / SpriteBatch.FLOATS_PER_QUAD; }
+
+        /**
+         * Returns a float of a vertex of a quad
+         * @param quad index of the quad in the batch
+         * @param vertex index of the vertex in the quad (0 to 3)
+         * @param offset index of the float in the vertex (x, y, u, v, r, g, b, a)
+         */
+        public float get(int quad, int vertex, int offset)
+        {
+            return vertices[quad * SpriteBatch.FLOATS_PER_QUAD + vertex * SpriteBatch.FLOATS_PER_VERTEX + offset];
+        }
+    }
+
+    private final List<Batch> batches = new ArrayList<>();
+
+    @Override
+    public void submit(int texture, FloatBuffer vertices, int quadCount)
+    {
+        float[] copy = new float[quadCount * SpriteBatch.FLOATS_PER_QUAD];
+        vertices.duplicate().get(copy);
+        batches.add(new Batch(texture, copy));
+    }
+
+    /**
+     * Returns the batches received so far, oldest first
+     */
+    public List<Batch> getBatches() { return batches; }
+
+    /**
+     * Forgets the batches received so far
+     */
+    public void clear() { batches.clear(); }
+}
@@ -0,0 +1,174 @@
+package org.engine.graphics;
+
+import org.benchmark.Check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks the batching of a {@link SpriteBatch} through the batches it hands to a {@link RecordingBatchSubmitter}: a batch
+ *  is only submitted when the texture changes, when the batch is full or when it is flushed, quads come out in the order
+ *  they were drawn in, and their vertices are mirrored and rotated as asked.
+ */
+public class SpriteBatchChecks
+{
+    private static final float EPSILON = 1e-4f;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("SpriteBatch.flush")
+        {
+            @Override
+            public void run()
+            {
+                RecordingBatchSubmitter recorder = new RecordingBatchSubmitter();
+                SpriteBatch batch = new SpriteBatch(recorder, 3);
+
+                //consecutive quads of the same texture stay in the batch
+                for(int i = 0; i < 3; i++)
+                    quad(batch, 1, i);
+                expectEquals(0, recorder.getBatches().size(), "batches submitted while the texture did not change");
+                expectEquals(3, batch.getPendingQuads(), "pending quads");
+
+                //a full batch is submitted by the next quad
+                quad(batch, 1, 3);
+                expectEquals(1, recorder.getBatches().size(), "batches submitted once the batch was full");
+                expectEquals(3, recorder.getBatches().get(0).getQuadCount(), "quads of the full batch");
+                expectEquals(1, batch.getPendingQuads(), "pending quads after a full batch");
+
+                //a new texture submits the quads of the old one
+                quad(batch, 2, 4);
+                expectEquals(2, recorder.getBatches().size(), "batches submitted after the texture changed");
+                expectEquals(1, recorder.getBatches().get(1).texture, "texture of the batch submitted on a change");
+                expectEquals(1, recorder.getBatches().get(1).getQuadCount(), "quads of the batch submitted on a change");
+
+                //replacing the submitter hands the pending quads to the old one
+                RecordingBatchSubmitter other = new RecordingBatchSubmitter();
+                batch.setSubmitter(other);
+                expectEquals(3, recorder.getBatches().size(), "batches submitted to the replaced submitter");
+                expectEquals(2, recorder.getBatches().get(2).texture, "texture of the last batch of the replaced submitter");
+                expectEquals(0, batch.getPendingQuads(), "pending quads after replacing the submitter");
+
+                quad(batch, 2, 5);
+                batch.endFrame();
+                batch.flush();
+                expectEquals(1, other.getBatches().size(), "batches submitted by the end of the frame");
+                expectEquals(4, batch.getLastFrameBatches(), "batches of the frame");
+                expectEquals(6, batch.getLastFrameQuads(), "quads of the frame");
+            }
+        });
+
+        checks.add(new Check("SpriteBatch.order")
+        {
+            @Override
+            public void run()
+            {
+                RecordingBatchSubmitter recorder = new RecordingBatchSubmitter();
+                SpriteBatch batch = new SpriteBatch(recorder, 16);
+                Random random = new Random(3);
+
+                //runs of random length on a few textures, the centre of each quad being its position in the drawing order
+                int[] textures = new int[2000];
+                int changes = 0;
+                for(int i = 0; i < textures.length; i++)
+                {
+                    textures[i] = i > 0 && random.nextInt(4) > 0 ? textures[i - 1] : 1 + random.nextInt(3);
+                    if(i > 0 && textures[i] != textures[i - 1])
+                        changes++;
+                    quad(batch, textures[i], i);
+                }
+                batch.endFrame();
+
+                int drawn = 0;
+                for(RecordingBatchSubmitter.Batch submitted : recorder.getBatches())
+                {
+                    expect(submitted.getQuadCount() > 0 && submitted.getQuadCount() <= 16, "a batch holds "
+                            + submitted.getQuadCount() + " quads");
+                    for(int quad = 0; quad < submitted.getQuadCount(); quad++, drawn++)
+                    {
+                        expectEquals(textures[drawn], submitted.texture, "texture of quad " + drawn);
+                        expect(Math.abs(centreX(submitted, quad) - drawn) < EPSILON, "quad " + drawn + " was submitted as "
+                                + centreX(submitted, quad));
+                    }
+                }
+                expectEquals(textures.length, drawn, "quads submitted");
+                expect(recorder.getBatches().size() <= changes + 1 + textures.length / 16, recorder.getBatches().size()
+                        + " batches for " + changes + " texture changes");
+                expectEquals(recorder.getBatches().size(), batch.getLastFrameBatches(), "batches of the frame");
+            }
+        });
+
+        checks.add(new Check("SpriteBatch.vertices")
+        {
+            @Override
+            public void run()
+            {
+                RecordingBatchSubmitter recorder = new RecordingBatchSubmitter();
+                SpriteBatch batch = new SpriteBatch(recorder);
+
+                batch.draw(7, 10, 20, 4, 2, 0.25f, 0.5f, 0.75f, 1f, false, 0, 0.1f, 0.2f, 0.3f, 0.4f);
+                batch.draw(7, 10, 20, 4, 2, 0.25f, 0.5f, 0.75f, 1f, true, 0, 1, 1, 1, 1);
+                batch.draw(7, 10, 20, 4, 2, 0.25f, 0.5f, 0.75f, 1f, false, 90, 1, 1, 1, 1);
+                batch.flush();
+
+                expectEquals(1, recorder.getBatches().size(), "batches");
+                RecordingBatchSubmitter.Batch submitted = recorder.getBatches().get(0);
+
+                //corners in the order top left, bottom left, bottom right, top right
+                float[][] plain = {{8, 19, 0.25f, 0.5f}, {8, 21, 0.25f, 1f}, {12, 21, 0.75f, 1f}, {12, 19, 0.75f, 0.5f}};
+                float[] colour = {0.1f, 0.2f, 0.3f, 0.4f};
+                for(int vertex = 0; vertex < 4; vertex++)
+                {
+                    expectVertex(submitted, 0, vertex, plain[vertex], "plain quad");
+                    for(int c = 0; c < 4; c++)
+                        expectClose(colour[c], submitted.get(0, vertex, 4 + c), "colour " + c + " of vertex " + vertex);
+                }
+
+                //mirrored: same positions, left and right texture coordinates swapped
+                for(int vertex = 0; vertex < 4; vertex++)
+                    expectVertex(submitted, 1, vertex, new float[] {plain[vertex][0], plain[vertex][1],
+                            plain[vertex][2] == 0.25f ? 0.75f : 0.25f, plain[vertex][3]}, "mirrored quad");
+
+                //rotated by 90 degrees around the centre: x - localY, y + localX
+                float[][] rotated = {{11, 18, 0.25f, 0.5f}, {9, 18, 0.25f, 1f}, {9, 22, 0.75f, 1f}, {11, 22, 0.75f, 0.5f}};
+                for(int vertex = 0; vertex < 4; vertex++)
+                    expectVertex(submitted, 2, vertex, rotated[vertex], "rotated quad");
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Draws a 1 x 1 quad of a texture centred at x,0
+     */
+    private static void quad(SpriteBatch batch, int texture, float x)
+    {
+        batch.draw(texture, x, 0, 1, 1, 0, 0, 1, 1, false, 0, 1, 1, 1, 1);
+    }
+
+    private static float centreX(RecordingBatchSubmitter.Batch batch, int quad)
+    {
+        float sum = 0;
+        for(int vertex = 0; vertex < 4; vertex++)
+            sum += batch.get(quad, vertex, 0);
+        return sum / 4;
+    }
+
+    /**
+     * Fails unless a vertex has the expected x, y, u and v
+     */
+    private static void expectVertex(RecordingBatchSubmitter.Batch batch, int quad, int vertex, float[] expected, String what)
+    {
+        for(int i = 0; i < expected.length; i++)
+            expectClose(expected[i], batch.get(quad, vertex, i), what + ", float " + i + " of vertex " + vertex);
+    }
+
+    private static void expectClose(float expected, float actual, String what)
+    {
+        Check.expect(Math.abs(expected - actual) < EPSILON, what + ": expected " + expected + ", got " + actual);
+    }
+}
@@ -0,0 +1,100 @@
+package org.engine.graphics;
+
+import org.benchmark.Check;
+import org.engine.resources.ImageResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks that images packed into a {@link TextureAtlas} keep their exact pixels: every image read back from its region
+ *  (through {@link ImageResource#getImage()}) once all of them are packed must match its source, so no region overlaps
+ *  another one or loses pixels to a conversion.
+ */
+public class TextureAtlasChecks
+{
+    /**
+     * Sprite sheet sliced by the check, and the size of its frames
+     */
+    private static final String SHEET = "/resources/Enemies/security_bot.png";
+    private static final int FRAME_WIDTH = 80, FRAME_HEIGHT = 60;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("TextureAtlas.readback")
+        {
+            @Override
+            public void run()
+            {
+                //small pages, so that the images spill over several of them
+                TextureAtlas atlas = new TextureAtlas(256);
+                Random random = new Random(4);
+
+                List<BufferedImage> sources = new ArrayList<>();
+                List<ImageResource> images = new ArrayList<>();
+                for(int i = 0; i < 200; i++)
+                {
+                    BufferedImage source = new BufferedImage(1 + random.nextInt(60), 1 + random.nextInt(60), BufferedImage.TYPE_INT_ARGB);
+                    for(int x = 0; x < source.getWidth(); x++)
+                        for(int y = 0; y < source.getHeight(); y++)
+                            source.setRGB(x, y, random.nextInt());
+
+                    ImageResource image = new ImageResource(source);
+                    expect(atlas.pack(image), "image " + i + " was not packed");
+                    sources.add(source);
+                    images.add(image);
+                }
+
+                expect(atlas.getPageCount() > 1, "every image fit on one page");
+                for(int i = 0; i < images.size(); i++)
+                    expectSame(sources.get(i), images.get(i).getImage(), "image " + i);
+            }
+        });
+
+        checks.add(new Check("TextureAtlas.readback.spriteSheet")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                BufferedImage sheet = ImageIO.read(TextureAtlasChecks.class.getResource(SHEET));
+                int columns = sheet.getWidth() / FRAME_WIDTH, rows = sheet.getHeight() / FRAME_HEIGHT;
+
+                AnimationInformation[] info = new AnimationInformation[rows];
+                for(int i = 0; i < rows; i++)
+                    info[i] = new AnimationInformation(columns, 10, FRAME_WIDTH, FRAME_HEIGHT, true);
+
+                TextureAtlas atlas = new TextureAtlas();
+                ImageResource[][] frames = Animator.getTiles(SHEET, info);
+                for(ImageResource[] row : frames)
+                    for(ImageResource frame : row)
+                        expect(atlas.pack(frame), "a frame was not packed");
+
+                for(int i = 0; i < rows; i++)
+                    for(int j = 0; j < columns; j++)
+                        expectSame(sheet.getSubimage(j * FRAME_WIDTH, i * FRAME_HEIGHT, FRAME_WIDTH, FRAME_HEIGHT),
+                                frames[i][j].getImage(), "frame " + j + " of row " + i);
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Fails unless both images have the same size and the same ARGB value for every pixel
+     */
+    private static void expectSame(BufferedImage expected, BufferedImage actual, String what)
+    {
+        if(actual == null || actual.getWidth() != expected.getWidth() || actual.getHeight() != expected.getHeight())
+            throw new AssertionError(what + " does not have the size of its source");
+
+        for(int x = 0; x < expected.getWidth(); x++)
+            for(int y = 0; y < expected.getHeight(); y++)
+                if(actual.getRGB(x, y) != expected.getRGB(x, y))
+                    throw new AssertionError(what + " differs from its source at " + x + ", " + y);
+    }
+}
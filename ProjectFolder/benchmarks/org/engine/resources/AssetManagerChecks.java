@@ -0,0 +1,68 @@
+package org.engine.resources;
+
+import org.benchmark.Check;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.agents.enemies.SecurityBot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Checks that the {@link AssetManager} shares assets: many enemies created at once read and decode each of their
+ *  files only once, hold one reference each, and everything is unloaded once the world is torn down.
+ *  The world runs headless, but with the real files and sounds that are not silent, so that the assets are really read.
+ */
+public class AssetManagerChecks
+{
+    private static final int BOTS = 500;
+
+    private static final String[] BOT_SOUNDS = {"/resources/Enemies/clang.wav", "/resources/Enemies/bot_dead.wav",
+            "/resources/Enemies/step_clang.wav", "/resources/Enemies/swing.wav"};
+    private static final String SHADOW = "/resources/player/shadow.png";
+    private static final String BOT_SHEET = "/resources/Enemies/security_bot.png";
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("AssetManager.shared")
+        {
+            @Override
+            public void run()
+            {
+                World world = HeadlessWorlds.create(16, false);
+                SoundClip.setSilent(false);
+                AssetManager.setProvider(new FileResources());
+
+                int loads = AssetManager.getLoadCount();
+                for(int i = 0; i < BOTS; i++)
+                    world.addGameObject(new SecurityBot(2 + i % 12, 2 + i / 12 % 12));
+
+                //the four sounds, the shadow and the sprite sheet
+                expectEquals(BOT_SOUNDS.length + 2, AssetManager.getLoadCount() - loads, "files read");
+                for(String sound : BOT_SOUNDS)
+                {
+                    expect(AssetManager.acquireSound(sound) != null, sound + " could not be decoded");
+                    AssetManager.release(sound);
+                    expectEquals(BOTS, AssetManager.getReferenceCount(sound), "references to " + sound);
+                }
+                expectEquals(BOTS, AssetManager.getReferenceCount(SHADOW), "references to the shadow");
+
+                //the sheet is only held until its frames are packed
+                expectEquals(0, AssetManager.getReferenceCount(BOT_SHEET), "references to the sprite sheet");
+
+                world.dispose();
+                GameLoop.setWorld(null);
+
+                for(String sound : BOT_SOUNDS)
+                    expect(!AssetManager.isLoaded(sound), sound + " is still loaded");
+                expect(!AssetManager.isLoaded(SHADOW), "the shadow is still loaded");
+                expect(!AssetManager.isLoaded(BOT_SHEET), "the sprite sheet is still loaded");
+            }
+        });
+
+        return checks;
+    }
+}
@@ -0,0 +1,158 @@
+package org.engine.resources;
+
+import org.engine.graphics.TextureAtlas;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  Compares loading every image and sound of the game from their files (ImageIO and AudioSystem decoding, as the loaders
+ *  do without a pack) with loading them from an {@link AssetPack}.
+ *  A load reads every asset, packs the images into a new {@link TextureAtlas} and reads every sample of the sounds, so that
+ *  the mapped pages of the pack are really touched. For the pack, opening (mapping) the file is part of the load.
+ *  A cold load is the first one of a new JVM, which also pays for loading and initialising the decoders; every cold sample
+ *  runs in a new JVM. Warm loads are repeated in the same JVM after a few unmeasured ones. The files stay in the system's
+ *  cache between samples either way, so "cold" is about the JVM, not the disk.
+ *
+ *  Usage: AssetPackBenchmark [resourcesFolder] [samples], by default src/resources and 5 (run from the project folder,
+ *  with the resources on the class path)
+ */
+public class AssetPackBenchmark
+{
+    private static final String[] MODES = {"files", "pack"};
+
+    private static final int WARMUP = 3;
+
+    /**
+     * Receives the samples read, so that the JIT cannot skip reading them
+     */
+    private static long sink;
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length == 3 && args[0].equals("--sample"))
+        {
+            sample(args[1].equals("pack"), Paths.get(args[2]));
+            return;
+        }
+
+        Path resources = Paths.get(args.length > 0 ? args[0] : "src/resources");
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path pack = Files.createTempFile("assets", ".pak");
+        try
+        {
+            int count = AssetPacker.pack(resources, pack);
+            System.out.println(count + " assets, pack of " + Files.size(pack) / 1024 + " KB");
+
+            System.out.printf("%-8s%12s%12s%n", "mode", "cold ms", "warm ms");
+            for(String mode : MODES)
+            {
+                double[] cold = new double[samples];
+                double[] warm = new double[samples];
+                for(int i = 0; i < samples; i++)
+                {
+                    double[] result = runSample(mode, pack);
+                    cold[i] = result[0];
+                    warm[i] = result[1];
+                }
+                System.out.printf("%-8s%12.1f%12.1f%n", mode, median(cold), median(warm));
+            }
+        }
+        finally
+        {
+            Files.delete(pack);
+        }
+    }
+
+    /**
+     * Runs a sample in a new JVM, with the same class path as this one
+     * @return duration of the cold load and median duration of the warm ones, in milliseconds
+     */
+    private static double[] runSample(String mode, Path pack) throws IOException, InterruptedException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp",
+                System.getProperty("java.class.path"), AssetPackBenchmark.class.getName(), "--sample", mode,
+                pack.toString());
+        builder.redirectErrorStream(true);
+
+        Process process = builder.start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+                last = line;
+        }
+
+        if(process.waitFor() != 0 || last == null)
+            throw new IllegalStateException("sample failed: " + last);
+
+        return Arrays.stream(last.trim().split(" ")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * Loads the assets once cold, then a few more times warm, and prints both durations on one line
+     */
+    private static void sample(boolean fromPack, Path pack) throws IOException
+    {
+        //the paths are read from the pack in both modes, outside of the measure
+        List<String> paths = new ArrayList<>(AssetPack.open(pack).getPaths());
+
+        long cold = load(fromPack, pack, paths);
+
+        for(int i = 0; i < WARMUP; i++)
+            load(fromPack, pack, paths);
+
+        double[] warm = new double[5];
+        for(int i = 0; i < warm.length; i++)
+            warm[i] = load(fromPack, pack, paths) / 1e6;
+
+        System.out.println(cold / 1e6 + " " + median(warm));
+    }
+
+    /**
+     * Loads every asset, through the same loaders as the game
+     * @return duration of the load, in nanoseconds
+     */
+    private static long load(boolean fromPack, Path pack, List<String> paths) throws IOException
+    {
+        long start = System.nanoTime();
+
+        AssetPack.setDefault(fromPack ? AssetPack.open(pack) : null);
+
+        TextureAtlas atlas = new TextureAtlas();
+        for(String path : paths)
+        {
+            if(path.endsWith(".png"))
+            {
+                atlas.pack(new ImageResource(path));
+            }
+            else
+            {
+                ByteBuffer samples = SoundData.load(path).getBuffer();
+                while(samples.remaining() >= Long.BYTES)
+                    sink += samples.getLong();
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static double median(double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
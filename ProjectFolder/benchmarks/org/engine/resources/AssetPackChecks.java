@@ -0,0 +1,140 @@
+package org.engine.resources;
+
+import org.benchmark.Check;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ *  Checks how the game finds its {@link AssetPack}: a pack is used as long as the files it was made from are the same,
+ *  found whether it is a plain file or inside of a jar, and ignored as soon as one of its files changes.
+ *  Each check packs a few of the game's files into a new folder (or jar) and looks for the pack through a class loader
+ *  reading only that folder.
+ */
+public class AssetPackChecks
+{
+    private static final String[] FILES = {"/resources/Decorations/rock.png", "/resources/Decorations/grass.png",
+            "/resources/Enemies/clang.wav"};
+
+    private static final String CHANGED = "/resources/Decorations/rock.png", REPLACEMENT = "/resources/Tiles/dirt.png";
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("AssetPack.find.file")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                Path folder = packedFolder();
+                try (URLClassLoader loader = new URLClassLoader(new URL[] {folder.toUri().toURL()}, null))
+                {
+                    expectContents(AssetPack.find(loader, AssetPack.DEFAULT_PATH));
+                }
+
+                //an image edited after packing
+                try (InputStream in = AssetPackChecks.class.getResourceAsStream(REPLACEMENT))
+                {
+                    Files.copy(in, folder.resolve(CHANGED.substring(1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+                try (URLClassLoader loader = new URLClassLoader(new URL[] {folder.toUri().toURL()}, null))
+                {
+                    expect(AssetPack.find(loader, AssetPack.DEFAULT_PATH) == null, "an outdated pack was used");
+                }
+            }
+        });
+
+        checks.add(new Check("AssetPack.find.jar")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                Path folder = packedFolder();
+                Path jar = Files.createTempFile("assets", ".jar");
+                try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+                {
+                    for(String path : FILES)
+                        addEntry(out, folder, path);
+                    addEntry(out, folder, AssetPack.DEFAULT_PATH);
+                }
+
+                try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, null))
+                {
+                    expect(loader.getResource(AssetPack.DEFAULT_PATH.substring(1)).getProtocol().equals("jar"),
+                            "the pack is not read from the jar");
+                    expectContents(AssetPack.find(loader, AssetPack.DEFAULT_PATH));
+                }
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Copies the files into a new folder and packs them next to them, where the game looks for its pack
+     * @return the folder, holding "resources"
+     */
+    private static Path packedFolder() throws IOException
+    {
+        Path folder = Files.createTempDirectory("assets");
+        for(String path : FILES)
+        {
+            Path file = folder.resolve(path.substring(1));
+            Files.createDirectories(file.getParent());
+            try (InputStream in = AssetPackChecks.class.getResourceAsStream(path))
+            {
+                Files.copy(in, file);
+            }
+        }
+
+        AssetPacker.pack(folder.resolve("resources"), folder.resolve(AssetPack.DEFAULT_PATH.substring(1)));
+        return folder;
+    }
+
+    private static void addEntry(JarOutputStream out, Path folder, String path) throws IOException
+    {
+        out.putNextEntry(new JarEntry(path.substring(1)));
+        Files.copy(folder.resolve(path.substring(1)), (OutputStream) out);
+        out.closeEntry();
+    }
+
+    /**
+     * Fails unless the pack holds every file, its images having the pixels of their file
+     */
+    private static void expectContents(AssetPack pack) throws IOException
+    {
+        Check.expect(pack != null, "the pack was not found or not used");
+        Check.expectEquals(FILES.length, pack.size(), "assets in the pack");
+        Check.expect(pack.getSound("/resources/Enemies/clang.wav") != null, "the sound is missing");
+
+        for(String path : FILES)
+        {
+            if(!path.endsWith(".png"))
+                continue;
+
+            BufferedImage image = ImageIO.read(AssetPackChecks.class.getResource(path));
+            AssetPack.Image packed = pack.getImage(path);
+            Check.expect(packed != null && packed.width == image.getWidth() && packed.height == image.getHeight(),
+                    path + " is missing or has the wrong size");
+
+            IntBuffer pixels = packed.pixels;
+            for(int y = 0; y < image.getHeight(); y++)
+                for(int x = 0; x < image.getWidth(); x++)
+                    Check.expect(pixels.get(y * image.getWidth() + x) == image.getRGB(x, y), path + " differs at " + x + ", " + y);
+        }
+    }
+}
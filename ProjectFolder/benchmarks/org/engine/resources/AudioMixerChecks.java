@@ -0,0 +1,235 @@
+package org.engine.resources;
+
+import org.benchmark.Check;
+
+import javax.sound.sampled.SourceDataLine;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ *  Checks what the {@link AudioMixer} writes to its line, through a fake line handing every block written by the mixer's
+ *  thread over to the check: the samples of a sound scaled by its gain, sounds added up and clamped, and which sound
+ *  gives up its voice when they are all taken. Also checks that every sound of the game is decoded to the mixer's format.
+ */
+public class AudioMixerChecks
+{
+    /**
+     * Line handing over the blocks one at a time: the mixer's thread waits after writing a block until the check asks for
+     * the next one, so that sounds played in between are all started in that next block
+     */
+    private static class FakeLine
+    {
+        final BlockingQueue<short[]> written = new LinkedBlockingQueue<>();
+        final Semaphore resume = new Semaphore(0);
+        boolean first = true;
+
+        final SourceDataLine line = (SourceDataLine) Proxy.newProxyInstance(AudioMixerChecks.class.getClassLoader(),
+                new Class<?>[] {SourceDataLine.class}, (proxy, method, args) -> {
+                    if(method.getName().equals("write"))
+                    {
+                        short[] block = new short[(Integer) args[2] / 2];
+                        ByteBuffer.wrap((byte[]) args[0], (Integer) args[1], (Integer) args[2])
+                                .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(block);
+                        written.put(block);
+                        resume.acquire();
+                        return args[2];
+                    }
+
+                    Class<?> type = method.getReturnType();
+                    if(type == boolean.class)
+                        return false;
+                    if(type == int.class)
+                        return 0;
+                    if(type == long.class)
+                        return 0L;
+                    if(type == float.class)
+                        return 0f;
+                    return null;
+                });
+
+        /**
+         * Returns the next block written by the mixer
+         */
+        short[] next() throws InterruptedException
+        {
+            if(!first)
+                resume.release();
+            first = false;
+            return written.take();
+        }
+    }
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("AudioMixer.gain")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                FakeLine line = new FakeLine();
+                AudioMixer mixer = new AudioMixer(line.line, 4);
+                mixer.start();
+
+                AudioMixer.Sound sound = new AudioMixer.Sound(ramp(3 * AudioMixer.BLOCK_FRAMES, 7), SoundClip.DEFAULT_PRIORITY);
+                sound.gain = 0.5f;
+
+                expectSilent(line.next());
+                mixer.play(sound, false);
+
+                //three blocks of the sound, then silence once it ended
+                for(int b = 0; b < 3; b++)
+                {
+                    short[] block = line.next();
+                    for(int i = 0; i < block.length; i++)
+                        expectEquals((int) (sample(b * block.length + i, 7) * 0.5f), block[i], "sample " + i + " of block " + b);
+                }
+                expectSilent(line.next());
+                expect(!sound.running, "the sound did not end");
+            }
+        });
+
+        checks.add(new Check("AudioMixer.sum")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                FakeLine line = new FakeLine();
+                AudioMixer mixer = new AudioMixer(line.line, 4);
+                mixer.start();
+
+                AudioMixer.Sound a = new AudioMixer.Sound(constant(AudioMixer.BLOCK_FRAMES, 20000), SoundClip.DEFAULT_PRIORITY);
+                AudioMixer.Sound b = new AudioMixer.Sound(constant(AudioMixer.BLOCK_FRAMES, 20000), SoundClip.DEFAULT_PRIORITY);
+                AudioMixer.Sound c = new AudioMixer.Sound(constant(AudioMixer.BLOCK_FRAMES, -30000), SoundClip.DEFAULT_PRIORITY);
+
+                line.next();
+                mixer.play(a, false);
+                mixer.play(b, false);
+                for(short sample : line.next())
+                    expectEquals(Short.MAX_VALUE, sample, "clamped sum");
+
+                mixer.play(a, false);
+                mixer.play(c, false);
+                for(short sample : line.next())
+                    expectEquals(-10000, sample, "sum");
+            }
+        });
+
+        checks.add(new Check("AudioMixer.voiceStealing")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                FakeLine line = new FakeLine();
+                AudioMixer mixer = new AudioMixer(line.line, 2);
+                mixer.start();
+
+                SoundData data = constant(100 * AudioMixer.BLOCK_FRAMES, 1000);
+                AudioMixer.Sound oldest = new AudioMixer.Sound(data, SoundClip.DEFAULT_PRIORITY);
+                AudioMixer.Sound older = new AudioMixer.Sound(data, SoundClip.DEFAULT_PRIORITY);
+                AudioMixer.Sound newest = new AudioMixer.Sound(data, SoundClip.DEFAULT_PRIORITY);
+                AudioMixer.Sound quiet = new AudioMixer.Sound(data, SoundClip.LOW_PRIORITY);
+                AudioMixer.Sound loud = new AudioMixer.Sound(data, SoundClip.HIGH_PRIORITY);
+
+                line.next();
+                mixer.play(oldest, true);
+                line.next();
+                mixer.play(older, true);
+                line.next();
+
+                //every voice taken: the oldest sound of the same priority gives up its voice
+                mixer.play(newest, true);
+                line.next();
+                expect(!oldest.running && older.running && newest.running, "the oldest sound was not replaced");
+                expectEquals(2, mixer.getActiveVoices(), "voices");
+
+                //a sound of lower priority than every voice is dropped
+                mixer.play(quiet, false);
+                line.next();
+                expect(!quiet.running && older.running && newest.running, "a sound of lower priority took a voice");
+
+                //one of higher priority takes the oldest voice left
+                mixer.play(loud, false);
+                line.next();
+                expect(loud.running && !older.running && newest.running, "the sound of higher priority did not replace the oldest one");
+            }
+        });
+
+        checks.add(new Check("SoundData.format")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                //every sound of the game, from its file
+                AssetPack.setDefault(null);
+                Path resources = Paths.get(AudioMixerChecks.class.getResource("/resources").toURI());
+                List<Path> sounds;
+                try (Stream<Path> walk = Files.walk(resources))
+                {
+                    sounds = walk.filter(file -> file.toString().toLowerCase().endsWith(".wav")).collect(Collectors.toList());
+                }
+
+                expect(!sounds.isEmpty(), "no sound found");
+                for(Path file : sounds)
+                {
+                    String path = "/resources/" + resources.relativize(file).toString().replace('\\', '/');
+                    SoundData sound = SoundData.load(path);
+                    expect(sound != null, path + " could not be decoded");
+                    expect(sound.getFormat().matches(AudioMixer.FORMAT), path + " is not in the mixer's format");
+                }
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Value of a sample of {@link #ramp(int, int)}
+     */
+    private static short sample(int index, int step)
+    {
+        return (short) (index * step % 60000 - 30000);
+    }
+
+    /**
+     * Creates a sound whose samples rise by a step, wrapping around
+     */
+    private static SoundData ramp(int frames, int step)
+    {
+        ByteBuffer samples = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for(int i = 0; i < frames * 2; i++)
+            samples.putShort(sample(i, step));
+        samples.flip();
+        return new SoundData(AudioMixer.FORMAT, samples);
+    }
+
+    /**
+     * Creates a sound whose samples all have the same value
+     */
+    private static SoundData constant(int frames, int value)
+    {
+        ByteBuffer samples = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for(int i = 0; i < frames * 2; i++)
+            samples.putShort((short) value);
+        samples.flip();
+        return new SoundData(AudioMixer.FORMAT, samples);
+    }
+
+    private static void expectSilent(short[] block)
+    {
+        for(short sample : block)
+            Check.expectEquals(0, sample, "sample of a silent block");
+    }
+}
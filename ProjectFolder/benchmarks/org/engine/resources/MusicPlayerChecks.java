@@ -0,0 +1,133 @@
+package org.engine.resources;
+
+import org.benchmark.Check;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  Checks the music of the {@link MusicPlayer}, filling the ring buffers and mixing the blocks by hand rather than on the
+ *  background and mixer threads: a looping track goes on from its first sample right after its last one, through its ring
+ *  buffer, and starting a track while another one plays crossfades between them.
+ */
+public class MusicPlayerChecks
+{
+    /**
+     * Short sound played as a looping track
+     */
+    private static final String LOOP = "/resources/sfx/sword_slash.wav";
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("MusicPlayer.loop")
+        {
+            @Override
+            public void run()
+            {
+                AssetPack.setDefault(null);
+                ShortBuffer file = SoundData.load(LOOP).getSamplesAsShorts();
+                int length = file.limit();
+                expect(length > 0 && length < MusicPlayer.RING_SAMPLES, LOOP + " holds " + length + " samples");
+
+                MusicPlayer.Track track = new MusicPlayer.Track(LOOP, true, 0);
+                MusicPlayer.tracks.add(track);
+
+                //past the end of the file three times, blocks straddling the loop
+                int[] block = new int[AudioMixer.BLOCK_FRAMES * 2];
+                for(long position = 0; position < 3L * length + block.length; position += block.length)
+                {
+                    fill(track);
+                    Arrays.fill(block, 0);
+                    MusicPlayer.mix(block, AudioMixer.BLOCK_FRAMES);
+
+                    for(int i = 0; i < block.length; i++)
+                        expectEquals(file.get((int) ((position + i) % length)), block[i], "sample " + (position + i)
+                                + " of the looping track");
+                }
+                expect(!track.ended && !track.done, "the looping track ended");
+                MusicPlayer.tracks.clear();
+            }
+        });
+
+        checks.add(new Check("MusicPlayer.crossfade")
+        {
+            @Override
+            public void run()
+            {
+                final int fadeFrames = 1500;
+
+                MusicPlayer.Track old = new MusicPlayer.Track("old", false, 0);
+                old.stream = constant(20000, 10000);
+                MusicPlayer.tracks.add(old);
+
+                int[] block = new int[AudioMixer.BLOCK_FRAMES * 2];
+                fill(old);
+                MusicPlayer.mix(block, AudioMixer.BLOCK_FRAMES);
+                for(int sample : block)
+                    expectEquals(10000, sample, "sample of the track playing alone");
+
+                //what play does when a track is playing: fade it out, and the new one in
+                old.stopFrames = fadeFrames;
+                MusicPlayer.Track started = new MusicPlayer.Track("new", false, fadeFrames);
+                started.stream = constant(20000, 20000);
+                MusicPlayer.tracks.add(started);
+                expect("new".equals(MusicPlayer.getPlaying()), "playing " + MusicPlayer.getPlaying() + " instead of the new track");
+
+                int frame = 0;
+                while(frame < fadeFrames + AudioMixer.BLOCK_FRAMES)
+                {
+                    fill(old);
+                    fill(started);
+                    Arrays.fill(block, 0);
+                    MusicPlayer.mix(block, AudioMixer.BLOCK_FRAMES);
+
+                    for(int i = 0; i < AudioMixer.BLOCK_FRAMES; i++, frame++)
+                    {
+                        float in = Math.min(1, (frame + 1) / (float) fadeFrames);
+                        int expected = (int) (10000 * (1 - in) + 20000 * in);
+                        for(int channel = 0; channel < 2; channel++)
+                            expect(Math.abs(block[2 * i + channel] - expected) <= 5, "frame " + frame + " of the crossfade is "
+                                    + block[2 * i + channel] + " instead of " + expected);
+                        if(frame > fadeFrames)
+                            expectEquals(20000, block[2 * i], "frame " + frame + " after the crossfade");
+                    }
+                }
+                expect(old.done && !started.done, "the old track is still mixed after the crossfade");
+                MusicPlayer.tracks.clear();
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Fills the ring buffer of a track as far as it goes
+     */
+    private static void fill(MusicPlayer.Track track)
+    {
+        byte[] chunk = new byte[MusicPlayer.CHUNK_BYTES];
+        boolean decoded;
+        do
+            decoded = MusicPlayer.fill(track, chunk);
+        while(decoded);
+    }
+
+    /**
+     * Opens a stream of frames whose samples all have the same value
+     */
+    private static AudioInputStream constant(int frames, int value)
+    {
+        ByteBuffer samples = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for(int i = 0; i < frames * 2; i++)
+            samples.putShort((short) value);
+        return new AudioInputStream(new ByteArrayInputStream(samples.array()), AudioMixer.FORMAT, frames);
+    }
+}
@@ -0,0 +1,121 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.tiles.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures {@link GameObject#checkCollision(GameObject)} with a growing number of solid objects, against the brute force
+ *  check it replaced (every object of the world tested against every other one).
+ *  The map grows with the number of objects, about one object every {@value #TILES_PER_ENTITY} tiles, so that the
+ *  objects are as crowded at every size and only their number changes.
+ */
+public class CollisionBenchmark
+{
+    private static final int[] ENTITIES = {100, 1000, 10000};
+
+    private static final int TILES_PER_ENTITY = 10;
+
+    /**
+     * Solid box without behaviour or graphics
+     */
+    private static class Box extends GameObject
+    {
+        Box(float x, float y)
+        {
+            this.x = x;
+            this.y = y;
+            xWidth = 10;
+            yWidth = 5;
+            zWidth = 2;
+            solid = true;
+        }
+
+        @Override
+        public void update() {}
+    }
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int entities : ENTITIES)
+        {
+            int mapSize = Math.max(32, (int) Math.sqrt(entities * TILES_PER_ENTITY));
+
+            benchmarks.add(new Boxes("GameObject.checkCollision", entities, mapSize)
+            {
+                @Override
+                public long run()
+                {
+                    return next().checkCollision(null) ? 1 : 0;
+                }
+            }.param("entities", entities).param("mapSize", mapSize));
+
+            benchmarks.add(new Boxes("GameObject.checkCollision.bruteForce", entities, mapSize)
+            {
+                @Override
+                public long run()
+                {
+                    //the check before the spatial grid: every object of the world, nearby or not
+                    Box box = next();
+                    for(Box go : boxes)
+                        if(go != box && go.solid && box.collidesWith(go))
+                            return 1;
+                    return 0;
+                }
+            }.param("entities", entities).param("mapSize", mapSize));
+        }
+
+        return benchmarks;
+    }
+
+    /**
+     * Boxes spread at random over a new world, each one checked in turn
+     */
+    private static abstract class Boxes extends Benchmark
+    {
+        final Box[] boxes;
+        private final int mapSize;
+        private int next = 0;
+
+        Boxes(String name, int entities, int mapSize)
+        {
+            super(name);
+            boxes = new Box[entities];
+            this.mapSize = mapSize;
+        }
+
+        @Override
+        public void setUp()
+        {
+            World world = HeadlessWorlds.create(mapSize, false);
+            Random random = new Random(boxes.length);
+
+            for(int i = 0; i < boxes.length; i++)
+            {
+                float isoX = 1 + random.nextFloat() * (mapSize - 2);
+                float isoY = 1 + random.nextFloat() * (mapSize - 2);
+                boxes[i] = new Box((isoX + isoY) * Tile.GROUND_TILE_WIDTH / 2f, (isoY - isoX) * Tile.GROUND_TILE_HEIGHT / 2f);
+                world.getSpatialGrid().insert(boxes[i]);
+            }
+        }
+
+        Box next()
+        {
+            next = next + 1 == boxes.length ? 0 : next + 1;
+            return boxes[next];
+        }
+
+        @Override
+        public void tearDown()
+        {
+            GameLoop.setWorld(null);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+/**
+ *  Compares the world's bookkeeping of its game objects for one frame, with the {@link EntityStore} and with the
+ *  LinkedList it replaced (added objects appended, removed ones dropped through the list's iterator and the list sorted
+ *  with {@link Collections#sort(List)} before rendering).
+ *  A frame visits every object in update order, each one moving a little, one object in {@value #TURNOVER} is removed and
+ *  put back at the next frame, then every object is visited in depth order. The objects do nothing else, so that only the
+ *  bookkeeping is measured.
+ */
+public class EntityStoreBenchmark
+{
+    private static final int[] ENTITIES = {1000, 10000, 100000};
+
+    /**
+     * One object out of this many is removed each frame
+     */
+    private static final int TURNOVER = 100;
+
+    /**
+     * Object moving up or down by at most a pixel each frame, and asking to be removed now and then
+     */
+    private static class Mover extends GameObject
+    {
+        private int state;
+
+        Mover(int seed, float y)
+        {
+            state = seed | 1;
+            this.y = y;
+        }
+
+        @Override
+        public void update()
+        {
+            //xorshift, so that every frame moves the objects the same way in both stores
+            state ^= state << 13;
+            state ^= state >>> 17;
+            state ^= state << 5;
+
+            y += (state & 0xff) / 128f - 1;
+            remove = Integer.remainderUnsigned(state, TURNOVER) == 0;
+        }
+    }
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int entities : ENTITIES)
+        {
+            benchmarks.add(new Benchmark("World.objects.linkedList")
+            {
+                LinkedList<GameObject> objects, toBeAdded;
+
+                @Override
+                public void setUp()
+                {
+                    objects = new LinkedList<>(movers(entities));
+                    toBeAdded = new LinkedList<>();
+                }
+
+                @Override
+                public long run()
+                {
+                    objects.addAll(toBeAdded);
+                    toBeAdded.clear();
+
+                    ListIterator<GameObject> it = objects.listIterator();
+                    while(it.hasNext())
+                    {
+                        GameObject go = it.next();
+                        go.update();
+
+                        if(go.remove)
+                        {
+                            it.remove();
+                            go.remove = false;
+                            toBeAdded.add(go);
+                        }
+                    }
+
+                    Collections.sort(objects);
+
+                    long sink = 0;
+                    for(GameObject go : objects)
+                        sink += (long) go.y;
+                    return sink;
+                }
+            }.param("entities", entities));
+
+            benchmarks.add(new Benchmark("World.objects.entityStore")
+            {
+                EntityStore store;
+                List<GameObject> toBeAdded;
+
+                @Override
+                public void setUp()
+                {
+                    store = new EntityStore();
+                    for(GameObject go : movers(entities))
+                        store.add(go);
+                    store.flushAdded();
+                    toBeAdded = new ArrayList<>();
+                }
+
+                @Override
+                public long run()
+                {
+                    for(GameObject go : toBeAdded)
+                        store.add(go);
+                    toBeAdded.clear();
+                    store.flushAdded();
+
+                    for(int i = 0; i < store.size(); i++)
+                    {
+                        GameObject go = store.get(i);
+                        go.update();
+
+                        if(go.remove)
+                        {
+                            store.swapRemove(i--);
+                            go.remove = false;
+                            toBeAdded.add(go);
+                        }
+                    }
+
+                    store.sortByDepth();
+
+                    long sink = 0;
+                    for(int i = 0; i < store.depthSize(); i++)
+                        sink += (long) store.getByDepth(i).y;
+                    return sink;
+                }
+            }.param("entities", entities));
+        }
+
+        return benchmarks;
+    }
+
+    /**
+     * Creates the objects of a store, spread over the height of a large map and sorted by depth, as they would be after
+     * the first frame
+     */
+    private static List<GameObject> movers(int entities)
+    {
+        Random random = new Random(entities);
+        List<GameObject> movers = new ArrayList<>(entities);
+        for(int i = 0; i < entities; i++)
+            movers.add(new Mover(random.nextInt(), random.nextFloat() * 8192));
+        Collections.sort(movers);
+        return movers;
+    }
+}
@@ -0,0 +1,84 @@
+package org.world;
+
+import org.benchmark.Check;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.engine.graphics.Animation;
+import org.engine.graphics.Animator;
+import org.engine.resources.AssetManager;
+import org.engine.resources.ImageResource;
+import org.world.agents.enemies.AI.AI;
+import org.world.agents.enemies.SecurityBot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks that a headless world is played without reading any image or audio data: after a few seconds of a game with a
+ *  player and enemies, no sprite holds pixels, the atlas is empty and no sound was loaded, while sprites still have the
+ *  size of their image.
+ */
+public class HeadlessChecks
+{
+    private static final String[] SHEETS = {"/resources/player/player_anim.png", "/resources/Enemies/security_bot.png",
+            "/resources/player/Weapons/sword.png"};
+    private static final String SHADOW = "/resources/player/shadow.png";
+    private static final String[] SOUNDS = {"/resources/Enemies/clang.wav", "/resources/sfx/metallic_step_1.wav"};
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("World.headless.noAssetData")
+        {
+            @Override
+            public void run() throws Exception
+            {
+                World world = HeadlessWorlds.create(16, true);
+                Random random = new Random(6);
+                for(int added = 0; added < 20; )
+                {
+                    int x = random.nextInt(16), y = random.nextInt(16);
+                    if(AI.isValidMove(x, y, 0))
+                    {
+                        world.addGameObject(new SecurityBot(x, y));
+                        added++;
+                    }
+                }
+
+                for(int tick = 0; tick < 600; tick++)
+                {
+                    world.getPlayer().heal(1000);
+                    GameLoop.step();
+                }
+
+                for(String sheet : SHEETS)
+                {
+                    Animation[] animations = Animator.getAnimation(sheet);
+                    expect(animations != null, sheet + " was never used");
+                    for(Animation animation : animations)
+                        for(ImageResource frame : animation.frames)
+                            expect(!frame.hasPixels() && frame.getWidth() > 0 && frame.getHeight() > 0,
+                                    "a frame of " + sheet + " holds pixels or has no size");
+                }
+                expectEquals(0, Animator.getAtlas().getPageCount(), "atlas pages");
+
+                for(String sound : SOUNDS)
+                    expect(!AssetManager.isLoaded(sound), sound + " was loaded");
+
+                //the stub of the shadow has the size of the image, read only now for comparison
+                expect(AssetManager.isLoaded(SHADOW), "no shadow was created");
+                ImageResource shadow = AssetManager.acquireImage(SHADOW);
+                BufferedImage image = ImageIO.read(HeadlessChecks.class.getResource(SHADOW));
+                expect(!shadow.hasPixels(), "the shadow holds pixels");
+                expectEquals(image.getWidth(), (long) shadow.getWidth(), "shadow width");
+                expectEquals(image.getHeight(), (long) shadow.getHeight(), "shadow height");
+            }
+        });
+
+        return checks;
+    }
+}
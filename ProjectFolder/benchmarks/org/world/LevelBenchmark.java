@@ -0,0 +1,119 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Measures starting a world on a large map from a level file (see {@link Level}) against generating a random one, both
+ *  ending with the navigation grid built and the decorations placed. Reading the file alone (mapping it and reading
+ *  every table but the tiles) is measured too.
+ */
+public class LevelBenchmark
+{
+    private static final int SIZE = 1024;
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("World.initialiseWorld")
+        {
+            @Override
+            public void setUp() { GameLoop.setHeadless(true); }
+
+            @Override
+            public long run()
+            {
+                World world = new World();
+                GameLoop.setWorld(world);
+                world.initialiseWorld(SIZE, SIZE, 42);
+                return world.getTerrain().getTile(SIZE / 2, SIZE / 2);
+            }
+
+            @Override
+            public void tearDown() { GameLoop.setWorld(null); }
+        }.param("mapSize", SIZE).param("source", "generated"));
+
+        benchmarks.add(new Benchmark("World.initialiseWorld")
+        {
+            File file;
+
+            @Override
+            public void setUp() { file = writeLevel(); }
+
+            @Override
+            public long run()
+            {
+                World world = new World();
+                GameLoop.setWorld(world);
+                world.initialiseWorld(readLevel(file));
+                return world.getTerrain().getTile(SIZE / 2, SIZE / 2);
+            }
+
+            @Override
+            public void tearDown()
+            {
+                GameLoop.setWorld(null);
+                file.delete();
+            }
+        }.param("mapSize", SIZE).param("source", "file"));
+
+        benchmarks.add(new Benchmark("Level.read")
+        {
+            File file;
+
+            @Override
+            public void setUp() { file = writeLevel(); }
+
+            @Override
+            public long run() { return readLevel(file).getDecorations().size(); }
+
+            @Override
+            public void tearDown()
+            {
+                GameLoop.setWorld(null);
+                file.delete();
+            }
+        }.param("mapSize", SIZE));
+
+        return benchmarks;
+    }
+
+    /**
+     * Writes a random map into a temporary level file
+     */
+    private static File writeLevel()
+    {
+        try
+        {
+            File file = File.createTempFile("benchmark", ".lvl");
+            World world = HeadlessWorlds.create(SIZE, false);
+            Level.write(world, file.getPath());
+            GameLoop.setWorld(null);
+            return file;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Level readLevel(File file)
+    {
+        try
+        {
+            return Level.read(file.getPath());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.world;
+
+import org.benchmark.Check;
+import org.engine.GameLoop;
+import org.world.decoratioms.SolidDecoration;
+import org.world.tiles.TileRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  Checks the level files (see {@link Level}): a headless world whose size is not a multiple of the chunk size, with an
+ *  edited tile and a hole, comes back tile for tile from the file it was written to, with its navigation, decorations,
+ *  spawn points and waves, and writing it again gives the same file. Textures that do not fit are refused with the tile
+ *  they are on rather than cut down, and a new game can be played on a level found among the resources of the game.
+ */
+public class LevelChecks
+{
+    private static final int WIDTH = 70, HEIGHT = 45;
+    private static final long SEED = 25;
+    private static final String LEVEL = "/resources/Levels/test.lvl";
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("Level.roundTrip")
+        {
+            @Override
+            public void run() throws IOException
+            {
+                World world = createWorld();
+                Terrain terrain = world.getTerrain();
+                terrain.setTile(3, 40, TileRecord.EMPTY);
+                terrain.setTile(65, 7, TileRecord.pack(TileRecord.textureId("cliff"), 5, false));
+
+                File file = File.createTempFile("check", ".lvl"), again = File.createTempFile("check", ".lvl");
+                try
+                {
+                    Level.write(world, file.getPath());
+                    Level level = Level.read(file.getPath());
+                    Check.expectEquals(WIDTH, level.getWidth(), "width");
+                    Check.expectEquals(HEIGHT, level.getHeight(), "height");
+
+                    World read = new World();
+                    GameLoop.setWorld(read);
+                    read.initialiseWorld(level);
+                    Terrain readTerrain = read.getTerrain();
+                    NavigationGrid grid = terrain.getNavigation(), readGrid = readTerrain.getNavigation();
+
+                    for(int x = 0; x < WIDTH; x++)
+                        for(int y = 0; y < HEIGHT; y++)
+                        {
+                            short record = terrain.getTile(x, y), readRecord = readTerrain.getTile(x, y);
+                            Check.expect(TileRecord.isPresent(record) == TileRecord.isPresent(readRecord)
+                                    && TileRecord.height(record) == TileRecord.height(readRecord)
+                                    && TileRecord.isTraversable(record) == TileRecord.isTraversable(readRecord)
+                                    && same(TileRecord.textureName(TileRecord.texture(record)),
+                                            TileRecord.textureName(TileRecord.texture(readRecord))), "tile " + x + "," + y);
+                            Check.expect(grid.isFree(x, y) == readGrid.isFree(x, y), "navigation of tile " + x + "," + y);
+
+                            GameObject decoration = world.getDecoration(x, y), readDecoration = read.getDecoration(x, y);
+                            Check.expect(decoration == null ? readDecoration == null : readDecoration != null
+                                    && decoration instanceof SolidDecoration == readDecoration instanceof SolidDecoration
+                                    && decoration.flip == readDecoration.flip, "decoration of tile " + x + "," + y);
+                        }
+                    Check.expect(!TileRecord.isPresent(readTerrain.getTile(3, 40)), "the hole was filled");
+                    Check.expectEquals(5, TileRecord.height(readTerrain.getTile(65, 7)), "height of the edited tile");
+
+                    Check.expect(Arrays.deepEquals(world.getSpawnPoints(), read.getSpawnPoints()), "spawn points differ");
+                    Check.expect(Arrays.deepEquals(world.getWaveScript(), read.getWaveScript()), "wave scripts differ");
+
+                    Level.write(read, again.getPath());
+                    Check.expect(Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(again.toPath())),
+                            "the world read from a file is written into a different file");
+                }
+                finally
+                {
+                    GameLoop.setWorld(null);
+                    file.delete();
+                    again.delete();
+                }
+            }
+        });
+
+        checks.add(new Check("Level.textures")
+        {
+            @Override
+            public void run() throws IOException
+            {
+                World world = createWorld();
+                File file = File.createTempFile("check", ".lvl");
+                try
+                {
+                    //a texture no name was registered for
+                    world.getTerrain().setTile(12, 34, TileRecord.pack(TileRecord.MAX_TEXTURES - 1, 0, true));
+                    try
+                    {
+                        Level.write(world, file.getPath());
+                        throw new AssertionError("a tile with an unknown texture was written");
+                    }
+                    catch(IOException e)
+                    {
+                        Check.expect(e.getMessage().contains("tile 12,34"), "the error does not name the tile: " + e.getMessage());
+                    }
+
+                    //a tile of the file with a texture past the file's texture table
+                    world.getTerrain().setTile(12, 34, TileRecord.pack(TileRecord.textureId("dirt"), 0, true));
+                    Level.write(world, file.getPath());
+                    byte[] bytes = Files.readAllBytes(file.toPath());
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    int textures = buffer.getInt(20), tiles = buffer.getInt(24);
+                    int yChunks = (HEIGHT + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE;
+                    int tile = ((12 / Terrain.CHUNK_SIZE) * yChunks + 34 / Terrain.CHUNK_SIZE) * Terrain.CHUNK_SIZE * Terrain.CHUNK_SIZE
+                            + (12 % Terrain.CHUNK_SIZE) * Terrain.CHUNK_SIZE + 34 % Terrain.CHUNK_SIZE;
+                    buffer.putShort(tiles + tile * 2, TileRecord.pack(textures + 1, 0, true));
+                    Files.write(file.toPath(), bytes);
+
+                    World read = new World();
+                    GameLoop.setWorld(read);
+                    read.initialiseWorld(Level.read(file.getPath()));
+                    try
+                    {
+                        read.getTerrain().getTile(12, 34);
+                        throw new AssertionError("a tile with a texture missing from the file was loaded");
+                    }
+                    catch(UncheckedIOException e)
+                    {
+                        Check.expect(e.getMessage().contains("tile 12,34"), "the error does not name the tile: " + e.getMessage());
+                    }
+
+                    //more textures than a record can refer to
+                    buffer.putInt(20, TileRecord.MAX_TEXTURES);
+                    Files.write(file.toPath(), bytes);
+                    try
+                    {
+                        Level.read(file.getPath());
+                        throw new AssertionError("a file naming " + TileRecord.MAX_TEXTURES + " textures was read");
+                    }
+                    catch(IOException e)
+                    {
+                        Check.expect(e.getMessage().contains("textures"), "unexpected error: " + e.getMessage());
+                    }
+                }
+                finally
+                {
+                    GameLoop.setWorld(null);
+                    file.delete();
+                }
+            }
+        });
+
+        checks.add(new Check("GameLoop.newGame.level")
+        {
+            @Override
+            public void run() throws IOException
+            {
+                GameLoop.setHeadless(true);
+                Level level = Level.load(LEVEL);
+                GameLoop.newGame(LEVEL);
+                World world = GameLoop.getWorld();
+
+                Check.expectEquals(level.getWidth(), world.getTerrain().getWidth(), "width of the map");
+                Check.expectEquals(level.getHeight(), world.getTerrain().getHeight(), "height of the map");
+                Check.expect(Arrays.deepEquals(level.getSpawnPoints(), world.getSpawnPoints()), "spawn points differ");
+                Check.expect(!level.getDecorations().isEmpty(), "the level has no decorations");
+                for(MapGenerator.Decoration decoration : level.getDecorations())
+                    Check.expect(world.getDecoration(decoration.x, decoration.y) != null, "no decoration on tile "
+                            + decoration.x + "," + decoration.y);
+                Check.expect(world.getPlayer() != null, "no player was added");
+
+                //a level that cannot be found keeps the current world
+                try
+                {
+                    GameLoop.newGame("/resources/Levels/missing.lvl");
+                    throw new AssertionError("a missing level was loaded");
+                }
+                catch(IOException e)
+                {
+                    Check.expect(GameLoop.getWorld() == world, "the world was replaced");
+                }
+
+                //a new game without a level is still played on a random map
+                GameLoop.newGame();
+                Check.expect(GameLoop.getWorld() != world && GameLoop.getWorld().getPlayer() != null, "no new game was started");
+                Check.expectEquals(16, GameLoop.getWorld().getTerrain().getWidth(), "width of a random map");
+                GameLoop.setWorld(null);
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Creates a headless world on a generated map, the same on every call
+     */
+    private static World createWorld()
+    {
+        GameLoop.setHeadless(true);
+
+        World world = new World();
+        GameLoop.setWorld(world);
+        world.initialiseWorld(WIDTH, HEIGHT, SEED);
+        return world;
+    }
+
+    private static boolean same(String a, String b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,72 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *  Measures generating a whole map with a {@link MapGenerator}, on a pool of a few sizes (1 being the calling thread
+ *  alone): every chunk of the terrain generated ahead of time (with room kept for all of them), and the decorations
+ *  placed. The map is the same for every pool size, the throughput in tiles per second being
+ *  mapSize * mapSize / the time per call.
+ */
+public class MapGeneratorBenchmark
+{
+    private static final int[] MAP_SIZES = {512, 2048};
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int size : MAP_SIZES)
+            for(int threads : THREADS)
+            {
+                benchmarks.add(new Benchmark("MapGenerator.generate")
+                {
+                    ForkJoinPool pool;
+
+                    @Override
+                    public void setUp() { pool = threads > 1 ? new ForkJoinPool(threads) : null; }
+
+                    @Override
+                    public long run()
+                    {
+                        Terrain terrain = new Terrain(size, size, new MapGenerator(42));
+                        terrain.setChunkCapacity((size / Terrain.CHUNK_SIZE) * (size / Terrain.CHUNK_SIZE));
+                        terrain.generate(pool);
+                        return terrain.getTile(size / 2, size / 2);
+                    }
+
+                    @Override
+                    public void tearDown()
+                    {
+                        if(pool != null)
+                            pool.shutdown();
+                    }
+                }.param("mapSize", size).param("threads", threads).param("part", "terrain"));
+
+                benchmarks.add(new Benchmark("MapGenerator.generate")
+                {
+                    ForkJoinPool pool;
+
+                    @Override
+                    public void setUp() { pool = threads > 1 ? new ForkJoinPool(threads) : null; }
+
+                    @Override
+                    public long run() { return new MapGenerator(42).decorate(size, size, pool).size(); }
+
+                    @Override
+                    public void tearDown()
+                    {
+                        if(pool != null)
+                            pool.shutdown();
+                    }
+                }.param("mapSize", size).param("threads", threads).param("part", "decorations"));
+            }
+
+        return benchmarks;
+    }
+}
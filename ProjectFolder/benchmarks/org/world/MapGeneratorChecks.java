@@ -0,0 +1,136 @@
+package org.world;
+
+import org.benchmark.Check;
+import org.engine.GameLoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *  Checks that a {@link MapGenerator} gives the same map on any number of threads: the tiles and navigation of a terrain
+ *  generated ahead of time (see {@link Terrain#generate(ForkJoinPool)}) and the decorations placed on it are the same on
+ *  the calling thread and on pools of 2, 3 and 8 threads, for maps whose sizes are and are not multiples of the chunk
+ *  size. Chunks loaded one at a time when first needed match those generated ahead of time.
+ */
+public class MapGeneratorChecks
+{
+    private static final int[][] SIZES = {{64, 64}, {45, 70}, {300, 170}};
+    private static final int[] THREADS = {2, 3, 8};
+    private static final long SEED = 24;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("MapGenerator.threads")
+        {
+            @Override
+            public void run()
+            {
+                GameLoop.setHeadless(true);
+
+                for(int[] size : SIZES)
+                {
+                    int width = size[0], height = size[1];
+                    String map = width + "x" + height + " map";
+
+                    short[] tiles = tiles(generated(width, height, null));
+                    byte[] navigation = navigation(generated(width, height, null));
+                    List<MapGenerator.Decoration> decorations = new MapGenerator(SEED).decorate(width, height, null);
+                    expect(!decorations.isEmpty(), "no decorations on the " + map);
+
+                    for(int threads : THREADS)
+                    {
+                        ForkJoinPool pool = new ForkJoinPool(threads);
+                        try
+                        {
+                            String on = " of the " + map + " on " + threads + " threads";
+                            Terrain terrain = generated(width, height, pool);
+                            expectTiles(tiles, tiles(terrain), height, "tile" + on);
+                            expectTiles(navigation, navigation(terrain), height, "navigation" + on);
+                            expectDecorations(decorations, new MapGenerator(SEED).decorate(width, height, pool), "decorations" + on);
+                        }
+                        finally
+                        {
+                            pool.shutdown();
+                        }
+                    }
+
+                    //chunks generated when first needed
+                    Terrain lazy = new Terrain(height, width, new MapGenerator(SEED));
+                    expectEquals(0, lazy.getLoadedChunkCount(), "chunks of the " + map + " loaded up front");
+                    expectTiles(tiles, tiles(lazy), height, "lazily loaded tile of the " + map);
+                    expect(lazy.getChunkLoads() > 0, "the tiles of the " + map + " were not loaded lazily");
+                    expectTiles(navigation, navigation(new Terrain(height, width, new MapGenerator(SEED))), height,
+                            "lazily loaded navigation of the " + map);
+                }
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Creates a terrain with room for all of its chunks, and generates them all ahead of time
+     */
+    private static Terrain generated(int width, int height, ForkJoinPool pool)
+    {
+        Terrain terrain = new Terrain(height, width, new MapGenerator(SEED));
+        int chunks = ((width + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE) * ((height + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE);
+        terrain.setChunkCapacity(chunks);
+        terrain.generate(pool);
+        Check.expectEquals(chunks, terrain.getLoadedChunkCount(), "chunks generated ahead of time");
+        return terrain;
+    }
+
+    /**
+     * Returns the records of every tile of a terrain, by first then second index
+     */
+    private static short[] tiles(Terrain terrain)
+    {
+        short[] tiles = new short[terrain.getWidth() * terrain.getHeight()];
+        for(int x = 0; x < terrain.getWidth(); x++)
+            for(int y = 0; y < terrain.getHeight(); y++)
+                tiles[x * terrain.getHeight() + y] = terrain.getTile(x, y);
+        return tiles;
+    }
+
+    /**
+     * Returns what the navigation grid of a terrain holds about every tile (free, traversable and level), by first then
+     * second index
+     */
+    private static byte[] navigation(Terrain terrain)
+    {
+        NavigationGrid grid = terrain.getNavigation();
+        byte[] cells = new byte[terrain.getWidth() * terrain.getHeight()];
+        for(int x = 0; x < terrain.getWidth(); x++)
+            for(int y = 0; y < terrain.getHeight(); y++)
+                cells[x * terrain.getHeight() + y] = (byte) ((grid.isFree(x, y) ? 1 : 0) | (grid.isTraversable(x, y) ? 2 : 0)
+                        | grid.getLevel(grid.index(x, y)) << 2);
+        return cells;
+    }
+
+    private static void expectTiles(short[] expected, short[] actual, int height, String what)
+    {
+        for(int i = 0; i < expected.length; i++)
+            Check.expectEquals(expected[i], actual[i], what + " " + i / height + "," + i % height);
+    }
+
+    private static void expectTiles(byte[] expected, byte[] actual, int height, String what)
+    {
+        for(int i = 0; i < expected.length; i++)
+            Check.expectEquals(expected[i], actual[i], what + " " + i / height + "," + i % height);
+    }
+
+    private static void expectDecorations(List<MapGenerator.Decoration> expected, List<MapGenerator.Decoration> actual, String what)
+    {
+        Check.expectEquals(expected.size(), actual.size(), "number of " + what);
+        for(int i = 0; i < expected.size(); i++)
+        {
+            MapGenerator.Decoration a = expected.get(i), b = actual.get(i);
+            Check.expect(a.x == b.x && a.y == b.y && a.kind == b.kind && a.flip == b.flip, what + ": decoration " + i
+                    + " is at " + b.x + "," + b.y + " instead of " + a.x + "," + a.y);
+        }
+    }
+}
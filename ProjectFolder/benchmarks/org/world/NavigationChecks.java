@@ -0,0 +1,301 @@
+package org.world;
+
+import org.benchmark.Check;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.agents.enemies.AI.Path;
+import org.world.agents.enemies.AI.Pathfinder;
+import org.world.decoratioms.SolidDecoration;
+import org.world.tiles.TileRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ *  Checks the {@link NavigationGrid} read page by page from the terrain's chunks, on headless maps whose size is not a
+ *  multiple of the chunk size, with holes, raised tiles and solid decorations: the pages hold the tiles of their chunks
+ *  and are dropped with them, {@link NavigationRegions#canReach(int, int, int, int)} agrees with a search of the whole map
+ *  when every page is loaded and never rejects a reachable destination when only a few are, and the {@link Pathfinder}
+ *  finds a path exactly when one exists, about as cheap as the cheapest one.
+ */
+public class NavigationChecks
+{
+    private static final int WIDTH = 150, HEIGHT = 170;
+    private static final long SEED = 23;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("NavigationGrid.pages")
+        {
+            @Override
+            public void run()
+            {
+                Terrain terrain = createTerrain();
+                terrain.setChunkCapacity(4);
+                NavigationGrid grid = terrain.getNavigation();
+                Random random = new Random(SEED);
+
+                //a few edits, kept through the chunks being dropped
+                for(int edit = 0; edit < 50; edit++)
+                {
+                    int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+                    if(edit % 2 == 0)
+                        grid.setSolid(x, y, true);
+                    else
+                        terrain.setTile(x, y, TileRecord.pack(1, random.nextInt(3), random.nextBoolean()));
+                }
+
+                for(int pass = 0; pass < 2; pass++)
+                    for(int x = 0; x < WIDTH; x++)
+                        for(int y = 0; y < HEIGHT; y++)
+                        {
+                            short record = terrain.getTile(x, y);
+                            int index = grid.index(x, y);
+                            Check.expect(grid.getX(index) == x && grid.getY(index) == y, "tile " + x + "," + y
+                                    + " has index " + index + " which is tile " + grid.getX(index) + "," + grid.getY(index));
+                            Check.expect(grid.isTraversable(x, y) == (TileRecord.isPresent(record) && TileRecord.isTraversable(record)),
+                                    "tile " + x + "," + y + " is not traversable as in its chunk");
+                            Check.expect(grid.getZ(x, y) == (TileRecord.isPresent(record) ? TileRecord.height(record) : Float.MAX_VALUE),
+                                    "tile " + x + "," + y + " is not at the height of its chunk");
+                            Check.expect(grid.getLoadedPageCount() <= terrain.getLoadedChunkCount(), grid.getLoadedPageCount()
+                                    + " pages are loaded for " + terrain.getLoadedChunkCount() + " chunks");
+                        }
+
+                //solid decorations are read back from the grid, whichever chunks are loaded
+                random = new Random(SEED);
+                for(int edit = 0; edit < 50; edit += 2)
+                {
+                    int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+                    Check.expect(grid.isSolid(x, y) && !grid.isFree(x, y), "the solid decoration on " + x + "," + y + " was lost");
+                    random.nextInt(WIDTH);
+                    random.nextInt(HEIGHT);
+                    random.nextInt(3);
+                    random.nextBoolean();
+                }
+            }
+        });
+
+        checks.add(new Check("NavigationRegions.canReach")
+        {
+            @Override
+            public void run()
+            {
+                Terrain terrain = createTerrain();
+                NavigationGrid grid = terrain.getNavigation();
+                Random random = new Random(SEED);
+
+                for(int round = 0; round < 3; round++)
+                {
+                    for(int x = 0; x < WIDTH; x++)
+                        for(int y = 0; y < HEIGHT; y++)
+                            grid.isFree(x, y);
+                    Check.expectEquals(grid.getPageCount(), grid.getLoadedPageCount(), "pages loaded");
+
+                    int reachable = 0;
+                    for(int query = 0; query < 400; query++)
+                    {
+                        int xs = random.nextInt(WIDTH), ys = random.nextInt(HEIGHT);
+                        int xd = random.nextInt(WIDTH), yd = random.nextInt(HEIGHT);
+                        boolean truth = search(grid, xs, ys, xd, yd);
+                        if(truth)
+                            reachable++;
+                        Check.expect(grid.getRegions().canReach(xs, ys, xd, yd) == truth, "canReach from " + xs + "," + ys
+                                + " to " + xd + "," + yd + " is not " + truth);
+                    }
+                    Check.expect(reachable > 20 && reachable < 380, reachable + " destinations out of 400 were reachable");
+
+                    //changes between the rounds: tiles and solid decorations
+                    for(int edit = 0; edit < 300; edit++)
+                    {
+                        int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+                        if(edit % 3 == 0)
+                            grid.setSolid(x, y, random.nextBoolean());
+                        else
+                            terrain.setTile(x, y, TileRecord.pack(1, random.nextInt(3), random.nextInt(4) > 0));
+                    }
+                }
+            }
+        });
+
+        checks.add(new Check("NavigationRegions.streaming")
+        {
+            @Override
+            public void run()
+            {
+                //the answers of the whole map first, on a terrain keeping every chunk
+                Terrain full = createTerrain();
+                Random random = new Random(SEED);
+                int[][] queries = new int[600][];
+                boolean[] truths = new boolean[queries.length];
+                for(int query = 0; query < queries.length; query++)
+                {
+                    queries[query] = new int[] {random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(WIDTH), random.nextInt(HEIGHT)};
+                    truths[query] = search(full.getNavigation(), queries[query][0], queries[query][1], queries[query][2], queries[query][3]);
+                }
+
+                //then the same map, keeping a few chunks only, loaded by queries across it
+                Terrain terrain = createTerrain();
+                terrain.setChunkCapacity(6);
+                NavigationGrid grid = terrain.getNavigation();
+                int rejected = 0;
+                for(int query = 0; query < queries.length; query++)
+                {
+                    int[] q = queries[query];
+                    for(int x = q[2] - Terrain.CHUNK_SIZE / 2; x <= q[2] + Terrain.CHUNK_SIZE / 2; x += 4)
+                        for(int y = q[3] - Terrain.CHUNK_SIZE / 2; y <= q[3] + Terrain.CHUNK_SIZE / 2; y += 4)
+                            grid.isFree(x, y);
+
+                    boolean reach = grid.getRegions().canReach(q[0], q[1], q[2], q[3]);
+                    Check.expect(reach || !truths[query], "canReach from " + q[0] + "," + q[1] + " to " + q[2] + "," + q[3]
+                            + " is false with " + grid.getLoadedPageCount() + " pages loaded");
+                    if(!reach)
+                        rejected++;
+                    Check.expect(grid.getLoadedPageCount() <= 6, grid.getLoadedPageCount() + " pages are loaded");
+                }
+                Check.expect(rejected > 0, "no unreachable destination was rejected");
+            }
+        });
+
+        checks.add(new Check("Pathfinder.cost")
+        {
+            @Override
+            public void run()
+            {
+                World world = HeadlessWorlds.create(WIDTH, false, SEED);
+                Terrain terrain = world.getTerrain();
+                SplittableRandom tiles = new SplittableRandom(SEED);
+                for(int x = 0; x < WIDTH; x++)
+                    for(int y = 0; y < WIDTH; y++)
+                    {
+                        world.setDecoration(x, y, null);
+                        terrain.setTile(x, y, TileRecord.pack(1, tiles.nextInt(5) == 0 ? 1 : 0, tiles.nextInt(6) > 0));
+                    }
+                terrain.setChunkCapacity(2);
+
+                Random random = new Random(SEED);
+                for(int i = 0; i < 400; i++)
+                {
+                    int x = random.nextInt(WIDTH), y = random.nextInt(WIDTH);
+                    world.setDecoration(x, y, new SolidDecoration(x, y, false, 10, 2, 1, 1, 1, 20, 20, "/resources/Decorations/rock.png"));
+                }
+
+                NavigationGrid grid = terrain.getNavigation();
+                Pathfinder pathfinder = new Pathfinder();
+                Path path = new Path();
+                int found = 0;
+                for(int query = 0; query < 300; query++)
+                {
+                    int xs = random.nextInt(WIDTH), ys = random.nextInt(WIDTH);
+                    int xd = random.nextInt(WIDTH), yd = random.nextInt(WIDTH);
+                    int cheapest = cheapest(grid, xs, ys, xd, yd);
+
+                    boolean success = pathfinder.find(xs, ys, xd, yd, path);
+                    Check.expect(success == (cheapest >= 0), "a path from " + xs + "," + ys + " to " + xd + "," + yd
+                            + (success ? " was found but none exists" : " exists but was not found"));
+                    if(!success)
+                        continue;
+
+                    found++;
+                    Check.expect(path.getX(0) == xs && path.getY(0) == ys, "the path does not start at " + xs + "," + ys);
+                    int cost = 0;
+                    for(int i = 1; i < path.length(); i++)
+                    {
+                        int dx = Math.abs(path.getX(i) - path.getX(i - 1)), dy = Math.abs(path.getY(i) - path.getY(i - 1));
+                        Check.expect(dx <= 1 && dy <= 1 && dx + dy > 0 && grid.isFree(path.getX(i), path.getY(i)),
+                                "the path from " + xs + "," + ys + " makes a wrong step at " + i);
+                        cost += dx + dy == 2 ? 14 : 10;
+                    }
+                    //the search aims at the destination itself while it may stop next to it, so it can be a step off
+                    Check.expect(cost >= cheapest && cost <= cheapest + 14, "the path from " + xs + "," + ys + " to " + xd
+                            + "," + yd + " costs " + cost + ", the cheapest one " + cheapest);
+                    Check.expect(pathfinder.getBlockCount() <= grid.getPageCount(), pathfinder.getBlockCount() + " blocks");
+                }
+                Check.expect(found > 30, "only " + found + " paths were found");
+                GameLoop.setWorld(null);
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Creates a headless terrain of raised tiles and holes at random, the same on every call
+     */
+    private static Terrain createTerrain()
+    {
+        GameLoop.setHeadless(true);
+
+        return new Terrain(HEIGHT, WIDTH, (firstX, firstY, width, height, records) ->
+        {
+            SplittableRandom random = new SplittableRandom(SEED ^ ((long) firstX << 32 | firstY));
+            Arrays.fill(records, TileRecord.EMPTY);
+            for(int i = 0; i < Terrain.CHUNK_SIZE && firstX + i < width; i++)
+                for(int j = 0; j < Terrain.CHUNK_SIZE && firstY + j < height; j++)
+                {
+                    //about half of the tiles blocked, enough to split the map into regions
+                    int roll = random.nextInt(20);
+                    if(roll > 0)
+                        records[i * Terrain.CHUNK_SIZE + j] = TileRecord.pack(1, roll >= 9 && roll < 12 ? roll % 2 + 1 : 0, roll >= 9);
+                }
+        });
+    }
+
+    /**
+     * Searches the whole map the way the pathfinder does, for whether a tile other than the start next to or at the
+     * destination can be reached
+     */
+    private static boolean search(NavigationGrid grid, int xs, int ys, int xd, int yd)
+    {
+        return cheapest(grid, xs, ys, xd, yd) >= 0;
+    }
+
+    /**
+     * Returns the cost of the cheapest path from the start to a tile other than the start next to or at the destination,
+     * through free tiles not higher than the start (Dijkstra's algorithm over the whole map), -1 if there is none
+     */
+    private static int cheapest(NavigationGrid grid, int xs, int ys, int xd, int yd)
+    {
+        int width = grid.getWidth(), height = grid.getHeight();
+        int level = grid.getLevel(grid.index(xs, ys));
+        int[] cost = new int[width * height];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+
+        PriorityQueue<long[]> open = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        cost[xs * height + ys] = 0;
+        open.add(new long[] {0, xs * height + ys});
+
+        while(!open.isEmpty())
+        {
+            long[] entry = open.poll();
+            int current = (int) entry[1];
+            if(entry[0] > cost[current])
+                continue;
+
+            int x = current / height, y = current % height;
+            if((x != xs || y != ys) && Math.abs(x - xd) <= 1 && Math.abs(y - yd) <= 1)
+                return cost[current];
+
+            for(int dx = -1; dx <= 1; dx++)
+                for(int dy = -1; dy <= 1; dy++)
+                {
+                    int nx = x + dx, ny = y + dy;
+                    if(dx == 0 && dy == 0 || !grid.isFree(nx, ny) || grid.getLevel(grid.index(nx, ny)) > level)
+                        continue;
+
+                    int next = cost[current] + (dx != 0 && dy != 0 ? 14 : 10);
+                    if(next < cost[nx * height + ny])
+                    {
+                        cost[nx * height + ny] = next;
+                        open.add(new long[] {next, nx * height + ny});
+                    }
+                }
+        }
+        return -1;
+    }
+}
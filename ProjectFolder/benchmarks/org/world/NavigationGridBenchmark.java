@@ -0,0 +1,86 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.agents.enemies.AI.AI;
+import org.world.tiles.TileRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Measures the movement validation done for every step of every moving object: {@link AI#isValidMove(int, int, float)}
+ *  over every tile of the map, through the {@link NavigationGrid} and through the tile and decoration objects (the way it
+ *  was checked before the grid existed, kept here as a reference).
+ *  Random decorations are placed as in a normal game.
+ */
+public class NavigationGridBenchmark
+{
+    private static final int[] SIZES = {16, 64, 256};
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int size : SIZES)
+        {
+            benchmarks.add(new Benchmark("AI.isValidMove")
+            {
+                @Override
+                public void setUp() { HeadlessWorlds.create(size, false); }
+
+                @Override
+                public long run()
+                {
+                    long valid = 0;
+                    for(int x = 0; x < size; x++)
+                        for(int y = 0; y < size; y++)
+                            if(AI.isValidMove(x, y, 0))
+                                valid++;
+                    return valid;
+                }
+
+                @Override
+                public void tearDown() { GameLoop.setWorld(null); }
+            }.param("mapSize", size).param("check", "grid"));
+
+            benchmarks.add(new Benchmark("AI.isValidMove")
+            {
+                @Override
+                public void setUp() { HeadlessWorlds.create(size, false); }
+
+                @Override
+                public long run()
+                {
+                    long valid = 0;
+                    for(int x = 0; x < size; x++)
+                        for(int y = 0; y < size; y++)
+                            if(isValidMoveByObjects(x, y, 0))
+                                valid++;
+                    return valid;
+                }
+
+                @Override
+                public void tearDown() { GameLoop.setWorld(null); }
+            }.param("mapSize", size).param("check", "objects"));
+        }
+
+        return benchmarks;
+    }
+
+    /**
+     * The check as it was done before the navigation grid, following the world's tiles and decorations (now the terrain's
+     * tile records and the world's decoration map)
+     */
+    private static boolean isValidMoveByObjects(int x, int y, float z)
+    {
+        if(x < 0 || x >= GameLoop.getWorld().getTerrain().getWidth() || y < 0 || y >= GameLoop.getWorld().getTerrain().getHeight())
+            return false;
+
+        short tile = GameLoop.getWorld().getTerrain().getTile(x, y);
+        return TileRecord.isPresent(tile) && TileRecord.isTraversable(tile)
+                && (GameLoop.getWorld().getDecoration(x, y) == null || !GameLoop.getWorld().getDecoration(x, y).solid)
+                && TileRecord.height(tile) <= z;
+    }
+}
@@ -0,0 +1,71 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.decoratioms.SolidDecoration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures keeping the {@link NavigationRegions} up to date on a large map: a solid decoration placed on or removed
+ *  from a random tile, followed by a query (which labels the changed page again and joins the regions of the pages).
+ *  Random decorations are placed as in a normal game. The labelling of a whole new map is measured too.
+ */
+public class NavigationRegionsBenchmark
+{
+    private static final int SIZE = 256;
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("NavigationRegions.update")
+        {
+            World world;
+            final Random random = new Random(42);
+
+            @Override
+            public void setUp() { world = HeadlessWorlds.create(SIZE, false); }
+
+            @Override
+            public long run()
+            {
+                int x = 1 + random.nextInt(SIZE - 2), y = 1 + random.nextInt(SIZE - 2);
+                world.setDecoration(x, y, world.getDecoration(x, y) == null
+                        ? new SolidDecoration(x, y, false, 10, 2, 1, 1, 1, 20, 20, "/resources/Decorations/rock.png")
+                        : null);
+                return world.getTerrain().getNavigation().getRegions().canReach(1, 1, SIZE - 2, SIZE - 2) ? 1 : 0;
+            }
+
+            @Override
+            public void tearDown() { GameLoop.setWorld(null); }
+        }.param("mapSize", SIZE).param("change", "decoration"));
+
+        benchmarks.add(new Benchmark("NavigationRegions.update")
+        {
+            World world;
+
+            @Override
+            public void setUp() { world = HeadlessWorlds.create(SIZE, false); }
+
+            @Override
+            public long run()
+            {
+                //setting every tile again outdates the whole grid
+                Terrain terrain = world.getTerrain();
+                for(int x = 0; x < SIZE; x++)
+                    for(int y = 0; y < SIZE; y++)
+                        terrain.setTile(x, y, terrain.getTile(x, y));
+                return terrain.getNavigation().getRegions().getLevelCount();
+            }
+
+            @Override
+            public void tearDown() { GameLoop.setWorld(null); }
+        }.param("mapSize", SIZE).param("change", "map"));
+
+        return benchmarks;
+    }
+}
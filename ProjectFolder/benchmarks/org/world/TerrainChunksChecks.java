@@ -0,0 +1,186 @@
+package org.world;
+
+import org.benchmark.Check;
+import org.engine.GameLoop;
+import org.engine.resources.ImageResource;
+import org.world.tiles.Tile;
+import org.world.tiles.TileRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ *  Checks the bookkeeping of the pages the terrain is drawn into (see {@link TerrainChunks}), on a headless map whose
+ *  size is not a multiple of the chunk size and whose tiles have random heights: setting a tile outdates its chunk and no
+ *  other, every tile is drawn inside the bounds of its chunk, and drawing chunk by chunk keeps every pair of overlapping
+ *  tiles in the order in which the whole map would be drawn tile by tile.
+ */
+public class TerrainChunksChecks
+{
+    private static final int SIZE = 44;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("TerrainChunks.invalidate")
+        {
+            @Override
+            public void run()
+            {
+                Terrain terrain = createTerrain();
+                TerrainChunks chunks = terrain.getChunks();
+                Random random = new Random(22);
+
+                for(int edit = 0; edit < 500; edit++)
+                {
+                    for(int chunk = 0; chunk < chunks.getChunkCount(); chunk++)
+                        chunks.clean(chunk);
+
+                    //every tile on the edge of a chunk first, then random ones
+                    int x, y;
+                    if(edit < 4 * SIZE / TerrainChunks.CHUNK_TILES)
+                    {
+                        int step = edit % 4;
+                        x = Math.min(SIZE - 1, (edit / 4) * TerrainChunks.CHUNK_TILES + (step < 2 ? 0 : TerrainChunks.CHUNK_TILES - 1));
+                        y = Math.min(SIZE - 1, (edit / 4) * TerrainChunks.CHUNK_TILES + (step % 2 == 0 ? 0 : TerrainChunks.CHUNK_TILES - 1));
+                    }
+                    else
+                    {
+                        x = random.nextInt(SIZE);
+                        y = random.nextInt(SIZE);
+                    }
+
+                    terrain.setTile(x, y, TileRecord.pack(TileRecord.texture(terrain.getTile(x, y)), random.nextInt(4), true));
+
+                    Check.expectEquals(1, chunks.getDirtyCount(), "chunks outdated by setting tile " + x + "," + y);
+                    int chunk = chunks.chunkOf(x, y);
+                    Check.expect(chunks.isDirty(chunk), "the chunk of tile " + x + "," + y + " is not outdated");
+                    Check.expect(x >= chunks.firstX(chunk) && x < chunks.lastX(chunk) && y >= chunks.firstY(chunk)
+                            && y < chunks.lastY(chunk), "tile " + x + "," + y + " is outside of its chunk");
+                }
+
+                //tiles outside of the map are ignored
+                for(int chunk = 0; chunk < chunks.getChunkCount(); chunk++)
+                    chunks.clean(chunk);
+                chunks.invalidate(-1, 0);
+                chunks.invalidate(SIZE, 0);
+                chunks.invalidate(0, SIZE);
+                Check.expectEquals(0, chunks.getDirtyCount(), "chunks outdated by tiles outside of the map");
+            }
+        });
+
+        checks.add(new Check("TerrainChunks.bounds")
+        {
+            @Override
+            public void run()
+            {
+                Terrain terrain = createTerrain();
+                TerrainChunks chunks = terrain.getChunks();
+
+                for(int chunk = 0; chunk < chunks.getChunkCount(); chunk++)
+                {
+                    Check.expect(chunks.computeBounds(chunk, terrain), "chunk " + chunk + " holds no tile");
+
+                    for(int x = chunks.firstX(chunk); x < chunks.lastX(chunk); x++)
+                        for(int y = chunks.firstY(chunk); y < chunks.lastY(chunk); y++)
+                        {
+                            float[] area = area(terrain, x, y);
+                            Check.expect(area[0] >= chunks.getLeft(chunk) && area[1] >= chunks.getTop(chunk)
+                                    && area[2] <= chunks.getRight(chunk) && area[3] <= chunks.getBottom(chunk),
+                                    "tile " + x + "," + y + " is drawn outside of the bounds of its chunk");
+                        }
+                }
+            }
+        });
+
+        checks.add(new Check("TerrainChunks.depthOrder")
+        {
+            @Override
+            public void run()
+            {
+                Terrain terrain = createTerrain();
+                TerrainChunks chunks = terrain.getChunks();
+
+                //position of each tile when drawn chunk by chunk, like Terrain.render
+                int[] drawn = new int[SIZE * SIZE];
+                int position = 0;
+                for(int i = (SIZE - 1) / TerrainChunks.CHUNK_TILES; i >= 0; i--)
+                    for(int j = 0; j <= (SIZE - 1) / TerrainChunks.CHUNK_TILES; j++)
+                    {
+                        int chunk = chunks.chunkAt(i, j);
+                        for(int x = chunks.lastX(chunk) - 1; x >= chunks.firstX(chunk); x--)
+                            for(int y = chunks.firstY(chunk); y < chunks.lastY(chunk); y++)
+                                drawn[x * SIZE + y] = position++;
+                    }
+                Check.expectEquals(SIZE * SIZE, position, "tiles drawn");
+
+                //the whole map drawn tile by tile: first index descending, then second index ascending
+                int pairs = 0;
+                for(int x = 0; x < SIZE; x++)
+                    for(int y = 0; y < SIZE; y++)
+                        for(int otherX = 0; otherX < x; otherX++)
+                            for(int otherY = 0; otherY < SIZE; otherY++)
+                            {
+                                if(!overlap(area(terrain, x, y), area(terrain, otherX, otherY)))
+                                    continue;
+
+                                pairs++;
+                                Check.expect(drawn[x * SIZE + y] < drawn[otherX * SIZE + otherY], "tile " + otherX + ","
+                                        + otherY + " is drawn before tile " + x + "," + y + " which it overlaps");
+                            }
+                for(int x = 0; x < SIZE; x++)
+                    for(int y = 0; y < SIZE; y++)
+                        for(int otherY = y + 1; otherY < SIZE; otherY++)
+                            if(overlap(area(terrain, x, y), area(terrain, x, otherY)))
+                            {
+                                pairs++;
+                                Check.expect(drawn[x * SIZE + y] < drawn[x * SIZE + otherY], "tile " + x + "," + otherY
+                                        + " is drawn before tile " + x + "," + y + " which it overlaps");
+                            }
+                Check.expect(pairs > 0, "no tiles overlap");
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Creates a headless terrain of ground and cliff tiles of random heights, the same on every call
+     */
+    private static Terrain createTerrain()
+    {
+        GameLoop.setHeadless(true);
+
+        int dirt = TileRecord.textureId("dirt"), cliff = TileRecord.textureId("cliff");
+        return new Terrain(SIZE, SIZE, (firstX, firstY, width, height, records) ->
+        {
+            SplittableRandom random = new SplittableRandom((long) firstX << 32 | firstY);
+            for(int i = 0; i < Terrain.CHUNK_SIZE; i++)
+                for(int j = 0; j < Terrain.CHUNK_SIZE; j++)
+                    records[i * Terrain.CHUNK_SIZE + j] = TileRecord.pack(random.nextBoolean() ? dirt : cliff, random.nextInt(4), true);
+        });
+    }
+
+    /**
+     * Returns the area a tile covers on screen, including the column below it (left, top, right, bottom), the same as
+     * {@link TerrainChunks#computeBounds(int, Terrain)}
+     */
+    private static float[] area(Terrain terrain, int x, int y)
+    {
+        short record = terrain.getTile(x, y);
+        ImageResource image = terrain.getTileImage(TileRecord.texture(record));
+        float tileX = (x + y) * Tile.GROUND_TILE_WIDTH / 2f, tileY = (y - x + 1) * Tile.GROUND_TILE_HEIGHT / 2f;
+
+        return new float[] {tileX - image.getWidth() / 2f,
+                tileY - Tile.GROUND_TILE_Z_HEIGHT * TileRecord.height(record) - image.getHeight() / 2f,
+                tileX + image.getWidth() / 2f, tileY + image.getHeight() / 2f};
+    }
+
+    private static boolean overlap(float[] a, float[] b)
+    {
+        return a[0] < b[2] && a[2] > b[0] && a[1] < b[3] && a[3] > b[1];
+    }
+}
@@ -0,0 +1,128 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.agents.player.Player;
+import org.world.tiles.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Measures loading the chunks of a large {@link Terrain} on demand: reading a tile of a chunk that is not loaded (which
+ *  generates the chunk, dropping the least recently used one), and the per-update prefetch done by the world while the
+ *  camera pans across the map at a few speeds (tiles per update).
+ *  The memory kept by a whole game is measured on maps of a few sizes, from that of a normal game to one of a quarter of a
+ *  billion tiles: a headless world whose player is moved across the map every update, the camera, enemies and searches
+ *  following it, so that chunks are loaded and dropped all along. The heap kept should barely grow with the area of the
+ *  map, only the decorations (placed up front, about six per row of the map) and the tables of chunks growing with it.
+ */
+public class TerrainStreamingBenchmark
+{
+    private static final int SIZE = 4096;
+    private static final int[] PAN_SPEEDS = {1, 4};
+    private static final int[] WORLD_SIZES = {256, 4096, 16384};
+
+    /**
+     * Tiles the player is moved along each axis every update
+     */
+    private static final int EXPLORE_X = 8, EXPLORE_Y = 3;
+
+    /**
+     * Same radius as the world's prefetch
+     */
+    private static final int RADIUS = 16 + Terrain.CHUNK_SIZE;
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        benchmarks.add(new Benchmark("Terrain.loadChunk")
+        {
+            Terrain terrain;
+            int next;
+
+            @Override
+            public void setUp()
+            {
+                terrain = new Terrain(SIZE, SIZE, new MapGenerator(42));
+                next = 0;
+            }
+
+            @Override
+            public long run()
+            {
+                //every chunk of the map in turn, each one dropped long before it is read again
+                int chunks = SIZE / Terrain.CHUNK_SIZE;
+                int x = (next / chunks) * Terrain.CHUNK_SIZE, y = (next % chunks) * Terrain.CHUNK_SIZE;
+                next = (next + 1) % (chunks * chunks);
+                return terrain.getTile(x, y);
+            }
+        }.param("mapSize", SIZE));
+
+        for(int speed : PAN_SPEEDS)
+        {
+            benchmarks.add(new Benchmark("Terrain.prefetch")
+            {
+                Terrain terrain;
+                int position;
+
+                @Override
+                public void setUp()
+                {
+                    terrain = new Terrain(SIZE, SIZE, new MapGenerator(42));
+                    position = 0;
+                }
+
+                @Override
+                public long run()
+                {
+                    //the camera crossing the map diagonally, back at the start once it reaches the far corner
+                    position = (position + speed) % SIZE;
+                    terrain.prefetch(position, position, RADIUS);
+                    return terrain.getLoadedChunkCount();
+                }
+            }.param("mapSize", SIZE).param("tilesPerUpdate", speed));
+        }
+
+        for(int size : WORLD_SIZES)
+        {
+            benchmarks.add(new Benchmark("World.explore")
+            {
+                World world;
+                long update;
+
+                @Override
+                public void setUp()
+                {
+                    world = HeadlessWorlds.create(size, true, 42);
+                    update = 0;
+                }
+
+                @Override
+                public long run()
+                {
+                    //the player moved across the map faster along one axis than the other, wrapping around at the edges,
+                    //so that it keeps reaching chunks it left long ago
+                    update++;
+                    int x = 8 + (int) (update * EXPLORE_X % (size - 16)), y = 8 + (int) (update * EXPLORE_Y % (size - 16));
+                    Player player = world.getPlayer();
+                    player.isoX = x;
+                    player.isoY = y;
+                    player.x = (x + y) * Tile.GROUND_TILE_WIDTH / 2f;
+                    player.y = (y - x) * Tile.GROUND_TILE_WIDTH / 2f;
+                    player.heal(1000);
+
+                    GameLoop.step();
+                    return world.getTerrain().getLoadedChunkCount() + world.getTerrain().getNavigation().getLoadedPageCount();
+                }
+
+                @Override
+                public void tearDown() { GameLoop.setWorld(null); }
+            }.param("mapSize", size).reportRetained());
+        }
+
+        return benchmarks;
+    }
+}
@@ -0,0 +1,113 @@
+package org.world;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.agents.enemies.AI.AI;
+import org.world.agents.enemies.SecurityBot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures a full tick of the game ({@link GameLoop#step()}, i.e. input and {@link World#update()}) with as many enemies
+ *  alive as a given wave brings (two per wave), with the update's parallel phase on one thread and on every core.
+ *  The same tick is also measured with a given number of enemies on a small and a large map, whose number of decorations
+ *  grows with its area, to check that only the moving objects count.
+ */
+public class WorldUpdateBenchmark
+{
+    private static final int[] WAVES = {1, 10, 50, 500};
+
+    private static final int[] MAP_SIZES = {16, 128};
+    private static final int[] AGENTS = {20, 200};
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = cores > 1 ? new int[] {1, cores} : new int[] {1};
+
+        for(int wave : WAVES)
+            for(int threads : threadCounts)
+                benchmarks.add(new Benchmark("World.update")
+                {
+                    World world;
+
+                    @Override
+                    public void setUp()
+                    {
+                        GameLoop.setUpdateThreads(threads);
+                        world = HeadlessWorlds.create(16, true);
+                        Random random = new Random(wave);
+
+                        for(int added = 0; added < wave * 2; )
+                        {
+                            int x = random.nextInt(16), y = random.nextInt(16);
+                            if(AI.isValidMove(x, y, 0))
+                            {
+                                world.addGameObject(new SecurityBot(x, y));
+                                added++;
+                            }
+                        }
+                    }
+
+                    @Override
+                    public long run()
+                    {
+                        //keep the player alive so the whole run is spent fighting
+                        world.getPlayer().heal(1000);
+
+                        GameLoop.step();
+                        return world.enemyCount;
+                    }
+
+                    @Override
+                    public void tearDown()
+                    {
+                        GameLoop.setWorld(null);
+                        GameLoop.setUpdateThreads(1);
+                    }
+                }.param("wave", wave).param("threads", threads));
+
+        for(int size : MAP_SIZES)
+            for(int agents : AGENTS)
+                benchmarks.add(new Benchmark("World.update")
+                {
+                    World world;
+
+                    @Override
+                    public void setUp()
+                    {
+                        world = HeadlessWorlds.create(size, true);
+                        Random random = new Random(agents);
+
+                        for(int added = 0; added < agents; )
+                        {
+                            int x = random.nextInt(size), y = random.nextInt(size);
+                            if(AI.isValidMove(x, y, 0))
+                            {
+                                world.addGameObject(new SecurityBot(x, y));
+                                added++;
+                            }
+                        }
+                    }
+
+                    @Override
+                    public long run()
+                    {
+                        world.getPlayer().heal(1000);
+
+                        GameLoop.step();
+                        return world.enemyCount;
+                    }
+
+                    @Override
+                    public void tearDown() { GameLoop.setWorld(null); }
+                }.param("mapSize", size).param("agents", agents));
+
+        return benchmarks;
+    }
+}
@@ -0,0 +1,148 @@
+package org.world.agents.enemies.AI;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.decoratioms.SolidDecoration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures the pathfinding work of one tick in which every enemy needs its next step towards a player that just moved
+ *  to another tile: with the shared {@link FlowField} (one rebuild, then a lookup per enemy) and, for comparison, with
+ *  an {@link AI#aStar(int, int, int, int, Path)} search per enemy, run right away or by the world's
+ *  {@link PathfindingService} within its default budget (each enemy asking again once its last path arrived).
+ *  Enemies stand on random free tiles of a 64 x 64 map with 10% obstacles, all chosen with a fixed seed.
+ */
+public class FlowFieldBenchmark
+{
+    private static final int SIZE = 64;
+    private static final double DENSITY = 0.1;
+    private static final int[] ENEMIES = {10, 100, 1000};
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int enemies : ENEMIES)
+        {
+            benchmarks.add(new Tick("AI.flowFieldTick", enemies)
+            {
+                final FlowField field = new FlowField();
+                final int[] step = new int[2];
+
+                @Override
+                long think(int targetX, int targetY)
+                {
+                    field.update(targetX, targetY);
+
+                    long sum = 0;
+                    for(int i = 0; i < enemies; i++)
+                        if(field.nextStep(xs[i], ys[i], step))
+                            sum += step[0] + step[1];
+                    return sum;
+                }
+            }.param("enemies", enemies));
+
+            benchmarks.add(new Tick("AI.aStarTick", enemies)
+            {
+                final Path path = new Path();
+
+                @Override
+                long think(int targetX, int targetY)
+                {
+                    long sum = 0;
+                    for(int i = 0; i < enemies; i++)
+                        if(AI.aStar(xs[i], ys[i], targetX, targetY, path))
+                            sum += path.length();
+                    return sum;
+                }
+            }.param("enemies", enemies));
+
+            benchmarks.add(new Tick("AI.pathfindingServiceTick", enemies)
+            {
+                final PathfindingService.Request[] requests = new PathfindingService.Request[enemies];
+
+                @Override
+                long think(int targetX, int targetY)
+                {
+                    PathfindingService service = GameLoop.getWorld().getPathfinding();
+                    for(int i = 0; i < enemies; i++)
+                        if(requests[i] == null || requests[i].isDone())
+                            requests[i] = service.request(xs[i], ys[i], targetX, targetY);
+
+                    service.tick();
+                    return service.getCompleted();
+                }
+            }.param("enemies", enemies));
+        }
+
+        return benchmarks;
+    }
+
+    /**
+     * A tick of enemy pathfinding, with the player alternating between two tiles so every tick starts after a move
+     */
+    private static abstract class Tick extends Benchmark
+    {
+        final int enemies;
+        final int[] xs, ys;
+        private int tick = 0;
+
+        Tick(String name, int enemies)
+        {
+            super(name);
+            this.enemies = enemies;
+            xs = new int[enemies];
+            ys = new int[enemies];
+        }
+
+        @Override
+        public void setUp()
+        {
+            World world = HeadlessWorlds.create(SIZE, false);
+            Random random = new Random(SIZE * 31L + enemies);
+
+            for(int i = 1; i < SIZE - 1; i++)
+                for(int j = 1; j < SIZE - 1; j++)
+                {
+                    boolean target = Math.abs(i - SIZE / 2) <= 1 && Math.abs(j - SIZE / 2) <= 1;
+                    world.setDecoration(i, j, !target && random.nextDouble() < DENSITY
+                            ? new SolidDecoration(i, j, false, 10, 2, 1, 1, 1, 20, 20, "/resources/Decorations/rock.png")
+                            : null);
+                }
+
+            for(int added = 0; added < enemies; )
+            {
+                int x = 1 + random.nextInt(SIZE - 2), y = 1 + random.nextInt(SIZE - 2);
+                if(AI.isValidMove(x, y, 0))
+                {
+                    xs[added] = x;
+                    ys[added] = y;
+                    added++;
+                }
+            }
+        }
+
+        @Override
+        public long run()
+        {
+            tick++;
+            return think(SIZE / 2 + (tick & 1), SIZE / 2);
+        }
+
+        /**
+         * Finds the next step of every enemy towards the given target
+         */
+        abstract long think(int targetX, int targetY);
+
+        @Override
+        public void tearDown()
+        {
+            GameLoop.setWorld(null);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.world.agents.enemies.AI;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.decoratioms.SolidDecoration;
+import org.world.tiles.GroundTile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures {@link AI#aStar(int, int, int, int, Path)} across the map, on several map sizes and obstacle densities.
+ *  Obstacles are solid decorations placed at random (with a fixed seed), keeping the start and destination free.
+ *  The worst case is measured separately: on a large open map, a destination on a raised plateau in the far corner, which
+ *  the search would have to explore the whole map to give up on.
+ */
+public class PathfindingBenchmark
+{
+    private static final int[] SIZES = {16, 32, 64};
+    private static final double[] DENSITIES = {0.0, 0.1, 0.25};
+
+    /**
+     * Size of the map of the unreachable destination, and of the plateau it stands on
+     */
+    private static final int UNREACHABLE_SIZE = 256, PLATEAU_SIZE = 5;
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int size : SIZES)
+            for(double density : DENSITIES)
+                benchmarks.add(new Benchmark("AI.aStar")
+                {
+                    World world;
+                    final Path path = new Path();
+
+                    @Override
+                    public void setUp()
+                    {
+                        world = HeadlessWorlds.create(size, false);
+                        Random random = new Random(size * 31L + (long) (density * 100));
+
+                        for(int i = 1; i < size - 1; i++)
+                            for(int j = 1; j < size - 1; j++)
+                            {
+                                boolean endpoint = (i <= 2 && j <= 2) || (i >= size - 3 && j >= size - 3);
+                                world.setDecoration(i, j, !endpoint && random.nextDouble() < density
+                                        ? new SolidDecoration(i, j, false, 10, 2, 1, 1, 1, 20, 20, "/resources/Decorations/rock.png")
+                                        : null);
+                            }
+                    }
+
+                    @Override
+                    public long run()
+                    {
+                        return AI.aStar(1, 1, size - 2, size - 2, path) ? path.length() : -1;
+                    }
+
+                    @Override
+                    public void tearDown()
+                    {
+                        GameLoop.setWorld(null);
+                    }
+                }.param("mapSize", size).param("obstacleDensity", density));
+
+        benchmarks.add(new Benchmark("AI.aStar")
+        {
+            final Path path = new Path();
+
+            @Override
+            public void setUp()
+            {
+                World world = HeadlessWorlds.create(UNREACHABLE_SIZE, false);
+                for(int i = 1; i < UNREACHABLE_SIZE - 1; i++)
+                    for(int j = 1; j < UNREACHABLE_SIZE - 1; j++)
+                        world.setDecoration(i, j, null);
+
+                //a plateau higher than the start, like the cliffs on the border of the map
+                for(int i = UNREACHABLE_SIZE - PLATEAU_SIZE; i < UNREACHABLE_SIZE; i++)
+                    for(int j = UNREACHABLE_SIZE - PLATEAU_SIZE; j < UNREACHABLE_SIZE; j++)
+                        world.getTerrain().setTile(i, j, new GroundTile(i, j, 3, "cliff"));
+            }
+
+            @Override
+            public long run()
+            {
+                return AI.aStar(UNREACHABLE_SIZE / 2, UNREACHABLE_SIZE / 2, UNREACHABLE_SIZE - 3, UNREACHABLE_SIZE - 3, path)
+                        ? path.length() : -1;
+            }
+
+            @Override
+            public void tearDown()
+            {
+                GameLoop.setWorld(null);
+            }
+        }.param("mapSize", UNREACHABLE_SIZE).param("destination", "unreachable"));
+
+        return benchmarks;
+    }
+}
@@ -0,0 +1,142 @@
+package org.world.agents.enemies.AI;
+
+import org.benchmark.Check;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.agents.enemies.SecurityBot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks the {@link PathfindingService} as used by the bots of a headless game: bots too far from the player for the
+ *  {@link FlowField} all ask for a path in the same update, and the service never expands more tiles per update than its
+ *  budget while the bots still close in on the player. The same game played with one and with several update threads
+ *  gives the same bot positions and the same searches, update after update.
+ */
+public class PathfindingServiceChecks
+{
+    private static final int SIZE = 128;
+    private static final int BOTS = 300;
+    private static final long SEED = 19;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("PathfindingService.budget")
+        {
+            @Override
+            public void run()
+            {
+                final int budget = 4096;
+
+                GameLoop.setUpdateThreads(1);
+                World world = HeadlessWorlds.create(SIZE, true, SEED);
+                PathfindingService service = world.getPathfinding();
+                service.setBudget(budget);
+                List<SecurityBot> bots = addBots(world);
+                long distance = distance(world, bots);
+
+                int maxQueue = 0;
+                for(int tick = 0; tick < 1500; tick++)
+                {
+                    world.getPlayer().heal(1000);
+                    GameLoop.step();
+
+                    Check.expect(service.getLastUsed() <= budget, "update " + tick + " expanded " + service.getLastUsed()
+                            + " tiles, over the budget of " + budget);
+                    maxQueue = Math.max(maxQueue, service.getQueueDepth());
+                }
+
+                Check.expect(maxQueue >= BOTS / 2, "at most " + maxQueue + " requests waited at once");
+                Check.expect(service.getMaxLatency() > 1, "no request waited for the budget of another update");
+                Check.expect(service.getQueueDepth() == 0 && service.getCompleted() >= maxQueue, "only " + service.getCompleted()
+                        + " requests were done");
+
+                long closer = distance(world, bots);
+                Check.expect(closer < distance / 2, "bots only went from " + distance + " to " + closer
+                        + " tiles away from the player in total");
+                GameLoop.setWorld(null);
+            }
+        });
+
+        checks.add(new Check("PathfindingService.deterministic")
+        {
+            @Override
+            public void run()
+            {
+                long[] serial = play(1), parallel = play(4);
+                GameLoop.setUpdateThreads(1);
+
+                for(int tick = 0; tick < serial.length; tick++)
+                    Check.expectEquals(serial[tick], parallel[tick], "state after update " + tick + " with 4 threads");
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Plays a game whose bots wait for their paths, on the given number of update threads
+     * @return a hash of the bots' positions and of the searches done, after each update
+     */
+    private static long[] play(int threads)
+    {
+        GameLoop.setUpdateThreads(threads);
+        World world = HeadlessWorlds.create(SIZE, true, SEED);
+        PathfindingService service = world.getPathfinding();
+        service.setBudget(1024);
+        List<SecurityBot> bots = addBots(world);
+
+        long[] states = new long[600];
+        for(int tick = 0; tick < states.length; tick++)
+        {
+            world.getPlayer().heal(1000);
+            GameLoop.step();
+
+            long state = service.getCompleted() * 31 + service.getQueueDepth();
+            for(SecurityBot bot : bots)
+                state = state * 31 + Float.floatToIntBits(bot.x) * 17L + Float.floatToIntBits(bot.y);
+            states[tick] = state;
+        }
+
+        GameLoop.setWorld(null);
+        return states;
+    }
+
+    /**
+     * Places bots on random free tiles out of the flow field's reach from the player, the same on every call
+     */
+    private static List<SecurityBot> addBots(World world)
+    {
+        List<SecurityBot> bots = new ArrayList<>();
+        Random random = new Random(SEED);
+        int nearest = world.getPlayer().isoX + FlowField.RADIUS + 8;
+
+        while(bots.size() < BOTS)
+        {
+            int x = nearest + random.nextInt(SIZE - 1 - nearest), y = 1 + random.nextInt(SIZE - 2);
+            if(AI.isValidMove(x, y, 0))
+            {
+                SecurityBot bot = new SecurityBot(x, y);
+                world.addGameObject(bot);
+                bots.add(bot);
+            }
+        }
+        return bots;
+    }
+
+    /**
+     * Sums the distances of the bots to the player, in tiles along the longest axis
+     */
+    private static long distance(World world, List<SecurityBot> bots)
+    {
+        long sum = 0;
+        for(SecurityBot bot : bots)
+            sum += Math.max(Math.abs(bot.isoX - world.getPlayer().isoX), Math.abs(bot.isoY - world.getPlayer().isoY));
+        return sum;
+    }
+}
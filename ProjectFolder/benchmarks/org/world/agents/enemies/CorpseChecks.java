@@ -0,0 +1,183 @@
+package org.world.agents.enemies;
+
+import org.benchmark.Check;
+import org.engine.GameLoop;
+import org.engine.graphics.DecalLayer;
+import org.engine.resources.AssetManager;
+import org.engine.resources.FileResources;
+import org.engine.resources.ImageResource;
+import org.world.World;
+import org.world.agents.enemies.AI.AI;
+import org.world.agents.player.Player;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Checks what is left of dead enemies: a headless game (whose images are read, so that bodies have pixels) in which 60
+ *  enemies die with room for 40 decals. Every dead enemy leaves the world once the last frame of its death animation is
+ *  reached and not before, and the decal layer never holds more than its limit. The eviction of the layer is also checked
+ *  on its own: regions whose decals were all dropped are freed.
+ */
+public class CorpseChecks
+{
+    private static final int SIZE = 48;
+    private static final int ALIVE = 5, KILLED = 60, GROUP = 20, LIMIT = 40;
+    private static final int DEATH_TICKS = 120;
+
+    public static List<Check> checks()
+    {
+        List<Check> checks = new ArrayList<>();
+
+        checks.add(new Check("Enemy.corpses")
+        {
+            @Override
+            public void run()
+            {
+                World world = createWorld();
+                DecalLayer decals = world.getDecals();
+                decals.setLimit(LIMIT);
+                Random random = new Random(20);
+
+                //alive from the start, which also keeps the world from spawning waves of its own
+                for(int i = 0; i < ALIVE; i++)
+                    world.addGameObject(spawn(random));
+                step(world);
+                int living = world.getObjectCount();
+
+                int painted = 0;
+                for(int group = 0; group < KILLED / GROUP; group++)
+                {
+                    List<SecurityBot> dead = new ArrayList<>();
+                    for(int i = 0; i < GROUP; i++)
+                    {
+                        SecurityBot bot = spawn(random);
+                        bot.health = 0;
+                        world.addGameObject(bot);
+                        dead.add(bot);
+                    }
+
+                    for(int tick = 0; tick < DEATH_TICKS; tick++)
+                    {
+                        //frames before the update, which is when the body is painted and the enemy marked for removal
+                        int[] frames = new int[dead.size()];
+                        for(int i = 0; i < frames.length; i++)
+                            frames[i] = dead.get(i).currentFrame;
+
+                        step(world);
+
+                        for(int i = 0; i < dead.size(); i++)
+                        {
+                            SecurityBot bot = dead.get(i);
+                            int last = bot.animations[bot.currentAnimation].frames.length - 1;
+                            if(bot.remove)
+                            {
+                                expectEquals(last, frames[i], "frame of an enemy removed on update " + tick);
+                                dead.remove(i--);
+                                painted++;
+                            }
+                        }
+                        expect(decals.getDecalCount() <= decals.getLimit(), decals.getDecalCount()
+                                + " decals are kept, over the limit of " + decals.getLimit());
+                    }
+
+                    expect(dead.isEmpty(), dead.size() + " dead enemies are still in the world");
+                    expectEquals(living, world.getObjectCount(), "objects in the world once the dead enemies left");
+                }
+
+                expectEquals(KILLED, painted, "bodies painted");
+                expect(decals.getDecalCount() > 0, "no body was painted onto the ground");
+                expect(decals.getRegionCount() > 0 && decals.getRegionCount() <= 4 * decals.getDecalCount(),
+                        decals.getRegionCount() + " regions for " + decals.getDecalCount() + " decals");
+                GameLoop.setWorld(null);
+            }
+        });
+
+        checks.add(new Check("DecalLayer.eviction")
+        {
+            @Override
+            public void run()
+            {
+                DecalLayer layer = new DecalLayer();
+                layer.setLimit(4);
+
+                //one decal in a region, then the following ones in another
+                add(layer, 0, 0);
+                for(int i = 0; i < 3; i++)
+                    add(layer, 5, 5);
+                expectEquals(4, layer.getDecalCount(), "decals");
+                expectEquals(2, layer.getRegionCount(), "regions");
+
+                //over the limit: a quarter of it is dropped, oldest first, which frees the first region
+                add(layer, 5, 5);
+                expectEquals(3, layer.getDecalCount(), "decals after the oldest were dropped");
+                expectEquals(1, layer.getRegionCount(), "regions after the oldest decals were dropped");
+
+                layer.setLimit(1);
+                expectEquals(1, layer.getDecalCount(), "decals once the limit was lowered");
+                expectEquals(1, layer.getRegionCount(), "regions once the limit was lowered");
+
+                add(layer, -3, 2);
+                expectEquals(1, layer.getDecalCount(), "decals kept with a limit of 1");
+                expectEquals(1, layer.getRegionCount(), "regions kept with a limit of 1");
+
+                layer.dispose();
+                expectEquals(0, layer.getRegionCount(), "regions once disposed");
+            }
+        });
+
+        return checks;
+    }
+
+    /**
+     * Creates a headless world of a generated map, whose images are read from their files
+     */
+    private static World createWorld()
+    {
+        GameLoop.setHeadless(true);
+        AssetManager.setProvider(new FileResources());
+
+        World world = new World();
+        GameLoop.setWorld(world);
+        world.initialiseWorld(SIZE, SIZE, 20);
+        world.addPlayer(new Player());
+        GameLoop.setState(GameLoop.STATES.GAME);
+        return world;
+    }
+
+    /**
+     * Creates an enemy on a random traversable tile
+     */
+    private static SecurityBot spawn(Random random)
+    {
+        while(true)
+        {
+            int x = random.nextInt(SIZE), y = random.nextInt(SIZE);
+            if(AI.isValidMove(x, y, 0))
+                return new SecurityBot(x, y);
+        }
+    }
+
+    private static void step(World world)
+    {
+        //keep the player alive so that the game goes on
+        world.getPlayer().heal(1000);
+        GameLoop.step();
+    }
+
+    /**
+     * Paints an opaque 20 x 20 image in the middle of a region of the layer
+     */
+    private static void add(DecalLayer layer, int column, int row)
+    {
+        BufferedImage image = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
+        for(int x = 0; x < 20; x++)
+            for(int y = 0; y < 20; y++)
+                image.setRGB(x, y, 0xff000000 | column * 40 << 8 | row * 40);
+
+        Check.expect(layer.add(new ImageResource(image), 20, 20, (column + 0.5f) * DecalLayer.REGION_SIZE,
+                (row + 0.5f) * DecalLayer.REGION_SIZE, false), "nothing was painted");
+    }
+}
@@ -0,0 +1,105 @@
+package org.world.agents.enemies;
+
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.world.World;
+import org.world.agents.enemies.AI.AI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *  Measures a full tick of the game ({@link GameLoop#step()}) with the same number of enemies alive, once at the start of
+ *  the game and once every enemy of the previous waves was killed (two per wave), to check that dead enemies leave
+ *  nothing behind in the update. Enemies are killed in groups and the game runs until their death animation is over.
+ */
+public class CorpseSoakBenchmark
+{
+    private static final int[] WAVES = {1, 50};
+
+    /**
+     * Number of enemies alive during the measured ticks
+     */
+    private static final int ALIVE = 20;
+
+    /**
+     * Number of enemies killed at once while catching up to the wave, and the ticks given to their death animation
+     */
+    private static final int GROUP = 100, DEATH_TICKS = 120;
+
+    public static List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        for(int wave : WAVES)
+            benchmarks.add(new Benchmark("World.update")
+            {
+                World world;
+
+                @Override
+                public void setUp()
+                {
+                    world = HeadlessWorlds.create(16, true);
+                    Random random = new Random(wave);
+
+                    //alive from the start, which also keeps the world from spawning waves of its own
+                    for(int i = 0; i < ALIVE; i++)
+                        world.addGameObject(spawn(random));
+
+                    //every enemy of the previous waves
+                    int killed = 0;
+                    for(int w = 1; w < wave; w++)
+                        killed += w * 2;
+
+                    while(killed > 0)
+                    {
+                        for(int i = 0; i < Math.min(GROUP, killed); i++)
+                        {
+                            SecurityBot bot = spawn(random);
+                            bot.health = 0;
+                            world.addGameObject(bot);
+                        }
+                        killed -= Math.min(GROUP, killed);
+
+                        for(int tick = 0; tick < DEATH_TICKS; tick++)
+                            step();
+                    }
+                }
+
+                /**
+                 * Creates an enemy on a random traversable tile
+                 */
+                private SecurityBot spawn(Random random)
+                {
+                    while(true)
+                    {
+                        int x = random.nextInt(16), y = random.nextInt(16);
+                        if(AI.isValidMove(x, y, 0))
+                            return new SecurityBot(x, y);
+                    }
+                }
+
+                private void step()
+                {
+                    //keep the player alive so the whole run is spent fighting
+                    world.getPlayer().heal(1000);
+
+                    GameLoop.step();
+                }
+
+                @Override
+                public long run()
+                {
+                    step();
+                    return world.enemyCount;
+                }
+
+                @Override
+                public void tearDown() { GameLoop.setWorld(null); }
+            }.param("wave", wave).param("alive", ALIVE));
+
+        return benchmarks;
+    }
+}
@@ -0,0 +1,77 @@
+package org.world.agents.enemies;
+
+import com.jogamp.newt.event.MouseEvent;
+import org.benchmark.Benchmark;
+import org.benchmark.HeadlessWorlds;
+import org.engine.GameLoop;
+import org.engine.input.KeyInput;
+import org.engine.input.ScriptedInput;
+import org.world.World;
+import org.world.agents.player.Weapon;
+import org.world.agents.player.melee.HitBox;
+
+import java.util.List;
+
+/**
+ *  Measures the player's melee hit detection: placing the weapon's hit box ({@link HitBox#update(float, float, int, int)})
+ *  and checking an enemy against it ({@link Enemy#checkForDamage()}).
+ *  The player is scripted into a light attack and the benchmark is taken on the first damage frame.
+ */
+public class HitBoxBenchmark
+{
+    /**
+     * Number of ticks the scripted attack may take to reach a damage frame
+     */
+    private static final int MAX_SETUP_TICKS = 600;
+
+    public static List<Benchmark> benchmarks()
+    {
+        return List.of(new Benchmark("HitBox.update+Enemy.checkForDamage")
+        {
+            Weapon weapon;
+            Enemy enemy;
+            int animation, frame;
+
+            @Override
+            public void setUp()
+            {
+                World world = HeadlessWorlds.create(16, true);
+                enemy = new SecurityBot(6, 7);
+                world.addGameObject(enemy);
+
+                //draw the weapon, then attack
+                long start = GameLoop.getTickCount() + 1;
+                ScriptedInput input = new ScriptedInput().tapKey(KeyInput.SHEATHE, start);
+                for(int i = 30; i < MAX_SETUP_TICKS; i += 30)
+                    input.click(MouseEvent.BUTTON1, start + i);
+                GameLoop.setInputSource(input);
+
+                weapon = world.getPlayer().getWeapon();
+                for(int i = 0; i < MAX_SETUP_TICKS && !weapon.isDoingDamage(); i++)
+                    GameLoop.step();
+
+                GameLoop.setInputSource(null);
+                if(!weapon.isDoingDamage())
+                    throw new IllegalStateException("the scripted attack never reached a damage frame");
+
+                animation = weapon.currentAnimation - Weapon.PASSIVE_ANIMATION_COUNT;
+                frame = weapon.currentFrame;
+            }
+
+            @Override
+            public long run()
+            {
+                weapon.getHitBox().update(weapon.x, weapon.y, animation, frame);
+                enemy.damaged = false;
+                enemy.checkForDamage();
+                return enemy.damaged ? 1 : 0;
+            }
+
+            @Override
+            public void tearDown()
+            {
+                GameLoop.setWorld(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package org.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  Fixed timestep scheduler used by the {@link GameLoop}.
+ *  Real time measured between frames is added to an accumulator, and the simulation is advanced in ticks of constant length
+ *  for as long as the accumulator holds at least one tick's worth of time. Whatever is left over (less than a tick) carries
+ *  on to the next frame and is exposed as an interpolation factor, so rendering can blend between the previous and the
+ *  current state of the simulation. The simulation therefore runs at the same rate regardless of how fast frames are drawn.
+ *  When the simulation falls behind, at most {@link #MAX_TICKS_PER_FRAME} ticks are run per frame and the rest of the backlog
+ *  is kept for the following frames. Only a backlog larger than {@link #MAX_BACKLOG_NANOS} is discarded, and the discarded
+ *  time is counted (see {@link #getDroppedNanos()}).
+ *  The time source can be replaced, which allows driving the scheduler with simulated time.
+ */
+public class FixedTimestep
+{
+    /**
+     * Source of time, in nanoseconds
+     */
+    public interface Clock
+    {
+        long nanoTime();
+    }
+
+    /**
+     * Maximum number of ticks run during a single frame when catching up
+     */
+    public static final int MAX_TICKS_PER_FRAME = 5;
+
+    /**
+     * Largest amount of simulation time that can be owed before it starts being discarded (1 second)
+     */
+    public static final long MAX_BACKLOG_NANOS = 1000000000L;
+
+    /**
+     * Remaining wait time below which {@link #waitUntil(long)} spins instead of parking the thread, since parking is not
+     * precise enough for sub-millisecond deadlines
+     */
+    private static final long SPIN_THRESHOLD_NANOS = 1000000L;
+
+    private final Clock clock;
+
+    private long tickNanos;
+    private int ticksPerSecond;
+
+    private long lastTime;
+    private long accumulator = 0;
+
+    private int ticksThisFrame = 0;
+    private long tickCount = 0;
+    private long simulatedNanos = 0;
+    private long droppedNanos = 0;
+
+    /**
+     * Creates a scheduler measuring real time
+     * @param ticksPerSecond simulation rate
+     */
+    public FixedTimestep(int ticksPerSecond)
+    {
+        this(ticksPerSecond, System::nanoTime);
+    }
+
+    /**
+     * Creates a scheduler using the given time source
+     * @param ticksPerSecond simulation rate
+     * @param clock time source
+     */
+    public FixedTimestep(int ticksPerSecond, Clock clock)
+    {
+        this.clock = clock;
+        setTicksPerSecond(ticksPerSecond);
+        reset();
+    }
+
+    /**
+     * Changes the simulation rate. The time already accumulated is kept
+     * @param ticksPerSecond new rate, at least 1
+     */
+    public void setTicksPerSecond(int ticksPerSecond)
+    {
+        this.ticksPerSecond = Math.max(1, ticksPerSecond);
+        this.tickNanos = 1000000000L / this.ticksPerSecond;
+    }
+
+    /**
+     * Restarts time measurement from now, discarding any accumulated time
+     */
+    public void reset()
+    {
+        lastTime = clock.nanoTime();
+        accumulator = 0;
+        ticksThisFrame = 0;
+    }
+
+    /**
+     * Measures the time passed since the previous frame and adds it to the accumulator. Should be called once per frame,
+     * before running the ticks with {@link #consumeTick()}
+     */
+    public void beginFrame()
+    {
+        long now = clock.nanoTime();
+        accumulator += now - lastTime;
+        lastTime = now;
+        ticksThisFrame = 0;
+
+        if(accumulator > MAX_BACKLOG_NANOS)
+        {
+            droppedNanos += accumulator - MAX_BACKLOG_NANOS;
+            accumulator = MAX_BACKLOG_NANOS;
+        }
+    }
+
+    /**
+     * Checks whether another tick should be run during the current frame, and if so takes its time out of the accumulator.
+     * Meant to be used as the condition of the update loop
+     * @return true if a tick should be run
+     */
+    public boolean consumeTick()
+    {
+        if(accumulator < tickNanos || ticksThisFrame >= MAX_TICKS_PER_FRAME)
+            return false;
+
+        accumulator -= tickNanos;
+        ticksThisFrame++;
+        tickCount++;
+        simulatedNanos += tickNanos;
+        return true;
+    }
+
+    /**
+     * Counts a tick that was run outside of the scheduler (when the game is stepped manually), leaving the accumulator untouched
+     */
+    public void countTick()
+    {
+        tickCount++;
+        simulatedNanos += tickNanos;
+    }
+
+    /**
+     * Returns how far the simulation is between the last tick and the next one, used to interpolate when rendering
+     * @return value between 0 (just ticked) and 1 (next tick due)
+     */
+    public float getAlpha()
+    {
+        return Math.min(1f, accumulator / (float) tickNanos);
+    }
+
+    /**
+     * Blocks the calling thread until the given clock time. Most of the wait is spent parked, the last part is spent spinning
+     * to reach the deadline with sub-millisecond precision
+     * @param deadline time (as given by the scheduler's clock) to wait for
+     */
+    public void waitUntil(long deadline)
+    {
+        long remaining;
+        while((remaining = deadline - clock.nanoTime()) > 0)
+        {
+            if(remaining > SPIN_THRESHOLD_NANOS)
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            else
+                Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the current time of the scheduler's clock
+     */
+    public long now() { return clock.nanoTime(); }
+
+    /**
+     * Returns the duration of a tick in seconds
+     */
+    public float getTickSeconds() { return tickNanos / 1000000000f; }
+
+    /**
+     * Returns the duration of a tick in nanoseconds
+     */
+    public long getTickNanos() { return tickNanos; }
+
+    /**
+     * Returns the simulation rate
+     */
+    public int getTicksPerSecond() { return ticksPerSecond; }
+
+    /**
+     * Returns the number of ticks run since the scheduler was created
+     */
+    public long getTickCount() { return tickCount; }
+
+    /**
+     * Returns the amount of time simulated so far, i.e. the sum of the lengths of all the ticks run
+     */
+    public long getSimulatedNanos() { return simulatedNanos; }
+
+    /**
+     * Returns the total amount of simulation time that was discarded because the backlog grew too large
+     */
+    public long getDroppedNanos() { return droppedNanos; }
+}
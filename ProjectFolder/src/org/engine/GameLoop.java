@@ -2,19 +2,31 @@ package org.engine;
 
 import com.jogamp.newt.event.KeyEvent;
 import org.engine.graphics.Renderer;
+import org.engine.input.InputSource;
 import org.engine.input.KeyInput;
 import org.engine.input.MouseInput;
+import org.engine.resources.AssetManager;
+import org.engine.resources.FileResources;
+import org.engine.resources.SoundClip;
+import org.engine.resources.StubResources;
 import org.engine.ui.MainMenu;
+import org.world.Level;
 import org.world.World;
 import org.world.agents.pickups.AttackSpeed;
 import org.world.agents.player.Player;
 
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
 
 /**
  *  The GameLoop class handles all actions performed by the game engine while the game is running.
  *  It contains a thread which runs continuously and
- *  performs the required updates and rendering on all the other components of the game. The thread seeks to achieve a
- *  number of 60 updates/frames drawn every second.
+ *  performs the required updates and rendering on all the other components of the game. The game is updated at a fixed
+ *  rate (60 ticks per second by default) independently of how many frames are drawn, see {@link FixedTimestep}.
+ *  Frames are drawn between ticks, with moving objects interpolated between their previous and current positions.
+ *  The game can also run headless (see {@link #setHeadless(boolean)}), without a window, textures or audio, in which case
+ *  it is advanced by calling {@link #step()} as fast as the caller wants, with input supplied by an {@link InputSource}.
  */
 public class GameLoop
 {
@@ -24,37 +36,41 @@ public class GameLoop
     private static boolean running = false;
 
     /**
-     * Counts the number of updates performed in case some delay has occurred and
-     * catching up is required.
+     * Default number of updates (ticks) performed every second
      */
-    private static int updates = 0;
+    public static final int DEFAULT_TICK_RATE = 60;
 
     /**
-     *  Maximum number of updates that can be performed when "catching up"
+     * Schedules the updates, keeps track of the time owed to the simulation and of the interpolation factor
      */
-    private static final int  MAX_UPDATES = 5;
+    private static final FixedTimestep timestep = new FixedTimestep(DEFAULT_TICK_RATE);
 
     /**
-     * Keeps track of the last time an update was performed
+     *  Currently active game world, acts as the current level
      */
-    private static long lastUpdateTime = 0;
+    private static World world;
 
     /**
-     *  Currently active game world, acts as the current level
+     * Set when the game runs without a window, see {@link #setHeadless(boolean)}
      */
-    private static World world;
+    private static boolean headless = false;
 
     /**
-     * How many frames should be drawn each second
+     * Programmable source of input, consulted before the keyboard and mouse state is updated each tick. Null when only the
+     * real keyboard and mouse are used
+     */
+    private static InputSource inputSource = null;
+
+    /**
+     * How many frames should be drawn each second, 0 for no limit
      */
     private static int targetFPS = 60;
 
     /**
-     * Nanoseconds it should take to update and render a frame in case
-     * everything goes well
+     * Pool running the parallel phase of the world's update (see {@link World#update()}), null to run it on the game loop's
+     * thread
      */
-    //1000000000ns = 1s
-    private static int  targetTime = 1000000000 / targetFPS;
+    private static ForkJoinPool updatePool = null;
 
     /**
      * Different states the program can be in.
@@ -87,12 +103,7 @@ public class GameLoop
     {
         Thread thread = new Thread(() -> {
             running = true;
-            lastUpdateTime = System.nanoTime();
-
-        //    int frames = 0; //counts frames per second, not needed for the actual running of the game, but might be useful
-                            // to measure performance
-
-            long lastFpsCheck = System.nanoTime();
+            timestep.reset();
 
             while (running)
             {
@@ -101,55 +112,19 @@ public class GameLoop
                         running = false;
                         return;
                     }
-                    long currentTime = System.nanoTime();
-                    updates = 0;
+                    long frameStart = timestep.now();
 
-                    //catch up in case some delay occurred; perform at most 5 more or less simultaneous updates
-                    while (currentTime - lastUpdateTime >= targetTime && updates < MAX_UPDATES)
-                    {
-                        //update all active components of the game
-                        KeyInput.update();
-                        MouseInput.update();
-
-                        if(KeyInput.keyDown(KeyEvent.VK_ESCAPE) && state == STATES.GAME)
-                            world.togglePause();
-
-                        if(state == STATES.GAME)
-                             world.update();
-                        else
-                            MainMenu.update();
-                        lastUpdateTime += targetTime;
-                        updates++;
-                    }
+                    //run as many ticks as the time passed since the last frame requires (a few at most when catching up)
+                    timestep.beginFrame();
+                    while (timestep.consumeTick())
+                        tick();
 
                     //render game
                     Renderer.render();
 
-
-                    //count and display fps (not needed for the running of the game, maybe useful for debugging)
-               //    frames++;
-                    if (System.nanoTime() >= lastFpsCheck + 1000000000)
-                    {
-                        //  System.out.println(frames);
-                  //      frames = 0;
-                        lastFpsCheck = System.nanoTime();
-                    }
-
-                    //see how long the update/render cycle took this iteration
-                    long timeTaken = System.nanoTime() - currentTime;
-
-                    //if it took less than a second, sleep in order to save CPU
-                    if (timeTaken < targetTime)
-                    {
-                        try
-                        {
-                            Thread.sleep((targetTime - timeTaken) / 1000000);
-                        } catch (InterruptedException e)
-                        {
-                            e.printStackTrace();
-                        }
-                    }
-
+                    //wait for the next frame in order to save CPU
+                    if (targetFPS > 0)
+                        timestep.waitUntil(frameStart + 1000000000L / targetFPS);
             }
         });
 
@@ -158,15 +133,132 @@ public class GameLoop
     }
 
     /**
-        Returns the update delta of the game loop  (i.e. the time an update/render cycle should normally take, in seconds)
+     * Performs a single update of all active components of the game
+     */
+    private static void tick()
+    {
+        Renderer.saveCamera();
+
+        if(inputSource != null)
+            inputSource.poll(timestep.getTickCount());
+
+        KeyInput.update();
+        MouseInput.update();
+
+        if(KeyInput.keyDown(KeyEvent.VK_ESCAPE) && state == STATES.GAME)
+            world.togglePause();
+
+        if(state == STATES.GAME)
+        {
+            world.update();
+
+            //nothing gets drawn, so animations have to be advanced here
+            if(headless)
+                world.animate();
+        }
+        else
+            MainMenu.update();
+    }
+
+    /**
+     * Performs a single update right away, without rendering or waiting. Used to drive the game in headless mode, where
+     * the loop thread is never started
+     */
+    public static void step()
+    {
+        timestep.countTick();
+        tick();
+    }
+
+    /**
+     * Switches headless mode on or off. In headless mode no window is needed: sounds are created silent and images are
+     * stubs holding only their size (see {@link StubResources}), so no image or audio data is ever read, and nothing is
+     * drawn. Should be set before any game object is created.
+     * Call {@link #newGame()} and {@link #setState(STATES)} to start a game, then {@link #step()} to advance it
+     * @param headless true to run without a window
+     */
+    public static void setHeadless(boolean headless)
+    {
+        GameLoop.headless = headless;
+        SoundClip.setSilent(headless);
+        AssetManager.setProvider(headless ? new StubResources() : new FileResources());
+    }
+
+    /**
+     * Checks whether the game runs without a window
+     */
+    public static boolean isHeadless() { return headless; }
+
+    /**
+     * Sets a programmable source of input, fed into the keyboard and mouse state at the start of every tick
+     * @param source input source, null to only use the real keyboard and mouse
+     */
+    public static void setInputSource(InputSource source) { inputSource = source; }
+
+    /**
+        Returns the update delta of the game loop  (i.e. the simulated time a single update covers, in seconds)
         Can be useful for some calculations regarding movement/animation speed
      */
     public static float updateDelta()
     {
-        return (1.0f/1000000000) * targetTime;
+        return timestep.getTickSeconds();
     }
 
-   // public static  void setWorld(World w) { world = w; }
+    /**
+     * Returns how far the game loop is between the last update and the next one, objects use it to be drawn between
+     * their previous and current positions
+     * @return value between 0 and 1
+     */
+    public static float getInterpolationAlpha() { return timestep.getAlpha(); }
+
+    /**
+     * Returns the number of updates performed since the game started
+     */
+    public static long getTickCount() { return timestep.getTickCount(); }
+
+    /**
+     * Returns the amount of time simulated since the game started, in nanoseconds. Used for timing that should follow
+     * the simulation (like animations) rather than the wall clock
+     */
+    public static long getSimulationNanos() { return timestep.getSimulatedNanos(); }
+
+    /**
+     * Changes the number of updates performed every second
+     * @param ticksPerSecond new update rate
+     */
+    public static void setTickRate(int ticksPerSecond) { timestep.setTicksPerSecond(ticksPerSecond); }
+
+    /**
+     * Changes the maximum number of frames drawn every second
+     * @param fps new frame limit, 0 to draw as many frames as possible
+     */
+    public static void setTargetFPS(int fps) { targetFPS = Math.max(0, fps); }
+
+    /**
+     * Changes the number of threads used by the parallel phase of the world's update. The outcome of an update does not
+     * depend on it, only its speed, which is worth it with large numbers of enemies on many cores (e.g. when simulating
+     * headless). Uses a single thread by default
+     * @param threads number of threads, 1 to update everything on the game loop's thread
+     */
+    public static void setUpdateThreads(int threads)
+    {
+        if(updatePool != null)
+            updatePool.shutdown();
+
+        updatePool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Returns the pool running the parallel phase of the world's update, null if it runs on the game loop's thread
+     */
+    public static ForkJoinPool getUpdatePool() { return updatePool; }
+
+    /**
+     * Sets the currently active world. Objects reach the world through {@link #getWorld()} while they are created, so a
+     * world built outside of {@link #newGame()} should be set before it is initialised
+     * @param w world object to be made active
+     */
+    public static void setWorld(World w) { world = w; }
 
     /**
      * Getter for the currently active world, which needs to be accessed in several places across the game engine
@@ -185,19 +277,50 @@ public class GameLoop
      */
     public static void newGame()
     {
+        if(world != null)
+            world.dispose();
+
         world = new World();
         world.initialiseWorld();
+        startGame();
+    }
+
+    /**
+     * Instantiates a new {@link org.world.World} object on the map of a level and sets it as the currently active world
+     * @param level path of the level among the resources of the game (e.g. "/resources/Levels/test.lvl"), or absolute
+     *              path of a level file, see {@link Level#load(String)}
+     * @throws IOException if the level cannot be found or read, the current world is kept then
+     */
+    public static void newGame(String level) throws IOException
+    {
+        Level read = Level.load(level);
+        if(world != null)
+            world.dispose();
+
+        world = new World();
+        world.initialiseWorld(read);
+        startGame();
+    }
+
+    /**
+     * Adds the player and the first objects to a new world
+     */
+    private static void startGame()
+    {
         world.addPlayer(new Player());
         world.addGameObject(new AttackSpeed(0.5f,10,2,2));
     }
 
     /**
-     * Resets the camera and clears the game world. Automatically called when exiting to menu
+     * Resets the camera and clears the game world, unloading the assets only it used. Automatically called when exiting to menu
      */
     private static void reset()
     {
         Renderer.cameraX = 0;
         Renderer.cameraY = 0;
+
+        if(world != null)
+            world.dispose();
         world = null;
     }
 
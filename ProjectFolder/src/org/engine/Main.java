@@ -1,6 +1,7 @@
 package org.engine;
 
 import org.engine.graphics.Renderer;
+import org.engine.resources.Preloader;
 
 import java.io.IOException;
 
@@ -18,6 +19,9 @@ public class Main
             e.printStackTrace();
         }
 
+        //start reading the assets in the background, the menu shows the progress
+        Preloader.start();
+
         //initialize OpenGL
         try
         {
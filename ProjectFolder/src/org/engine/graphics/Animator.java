@@ -1,19 +1,23 @@
 package org.engine.graphics;
 
+import org.engine.resources.AssetManager;
 import org.engine.resources.ImageResource;
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  *  This class contains the set of all animations needed for the current instance of the game.
  *  At the creation of a new visible game object, the game engine checks if the required animation already exists.
- *  If not it is created and stored in the Animator's "animationPool", a set implemented as a hash map using the animation;s relative file path as key.
- *  Once an animation is created it is simply referenced when another object using it is created.
- *
+ *  If not it is created and stored in the Animator's "animationPool", a registry keyed by the path of the sprite sheet
+ *  the animation comes from (the object's {@code spriteSheetPath}), which is the only key used for animations.
+ *  Once an animation is created it is simply referenced when another object using it is created, so every sprite sheet
+ *  is read and sliced only once.
+ *  Every frame created by the Animator is packed into a shared {@link TextureAtlas}, so that sprites can be drawn without
+ *  switching textures between them.
+ *  Animations can be looked up and created from any thread; the number of lookups answered from the registry (hits)
+ *  and of animations that had to be created (misses) is counted.
  */
 
 public class Animator
@@ -21,90 +25,148 @@ public class Animator
     /**
      * Map which holds animations for all game objects so that they don't have to be loaded when creating multiple instances of the same object
      */
-    private static Map <String, Animation[]> animationPool = new HashMap<>();
+    private static final Map <String, Animation[]> animationPool = new ConcurrentHashMap<>();
 
     /**
-     * Returns the animation associated with an object class
-     * @param animation Simple Name of the object class for which to retrieve the animation
+     * Atlas holding the frames of all the created animations
+     */
+    private static TextureAtlas atlas = new TextureAtlas();
+
+    /**
+     * Number of animations found in the pool, and of animations that had to be created
+     */
+    private static final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+    /**
+     * Returns the animation created from a sprite sheet
+     * @param path path of the sprite sheet the animation was created from
      * @return The corresponding animation or null if no such animation exists
      */
-    public static Animation[] getAnimation(String animation)
+    public static Animation[] getAnimation(String path)
         {
-            return animationPool.get(animation);
+            Animation[] animation = animationPool.get(path);
+            if(animation != null)
+                hits.increment();
+            return animation;
         }
 
 
     /**
-     * Creates a single static texture from the given path.
+     * Returns the single static texture created from the given path, creating it if it does not exist yet.
      * @param path relative path to the image file
-     * @return the created animation, after storing it in the pool
+     * @return the animation, stored in the pool
      */
     public static Animation[] createSingleTexture(String path)
     {
-        Animation[] animation = new Animation[1];
-        animation[0] = new Animation();
-        animation[0].frames = new ImageResource[1];
-        animation[0].frames[0] = new ImageResource(path);
-
-        animationPool.put(path,animation);
-
-        return animation;
+        return getOrCreate(path, () -> {
+            Animation[] animation = new Animation[1];
+            animation[0] = new Animation();
+            animation[0].frames = new ImageResource[1];
+            ImageResource image = readImage(path);
+            animation[0].frames[0] = image.getRegion(0, 0, (int) image.getWidth(), (int) image.getHeight());
+            atlas.pack(animation[0].frames[0]);
+            return animation;
+        });
     }
 
     /**
-     *  Creates an tiled animation from the given file
+     *  Returns the tiled animation created from the given file, creating it if it does not exist yet
      * @param path path to the image file (all animations pertaining to an object should be in the same file and have frames of the same width/height)
      * @param info an Animation Information array containing all data needed to properly load the animation
-     * @return the created Animation array, after it is stored in the animation pool
+     * @return the Animation array, stored in the animation pool
      */
     public static Animation[] createAnimation(String path, AnimationInformation[] info)
     {
-        //allocate animations array
-        Animation[] animations = new Animation[info.length];
+        return getOrCreate(path, () -> {
+            //allocate animations array
+            Animation[] animations = new Animation[info.length];
+
+            //load tiles
+            ImageResource[][] tiles =  getTiles(path,info);
+
+            //put tiles and animation data in place
+            for (int i = 0; i < animations.length; i++)
+            {
+                animations[i] = new Animation();
+                animations[i].frames = new ImageResource[info[i].frames];
+                animations[i].fps = info[i].fps;
+                animations[i].loop = info[i].loop;
+                System.arraycopy(tiles[i], 0, animations[i].frames, 0, animations[i].frames.length);
+
+                for(ImageResource frame : animations[i].frames)
+                    atlas.pack(frame);
+            }
+            return animations;
+        });
+    }
 
-        //load tiles
-        ImageResource[][] tiles =  getTiles(path,info);
+    /**
+     * Returns the animation stored under the given path, or creates and stores it. Creation is serialised (the atlas is
+     * shared), and an animation created by another thread in the meantime is returned instead of being created twice
+     */
+    private static Animation[] getOrCreate(String path, Supplier<Animation[]> create)
+    {
+        Animation[] animations = animationPool.get(path);
+        if(animations != null)
+        {
+            hits.increment();
+            return animations;
+        }
 
-        //put tiles and animation data in place
-        for (int i = 0; i < animations.length; i++)
+        synchronized (Animator.class)
         {
-            animations[i] = new Animation();
-            animations[i].frames = new ImageResource[info[i].frames];
-            animations[i].fps = info[i].fps;
-            animations[i].loop = info[i].loop;
-            System.arraycopy(tiles[i], 0, animations[i].frames, 0, animations[i].frames.length);
+            animations = animationPool.get(path);
+            if(animations != null)
+            {
+                hits.increment();
+                return animations;
+            }
+
+            animations = create.get();
+            animationPool.put(path, animations);
+            misses.increment();
+            return animations;
         }
+    }
+
+    /**
+     * Returns the number of lookups answered with an animation already in the pool
+     */
+    public static long getHitCount() { return hits.sum(); }
+
+    /**
+     * Returns the number of animations that had to be created, i.e. the number of sprite sheets read
+     */
+    public static long getMissCount() { return misses.sum(); }
 
-        //add created animation to the pool
-        animationPool.put(path,animations);
+    /**
+     * Returns the number of animations in the pool
+     */
+    public static int getAnimationCount() { return animationPool.size(); }
 
-        return animations;
+    /**
+     * Returns the atlas holding the frames of all the created animations
+     */
+    public static TextureAtlas getAtlas()
+    {
+        return atlas;
     }
 
     /**
-     * Splits a spritesheet image into a matrix of image resources where each row corresponds to a specific animation
+     * Splits a spritesheet image into a matrix of image resources where each row corresponds to a specific animation.
+     * The frames are not packed into the atlas or stored in the pool. Frames of a sheet from the
+     * {@link org.engine.resources.AssetPack} view the mapped pixels, they are only copied when packed
      */
-    private static  ImageResource[][] getTiles(String path,AnimationInformation[] info)
+    static  ImageResource[][] getTiles(String path,AnimationInformation[] info)
     {
 
         ImageResource[][] images;
-        URL url = ImageResource.class.getResource(path); //this way path is relative to java project
-        //open spritesheet
-        BufferedImage tempImage = null;
 
-        BufferedImage subImage = null;
+        //open spritesheet
+        ImageResource sheet = readImage(path);
 
         images = new ImageResource[info.length][];
 
-        try
-        {
-            tempImage = ImageIO.read(url);
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-        }
-
         for (int i = 0; i < info.length; i++)
         {
             //allocate animation
@@ -112,19 +174,21 @@ public class Animator
 
             for (int j = 0; j < info[i].frames; j++)
             {
-                if (tempImage != null)
-                {
-                    subImage = tempImage.getSubimage(j * info[0].tileWidth, i * info[0].tileHeight,  info[0].tileWidth,  info[0].tileHeight);
-                }
-
-                if (subImage != null)
-                    subImage.flush();
-
-                assert subImage != null;
-                images[i][j] = new ImageResource(subImage);
-
+                images[i][j] = sheet.getRegion(j * info[0].tileWidth, i * info[0].tileHeight,  info[0].tileWidth,  info[0].tileHeight);
             }
         }
         return images;
     }
+
+    /**
+     * Returns a sprite sheet, taken from the {@link AssetManager} so a sheet that was already decoded (e.g. by the
+     * {@link org.engine.resources.Preloader}) is not read again. The sheet is only needed until its frames are packed,
+     * so the reference is given back right away
+     */
+    private static ImageResource readImage(String path)
+    {
+        ImageResource image = AssetManager.acquireImage(path);
+        AssetManager.release(path);
+        return image;
+    }
 }
@@ -0,0 +1,21 @@
+package org.engine.graphics;
+
+import java.nio.FloatBuffer;
+
+/**
+ *  Receives the batches of quads collected by a {@link SpriteBatch}.
+ *  The game uses an OpenGL implementation ({@link GLBatchSubmitter}), but any other implementation can be plugged in,
+ *  for example one that simply records the batches it receives, which allows checking the batching logic without a window.
+ */
+public interface BatchSubmitter
+{
+    /**
+     * Draws a batch of quads sharing the same texture.
+     * The vertex data is laid out as {@link SpriteBatch#FLOATS_PER_VERTEX} floats per vertex (x, y, u, v, r, g, b, a),
+     * four vertices per quad. It is only valid for the duration of the call.
+     * @param texture OpenGL texture object name, 0 for untextured quads
+     * @param vertices vertex data, positioned at 0 and limited to the end of the batch
+     * @param quadCount number of quads in the batch
+     */
+    void submit(int texture, FloatBuffer vertices, int quadCount);
+}
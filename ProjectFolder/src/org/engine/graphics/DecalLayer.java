@@ -0,0 +1,347 @@
+package org.engine.graphics;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.texture.Texture;
+import org.engine.resources.ImageResource;
+
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  Keeps images that no longer change (the bodies of dead enemies, for example) painted onto the ground, so they cost
+ *  nothing per update and a single quad per region of the ground to draw, however many of them there are.
+ *  The ground is split into square regions of {@link #REGION_SIZE} units, and every image added is composited right away
+ *  into the pixels of the regions it covers. Each region is uploaded as one texture, again only when something was added
+ *  to it, and drawn right after the terrain, below every game object.
+ *  The number of decals kept is capped (see {@link #setLimit(int)}): when it is exceeded the oldest decals are dropped, a
+ *  quarter of the limit at a time, and the regions they covered are composited again from the decals left.
+ */
+public class DecalLayer
+{
+    /**
+     * Width/height of a region, in world units (which are also the pixels of the images)
+     */
+    public static final int REGION_SIZE = 256;
+
+    /**
+     * Default number of decals kept
+     */
+    public static final int DEFAULT_LIMIT = 256;
+
+    /**
+     * An image added to the layer, kept so that its regions can be composited again once older decals are dropped
+     */
+    private static class Decal
+    {
+        /**
+         * Pixels as they are composited, already scaled and flipped
+         */
+        final int[] pixels;
+
+        /**
+         * Top left corner and size, in world units
+         */
+        final int left, top, width, height;
+
+        Decal(int[] pixels, int left, int top, int width, int height)
+        {
+            this.pixels = pixels;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * The composited pixels of a region of the ground and their texture
+     */
+    private static class Region
+    {
+        final int column, row;
+
+        /**
+         * Pixels in ARGB order, like the {@link TextureAtlas} pages
+         */
+        final int[] pixels = new int[REGION_SIZE * REGION_SIZE];
+
+        Texture texture = null;
+        boolean dirty = true;
+
+        /**
+         * Number of decals covering the region
+         */
+        int decals = 0;
+
+        Region(int column, int row)
+        {
+            this.column = column;
+            this.row = row;
+        }
+    }
+
+    private final ArrayDeque<Decal> decals = new ArrayDeque<>();
+
+    /**
+     * Regions covered by at least one decal, by column and row
+     */
+    private final Map<Long, Region> regions = new HashMap<>();
+
+    private int limit = DEFAULT_LIMIT;
+
+    /**
+     * Direct buffer the pixels of a region are copied into before being sent, created on first upload
+     */
+    private IntBuffer staging = null;
+
+    /**
+     * Paints an image onto the ground, where {@link Renderer#drawImage(ImageResource, float, float, float, float, boolean)}
+     * would draw it with the same arguments
+     * @param image image to be painted, its pixels are copied so it can be released afterwards
+     * @param width width the image is drawn with
+     * @param height height the image is drawn with
+     * @param x coordinate of the image's centre
+     * @param y ditto
+     * @param flip horizontal flip
+     * @return false if the image holds no pixels, in which case nothing was painted
+     */
+    public synchronized boolean add(ImageResource image, float width, float height, float x, float y, boolean flip)
+    {
+        int imageWidth = (int) image.getWidth(), imageHeight = (int) image.getHeight();
+        int decalWidth = (int) width, decalHeight = (int) height;
+        if(imageWidth <= 0 || imageHeight <= 0 || decalWidth <= 0 || decalHeight <= 0)
+            return false;
+
+        int[] source = new int[imageWidth * imageHeight];
+        if(!image.copyPixels(source, 0, imageWidth))
+            return false;
+
+        //scale (nearest pixel) and flip once, so compositing is a straight copy
+        int[] pixels = source;
+        if(flip || decalWidth != imageWidth || decalHeight != imageHeight)
+        {
+            pixels = new int[decalWidth * decalHeight];
+            for(int row = 0; row < decalHeight; row++)
+            {
+                int sourceRow = row * imageHeight / decalHeight * imageWidth;
+                for(int column = 0; column < decalWidth; column++)
+                {
+                    int sourceColumn = column * imageWidth / decalWidth;
+                    pixels[row * decalWidth + (flip ? decalWidth - 1 - column : column)] = source[sourceRow + sourceColumn];
+                }
+            }
+        }
+
+        Decal decal = new Decal(pixels, Math.round(x - width / 2), Math.round(y - height / 2), decalWidth, decalHeight);
+        decals.add(decal);
+
+        for(int row = Math.floorDiv(decal.top, REGION_SIZE); row <= Math.floorDiv(decal.top + decal.height - 1, REGION_SIZE); row++)
+            for(int column = Math.floorDiv(decal.left, REGION_SIZE); column <= Math.floorDiv(decal.left + decal.width - 1, REGION_SIZE); column++)
+            {
+                Region region = regions.get(key(column, row));
+                if(region == null)
+                {
+                    region = new Region(column, row);
+                    regions.put(key(column, row), region);
+                }
+                region.decals++;
+                composite(decal, region);
+            }
+
+        if(decals.size() > limit)
+            evict(limit - limit / 4);
+
+        return true;
+    }
+
+    /**
+     * Drops the oldest decals until the given number is left, then composites the regions they covered again
+     */
+    private void evict(int keep)
+    {
+        HashMap<Long, Region> outdated = new HashMap<>();
+
+        while(decals.size() > keep)
+        {
+            Decal decal = decals.poll();
+            for(int row = Math.floorDiv(decal.top, REGION_SIZE); row <= Math.floorDiv(decal.top + decal.height - 1, REGION_SIZE); row++)
+                for(int column = Math.floorDiv(decal.left, REGION_SIZE); column <= Math.floorDiv(decal.left + decal.width - 1, REGION_SIZE); column++)
+                {
+                    Region region = regions.get(key(column, row));
+                    region.decals--;
+                    outdated.put(key(column, row), region);
+                }
+        }
+
+        for(Map.Entry<Long, Region> entry : outdated.entrySet())
+        {
+            Region region = entry.getValue();
+            if(region.decals == 0)
+            {
+                regions.remove(entry.getKey());
+                if(region.texture != null)
+                    Renderer.releaseTexture(region.texture);
+                continue;
+            }
+
+            Arrays.fill(region.pixels, 0);
+            for(Decal decal : decals)
+                composite(decal, region);
+        }
+    }
+
+    /**
+     * Blends the pixels of a decal over those of a region, skipping the part of the decal outside of the region
+     */
+    private static void composite(Decal decal, Region region)
+    {
+        int regionLeft = region.column * REGION_SIZE, regionTop = region.row * REGION_SIZE;
+
+        int left = Math.max(decal.left, regionLeft), right = Math.min(decal.left + decal.width, regionLeft + REGION_SIZE);
+        int top = Math.max(decal.top, regionTop), bottom = Math.min(decal.top + decal.height, regionTop + REGION_SIZE);
+        if(left >= right || top >= bottom)
+            return;
+
+        for(int y = top; y < bottom; y++)
+        {
+            int source = (y - decal.top) * decal.width + left - decal.left;
+            int destination = (y - regionTop) * REGION_SIZE + left - regionLeft;
+            for(int x = left; x < right; x++, source++, destination++)
+                region.pixels[destination] = blend(decal.pixels[source], region.pixels[destination]);
+        }
+
+        region.dirty = true;
+    }
+
+    /**
+     * Draws an ARGB pixel over another one, the way OpenGL blends the sprites drawn over each other
+     */
+    private static int blend(int source, int destination)
+    {
+        int sourceAlpha = source >>> 24;
+        if(sourceAlpha == 255)
+            return source;
+        if(sourceAlpha == 0)
+            return destination;
+
+        int destinationAlpha = (destination >>> 24) * (255 - sourceAlpha) / 255;
+        int alpha = sourceAlpha + destinationAlpha;
+
+        int red = (((source >> 16) & 0xff) * sourceAlpha + ((destination >> 16) & 0xff) * destinationAlpha) / alpha;
+        int green = (((source >> 8) & 0xff) * sourceAlpha + ((destination >> 8) & 0xff) * destinationAlpha) / alpha;
+        int blue = ((source & 0xff) * sourceAlpha + (destination & 0xff) * destinationAlpha) / alpha;
+
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static long key(int column, int row)
+    {
+        return (long) column << 32 | (row & 0xffffffffL);
+    }
+
+    /**
+     * Draws the regions in view, uploading those that changed since they were last drawn. Must be called on the rendering
+     * thread
+     */
+    public synchronized void render()
+    {
+        for(Region region : regions.values())
+        {
+            float x = region.column * REGION_SIZE + REGION_SIZE / 2f;
+            float y = region.row * REGION_SIZE + REGION_SIZE / 2f;
+
+            //same culling as Renderer.drawImage
+            if(x - REGION_SIZE / 2f > Renderer.unitsWide / 2f + Renderer.drawCameraX
+                    || x + REGION_SIZE / 2f < -Renderer.unitsWide / 2f + Renderer.drawCameraX)
+                continue;
+            if(y - REGION_SIZE / 2f > Renderer.unitsHigh / 2f + Renderer.drawCameraY
+                    || y + REGION_SIZE / 2f < -Renderer.unitsHigh / 2f + Renderer.drawCameraY)
+                continue;
+
+            if(region.texture == null || region.dirty)
+                upload(EventListener.gl, region);
+
+            Renderer.batch.draw(region.texture.getTextureObject(), x, y, REGION_SIZE, REGION_SIZE, 0, 0, 1, 1,
+                    false, 0, 1, 1, 1, 1);
+        }
+    }
+
+    /**
+     * Sends the pixels of a region to its texture, creating the texture first if needed
+     */
+    private void upload(GL2 gl, Region region)
+    {
+        if(region.texture == null)
+        {
+            int[] names = new int[1];
+            gl.glGenTextures(1, names, 0);
+
+            gl.glBindTexture(GL2.GL_TEXTURE_2D, names[0]);
+            gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST);
+            gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+            gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_RGBA8, REGION_SIZE, REGION_SIZE, 0,
+                    GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, null);
+            gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+
+            region.texture = new Texture(names[0], GL2.GL_TEXTURE_2D, REGION_SIZE, REGION_SIZE, REGION_SIZE, REGION_SIZE, false);
+        }
+
+        if(staging == null)
+            staging = Buffers.newDirectIntBuffer(REGION_SIZE * REGION_SIZE);
+
+        //ARGB ints, which OpenGL reads as reversed packed BGRA whatever the byte order (see TextureAtlas)
+        staging.clear();
+        staging.put(region.pixels);
+        staging.flip();
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, region.texture.getTextureObject());
+        gl.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, 0, REGION_SIZE, REGION_SIZE,
+                GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, staging);
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+
+        region.dirty = false;
+    }
+
+    /**
+     * Drops every decal and gives back the textures of the regions, can be called from any thread
+     */
+    public synchronized void dispose()
+    {
+        for(Region region : regions.values())
+            if(region.texture != null)
+                Renderer.releaseTexture(region.texture);
+
+        regions.clear();
+        decals.clear();
+    }
+
+    /**
+     * Sets the number of decals kept, dropping the oldest ones right away if there are more
+     * @param limit maximum number of decals, at least 1
+     */
+    public synchronized void setLimit(int limit)
+    {
+        this.limit = Math.max(1, limit);
+        if(decals.size() > this.limit)
+            evict(this.limit);
+    }
+
+    /**
+     * Returns the number of decals kept at most
+     */
+    public synchronized int getLimit() { return limit; }
+
+    /**
+     * Returns the number of decals currently painted
+     */
+    public synchronized int getDecalCount() { return decals.size(); }
+
+    /**
+     * Returns the number of regions of the ground holding at least one decal, each drawn as a single quad
+     */
+    public synchronized int getRegionCount() { return regions.size(); }
+}
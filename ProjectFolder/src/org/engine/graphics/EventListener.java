@@ -51,13 +51,16 @@ public class EventListener implements GLEventListener
     @Override
     public void display(GLAutoDrawable drawable)
     {
+        Renderer.destroyReleasedTextures();
+        Renderer.uploadTextures();
         gl.glClear(GL2.GL_COLOR_BUFFER_BIT);
-        gl.glTranslatef(-Renderer.cameraX,-Renderer.cameraY,0); //offset by camera
+        gl.glTranslatef(-Renderer.drawCameraX,-Renderer.drawCameraY,0); //offset by camera
         if(GameLoop.getState() == GameLoop.STATES.GAME)
              GameLoop.getWorld().render();
         else
             MainMenu.render();
-        gl.glTranslatef(Renderer.cameraX,Renderer.cameraY,0); //undo offset*/
+        Renderer.batch.endFrame(); //draw whatever is left in the sprite batch while the camera offset still applies
+        gl.glTranslatef(Renderer.drawCameraX,Renderer.drawCameraY,0); //undo offset*/
     }
 
     /**
@@ -0,0 +1,58 @@
+package org.engine.graphics;
+
+import com.jogamp.opengl.GL2;
+
+import java.nio.FloatBuffer;
+
+/**
+ *  Draws the batches collected by a {@link SpriteBatch} with OpenGL.
+ *  The vertex data of each batch is streamed into a single vertex buffer object and drawn with one glDrawArrays call.
+ *  Must only be used on the rendering thread, while the GL context is current.
+ */
+class GLBatchSubmitter implements BatchSubmitter
+{
+    private static final int STRIDE = SpriteBatch.FLOATS_PER_VERTEX * Float.BYTES;
+
+    /**
+     * Name of the vertex buffer object, created lazily on first use
+     */
+    private int vbo = 0;
+
+    @Override
+    public void submit(int texture, FloatBuffer vertices, int quadCount)
+    {
+        GL2 gl = EventListener.gl;
+
+        if(vbo == 0)
+        {
+            int[] buffers = new int[1];
+            gl.glGenBuffers(1, buffers, 0);
+            vbo = buffers[0];
+        }
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, texture);
+        if(texture != 0)
+            gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+
+        gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vbo);
+        //orphan the previous contents so the driver does not have to wait for the last draw to finish
+        gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) vertices.remaining() * Float.BYTES, vertices, GL2.GL_STREAM_DRAW);
+
+        gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+
+        gl.glVertexPointer(2, GL2.GL_FLOAT, STRIDE, 0);
+        gl.glTexCoordPointer(2, GL2.GL_FLOAT, STRIDE, 2 * Float.BYTES);
+        gl.glColorPointer(4, GL2.GL_FLOAT, STRIDE, 4 * Float.BYTES);
+
+        gl.glDrawArrays(GL2.GL_QUADS, 0, quadCount * 4);
+
+        gl.glDisableClientState(GL2.GL_COLOR_ARRAY);
+        gl.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
+        gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+
+        gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+    }
+}
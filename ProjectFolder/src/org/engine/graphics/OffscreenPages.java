@@ -0,0 +1,239 @@
+package org.engine.graphics;
+
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.texture.Texture;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  Textures that parts of the scene which rarely change are drawn into once, then drawn from as single quads.
+ *  Each page covers a rectangle of the world given when it is drawn into: everything drawn between {@link #begin(int,
+ *  float, float, float, float)} and {@link #end()} goes (through the usual {@link Renderer} calls) into the page instead
+ *  of the screen, one unit of the world per pixel, and {@link #draw(int)} then puts the page back where it was drawn.
+ *  All pages are drawn into through a single framebuffer object, the page's texture being attached to it in turn.
+ *  When framebuffer objects are not available begin returns false, and callers should draw directly as they did before.
+ *  Only the pages drawn into are kept, so a set of pages can be as large as needed.
+ *  Must be used on the rendering thread.
+ */
+public class OffscreenPages
+{
+    /**
+     * A page's texture and the rectangle of the world it holds
+     */
+    private static class Page
+    {
+        Texture texture = null;
+        int width, height;
+        float left, top, right, bottom;
+    }
+
+    /**
+     * Framebuffer object shared by all pages, created on first use
+     */
+    private static int framebuffer = 0;
+
+    private final ConcurrentHashMap<Integer, Page> pages = new ConcurrentHashMap<>();
+    private final int count;
+
+    /**
+     * Page being drawn into, null outside of begin/end
+     */
+    private Page active = null;
+
+    //state saved by begin and put back by end
+    private final int[] viewport = new int[4];
+    private float savedCameraX, savedCameraY;
+    private int savedUnitsWide, savedUnitsHigh;
+
+    /**
+     * Creates a set of empty pages, each created the first time it is drawn into
+     * @param count number of pages
+     */
+    public OffscreenPages(int count)
+    {
+        this.count = count;
+    }
+
+    /**
+     * Starts drawing into a page, replacing its contents. Quads drawn so far are submitted to the screen first
+     * @param page index of the page
+     * @param left left edge of the rectangle of the world held by the page
+     * @param top top edge
+     * @param right right edge
+     * @param bottom bottom edge
+     * @return false if the page cannot be drawn into (no framebuffer objects, empty rectangle), nothing was changed then
+     */
+    public boolean begin(int page, float left, float top, float right, float bottom)
+    {
+        GL2 gl = EventListener.gl;
+        int width = (int) Math.ceil(right - left), height = (int) Math.ceil(bottom - top);
+
+        if(gl == null || active != null || width <= 0 || height <= 0 || !gl.isFunctionAvailable("glGenFramebuffers"))
+            return false;
+
+        Renderer.flush();
+
+        Page target = pages.computeIfAbsent(page, key -> new Page());
+        if(target.texture == null || target.width != width || target.height != height)
+            createTexture(gl, target, width, height);
+
+        if(framebuffer == 0)
+        {
+            int[] names = new int[1];
+            gl.glGenFramebuffers(1, names, 0);
+            framebuffer = names[0];
+        }
+
+        gl.glBindFramebuffer(GL2.GL_FRAMEBUFFER, framebuffer);
+        gl.glFramebufferTexture2D(GL2.GL_FRAMEBUFFER, GL2.GL_COLOR_ATTACHMENT0, GL2.GL_TEXTURE_2D,
+                target.texture.getTextureObject(), 0);
+        if(gl.glCheckFramebufferStatus(GL2.GL_FRAMEBUFFER) != GL2.GL_FRAMEBUFFER_COMPLETE)
+        {
+            gl.glBindFramebuffer(GL2.GL_FRAMEBUFFER, 0);
+            return false;
+        }
+
+        target.left = left;
+        target.top = top;
+        target.right = left + width;
+        target.bottom = top + height;
+        active = target;
+
+        //one unit per pixel, with the page's rectangle filling the viewport (y pointing down, like on screen)
+        gl.glGetIntegerv(GL2.GL_VIEWPORT, viewport, 0);
+        gl.glViewport(0, 0, width, height);
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+        gl.glOrtho(target.left, target.right, target.bottom, target.top, -1, 1);
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+
+        gl.glClearColor(0, 0, 0, 0);
+        gl.glClear(GL2.GL_COLOR_BUFFER_BIT);
+        gl.glClearColor(0, 0, 0, 1);
+
+        //keep the page's alpha as it would be on screen, so it can be blended over the screen later
+        gl.glBlendFuncSeparate(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA, GL2.GL_ONE, GL2.GL_ONE_MINUS_SRC_ALPHA);
+
+        //the renderer culls against the camera the frame is drawn with, which now has to cover the page
+        savedCameraX = Renderer.drawCameraX;
+        savedCameraY = Renderer.drawCameraY;
+        savedUnitsWide = Renderer.unitsWide;
+        savedUnitsHigh = Renderer.unitsHigh;
+        Renderer.drawCameraX = (target.left + target.right) / 2;
+        Renderer.drawCameraY = (target.top + target.bottom) / 2;
+        Renderer.unitsWide = width;
+        Renderer.unitsHigh = height;
+
+        return true;
+    }
+
+    /**
+     * Ends drawing into the page started by {@link #begin(int, float, float, float, float)} and goes back to drawing on
+     * screen
+     */
+    public void end()
+    {
+        if(active == null)
+            return;
+
+        GL2 gl = EventListener.gl;
+        Renderer.flush();
+
+        Renderer.drawCameraX = savedCameraX;
+        Renderer.drawCameraY = savedCameraY;
+        Renderer.unitsWide = savedUnitsWide;
+        Renderer.unitsHigh = savedUnitsHigh;
+
+        gl.glBlendFunc(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA);
+
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPopMatrix();
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+        gl.glPopMatrix();
+        gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+
+        gl.glBindFramebuffer(GL2.GL_FRAMEBUFFER, 0);
+        active = null;
+    }
+
+    /**
+     * Draws a page at the rectangle of the world it holds, unless the rectangle is out of view
+     * @param page index of the page
+     * @return false if nothing was ever drawn into the page
+     */
+    public boolean draw(int page)
+    {
+        Page source = pages.get(page);
+        if(source == null || source.texture == null)
+            return false;
+
+        //same culling as Renderer.drawImage
+        if(source.left > Renderer.unitsWide / 2f + Renderer.drawCameraX || source.right < -Renderer.unitsWide / 2f + Renderer.drawCameraX
+                || source.top > Renderer.unitsHigh / 2f + Renderer.drawCameraY || source.bottom < -Renderer.unitsHigh / 2f + Renderer.drawCameraY)
+            return true;
+
+        //the first row of the texture is the bottom of the page
+        Renderer.batch.draw(source.texture.getTextureObject(), (source.left + source.right) / 2, (source.top + source.bottom) / 2,
+                source.width, source.height, 0, 1, 1, 0, false, 0, 1, 1, 1, 1);
+        return true;
+    }
+
+    /**
+     * Creates (or replaces) the texture of a page, with the given size
+     */
+    private static void createTexture(GL2 gl, Page page, int width, int height)
+    {
+        if(page.texture != null)
+            Renderer.releaseTexture(page.texture);
+
+        int[] names = new int[1];
+        gl.glGenTextures(1, names, 0);
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, names[0]);
+        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST);
+        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+        gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_RGBA8, width, height, 0,
+                GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, null);
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+
+        page.texture = new Texture(names[0], GL2.GL_TEXTURE_2D, width, height, width, height, false);
+        page.width = width;
+        page.height = height;
+    }
+
+    /**
+     * Gives back the texture of a page, which is empty afterwards
+     * @param page index of the page
+     */
+    public void release(int page)
+    {
+        Page target = pages.get(page);
+        if(target == null || target == active)
+            return;
+
+        if(target.texture != null)
+            Renderer.releaseTexture(target.texture);
+        pages.remove(page);
+    }
+
+    /**
+     * Gives back the textures of the pages, can be called from any thread
+     */
+    public void dispose()
+    {
+        for(Page page : pages.values())
+            if(page.texture != null)
+            {
+                Renderer.releaseTexture(page.texture);
+                page.texture = null;
+            }
+    }
+
+    /**
+     * Returns the number of pages
+     */
+    public int getPageCount() { return count; }
+}
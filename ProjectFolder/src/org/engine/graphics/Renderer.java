@@ -5,7 +5,6 @@ import com.jogamp.newt.event.WindowEvent;
 import com.jogamp.newt.event.WindowListener;
 import com.jogamp.newt.event.WindowUpdateEvent;
 import com.jogamp.newt.opengl.GLWindow;
-import com.jogamp.opengl.GL2;
 import com.jogamp.opengl.GLCapabilities;
 import com.jogamp.opengl.GLProfile;
 import com.jogamp.opengl.util.awt.TextRenderer;
@@ -14,11 +13,14 @@ import org.engine.GameLoop;
 import org.engine.input.KeyInput;
 import org.engine.input.MouseInput;
 import org.engine.resources.ImageResource;
+import org.engine.resources.Preloader;
 import org.world.tiles.Tile;
 
 import java.awt.*;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Handles the creation of the game frame, the initialization of some related OpenGL objects and provides useful functions for
@@ -39,10 +41,22 @@ public class Renderer
     public static int unitsWide = 320, unitsHigh = 180, scale = 6;
 
     /**
-     * Camera coordinates, provide a moving camera functionality
+     * Camera coordinates, provide a moving camera functionality. Moved by the updates (ticks)
      */
     public static float cameraX ,cameraY = 0;
 
+    /**
+     * Coordinates of the camera the current frame is drawn with: the camera between its previous and current position,
+     * set once per frame by {@link #render()}. Read instead of the camera while drawing, which leaves the camera to the
+     * updates
+     */
+    public static float drawCameraX, drawCameraY = 0;
+
+    /**
+     * Camera coordinates at the start of the current tick, used to draw the camera between ticks
+     */
+    private static float previousCameraX, previousCameraY;
+
     /**
      *  Color parameters used when rendering
      */
@@ -64,8 +78,34 @@ public class Renderer
     private static float rotation = 0f;
 
 
+    /**
+     * Font used for all text
+     */
+    public static final String FONT_PATH = "/resources/Fonts/8bit.ttf";
+
+    /**
+     * The font in each size, indexed by the font size constants. Null until loaded
+     */
+    private static volatile Font[] fonts = null;
+
     private static TextRenderer smallTextRenderer = null, mediumTextRenderer = null, largeTextRenderer = null;
 
+    /**
+     * Collects all the quads drawn during a frame so they can be drawn with as few draw calls as possible
+     */
+    static final SpriteBatch batch = new SpriteBatch(new GLBatchSubmitter());
+
+    /**
+     * Textures no longer needed, destroyed at the start of the next frame since that can only be done on the rendering thread
+     */
+    private static final Queue<Texture> releasedTextures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Maximum amount of texture data uploaded at the start of each frame, in bytes. Spreads the upload of newly loaded
+     * images over several frames instead of stalling a single one
+     */
+    public static final int UPLOAD_BUDGET = 1 << 20;
+
     /**
      *  Initializes the window and some OpenGL objects
      * @throws IllegalStateException  fatal error, prints stack trace and exits,
@@ -154,31 +194,16 @@ public class Renderer
     public static void fillRect(float x, float y, float width, float height)
     {
         //don't render if too far left or too far right
-        if((x-width/2 > Renderer.unitsWide /2f + Renderer.cameraX)
-                || (x+width/2 < -Renderer.unitsWide /2f + Renderer.cameraX ))
+        if((x-width/2 > Renderer.unitsWide /2f + Renderer.drawCameraX)
+                || (x+width/2 < -Renderer.unitsWide /2f + Renderer.drawCameraX ))
             return;
 
         //don't render if too high or low
-        if(y-height/2 > Renderer.unitsHigh /2f + Renderer.cameraY
-                || y+height/2 < -Renderer.unitsHigh /2f + Renderer.cameraY )
+        if(y-height/2 > Renderer.unitsHigh /2f + Renderer.drawCameraY
+                || y+height/2 < -Renderer.unitsHigh /2f + Renderer.drawCameraY )
             return;
 
-        GL2 gl = EventListener.gl;
-
-        gl.glTranslatef(x,y,0);
-        gl.glRotatef(rotation,0,0,1); //rotate around z
-
-        gl.glColor4f(red,green,blue,alpha);
-        gl.glBegin(GL2.GL_QUADS);
-        gl.glVertex2f(-width/2,-height/2);
-        gl.glVertex2f(-width/2,+height/2);
-        gl.glVertex2f(+width/2,+height/2);
-        gl.glVertex2f(+width/2,-height/2);
-        gl.glEnd();
-        gl.glFlush();
-
-        gl.glRotatef(-rotation,0,0,1); //rotate back
-        gl.glTranslatef(-x,-y,0);
+        batch.draw(0, x, y, width, height, 0, 0, 1, 1, false, rotation, red, green, blue, alpha);
     }
 
     /**
@@ -193,73 +218,46 @@ public class Renderer
     public static void drawImage(ImageResource image , float width, float height, float x, float y, boolean flip)
     {
         //don't render if too far left or too far right
-        if((x-width/2 > Renderer.unitsWide /2f + Renderer.cameraX)
-                || (x+width/2 < -Renderer.unitsWide /2f + Renderer.cameraX ))
+        if((x-width/2 > Renderer.unitsWide /2f + Renderer.drawCameraX)
+                || (x+width/2 < -Renderer.unitsWide /2f + Renderer.drawCameraX ))
         {return;}
 
         //don't render if too high or low
-        if(y-height/2 > Renderer.unitsHigh /2f + Renderer.cameraY
-                || y+height/2 < -Renderer.unitsHigh /2f + Renderer.cameraY )
+        if(y-height/2 > Renderer.unitsHigh /2f + Renderer.drawCameraY
+                || y+height/2 < -Renderer.unitsHigh /2f + Renderer.drawCameraY )
             return;
 
-        GL2 gl = EventListener.gl;
-
         Texture texture = image.getTexture();
 
-        //bind texture to openGL
-        if(texture != null)
-        {
-            gl.glBindTexture(GL2.GL_TEXTURE_2D,texture.getTextureObject());
-        }
-        gl.glTexParameteri(GL2.GL_TEXTURE_2D,GL2.GL_TEXTURE_MAG_FILTER,GL2.GL_NEAREST);
-
-        gl.glTranslatef(x,y,0);
-        gl.glRotatef(rotation,0,0,1); //rotate around z
-
-        gl.glColor4f(red, green, blue, alpha);
-        gl.glBegin(GL2.GL_QUADS);
-
-        if(flip)
-        {
-            gl.glTexCoord2f(1, 0);
-            gl.glVertex2f(-width / 2, -height / 2);
-            gl.glTexCoord2f(1, 1);
-            gl.glVertex2f(-width / 2, height / 2);
-            gl.glTexCoord2f(0, 1);
-            gl.glVertex2f(width / 2, height / 2);
-            gl.glTexCoord2f(0, 0);
-        }
-        else
-        {
-            gl.glTexCoord2i(0, 0);
-            gl.glVertex2f(-width / 2, -height / 2);
-            gl.glTexCoord2f(0, 1);
-            gl.glVertex2f(-width / 2, height / 2);
-            gl.glTexCoord2f(1, 1);
-            gl.glVertex2f(width / 2, height / 2);
-            gl.glTexCoord2f(1, 0);
-        }
-        gl.glVertex2f(width / 2, -height / 2);
-
-        gl.glEnd();
-        gl.glFlush();
-
-        //unbind texture
-        gl.glBindTexture(GL2.GL_TEXTURE_2D,0);
-
-        gl.glRotatef(-rotation,0,0,1); //rotate back
-        gl.glTranslatef(-x,-y,0);
+        batch.draw(texture != null ? texture.getTextureObject() : 0, x, y, width, height,
+                image.getU0(), image.getV0(), image.getU1(), image.getV1(), flip, rotation, red, green, blue, alpha);
     }
 
+    /**
+     *  Submits every quad drawn so far. Called at the end of each frame, and before anything that draws without going through
+     *  the sprite batch so that the drawing order is preserved
+     */
+    public static void flush()
+    {
+        batch.flush();
+    }
 
-    //load the required font when necessary
-    private static void loadFont()
+    /**
+     * Loads the three sizes of the game's font, unless they are loaded already. Called when the first text is drawn if
+     * nothing loaded the font before, and by the {@link org.engine.resources.Preloader} from one of its threads so that
+     * the first frame drawing text does not have to read it
+     * @param path path of the TrueType font file, relative to the game folder
+     */
+    public static synchronized void loadFonts(String path)
     {
+        if(fonts != null)
+            return;
+
         URL fontUrl;
         try
         {
             Font smallFont,mediumFont,largeFont;
-            fontUrl = Renderer.class.getResource("/resources/Fonts/8bit.ttf");
+            fontUrl = Renderer.class.getResource(path);
             Font font = Font.createFont(Font.TRUETYPE_FONT, fontUrl.openStream());
             font = font.deriveFont(Font.PLAIN,10);
             GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
@@ -277,14 +275,8 @@ public class Renderer
             ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
             ge.registerFont(font);
             largeFont = font;
-            smallTextRenderer = new TextRenderer(smallFont);
-            mediumTextRenderer = new TextRenderer(mediumFont);
-            largeTextRenderer = new TextRenderer(largeFont);
-
-            SMALL_FONT_WIDTH = (int) smallTextRenderer.getCharWidth('A');
-            MEDIUM_FONT_WIDTH = (int) mediumTextRenderer.getCharWidth('A');
-            LARGE_FONT_WIDTH = (int) largeTextRenderer.getCharWidth('A');
 
+            fonts = new Font[]{smallFont, mediumFont, largeFont};
         }
         catch (FontFormatException | IOException e)
         {
@@ -292,6 +284,22 @@ public class Renderer
         }
     }
 
+    //create the text renderers when first needed, they can only be created on the rendering thread
+    private static void createTextRenderers()
+    {
+        loadFonts(FONT_PATH);
+        if(fonts == null)
+            return;
+
+        smallTextRenderer = new TextRenderer(fonts[SMALL_FONT]);
+        mediumTextRenderer = new TextRenderer(fonts[MEDIUM_FONT]);
+        largeTextRenderer = new TextRenderer(fonts[LARGE_FONT]);
+
+        SMALL_FONT_WIDTH = (int) smallTextRenderer.getCharWidth('A');
+        MEDIUM_FONT_WIDTH = (int) mediumTextRenderer.getCharWidth('A');
+        LARGE_FONT_WIDTH = (int) largeTextRenderer.getCharWidth('A');
+    }
+
     /**TODO
      *   Add support for text boxes/paragraphs
      *
@@ -309,6 +317,14 @@ public class Renderer
     {
         TextRenderer textRenderer;
 
+        if(largeTextRenderer == null)
+        {
+            //rather than waiting for the preloader to read the font, skip the text until it has
+            if(fonts == null && Preloader.isLoading())
+                return;
+            createTextRenderers();
+        }
+
         if(textSize == MEDIUM_FONT)
             textRenderer = mediumTextRenderer;
         else if(textSize == LARGE_FONT)
@@ -317,15 +333,10 @@ public class Renderer
             textRenderer = smallTextRenderer;
 
         if(textRenderer == null)
-        {
-            loadFont();
-            if(textSize == MEDIUM_FONT)
-                textRenderer = mediumTextRenderer;
-            else if(textSize == LARGE_FONT)
-                textRenderer = largeTextRenderer;
-            else
-                textRenderer = smallTextRenderer;
-        }
+            return;
+
+        //text is drawn directly, so everything drawn before it has to reach the screen first
+        flush();
 
         setColor(r,g,b,a);
         textRenderer.beginRendering(Renderer.unitsWide,Renderer.unitsHigh);
@@ -362,6 +373,21 @@ public class Renderer
     {
         int[] isometricCoords = new int[2];
 
+        isometricCoords[0] = isoX(x, y);
+        isometricCoords[1] = isoY(x, y);
+
+        return isometricCoords;
+    }
+
+    /**
+     * Computes only the isometric x coordinate from the regular x/y coordinates.
+     * Does not allocate, so it is preferred over {@link #IsoCoordinates(double, double)} in code that runs many times per update
+     * @param x coordinate on the x axis
+     * @param y coordinate on the y axis
+     * @return the isometric x coordinate
+     */
+    public static int isoX(double x, double y)
+    {
         //=============// CALCULATE NEW ISOMETRIC X //============================//
         double tempX = x ;
 
@@ -380,13 +406,21 @@ public class Renderer
             xRot -= Tile.OFFSET;
         }
 
-        isometricCoords[0] = (int) (xRot / Tile.OFFSET);
-
-        //========================================================================//
+        return (int) (xRot / Tile.OFFSET);
+    }
 
+    /**
+     * Computes only the isometric y coordinate from the regular x/y coordinates.
+     * Does not allocate, so it is preferred over {@link #IsoCoordinates(double, double)} in code that runs many times per update
+     * @param x coordinate on the x axis
+     * @param y coordinate on the y axis
+     * @return the isometric y coordinate
+     */
+    public static int isoY(double x, double y)
+    {
         //=============// CALCULATE NEW ISOMETRIC Y //============================//
-        tempX = x ;
-        tempY = y - Tile.GROUND_TILE_HEIGHT/2f;
+        double tempX = x ;
+        double tempY = y - Tile.GROUND_TILE_HEIGHT/2f;
 
         //make aspect ratio 1
         tempY = -2 * tempY;
@@ -400,9 +434,7 @@ public class Renderer
             yRot -= Tile.OFFSET;
         }
 
-        isometricCoords[1] = (int) (-yRot / Tile.OFFSET);
-
-        return isometricCoords;
+        return (int) (-yRot / Tile.OFFSET);
     }
 
     /**
@@ -431,15 +463,61 @@ public class Renderer
     {
         if(window == null)
             return;
+
+        //draw with the camera between its previous and current position
+        float alpha = GameLoop.getInterpolationAlpha();
+        drawCameraX = previousCameraX + (cameraX - previousCameraX) * alpha;
+        drawCameraY = previousCameraY + (cameraY - previousCameraY) * alpha;
+
         window.display(); //in EventListener class
     }
 
+    /**
+     * Schedules a texture to be destroyed on the rendering thread, can be called from any thread
+     * @param texture texture that is no longer used
+     */
+    public static void releaseTexture(Texture texture)
+    {
+        releasedTextures.add(texture);
+    }
+
+    /**
+     * Destroys the textures released since the last frame, called by the {@link EventListener} before drawing
+     */
+    static void destroyReleasedTextures()
+    {
+        Texture texture;
+        while((texture = releasedTextures.poll()) != null)
+            texture.destroy(EventListener.gl);
+    }
+
+    /**
+     * Uploads part of the texture data loaded since the last frame, at most {@link #UPLOAD_BUDGET} bytes of it. Called by
+     * the {@link EventListener} before drawing
+     */
+    static void uploadTextures()
+    {
+        Animator.getAtlas().upload(UPLOAD_BUDGET);
+    }
+
+    /**
+     * Saves the current camera position as the previous one, called by the game loop at the start of every tick
+     */
+    public static void saveCamera()
+    {
+        previousCameraX = cameraX;
+        previousCameraY = cameraY;
+    }
+
     /**
      *  Fetches the current width of the window
      * @return width of the window as an integer
      */
     public static int getWindowWidth()
     {
+        //without a window (headless mode) act as if the viewport filled it exactly
+        if(window == null)
+            return unitsWide * scale;
         return window.getWidth();
     }
 
@@ -449,6 +527,8 @@ public class Renderer
      */
     public static int getWindowHeight()
     {
+        if(window == null)
+            return unitsHigh * scale;
         return window.getHeight();
     }
 
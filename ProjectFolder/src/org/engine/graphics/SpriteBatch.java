@@ -0,0 +1,197 @@
+package org.engine.graphics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ *  Collects textured quads into a single vertex buffer so that they can be drawn with as few draw calls as possible.
+ *  Quads are kept in the order they are drawn in, since the game relies on painter's order (and alpha blending) for depth.
+ *  A batch is therefore only submitted when the texture changes, when the buffer is full, or when {@link #flush()} is called
+ *  (at the end of the frame or before anything that bypasses the batch, like text rendering).
+ *  The batch itself never touches OpenGL, it hands the collected data to a {@link BatchSubmitter}.
+ */
+public class SpriteBatch
+{
+    /**
+     * Number of floats making up a vertex: position (2), texture coordinates (2) and colour (4)
+     */
+    public static final int FLOATS_PER_VERTEX = 8;
+
+    /**
+     * Number of floats making up a quad
+     */
+    public static final int FLOATS_PER_QUAD = 4 * FLOATS_PER_VERTEX;
+
+    /**
+     * Default number of quads a batch can hold before being submitted
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final FloatBuffer vertices;
+    private final int capacity;
+
+    private BatchSubmitter submitter;
+
+    /**
+     * Texture of the quads currently in the buffer
+     */
+    private int currentTexture = 0;
+
+    /**
+     * Number of quads currently in the buffer
+     */
+    private int quadCount = 0;
+
+    /**
+     * Statistics, reset at the start of each frame
+     */
+    private int batchesThisFrame = 0, quadsThisFrame = 0;
+
+    /**
+     * Statistics of the last completed frame
+     */
+    private int lastFrameBatches = 0, lastFrameQuads = 0;
+
+    /**
+     * Creates a batch with the default capacity
+     * @param submitter destination of the collected batches
+     */
+    public SpriteBatch(BatchSubmitter submitter)
+    {
+        this(submitter, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a batch holding up to the given number of quads
+     * @param submitter destination of the collected batches
+     * @param capacity maximum number of quads in a batch
+     */
+    public SpriteBatch(BatchSubmitter submitter, int capacity)
+    {
+        this.submitter = submitter;
+        this.capacity = Math.max(1, capacity);
+        vertices = ByteBuffer.allocateDirect(this.capacity * FLOATS_PER_QUAD * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Replaces the destination of the batches. Pending quads are submitted to the old one first
+     * @param submitter new destination
+     */
+    public void setSubmitter(BatchSubmitter submitter)
+    {
+        flush();
+        this.submitter = submitter;
+    }
+
+    /**
+     * Adds a quad to the batch.
+     * The quad is centred at x,y, rotated around its centre and mapped to the u0,v0 - u1,v1 rectangle of the texture.
+     * @param texture OpenGL texture object name, 0 for an untextured quad
+     * @param x horizontal coordinate of the centre
+     * @param y vertical coordinate of the centre
+     * @param width full width of the quad
+     * @param height full height of the quad
+     * @param u0 left texture coordinate
+     * @param v0 top texture coordinate
+     * @param u1 right texture coordinate
+     * @param v1 bottom texture coordinate
+     * @param flip mirror the texture horizontally
+     * @param rotation rotation in degrees
+     * @param r red value (0f to 1f)
+     * @param g green value (0f to 1f)
+     * @param b blue value (0f to 1f)
+     * @param a alpha value (0f to 1f)
+     */
+    public void draw(int texture, float x, float y, float width, float height, float u0, float v0, float u1, float v1,
+                     boolean flip, float rotation, float r, float g, float b, float a)
+    {
+        if(texture != currentTexture || quadCount == capacity)
+        {
+            flush();
+            currentTexture = texture;
+        }
+
+        if(flip)
+        {
+            float swap = u0;
+            u0 = u1;
+            u1 = swap;
+        }
+
+        float halfWidth = width / 2, halfHeight = height / 2;
+
+        float cos = 1, sin = 0;
+        if(rotation != 0)
+        {
+            double radians = Math.toRadians(rotation);
+            cos = (float) Math.cos(radians);
+            sin = (float) Math.sin(radians);
+        }
+
+        //same winding as the old immediate mode quads
+        vertex(x, y, -halfWidth, -halfHeight, cos, sin, u0, v0, r, g, b, a);
+        vertex(x, y, -halfWidth,  halfHeight, cos, sin, u0, v1, r, g, b, a);
+        vertex(x, y,  halfWidth,  halfHeight, cos, sin, u1, v1, r, g, b, a);
+        vertex(x, y,  halfWidth, -halfHeight, cos, sin, u1, v0, r, g, b, a);
+
+        quadCount++;
+        quadsThisFrame++;
+    }
+
+    private void vertex(float x, float y, float localX, float localY, float cos, float sin, float u, float v, float r, float g, float b, float a)
+    {
+        vertices.put(x + localX * cos - localY * sin);
+        vertices.put(y + localX * sin + localY * cos);
+        vertices.put(u);
+        vertices.put(v);
+        vertices.put(r);
+        vertices.put(g);
+        vertices.put(b);
+        vertices.put(a);
+    }
+
+    /**
+     * Submits the quads collected so far, if any
+     */
+    public void flush()
+    {
+        if(quadCount == 0)
+            return;
+
+        vertices.flip();
+        if(submitter != null)
+            submitter.submit(currentTexture, vertices, quadCount);
+        vertices.clear();
+
+        quadCount = 0;
+        batchesThisFrame++;
+    }
+
+    /**
+     * Submits pending quads and resets the per-frame statistics
+     */
+    public void endFrame()
+    {
+        flush();
+        lastFrameBatches = batchesThisFrame;
+        lastFrameQuads = quadsThisFrame;
+        batchesThisFrame = 0;
+        quadsThisFrame = 0;
+    }
+
+    /**
+     * Returns the number of batches (draw calls) submitted during the last completed frame
+     */
+    public int getLastFrameBatches() { return lastFrameBatches; }
+
+    /**
+     * Returns the number of quads drawn during the last completed frame
+     */
+    public int getLastFrameQuads() { return lastFrameQuads; }
+
+    /**
+     * Returns the number of quads waiting to be submitted
+     */
+    public int getPendingQuads() { return quadCount; }
+}
@@ -0,0 +1,355 @@
+package org.engine.graphics;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.texture.Texture;
+import org.engine.resources.ImageResource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+
+/**
+ *  Packs many small images (animation frames, tile and decoration textures) into a few large texture pages, so that
+ *  consecutive sprites can be drawn without binding a new texture for each of them.
+ *  Images are placed on horizontal "shelves": each page is filled left to right, and a new shelf is started below the
+ *  tallest image of the current one when the page width runs out. Frames of the same sprite sheet share a size, which makes
+ *  this simple strategy pack them tightly.
+ *  Once packed, an {@link ImageResource} refers to its page and the texture coordinates of its region instead of
+ *  holding a texture of its own.
+ *  Pages are uploaded to OpenGL a few rows at a time: the rows touched by packing are remembered, and {@link #upload(int)}
+ *  sends as many of them as a byte budget allows, so that the rendering thread can spread the upload of newly loaded images
+ *  over several frames. A page drawn before all of its rows were sent gets the rest right away.
+ *  Images can be packed from any thread.
+ */
+public class TextureAtlas
+{
+    /**
+     * Default width/height of a page, in pixels
+     */
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+
+    /**
+     * Empty pixels left around each image so neighbouring images never bleed into each other
+     */
+    private static final int PADDING = 1;
+
+    private final int pageSize;
+
+    private final ArrayList<Page> pages = new ArrayList<>();
+
+    /**
+     * Number of rows sent to OpenGL in a single call, the size of the staging buffer
+     */
+    private static final int SLICE_ROWS = 64;
+
+    /**
+     * Direct buffer the rows are copied into before being sent, created on first upload
+     */
+    private IntBuffer staging = null;
+
+    /**
+     * A single texture page and the state of its packing
+     */
+    private static class Page
+    {
+        BufferedImage image;
+
+        /**
+         * Pixels of the image, in ARGB order
+         */
+        final int[] pixels;
+
+        Texture texture = null;
+
+        /**
+         * Rows changed since they were last uploaded, from dirtyTop (inclusive) to dirtyBottom (exclusive)
+         */
+        int dirtyTop = 0, dirtyBottom = 0;
+
+        //current shelf
+        int shelfX = 0, shelfY = 0, shelfHeight = 0;
+
+        long usedPixels = 0;
+        int regions = 0;
+
+        Page(int size)
+        {
+            image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        boolean isDirty() { return dirtyTop < dirtyBottom; }
+
+        /**
+         * Adds the given rows to the ones waiting to be uploaded
+         */
+        void markDirty(int top, int bottom)
+        {
+            top = Math.max(0, top);
+            bottom = Math.min(image.getHeight(), bottom);
+
+            if(!isDirty())
+            {
+                dirtyTop = top;
+                dirtyBottom = bottom;
+            }
+            else
+            {
+                dirtyTop = Math.min(dirtyTop, top);
+                dirtyBottom = Math.max(dirtyBottom, bottom);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty atlas with the default page size
+     */
+    public TextureAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Creates an empty atlas
+     * @param pageSize width/height of each page in pixels
+     */
+    public TextureAtlas(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Copies the image of the given resource into the atlas and points the resource to its new region.
+     * Images too large for a page, and resources that are already packed or hold no image, are left untouched.
+     * @param resource image resource to be packed
+     * @return true if the image was packed
+     */
+    public synchronized boolean pack(ImageResource resource)
+    {
+        if(!resource.hasPixels() || resource.isPacked())
+            return false;
+
+        int width = (int) resource.getWidth();
+        int height = (int) resource.getHeight();
+
+        if(width + 2 * PADDING > pageSize || height + 2 * PADDING > pageSize)
+            return false;
+
+        //try the last page first, earlier pages are (nearly) full
+        int pageIndex = pages.size() - 1;
+        Page page = pageIndex >= 0 ? pages.get(pageIndex) : null;
+
+        if(page == null || !makeRoom(page, width, height))
+        {
+            page = new Page(pageSize);
+            pages.add(page);
+            pageIndex = pages.size() - 1;
+        }
+
+        int x = page.shelfX + PADDING;
+        int y = page.shelfY + PADDING;
+
+        //images from the asset pack are copied straight from the mapped file
+        if(!resource.copyPixels(page.pixels, y * pageSize + x, pageSize))
+            return false;
+
+        page.shelfX += width + 2 * PADDING;
+        page.shelfHeight = Math.max(page.shelfHeight, height + 2 * PADDING);
+        page.usedPixels += (long) width * height;
+        page.regions++;
+        page.markDirty(y - PADDING, y + height + PADDING);
+
+        resource.setAtlasRegion(this, pageIndex, x, y,
+                x / (float) pageSize, y / (float) pageSize, (x + width) / (float) pageSize, (y + height) / (float) pageSize);
+
+        return true;
+    }
+
+    /**
+     * Moves the page's cursor so that an image of the given size fits at it, starting a new shelf if needed
+     * @return false if the page has no room left for the image
+     */
+    private boolean makeRoom(Page page, int width, int height)
+    {
+        int paddedWidth = width + 2 * PADDING;
+        int paddedHeight = height + 2 * PADDING;
+
+        if(page.shelfX + paddedWidth <= pageSize && page.shelfY + paddedHeight <= pageSize)
+            return true;
+
+        //start a new shelf
+        int newShelfY = page.shelfY + page.shelfHeight;
+        if(newShelfY + paddedHeight > pageSize)
+            return false;
+
+        page.shelfX = 0;
+        page.shelfY = newShelfY;
+        page.shelfHeight = 0;
+        return true;
+    }
+
+    /**
+     * Returns the OpenGL texture of a page, first uploading the rows of it that changed and were not uploaded yet.
+     * Must be called on the rendering thread.
+     * @param pageIndex index of the page
+     * @return JOGL texture object of the page
+     */
+    public synchronized Texture getPageTexture(int pageIndex)
+    {
+        Page page = pages.get(pageIndex);
+        GL2 gl = EventListener.gl;
+
+        if(page.texture == null)
+            createTexture(gl, page);
+
+        if(page.isDirty())
+            uploadRows(gl, page, page.dirtyBottom - page.dirtyTop);
+
+        return page.texture;
+    }
+
+    /**
+     * Uploads changed rows of the pages, oldest page first, until the given amount of data was sent.
+     * Must be called on the rendering thread.
+     * @param budget maximum number of bytes to send, at least one row is sent if any changed
+     * @return number of bytes sent
+     */
+    public synchronized int upload(int budget)
+    {
+        GL2 gl = EventListener.gl;
+        int rowBytes = pageSize * Integer.BYTES;
+        int rows = Math.max(1, budget / rowBytes);
+        int uploaded = 0;
+
+        for(Page page : pages)
+        {
+            if(uploaded >= rows)
+                break;
+            if(!page.isDirty())
+                continue;
+
+            if(page.texture == null)
+                createTexture(gl, page);
+            uploaded += uploadRows(gl, page, rows - uploaded);
+        }
+
+        return uploaded * rowBytes;
+    }
+
+    /**
+     * Returns the number of bytes waiting to be uploaded
+     */
+    public synchronized long getPendingBytes()
+    {
+        long rows = 0;
+        for(Page page : pages)
+            rows += page.dirtyBottom - page.dirtyTop;
+        return rows * pageSize * Integer.BYTES;
+    }
+
+    /**
+     * Creates the (empty) texture of a page, rows are filled in as they are uploaded
+     */
+    private void createTexture(GL2 gl, Page page)
+    {
+        int[] names = new int[1];
+        gl.glGenTextures(1, names, 0);
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, names[0]);
+        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST);
+        gl.glTexParameteri(GL2.GL_TEXTURE_2D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+        gl.glTexImage2D(GL2.GL_TEXTURE_2D, 0, GL2.GL_RGBA8, pageSize, pageSize, 0,
+                GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, null);
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+
+        page.texture = new Texture(names[0], GL2.GL_TEXTURE_2D, pageSize, pageSize, pageSize, pageSize, false);
+    }
+
+    /**
+     * Sends the first changed rows of a page to its texture
+     * @param maxRows maximum number of rows to send
+     * @return number of rows sent
+     */
+    private int uploadRows(GL2 gl, Page page, int maxRows)
+    {
+        if(staging == null)
+            staging = Buffers.newDirectIntBuffer(pageSize * SLICE_ROWS);
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, page.texture.getTextureObject());
+
+        int uploaded = 0;
+        while(page.isDirty() && uploaded < maxRows)
+        {
+            int rows = Math.min(Math.min(SLICE_ROWS, maxRows - uploaded), page.dirtyBottom - page.dirtyTop);
+
+            //ARGB ints, which OpenGL reads as reversed packed BGRA whatever the byte order
+            staging.clear();
+            staging.put(page.pixels, page.dirtyTop * pageSize, rows * pageSize);
+            staging.flip();
+            gl.glTexSubImage2D(GL2.GL_TEXTURE_2D, 0, 0, page.dirtyTop, pageSize, rows,
+                    GL2.GL_BGRA, GL2.GL_UNSIGNED_INT_8_8_8_8_REV, staging);
+
+            page.dirtyTop += rows;
+            uploaded += rows;
+        }
+
+        gl.glBindTexture(GL2.GL_TEXTURE_2D, 0);
+        return uploaded;
+    }
+
+    /**
+     * Reads back a packed region of a page
+     * @param pageIndex index of the page
+     * @param x left pixel of the region
+     * @param y top pixel of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return a new image holding a copy of the region's pixels
+     */
+    public synchronized BufferedImage getRegionImage(int pageIndex, int x, int y, int width, int height)
+    {
+        BufferedImage region = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = pages.get(pageIndex).image.getRGB(x, y, width, height, null, 0, width);
+        region.setRGB(0, 0, width, height, pixels, 0, width);
+        return region;
+    }
+
+    /**
+     * Returns the number of pages in the atlas
+     */
+    public synchronized int getPageCount() { return pages.size(); }
+
+    /**
+     * Returns the width/height of the pages
+     */
+    public int getPageSize() { return pageSize; }
+
+    /**
+     * Builds a short report of how well the images were packed: for each page the number of regions and the fraction of
+     * the page (up to the bottom of its last shelf, and in total) that is covered by image pixels
+     * @return multi-line, human readable report
+     */
+    public synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        long totalUsed = 0;
+
+        for(int i = 0; i < pages.size(); i++)
+        {
+            Page page = pages.get(i);
+            long filledArea = (long) pageSize * Math.max(1, page.shelfY + page.shelfHeight);
+            long pageArea = (long) pageSize * pageSize;
+            totalUsed += page.usedPixels;
+
+            report.append(String.format("page %d: %d regions, %.1f%% of filled area, %.1f%% of page%n", i, page.regions,
+                    100.0 * page.usedPixels / filledArea, 100.0 * page.usedPixels / pageArea));
+        }
+
+        long totalArea = (long) pageSize * pageSize * Math.max(1, pages.size());
+        report.append(String.format("total: %d pages, %.1f%% used%n", pages.size(), 100.0 * totalUsed / totalArea));
+
+        return report.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package org.engine.input;
+
+/**
+ *  A programmable source of input. Once set with {@link org.engine.GameLoop#setInputSource(InputSource)} it is consulted
+ *  at the start of every tick, before the keyboard and mouse state is updated, and feeds its input through the same methods
+ *  the listeners use ({@link KeyInput#press(short)}, {@link MouseInput#press(short)}, etc.).
+ *  Makes it possible to drive the game without a window, see {@link ScriptedInput}.
+ */
+public interface InputSource
+{
+    /**
+     * Feeds the input for the given tick into {@link KeyInput} and {@link MouseInput}
+     * @param tick number of the tick about to be performed
+     */
+    void poll(long tick);
+}
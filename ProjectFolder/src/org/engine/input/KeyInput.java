@@ -146,8 +146,7 @@ public class KeyInput implements KeyListener
     @Override
     public void keyPressed(KeyEvent keyEvent)
     {
-        currentState[keyEvent.getKeyCode()] = true;
-        lastKeyPressed = keyEvent.getKeyCode();
+        press(keyEvent.getKeyCode());
     }
 
     @Override
@@ -155,7 +154,26 @@ public class KeyInput implements KeyListener
     {
         if(keyEvent.isAutoRepeat())
             return;
-        currentState[keyEvent.getKeyCode()] = false;
+        release(keyEvent.getKeyCode());
+    }
+
+    /**
+     * Marks the given key as pressed, as if it was pressed on the keyboard. Takes effect on the next {@link #update()}
+     * @param keyCode the code of the key (available as constant int the JOGL KeyEvent class)
+     */
+    public static void press(short keyCode)
+    {
+        currentState[keyCode] = true;
+        lastKeyPressed = keyCode;
+    }
+
+    /**
+     * Marks the given key as released. Takes effect on the next {@link #update()}
+     * @param keyCode the code of the key (available as constant int the JOGL KeyEvent class)
+     */
+    public static void release(short keyCode)
+    {
+        currentState[keyCode] = false;
     }
 
     /**
@@ -67,14 +67,14 @@ public class MouseInput implements MouseListener
      *  button causing the event to true
      */
     @Override
-    public void mousePressed(MouseEvent mouseEvent) { currentState[mouseEvent.getButton()] = true; }
+    public void mousePressed(MouseEvent mouseEvent) { press(mouseEvent.getButton()); }
 
     /**
      *  Automatically called in the case of a mouse event by the listener, sets the value corresponding to the
      *  button causing the event to false
      */
     @Override
-    public void mouseReleased(MouseEvent mouseEvent) { currentState[mouseEvent.getButton()] = false; }
+    public void mouseReleased(MouseEvent mouseEvent) { release(mouseEvent.getButton()); }
 
     /**
      * Automatically gets called by the listener when the mouse is moved, updates the saved mouse position accordingly
@@ -82,9 +82,7 @@ public class MouseInput implements MouseListener
     @Override
     public void mouseMoved(MouseEvent mouseEvent)
     {
-        mouseX = mouseEvent.getX();
-        mouseY = mouseEvent.getY();
-        moved  = true;
+        moveTo(mouseEvent.getX(), mouseEvent.getY());
     }
 
     /**
@@ -103,6 +101,30 @@ public class MouseInput implements MouseListener
     @Override
     public void mouseWheelMoved(MouseEvent mouseEvent) { }
 
+    /**
+     * Marks the given button as pressed, as if it was clicked. Takes effect on the next {@link #update()}
+     * @param button short value of the button (constants provided in the jogl awt MouseEvent class)
+     */
+    public static void press(short button) { currentState[button] = true; }
+
+    /**
+     * Marks the given button as released. Takes effect on the next {@link #update()}
+     * @param button short value of the button (constants provided in the jogl awt MouseEvent class)
+     */
+    public static void release(short button) { currentState[button] = false; }
+
+    /**
+     * Moves the mouse pointer to the given position on the actual screen
+     * @param x horizontal position in pixels
+     * @param y vertical position in pixels
+     */
+    public static void moveTo(double x, double y)
+    {
+        mouseX = x;
+        mouseY = y;
+        moved  = true;
+    }
+
     /**
      *  Returns the isometric x coordinate of the mouse pointer. In case the isometric values were not updated since the
      *  last time the mouse was moved, it computes and sets the new ones before returning
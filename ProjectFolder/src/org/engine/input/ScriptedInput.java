@@ -0,0 +1,133 @@
+package org.engine.input;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ *  Input source which replays a script of key presses, mouse clicks and pointer movements, each tied to the tick
+ *  it should happen on. Used to play the game without a keyboard or mouse (for example in headless soak tests).
+ *  Events scheduled for the same tick are applied in the order they were added.
+ */
+public class ScriptedInput implements InputSource
+{
+    /**
+     * A single scripted action
+     */
+    private static class Event
+    {
+        final long tick;
+        final Runnable action;
+
+        Event(long tick, Runnable action)
+        {
+            this.tick = tick;
+            this.action = action;
+        }
+    }
+
+    private final ArrayList<Event> events = new ArrayList<>();
+
+    /**
+     * Index of the next event to be applied
+     */
+    private int next = 0;
+
+    /**
+     * Cleared when events are added, until they are sorted again
+     */
+    private boolean sorted = true;
+
+    /**
+     * Holds a key down between two ticks
+     * @param keyCode the code of the key (available as constant int the JOGL KeyEvent class)
+     * @param from tick on which the key is pressed
+     * @param to tick on which the key is released
+     * @return this script, for chaining
+     */
+    public ScriptedInput holdKey(short keyCode, long from, long to)
+    {
+        add(from, () -> KeyInput.press(keyCode));
+        add(to, () -> KeyInput.release(keyCode));
+        return this;
+    }
+
+    /**
+     * Presses a key for a single tick
+     * @param keyCode the code of the key (available as constant int the JOGL KeyEvent class)
+     * @param tick tick on which the key is pressed
+     * @return this script, for chaining
+     */
+    public ScriptedInput tapKey(short keyCode, long tick)
+    {
+        return holdKey(keyCode, tick, tick + 1);
+    }
+
+    /**
+     * Holds a mouse button down between two ticks
+     * @param button short value of the button (constants provided in the jogl MouseEvent class)
+     * @param from tick on which the button is pressed
+     * @param to tick on which the button is released
+     * @return this script, for chaining
+     */
+    public ScriptedInput holdButton(short button, long from, long to)
+    {
+        add(from, () -> MouseInput.press(button));
+        add(to, () -> MouseInput.release(button));
+        return this;
+    }
+
+    /**
+     * Clicks a mouse button (presses it for a single tick)
+     * @param button short value of the button (constants provided in the jogl MouseEvent class)
+     * @param tick tick on which the button is pressed
+     * @return this script, for chaining
+     */
+    public ScriptedInput click(short button, long tick)
+    {
+        return holdButton(button, tick, tick + 1);
+    }
+
+    /**
+     * Moves the mouse pointer to a position on the screen
+     * @param x horizontal position in pixels
+     * @param y vertical position in pixels
+     * @param tick tick on which the pointer is moved
+     * @return this script, for chaining
+     */
+    public ScriptedInput moveMouse(double x, double y, long tick)
+    {
+        add(tick, () -> MouseInput.moveTo(x, y));
+        return this;
+    }
+
+    private void add(long tick, Runnable action)
+    {
+        events.add(new Event(tick, action));
+        sorted = false;
+    }
+
+    /**
+     * Applies every event scheduled up to (and including) the given tick that was not applied yet
+     */
+    @Override
+    public void poll(long tick)
+    {
+        if(!sorted)
+        {
+            //stable, so events on the same tick keep their order; events already applied stay at the front
+            events.subList(next, events.size()).sort(Comparator.comparingLong(e -> e.tick));
+            sorted = true;
+        }
+
+        while(next < events.size() && events.get(next).tick <= tick)
+        {
+            events.get(next).action.run();
+            next++;
+        }
+    }
+
+    /**
+     * Checks whether every event of the script was applied
+     */
+    public boolean isFinished() { return next == events.size(); }
+}
@@ -0,0 +1,158 @@
+package org.engine.resources;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *  Loads images and sounds once and shares them between everything that uses them.
+ *  Assets are identified by their path. Each {@code acquire} call counts as a reference to the asset, which should be
+ *  given back with {@link #release(String)} once it is no longer needed. Assets nobody references anymore are kept
+ *  (so that objects created again soon after don't load them again) until {@link #unloadUnused()} is called, which
+ *  happens when a {@link org.world.World} is torn down.
+ *  Assets are loaded through a {@link ResourceProvider}, by default the real files (see {@link FileResources}).
+ *  Safe to use from several threads, which can load different assets at the same time.
+ */
+public class AssetManager
+{
+    /**
+     * A loaded asset and the number of references to it
+     */
+    private static class Asset
+    {
+        final Object resource;
+        int references = 0;
+
+        Asset(Object resource)
+        {
+            this.resource = resource;
+        }
+    }
+
+    private static final Map<String, Asset> assets = new HashMap<>();
+
+    private static ResourceProvider provider = new FileResources();
+
+    /**
+     * Number of files read and decoded since the game started
+     */
+    private static int loads = 0;
+
+    /**
+     * Returns the image at the given path, loading it only if it is not loaded already.
+     * The image is shared, so it must not be modified
+     * @param path path relative to the game folder
+     * @return image object, which holds no image if the file could not be read
+     */
+    public static ImageResource acquireImage(String path)
+    {
+        return (ImageResource) acquire(path, getProvider()::loadImage);
+    }
+
+    /**
+     * Returns the decoded sound at the given path, loading it only if it is not loaded already
+     * @param path path relative to the game folder
+     * @return sound data, null if the file could not be read or decoded
+     */
+    public static SoundData acquireSound(String path)
+    {
+        return (SoundData) acquire(path, getProvider()::loadSound);
+    }
+
+    /**
+     * Adds a reference to the asset at the given path, loading it first if needed.
+     * Files are read and decoded outside of the lock, so that several threads (see {@link Preloader}) can load different
+     * assets at the same time. If two threads load the same asset at once, the first one to finish wins and the other
+     * copy is dropped
+     */
+    private static Object acquire(String path, Function<String, Object> loader)
+    {
+        synchronized (AssetManager.class)
+        {
+            Asset asset = assets.get(path);
+            if(asset != null)
+            {
+                asset.references++;
+                return asset.resource;
+            }
+        }
+
+        Object resource = loader.apply(path);
+
+        synchronized (AssetManager.class)
+        {
+            Asset asset = assets.get(path);
+            if(asset == null)
+            {
+                asset = new Asset(resource);
+                assets.put(path, asset);
+                loads++;
+            }
+
+            asset.references++;
+            return asset.resource;
+        }
+    }
+
+    /**
+     * Gives back a reference to the asset at the given path, acquired earlier
+     * @param path path the asset was acquired with
+     */
+    public static synchronized void release(String path)
+    {
+        Asset asset = assets.get(path);
+        if(asset != null && asset.references > 0)
+            asset.references--;
+    }
+
+    /**
+     * Unloads every asset that is no longer referenced. Images give back their texture, on the rendering thread
+     */
+    public static synchronized void unloadUnused()
+    {
+        Iterator<Asset> it = assets.values().iterator();
+        while(it.hasNext())
+        {
+            Asset asset = it.next();
+            if(asset.references > 0)
+                continue;
+
+            if(asset.resource instanceof ImageResource)
+                ((ImageResource) asset.resource).dispose();
+            it.remove();
+        }
+    }
+
+    /**
+     * Sets the source of the assets loaded from now on. Assets already loaded are kept, so it should be set before any
+     * asset is acquired
+     * @param provider source of the images and sounds
+     */
+    public static synchronized void setProvider(ResourceProvider provider) { AssetManager.provider = provider; }
+
+    /**
+     * Returns the source of the assets
+     */
+    public static synchronized ResourceProvider getProvider() { return provider; }
+
+    /**
+     * Returns the number of references to the asset at the given path, 0 if it is not loaded
+     */
+    public static synchronized int getReferenceCount(String path)
+    {
+        Asset asset = assets.get(path);
+        return asset == null ? 0 : asset.references;
+    }
+
+    /**
+     * Checks whether the asset at the given path is loaded
+     */
+    public static synchronized boolean isLoaded(String path) { return assets.containsKey(path); }
+
+    /**
+     * Returns the number of files read and decoded since the game started. Each path is only counted again if it was
+     * unloaded in the meantime
+     */
+    public static synchronized int getLoadCount() { return loads; }
+}
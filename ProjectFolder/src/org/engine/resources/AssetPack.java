@@ -0,0 +1,305 @@
+package org.engine.resources;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ *  A single file holding every image and sound of the game already decoded, written by the {@link AssetPacker}.
+ *  The file is mapped into memory, so opening it costs next to nothing and its data is handed out as buffers reading
+ *  straight from the mapping: images as ARGB ints (the format of the {@link org.engine.graphics.TextureAtlas} pages), sounds
+ *  in the format of the {@link AudioMixer}. Nothing is decoded or copied into the heap.
+ *  Assets are identified by the same paths as the files they were made from. The loaders ({@link ImageResource},
+ *  {@link SoundData}, {@link org.engine.graphics.Animator}) use the default pack when it holds what they need, and read
+ *  the original files otherwise.
+ *
+ *  The pack is a copy: it has to be built again (with the {@link AssetPacker}) whenever a resource changes. Each entry
+ *  records the size and CRC-32 of the file it was made from, and the default pack is only used if every file it was made
+ *  from is still the same; an outdated pack is ignored (and reported), so it never hands out old sprites or sounds.
+ *
+ *  Layout of the file, little-endian: magic number, version and number of entries, then for each entry its path (length
+ *  as a short, then UTF-8 bytes), type, offset and length of its data, two values depending on the type (width and
+ *  height for images, sample rate and channels for sounds), and the size and CRC-32 of the source file. The data of the
+ *  entries follows, each aligned to 8 bytes.
+ */
+public class AssetPack
+{
+    /**
+     * Where the game looks for its pack, relative to the game folder
+     */
+    public static final String DEFAULT_PATH = "/resources/assets.pak";
+
+    static final int MAGIC = 0x4B415050; //"PPAK"
+    static final int VERSION = 3;
+
+    static final byte IMAGE = 1, SOUND = 2;
+
+    /**
+     * Pack used by the loaders, null to always read the original files
+     */
+    private static AssetPack defaultPack = null;
+    private static boolean defaultSearched = false;
+
+    /**
+     * An image stored in the pack
+     */
+    public static class Image
+    {
+        public final int width, height;
+
+        /**
+         * The pixels as ARGB ints, row after row
+         */
+        public final IntBuffer pixels;
+
+        Image(int width, int height, IntBuffer pixels)
+        {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Location and description of an asset inside of the file
+     */
+    private static class Entry
+    {
+        byte type;
+        int offset, length;
+        int a, b;
+
+        /**
+         * Size and CRC-32 of the file the asset was made from
+         */
+        int sourceLength, sourceCrc;
+    }
+
+    private final MappedByteBuffer data;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private AssetPack(MappedByteBuffer data) throws IOException
+    {
+        this.data = data;
+
+        ByteBuffer index = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if(index.getInt() != MAGIC || index.getInt() != VERSION)
+            throw new IOException("not an asset pack of version " + VERSION);
+
+        int count = index.getInt();
+        for(int i = 0; i < count; i++)
+        {
+            byte[] path = new byte[index.getShort()];
+            index.get(path);
+
+            Entry entry = new Entry();
+            entry.type = index.get();
+            entry.offset = (int) index.getLong();
+            entry.length = index.getInt();
+            entry.a = index.getInt();
+            entry.b = index.getInt();
+            entry.sourceLength = index.getInt();
+            entry.sourceCrc = index.getInt();
+            entries.put(new String(path, StandardCharsets.UTF_8), entry);
+        }
+    }
+
+    /**
+     * Maps a pack file into memory
+     * @param file the pack
+     * @return the opened pack
+     * @throws IOException if the file cannot be read or is not a pack
+     */
+    public static AssetPack open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            //the mapping stays valid once the channel is closed
+            return new AssetPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the pack used by the loaders. The first call looks for it at {@link #DEFAULT_PATH} (see
+     * {@link #find(ClassLoader, String)})
+     * @return the pack, null if there is none or it is out of date
+     */
+    public static synchronized AssetPack getDefault()
+    {
+        if(!defaultSearched)
+        {
+            defaultSearched = true;
+            defaultPack = find(AssetPack.class.getClassLoader(), DEFAULT_PATH);
+        }
+
+        return defaultPack;
+    }
+
+    /**
+     * Looks for a pack among the resources of a class loader and opens it, if the files it was made from did not change.
+     * A pack that is a plain file is mapped where it is, otherwise (e.g. inside of a jar) it is copied to a temporary file
+     * first
+     * @param loader class loader holding the pack and the files it was made from
+     * @param path path of the pack, relative to the game folder
+     * @return the pack, null if there is none, it cannot be read or it is out of date
+     */
+    static AssetPack find(ClassLoader loader, String path)
+    {
+        URL url = loader.getResource(path.substring(1));
+        if(url == null)
+            return null;
+
+        try
+        {
+            AssetPack pack;
+            if(url.getProtocol().equals("file"))
+                pack = open(Paths.get(url.toURI()));
+            else
+            {
+                Path copy = Files.createTempFile("assets", ".pak");
+                copy.toFile().deleteOnExit();
+                try (InputStream in = url.openStream())
+                {
+                    Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+                pack = open(copy);
+            }
+
+            String changed = pack.findChanged(loader);
+            if(changed != null)
+            {
+                System.out.println(path + " is out of date (" + changed + " changed since it was packed), reading the " +
+                        "original files instead. Build it again with org.engine.resources.AssetPacker");
+                return null;
+            }
+            return pack;
+        }
+        catch (IOException | URISyntaxException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Compares the files the assets were made from with the files of a class loader
+     * @param loader class loader holding the files
+     * @return path of the first file missing or different from the one packed, null if they are all the same
+     */
+    String findChanged(ClassLoader loader) throws IOException
+    {
+        byte[] buffer = new byte[65536];
+        CRC32 crc = new CRC32();
+
+        for(Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            try (InputStream in = loader.getResourceAsStream(entry.getKey().substring(1)))
+            {
+                if(in == null)
+                    return entry.getKey();
+
+                crc.reset();
+                long length = 0;
+                int read;
+                while((read = in.read(buffer)) > 0)
+                {
+                    crc.update(buffer, 0, read);
+                    length += read;
+                }
+
+                if(length != entry.getValue().sourceLength || (int) crc.getValue() != entry.getValue().sourceCrc)
+                    return entry.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Changes the pack used by the loaders, assets loaded already are not affected
+     * @param pack the pack, null to read the original files
+     */
+    public static synchronized void setDefault(AssetPack pack)
+    {
+        defaultSearched = true;
+        defaultPack = pack;
+    }
+
+    /**
+     * Checks whether the pack holds the asset made from the given file
+     * @param path path of the file, relative to the game folder
+     */
+    public boolean contains(String path) { return entries.containsKey(path); }
+
+    /**
+     * Returns the number of assets in the pack
+     */
+    public int size() { return entries.size(); }
+
+    /**
+     * Returns the paths of the files the assets of the pack were made from
+     */
+    public Set<String> getPaths() { return Collections.unmodifiableSet(entries.keySet()); }
+
+    /**
+     * Returns an image of the pack
+     * @param path path of the image file, relative to the game folder
+     * @return the image, reading its pixels from the mapped file. Null if the pack does not hold it
+     */
+    public Image getImage(String path)
+    {
+        Entry entry = entries.get(path);
+        if(entry == null || entry.type != IMAGE)
+            return null;
+
+        return new Image(entry.a, entry.b, slice(entry).asIntBuffer());
+    }
+
+    /**
+     * Returns a sound of the pack
+     * @param path path of the sound file, relative to the game folder
+     * @return the sound, reading its samples from the mapped file. Null if the pack does not hold it
+     */
+    public SoundData getSound(String path)
+    {
+        Entry entry = entries.get(path);
+        if(entry == null || entry.type != SOUND)
+            return null;
+
+        float sampleRate = Float.intBitsToFloat(entry.a);
+        int channels = entry.b;
+        AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 16, channels, channels * 2,
+                sampleRate, false);
+
+        return new SoundData(format, slice(entry));
+    }
+
+    /**
+     * Returns a little-endian view of the data of an entry
+     */
+    private ByteBuffer slice(Entry entry)
+    {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(entry.offset);
+        buffer.limit(entry.offset + entry.length);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
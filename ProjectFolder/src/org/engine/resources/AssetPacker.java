@@ -0,0 +1,210 @@
+package org.engine.resources;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ *  Builds the {@link AssetPack} of the game: decodes every .png and .wav file under the resources folder once, offline,
+ *  and writes the results into a single file the game maps at start up instead of decoding the files again.
+ *  The pack has to be built again whenever a resource changes: the game checks the files each asset was made from (size
+ *  and CRC-32, recorded in the pack) and ignores a pack that is out of date, reading every file instead. Assets missing
+ *  from the pack are read from their files. The pack is not under version control, so it is built once after checking out
+ *  the project, then after changing any image or sound, with the resources copied to the output folder as usual.
+ *
+ *  Usage: AssetPacker [resourcesFolder] [packFile], by default src/resources and src/resources/assets.pak (run from the
+ *  project folder, where the pack ends up next to the resources it was made from)
+ */
+public class AssetPacker
+{
+    /**
+     * Size of the fixed part of an index entry: type, offset, length, two values, and size and CRC-32 of the source
+     */
+    private static final int ENTRY_SIZE = 1 + 8 + 4 + 4 + 4 + 4 + 4;
+
+    /**
+     * A decoded asset waiting to be written
+     */
+    private static class Asset
+    {
+        String path;
+        byte type;
+        int a, b;
+        ByteBuffer data;
+        long offset;
+        int sourceLength, sourceCrc;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path resources = Paths.get(args.length > 0 ? args[0] : "src/resources");
+        Path pack = Paths.get(args.length > 1 ? args[1] : "src/resources/assets.pak");
+
+        int count = pack(resources, pack);
+        System.out.println("packed " + count + " assets into " + pack + " (" + Files.size(pack) / 1024 + " KB)");
+    }
+
+    /**
+     * Decodes every image and sound of a folder and writes them into a pack
+     * @param resources folder holding the resources, the paths of the assets are relative to its parent (so "resources"
+     *                  folders give paths starting with "/resources/", like the game uses)
+     * @param pack file to write
+     * @return number of assets packed
+     * @throws IOException if a file cannot be read or the pack cannot be written
+     */
+    public static int pack(Path resources, Path pack) throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(resources))
+        {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        Path root = resources.toAbsolutePath().getParent();
+        List<Asset> assets = new ArrayList<>();
+
+        for(Path file : files)
+        {
+            String name = file.getFileName().toString().toLowerCase();
+            String path = "/" + root.relativize(file.toAbsolutePath()).toString().replace('\\', '/');
+
+            Asset asset = null;
+            if(name.endsWith(".png"))
+                asset = packImage(file);
+            else if(name.endsWith(".wav"))
+                asset = packSound(file);
+
+            if(asset == null)
+                continue;
+
+            byte[] source = Files.readAllBytes(file);
+            CRC32 crc = new CRC32();
+            crc.update(source);
+
+            asset.path = path;
+            asset.sourceLength = source.length;
+            asset.sourceCrc = (int) crc.getValue();
+            assets.add(asset);
+        }
+
+        write(assets, pack);
+        return assets.size();
+    }
+
+    /**
+     * Decodes an image into ARGB ints
+     * @return the asset, null if the file is not a readable image
+     */
+    private static Asset packImage(Path file) throws IOException
+    {
+        BufferedImage image = ImageIO.read(file.toFile());
+        if(image == null)
+            return null;
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        ByteBuffer data = ByteBuffer.allocate(pixels.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        data.asIntBuffer().put(pixels);
+
+        Asset asset = new Asset();
+        asset.type = AssetPack.IMAGE;
+        asset.a = width;
+        asset.b = height;
+        asset.data = data;
+        return asset;
+    }
+
+    /**
+     * Decodes a sound into the PCM format of {@link SoundData}
+     * @return the asset, null if the file is not a readable sound
+     */
+    private static Asset packSound(Path file) throws IOException
+    {
+        SoundData sound;
+        try (InputStream in = Files.newInputStream(file))
+        {
+            sound = SoundData.decode(in);
+        }
+        if(sound == null)
+            return null;
+
+        Asset asset = new Asset();
+        asset.type = AssetPack.SOUND;
+        asset.a = Float.floatToIntBits(sound.getFormat().getSampleRate());
+        asset.b = sound.getFormat().getChannels();
+        asset.data = sound.getBuffer();
+        return asset;
+    }
+
+    /**
+     * Writes the header, the index and the data of the assets
+     */
+    private static void write(List<Asset> assets, Path pack) throws IOException
+    {
+        int indexSize = 3 * Integer.BYTES;
+        for(Asset asset : assets)
+            indexSize += Short.BYTES + asset.path.getBytes(StandardCharsets.UTF_8).length + ENTRY_SIZE;
+
+        long offset = align(indexSize);
+        for(Asset asset : assets)
+        {
+            asset.offset = offset;
+            offset = align(offset + asset.data.remaining());
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) align(indexSize)).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(AssetPack.MAGIC);
+        index.putInt(AssetPack.VERSION);
+        index.putInt(assets.size());
+        for(Asset asset : assets)
+        {
+            byte[] path = asset.path.getBytes(StandardCharsets.UTF_8);
+            index.putShort((short) path.length);
+            index.put(path);
+            index.put(asset.type);
+            index.putLong(asset.offset);
+            index.putInt(asset.data.remaining());
+            index.putInt(asset.a);
+            index.putInt(asset.b);
+            index.putInt(asset.sourceLength);
+            index.putInt(asset.sourceCrc);
+        }
+        index.clear();
+
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            channel.write(index);
+            for(Asset asset : assets)
+            {
+                channel.position(asset.offset);
+                while(asset.data.hasRemaining())
+                    channel.write(asset.data);
+            }
+        }
+    }
+
+    /**
+     * Rounds an offset up to the next multiple of 8
+     */
+    private static long align(long offset)
+    {
+        return (offset + 7) & ~7L;
+    }
+}
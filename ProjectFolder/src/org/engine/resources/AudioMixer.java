@@ -0,0 +1,439 @@
+package org.engine.resources;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Plays every sound of the game through a single audio line.
+ *  A thread owned by the mixer adds up the samples of the sounds being played (the voices) a block at a time and writes the
+ *  result to the line, whose buffer paces it. The samples are read from the shared {@link SoundData} of each sound, which is
+ *  always in the mixer's {@link #FORMAT}, so starting a sound costs no copy and no audio line of its own.
+ *  Other threads never touch the voices: {@link SoundClip}s post play and stop commands to a lock-free queue, read by the
+ *  mixer before each block. Only a fixed number of voices are mixed, so the cost of audio does not grow with the number of
+ *  objects making sounds. When they are all taken, a new sound replaces the voice of lowest priority, the one playing for
+ *  the longest among those, or is dropped if every voice has a higher priority than it.
+ *  Long sounds are not held in memory: {@link Stream}s such as the {@link MusicPlayer} are added on top of the voices.
+ */
+public class AudioMixer
+{
+    /**
+     * Format of the line, and of every {@link SoundData}: 44.1 kHz, 16 bit signed little-endian stereo
+     */
+    public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    /**
+     * Default number of sounds mixed at once
+     */
+    public static final int DEFAULT_VOICES = 16;
+
+    /**
+     * Number of frames mixed at once, about 12 ms
+     */
+    static final int BLOCK_FRAMES = 512;
+
+    /**
+     * Number of blocks held by the line's buffer, the latency of the mixer
+     */
+    private static final int LINE_BLOCKS = 4;
+
+    /**
+     * Limits of the gain of a sound in decibels, those of a {@link javax.sound.sampled.Clip}'s master gain
+     */
+    public static final float MIN_GAIN = -80f, MAX_GAIN = 6.0206f;
+
+    /**
+     * Mixer used by the {@link SoundClip}s, null until needed or if no line could be opened
+     */
+    private static AudioMixer defaultMixer = null;
+    private static boolean defaultOpened = false;
+    private static int defaultVoices = DEFAULT_VOICES;
+
+    /**
+     * The state of a sound played by a {@link SoundClip}, shared between the clip and the mixer.
+     * A sound is played by one voice at most: playing it again restarts it
+     */
+    static class Sound
+    {
+        final SoundData data;
+        final int priority;
+
+        /**
+         * Gain applied to the samples, as a factor
+         */
+        volatile float gain = 1f;
+
+        /**
+         * Whether the sound is being played. Set right away by play and stop, and cleared by the mixer when the sound ends
+         * or loses its voice
+         */
+        volatile boolean running = false;
+
+        /**
+         * Number of play and stop calls, so that the mixer does not report the end of a sound that was started again since
+         */
+        final AtomicInteger generation = new AtomicInteger();
+
+        Sound(SoundData data, int priority)
+        {
+            this.data = data;
+            this.priority = priority;
+        }
+
+        /**
+         * Marks the sound as stopped, unless it was played or stopped again after the given call
+         */
+        void ended(int generation)
+        {
+            if(this.generation.get() == generation)
+                running = false;
+        }
+    }
+
+    /**
+     * A source of samples mixed on top of the voices, such as the {@link MusicPlayer}. Called on the mixer's thread for
+     * every block
+     */
+    interface Stream
+    {
+        /**
+         * Adds the next samples of the stream to the block
+         * @param mix sums of the block, interleaved by channel
+         * @param frames number of frames of the block
+         */
+        void mix(int[] mix, int frames);
+    }
+
+    /**
+     * A request to play or stop a sound
+     */
+    private static class Command
+    {
+        final Sound sound;
+        final boolean play, loop;
+        final int generation;
+
+        Command(Sound sound, boolean play, boolean loop, int generation)
+        {
+            this.sound = sound;
+            this.play = play;
+            this.loop = loop;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A sound being mixed
+     */
+    private static class Voice
+    {
+        Sound sound = null;
+        ShortBuffer samples;
+        int generation;
+        boolean loop;
+
+        /**
+         * Index of the next sample to be mixed
+         */
+        int position;
+
+        /**
+         * Block at which the sound was started, to find the oldest voice
+         */
+        long started;
+    }
+
+    private final SourceDataLine line;
+    private final Voice[] voices;
+    private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+    /**
+     * Sum of the voices, and the block written to the line
+     */
+    private final int[] mix = new int[BLOCK_FRAMES * 2];
+    private final byte[] block = new byte[BLOCK_FRAMES * 4];
+
+    private long blocks = 0;
+
+    private Thread thread = null;
+    private volatile boolean running = false;
+
+    /**
+     * Creates a mixer writing to the given line. The line is opened by {@link #start()}
+     * @param line line accepting the mixer's {@link #FORMAT}
+     * @param maxVoices number of sounds mixed at once
+     */
+    public AudioMixer(SourceDataLine line, int maxVoices)
+    {
+        this.line = line;
+        voices = new Voice[maxVoices];
+        for(int i = 0; i < maxVoices; i++)
+            voices[i] = new Voice();
+    }
+
+    /**
+     * Returns the mixer of the game, opening the default audio line and starting the mixer the first time
+     * @return the mixer, null if no audio line is available
+     */
+    public static synchronized AudioMixer getDefault()
+    {
+        if(!defaultOpened)
+        {
+            defaultOpened = true;
+            try
+            {
+                defaultMixer = new AudioMixer(AudioSystem.getSourceDataLine(FORMAT), defaultVoices);
+                defaultMixer.start();
+            }
+            catch(LineUnavailableException | IllegalArgumentException e)
+            {
+                defaultMixer = null;
+            }
+        }
+
+        return defaultMixer;
+    }
+
+    /**
+     * Sets the number of sounds mixed at once by the mixer of the game. Only has an effect before the first sound is created
+     * @param voices number of voices, at least 1
+     */
+    public static synchronized void setDefaultVoices(int voices) { defaultVoices = Math.max(1, voices); }
+
+    /**
+     * Opens the line and starts the mixer's thread
+     * @throws LineUnavailableException if the line cannot be opened
+     */
+    public synchronized void start() throws LineUnavailableException
+    {
+        if(thread != null)
+            return;
+
+        line.open(FORMAT, block.length * LINE_BLOCKS);
+        line.start();
+
+        running = true;
+        thread = new Thread(() -> {
+            while(running)
+                line.write(block, 0, mixBlock());
+        });
+        thread.setName("AudioMixer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the mixer's thread and closes the line
+     */
+    public synchronized void close()
+    {
+        if(thread == null)
+            return;
+
+        running = false;
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        line.stop();
+        line.close();
+    }
+
+    /**
+     * Starts playing a sound from the beginning, restarting it if it is being played
+     * @param sound the sound
+     * @param loop true to play it again every time it ends, until it is stopped
+     */
+    void play(Sound sound, boolean loop)
+    {
+        int generation = sound.generation.incrementAndGet();
+        sound.running = true;
+        commands.add(new Command(sound, true, loop, generation));
+    }
+
+    /**
+     * Stops a sound if it is being played
+     */
+    void stop(Sound sound)
+    {
+        int generation = sound.generation.incrementAndGet();
+        sound.running = false;
+        commands.add(new Command(sound, false, false, generation));
+    }
+
+    /**
+     * Adds a stream to be mixed with the voices, until it is removed
+     */
+    void addStream(Stream stream) { streams.add(stream); }
+
+    /**
+     * Stops mixing a stream
+     */
+    void removeStream(Stream stream) { streams.remove(stream); }
+
+    /**
+     * Applies the pending commands, then mixes the next block of the voices into {@link #block}.
+     * Called by the mixer's thread, or directly when the line is driven by hand
+     * @return number of bytes of the block
+     */
+    int mixBlock()
+    {
+        Command command;
+        while((command = commands.poll()) != null)
+        {
+            if(command.play)
+                startVoice(command);
+            else
+                stopVoice(command.sound);
+        }
+
+        Arrays.fill(mix, 0);
+
+        for(Voice voice : voices)
+        {
+            if(voice.sound == null)
+                continue;
+
+            float gain = voice.sound.gain;
+            int length = voice.samples.limit();
+            int i = 0;
+            while(i < mix.length)
+            {
+                int count = Math.min(mix.length - i, length - voice.position);
+                for(int j = 0; j < count; j++)
+                    mix[i + j] += (int) (voice.samples.get(voice.position + j) * gain);
+                i += count;
+                voice.position += count;
+
+                if(voice.position >= length)
+                {
+                    if(!voice.loop || length == 0)
+                    {
+                        voice.sound.ended(voice.generation);
+                        voice.sound = null;
+                        voice.samples = null;
+                        break;
+                    }
+                    voice.position = 0;
+                }
+            }
+        }
+
+        for(Stream stream : streams)
+            stream.mix(mix, BLOCK_FRAMES);
+
+        for(int i = 0; i < mix.length; i++)
+        {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            block[2 * i] = (byte) sample;
+            block[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        blocks++;
+        return block.length;
+    }
+
+    /**
+     * Gives a voice to a sound, restarting the one already playing it, taking a free one or replacing a sound of lower
+     * (or the same) priority
+     */
+    private void startVoice(Command command)
+    {
+        Sound sound = command.sound;
+        Voice chosen = null;
+
+        for(Voice voice : voices)
+        {
+            if(voice.sound == sound)
+            {
+                chosen = voice;
+                break;
+            }
+            if(voice.sound == null && chosen == null)
+                chosen = voice;
+        }
+
+        if(chosen == null)
+        {
+            for(Voice voice : voices)
+            {
+                if(voice.sound.priority > sound.priority)
+                    continue;
+                if(chosen == null || voice.sound.priority < chosen.sound.priority
+                        || (voice.sound.priority == chosen.sound.priority && voice.started < chosen.started))
+                    chosen = voice;
+            }
+
+            if(chosen == null)
+            {
+                sound.ended(command.generation);
+                return;
+            }
+
+            chosen.sound.ended(chosen.generation);
+        }
+
+        chosen.sound = sound;
+        chosen.samples = sound.data.getSamplesAsShorts();
+        chosen.generation = command.generation;
+        chosen.loop = command.loop;
+        chosen.position = 0;
+        chosen.started = blocks;
+    }
+
+    /**
+     * Frees the voice playing a sound, if any
+     */
+    private void stopVoice(Sound sound)
+    {
+        for(Voice voice : voices)
+        {
+            if(voice.sound == sound)
+            {
+                voice.sound = null;
+                voice.samples = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of voices playing a sound. Only meaningful on the mixer's thread, or when it is not running
+     */
+    int getActiveVoices()
+    {
+        int active = 0;
+        for(Voice voice : voices)
+            if(voice.sound != null)
+                active++;
+        return active;
+    }
+
+    /**
+     * Returns the number of sounds that can be mixed at once
+     */
+    public int getMaxVoices() { return voices.length; }
+
+    /**
+     * Converts a gain in decibels to the factor applied to the samples, clamped between {@link #MIN_GAIN} and {@link #MAX_GAIN}
+     */
+    static float toFactor(float decibels)
+    {
+        decibels = Math.max(MIN_GAIN, Math.min(MAX_GAIN, decibels));
+        return (float) Math.pow(10, decibels / 20);
+    }
+}
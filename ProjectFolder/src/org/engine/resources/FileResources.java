@@ -0,0 +1,20 @@
+package org.engine.resources;
+
+/**
+ *  Provider of the game's real images and sounds: read from the {@link AssetPack} when it holds them, otherwise read and
+ *  decoded from their files. Used by the {@link AssetManager} unless another provider is set.
+ */
+public class FileResources implements ResourceProvider
+{
+    @Override
+    public ImageResource loadImage(String path)
+    {
+        return new ImageResource(path);
+    }
+
+    @Override
+    public SoundData loadSound(String path)
+    {
+        return SoundData.load(path);
+    }
+}
@@ -3,16 +3,25 @@ package org.engine.resources;
 import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 import org.engine.graphics.Renderer;
+import org.engine.graphics.TextureAtlas;
 
 import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.IntBuffer;
 
 /**
  * This class holds information about an image.
  * It is used only for game objects which have no proper animations (only still images).
  * .png files are preferred since they allow for transparent backgrounds
+ * An image can be packed into a {@link org.engine.graphics.TextureAtlas}, in which case it no longer has a texture of its own
+ * and is drawn from a region (given by its texture coordinates) of one of the atlas' pages.
+ * Images found in the {@link AssetPack} are not decoded: their pixels are read straight from the mapped pack until they are
+ * packed into the atlas, and an AWT image is only made for them if something asks for it.
  */
 
 public class ImageResource
@@ -27,11 +36,33 @@ public class ImageResource
      */
     private BufferedImage image;
 
+    /**
+     * Pixels of the image when it comes from the {@link AssetPack}, as ARGB ints read from the mapped file, null otherwise.
+     * The image is a region of the buffer: it starts at {@code offset} and its rows are {@code stride} ints apart
+     */
+    private IntBuffer pixels = null;
+    private int offset, stride;
+
     /**
      * Dimensions of the image
      */
     private float width, height;
 
+    /**
+     * Atlas the image was packed into, null if it was not packed
+     */
+    private TextureAtlas atlas = null;
+
+    /**
+     * Page of the atlas and position of the image inside of it, in pixels
+     */
+    private int atlasPage, atlasX, atlasY;
+
+    /**
+     * Texture coordinates of the image, covering the whole texture unless the image is packed in an atlas
+     */
+    private float u0 = 0, v0 = 0, u1 = 1, v1 = 1;
+
     /**
      *  Attempts to retrieve a given image from the given path which should be relative tp the location of the source code
      *  If reading of the animation fails, an exception is thrown and the program terminates
@@ -39,11 +70,22 @@ public class ImageResource
      */
     public ImageResource(String path)
     {
+        AssetPack pack = AssetPack.getDefault();
+        AssetPack.Image packed = pack != null ? pack.getImage(path) : null;
+        if(packed != null)
+        {
+            this.pixels = packed.pixels;
+            this.stride = packed.width;
+            this.width = packed.width;
+            this.height = packed.height;
+            return;
+        }
+
         URL url = ImageResource.class.getResource(path); //this way path is relative to java project
 
         try
         {
-            image = ImageIO.read(url);
+            image = toARGB(ImageIO.read(url));
             this.width = image.getWidth();
             this.height = image.getHeight();
         }
@@ -59,15 +101,120 @@ public class ImageResource
         }
     }
 
+    /**
+     * Converts an image to ARGB ints, the format of the {@link TextureAtlas} pages, so that packing its frames is a plain
+     * copy rather than a conversion of every pixel. Done once, when the file is read
+     * @param image decoded image, may be null
+     * @return the image itself if it already is in that format
+     */
+    private static BufferedImage toARGB(BufferedImage image)
+    {
+        if(image == null || image.getType() == BufferedImage.TYPE_INT_ARGB)
+            return image;
+
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src); //copy the pixels as they are, without blending
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
     /**
      *  Creates an ImageResource object from an already existing image in memory, used for creating animations
-     * @param image buffered image object
+     * @param image buffered image object, null if the image could not be loaded
      */
     public ImageResource(BufferedImage image)
     {
             this.image = image;
-            this.width = image.getWidth();
-            this.height = image.getHeight();
+            if(image != null)
+            {
+                this.width = image.getWidth();
+                this.height = image.getHeight();
+            }
+    }
+
+    /**
+     * Creates an ImageResource object holding no pixels, only the dimensions of an image (see {@link StubResources})
+     * @param width width of the image
+     * @param height height of the image
+     */
+    public ImageResource(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates an ImageResource object viewing a region of pixels that are already in memory, without copying them
+     * @param pixels ARGB ints, row after row
+     * @param offset index of the top left pixel of the image
+     * @param stride number of ints between the starts of two rows
+     * @param width width of the image
+     * @param height height of the image
+     */
+    public ImageResource(IntBuffer pixels, int offset, int stride, int width, int height)
+    {
+        this.pixels = pixels;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns a region of the image, used for slicing sprite sheets. Regions of mapped images view the same pixels, other
+     * images share their pixels with the region as {@link BufferedImage#getSubimage} does
+     * @param x left pixel of the region
+     * @param y top pixel of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return the region, which holds no image (but has the region's size) if this one does not
+     */
+    public ImageResource getRegion(int x, int y, int width, int height)
+    {
+        if(pixels != null)
+            return new ImageResource(pixels, offset + y * stride + x, stride, width, height);
+
+        BufferedImage image = getImage();
+        return image == null ? new ImageResource(width, height) : new ImageResource(image.getSubimage(x, y, width, height));
+    }
+
+    /**
+     * Copies the pixels of the image into an array of ARGB ints, the format of the {@link TextureAtlas} pages
+     * @param dst array receiving the pixels
+     * @param dstOffset index of the top left pixel in the array
+     * @param dstStride number of ints between the starts of two rows in the array
+     * @return false if the image holds no pixels
+     */
+    public boolean copyPixels(int[] dst, int dstOffset, int dstStride)
+    {
+        int width = (int) this.width;
+        int height = (int) this.height;
+
+        if(pixels != null)
+        {
+            IntBuffer src = pixels.duplicate();
+            for(int row = 0; row < height; row++)
+            {
+                src.position(offset + row * stride);
+                src.get(dst, dstOffset + row * dstStride, width);
+            }
+            return true;
+        }
+
+        BufferedImage image = getImage();
+        if(image == null)
+            return false;
+
+        //copy the exact ARGB values, without any blending or colour conversion. Images that already hold ARGB ints (all
+        //the ones read by ImageResource) are copied as they are, others are converted pixel by pixel
+        int[] argb = image.getType() == BufferedImage.TYPE_INT_ARGB
+                ? (int[]) image.getRaster().getDataElements(0, 0, width, height, null)
+                : image.getRGB(0, 0, width, height, null, 0, width);
+        for(int row = 0; row < height; row++)
+            System.arraycopy(argb, row * width, dst, dstOffset + row * dstStride, width);
+        return true;
     }
 
     /**
@@ -76,8 +223,11 @@ public class ImageResource
      */
     public Texture getTexture()
     {
+        if(atlas != null)
+            return atlas.getPageTexture(atlasPage);
+
         //if no image
-        if(image == null)
+        if(getImage() == null)
         {
             return null;
         }
@@ -90,6 +240,96 @@ public class ImageResource
         return texture;
     }
 
+    /**
+     * Points this image to its region inside of an atlas page. Called by {@link TextureAtlas#pack(ImageResource)}, after the
+     * pixels were copied, so the image object itself is released.
+     * @param atlas atlas holding the image
+     * @param page index of the page
+     * @param x left pixel of the region
+     * @param y top pixel of the region
+     * @param u0 left texture coordinate
+     * @param v0 top texture coordinate
+     * @param u1 right texture coordinate
+     * @param v1 bottom texture coordinate
+     */
+    public void setAtlasRegion(TextureAtlas atlas, int page, int x, int y, float u0, float v0, float u1, float v1)
+    {
+        this.atlas = atlas;
+        this.atlasPage = page;
+        this.atlasX = x;
+        this.atlasY = y;
+        this.u0 = u0;
+        this.v0 = v0;
+        this.u1 = u1;
+        this.v1 = v1;
+        this.image = null;
+        this.pixels = null;
+    }
+
+    /**
+     * Releases the pixels and the texture of the image, which can no longer be drawn afterwards. Used by the
+     * {@link AssetManager} when unloading images
+     */
+    public void dispose()
+    {
+        image = null;
+        pixels = null;
+        if(texture != null)
+        {
+            Renderer.releaseTexture(texture);
+            texture = null;
+        }
+    }
+
+    /**
+     * Checks whether the image was packed into an atlas
+     */
+    public boolean isPacked() { return atlas != null; }
+
+    /**
+     * Checks whether the image holds pixels, without making an AWT image for it
+     */
+    public boolean hasPixels() { return atlas != null || image != null || pixels != null; }
+
+    /**
+     * Returns the pixels of the image. For packed images a copy is read back from the atlas, for images from the
+     * {@link AssetPack} a copy is made the first time
+     * @return buffered image object, null if the image could not be loaded
+     */
+    public BufferedImage getImage()
+    {
+        if(atlas != null)
+            return atlas.getRegionImage(atlasPage, atlasX, atlasY, (int) width, (int) height);
+
+        if(image == null && pixels != null)
+        {
+            BufferedImage copy = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_INT_ARGB);
+            copyPixels(((DataBufferInt) copy.getRaster().getDataBuffer()).getData(), 0, (int) width);
+            image = copy;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the left texture coordinate of the image
+     */
+    public float getU0() { return u0; }
+
+    /**
+     * Returns the top texture coordinate of the image
+     */
+    public float getV0() { return v0; }
+
+    /**
+     * Returns the right texture coordinate of the image
+     */
+    public float getU1() { return u1; }
+
+    /**
+     * Returns the bottom texture coordinate of the image
+     */
+    public float getV1() { return v1; }
+
     /**
      * Returns the width of the image held in the object
      * @return width in pixels
@@ -0,0 +1,397 @@
+package org.engine.resources;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  Plays music without holding whole tracks in memory.
+ *  A background thread reads and decodes each track a chunk at a time into a small ring buffer, from which the
+ *  {@link AudioMixer} takes the samples it mixes. A looping track is opened again as soon as it ends, into the same ring
+ *  buffer, so the loop has no gap. Starting a track while another one is playing crossfades between them.
+ *  Starting or stopping music returns right away, only queueing the track: the file is opened by the background thread,
+ *  and so is the audio line of the {@link AudioMixer} the first time, so the first samples are heard a little later. Music in the {@link AssetPack} is read from the mapped pack, without decoding it.
+ *  Each track playing uses {@link #RING_SAMPLES} samples (128 KB) and a chunk of {@link #CHUNK_BYTES}, however long it is.
+ */
+public class MusicPlayer
+{
+    /**
+     * Size of the ring buffer of a track, in 16 bit samples (about 0.74 s)
+     */
+    static final int RING_SAMPLES = 1 << 16;
+
+    /**
+     * Number of bytes decoded at once
+     */
+    static final int CHUNK_BYTES = 8192;
+
+    /**
+     * Time the background thread waits when every ring buffer is full
+     */
+    private static final long IDLE_NANOS = 10000000L;
+
+    /**
+     * A track being played, shared between the thread filling its ring buffer and the mixer emptying it
+     */
+    static class Track
+    {
+        final String path;
+        final boolean loop;
+
+        final short[] ring = new short[RING_SAMPLES];
+
+        /**
+         * Number of samples written to and read from the ring buffer since the track started. Each one is only changed
+         * by a single thread
+         */
+        volatile long written = 0, read = 0;
+
+        /**
+         * Set once the file was read to its end (and will not be opened again)
+         */
+        volatile boolean ended = false;
+
+        /**
+         * Set once the track is no longer mixed, its file is then closed and the track dropped
+         */
+        volatile boolean done = false;
+
+        /**
+         * Number of frames the track fades out in, once asked to stop, -1 while it is not stopping
+         */
+        volatile int stopFrames = -1;
+
+        /**
+         * Stream of the file, only used by the background thread
+         */
+        AudioInputStream stream = null;
+
+        //fade state, only used by the mixer's thread
+        float fade, fadeStep;
+        boolean stopping = false;
+
+        Track(String path, boolean loop, int fadeFrames)
+        {
+            this.path = path;
+            this.loop = loop;
+            fade = fadeFrames > 0 ? 0 : 1;
+            fadeStep = fadeFrames > 0 ? 1f / fadeFrames : 0;
+        }
+    }
+
+    static final List<Track> tracks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Gain of the music, as a factor
+     */
+    private static volatile float volume = 1f;
+
+    private static Thread thread = null;
+
+    /**
+     * Set by the background thread if no audio line could be opened, music is then ignored
+     */
+    private static volatile boolean unavailable = false;
+
+    /**
+     * Plays a track from its start, unless it is already playing. A track that is playing is faded out
+     * @param path path of the .wav file, relative to the game folder
+     * @param loop true to play the track over and over until it is stopped
+     * @param fadeSeconds duration of the crossfade with the track playing, 0 to cut it right away
+     */
+    public static synchronized void play(String path, boolean loop, float fadeSeconds)
+    {
+        if(!start())
+            return;
+
+        Track current = getCurrent();
+        if(current != null && current.path.equals(path))
+            return;
+
+        int fadeFrames = toFrames(fadeSeconds);
+        stopTracks(fadeFrames);
+        tracks.add(new Track(path, loop, current != null ? fadeFrames : 0));
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the music
+     * @param fadeSeconds duration of the fade out, 0 to stop right away
+     */
+    public static synchronized void stop(float fadeSeconds)
+    {
+        stopTracks(toFrames(fadeSeconds));
+    }
+
+    /**
+     * Adjusts the volume of the music. Negative values lower the volume, while positive values increase it
+     * @param value change in volume, in decibels
+     */
+    public static void setVolume(float value) { volume = AudioMixer.toFactor(value); }
+
+    /**
+     * Returns the path of the track playing (and not fading out), null if there is none
+     */
+    public static synchronized String getPlaying()
+    {
+        Track current = getCurrent();
+        return current == null ? null : current.path;
+    }
+
+    /**
+     * Returns the number of bytes used by the ring buffers of the tracks playing
+     */
+    public static long getBufferedBytes() { return (long) tracks.size() * RING_SAMPLES * Short.BYTES; }
+
+    /**
+     * Returns the last track started, if it is not stopping or over
+     */
+    private static Track getCurrent()
+    {
+        for(int i = tracks.size() - 1; i >= 0; i--)
+        {
+            Track track = tracks.get(i);
+            if(!track.done && track.stopFrames < 0 && !(track.ended && track.read == track.written))
+                return track;
+        }
+        return null;
+    }
+
+    private static void stopTracks(int fadeFrames)
+    {
+        for(Track track : tracks)
+            if(track.stopFrames < 0)
+                track.stopFrames = fadeFrames;
+    }
+
+    private static int toFrames(float seconds)
+    {
+        return Math.max(0, (int) (seconds * AudioMixer.FORMAT.getFrameRate()));
+    }
+
+    /**
+     * Starts the background thread, the first time
+     * @return false if there is no sound (headless mode, or no audio device was found)
+     */
+    private static boolean start()
+    {
+        if(thread != null)
+            return !unavailable;
+
+        if(SoundClip.isSilent())
+            return false;
+
+        thread = new Thread(MusicPlayer::run);
+        thread.setName("MusicPlayer");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Body of the background thread: gets the mixer of the game, opening the audio line if no sound did it yet, adds the
+     * music to it and keeps the ring buffers full
+     */
+    private static void run()
+    {
+        AudioMixer mixer = AudioMixer.getDefault();
+        if(mixer == null)
+        {
+            synchronized(MusicPlayer.class)
+            {
+                unavailable = true;
+                tracks.clear();
+            }
+            return;
+        }
+
+        mixer.addStream(MusicPlayer::mix);
+        fill();
+    }
+
+    /**
+     * Keeps the ring buffers full and drops the tracks that are done
+     */
+    private static void fill()
+    {
+        byte[] chunk = new byte[CHUNK_BYTES];
+
+        while(true)
+        {
+            boolean busy = false;
+
+            for(Track track : tracks)
+            {
+                if(track.done)
+                {
+                    close(track);
+                    tracks.remove(track);
+                    continue;
+                }
+
+                busy |= fill(track, chunk);
+            }
+
+            if(!busy)
+                LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    /**
+     * Decodes one chunk of a track into its ring buffer, if there is room for it.
+     * Called by the background thread, or directly when the music is driven by hand
+     * @return true if anything was decoded
+     */
+    static boolean fill(Track track, byte[] chunk)
+    {
+        if(track.ended || RING_SAMPLES - (track.written - track.read) < CHUNK_BYTES / 2)
+            return false;
+
+        try
+        {
+            if(track.stream == null)
+                track.stream = open(track.path);
+
+            int length = track.stream.read(chunk, 0, chunk.length);
+            if(length < 0)
+            {
+                close(track);
+                if(track.loop && track.written > 0)
+                    return true; //opened again on the next call, the ring buffer goes on without a gap
+
+                track.ended = true;
+                return false;
+            }
+
+            long written = track.written;
+            for(int i = 0; i + 1 < length; i += 2)
+                track.ring[(int) (written++ & (RING_SAMPLES - 1))] = (short) ((chunk[i] & 0xff) | (chunk[i + 1] << 8));
+            track.written = written;
+            return true;
+        }
+        catch(IOException | UnsupportedAudioFileException e)
+        {
+            close(track);
+            track.ended = true;
+            return false;
+        }
+    }
+
+    /**
+     * Opens a track as a stream of samples in the mixer's format, from the {@link AssetPack} if it holds the track
+     */
+    private static AudioInputStream open(String path) throws IOException, UnsupportedAudioFileException
+    {
+        AssetPack pack = AssetPack.getDefault();
+        SoundData packed = pack != null ? pack.getSound(path) : null;
+        if(packed != null)
+        {
+            ByteBuffer samples = packed.getBuffer();
+            return new AudioInputStream(new BufferInputStream(samples), AudioMixer.FORMAT,
+                    samples.remaining() / AudioMixer.FORMAT.getFrameSize());
+        }
+
+        InputStream in = MusicPlayer.class.getResourceAsStream(path);
+        if(in == null)
+            throw new IOException("missing music file " + path);
+        return SoundData.openStream(in);
+    }
+
+    private static void close(Track track)
+    {
+        if(track.stream == null)
+            return;
+
+        try
+        {
+            track.stream.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        track.stream = null;
+    }
+
+    /**
+     * Adds the next frames of every track to a block of the mixer, applying the volume and the fades.
+     * A track that runs out of decoded samples is silent until the background thread catches up.
+     * Called on the mixer's thread, or directly when the music is driven by hand
+     */
+    static void mix(int[] mix, int frames)
+    {
+        float volume = MusicPlayer.volume;
+
+        for(Track track : tracks)
+        {
+            if(track.done)
+                continue;
+
+            int stopFrames = track.stopFrames;
+            if(stopFrames == 0)
+            {
+                track.done = true;
+                continue;
+            }
+            if(stopFrames > 0 && !track.stopping)
+            {
+                track.stopping = true;
+                track.fadeStep = -track.fade / stopFrames;
+            }
+
+            long read = track.read;
+            int available = (int) Math.min(frames, (track.written - read) / 2);
+
+            for(int i = 0; i < available; i++)
+            {
+                track.fade = Math.max(0, Math.min(1, track.fade + track.fadeStep));
+                float gain = volume * track.fade;
+
+                mix[2 * i] += (int) (track.ring[(int) (read++ & (RING_SAMPLES - 1))] * gain);
+                mix[2 * i + 1] += (int) (track.ring[(int) (read++ & (RING_SAMPLES - 1))] * gain);
+            }
+            track.read = read;
+
+            if((track.stopping && track.fade <= 0) || (track.ended && read == track.written))
+                track.done = true;
+        }
+    }
+
+    /**
+     * Reads the samples of a buffer (possibly a mapped file) as a stream, without copying them
+     */
+    private static class BufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if(!buffer.hasRemaining())
+                return -1;
+
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() { return buffer.remaining(); }
+    }
+}
@@ -0,0 +1,198 @@
+package org.engine.resources;
+
+import org.engine.graphics.Renderer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Loads the assets listed in a manifest in the background, so that they are ready by the time the game needs them instead
+ *  of being read on the game loop's thread when the first object using them is created.
+ *  Every line of the manifest holds the type of an asset ("image", "sound" or "font") followed by its path; empty lines and
+ *  lines starting with '#' are ignored.
+ *  Files are read and decoded by a few worker threads at once. Images and sounds end up in the {@link AssetManager}, which
+ *  keeps them for the whole session since the preloader holds a reference to each of them. Textures are not created here:
+ *  the rendering thread uploads images once they are packed, a little every frame (see {@link Renderer#UPLOAD_BUDGET}).
+ *  Progress can be followed with {@link #getProgress()}, the main menu shows it while the game is loading.
+ */
+public class Preloader
+{
+    /**
+     * Manifest listing the assets the game needs from the start
+     */
+    public static final String MANIFEST = "/resources/preload.txt";
+
+    /**
+     * Threads decoding the assets, null until preloading starts
+     */
+    private static ExecutorService workers = null;
+
+    private static int total = 0;
+    private static final AtomicInteger completed = new AtomicInteger();
+    private static CountDownLatch finished = new CountDownLatch(0);
+
+    /**
+     * Paths of the assets that could not be loaded
+     */
+    private static final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Starts loading the assets of the game's manifest, with as many threads as there are processors (at least two, as
+     * part of the time is spent waiting on files)
+     */
+    public static void start()
+    {
+        start(MANIFEST, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Starts loading the assets listed in the given manifest and returns right away. Only the first call has an effect
+     * @param manifest path of the manifest, relative to the game folder
+     * @param threads number of threads decoding the assets
+     */
+    public static synchronized void start(String manifest, int threads)
+    {
+        if(workers != null)
+            return;
+
+        List<String[]> entries = readManifest(manifest);
+        total = entries.size();
+        finished = new CountDownLatch(total);
+
+        workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task);
+            thread.setName("Preloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for(String[] entry : entries)
+            workers.execute(() -> {
+                try
+                {
+                    if(!load(entry[0], entry[1]))
+                        failed.add(entry[1]);
+                }
+                catch(RuntimeException e)
+                {
+                    failed.add(entry[1]);
+                }
+                finally
+                {
+                    completed.incrementAndGet();
+                    finished.countDown();
+                }
+            });
+
+        //the threads end once the last asset is loaded
+        workers.shutdown();
+    }
+
+    /**
+     * Loads a single asset
+     * @return false if it could not be loaded
+     */
+    private static boolean load(String type, String path)
+    {
+        switch(type)
+        {
+            case "image":
+                return AssetManager.acquireImage(path).hasPixels();
+
+            case "sound":
+                return AssetManager.acquireSound(path) != null;
+
+            case "font":
+                Renderer.loadFonts(path);
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads the entries of a manifest
+     * @return type and path of every asset listed, empty if the manifest could not be read
+     */
+    private static List<String[]> readManifest(String manifest)
+    {
+        List<String[]> entries = new ArrayList<>();
+
+        InputStream in = Preloader.class.getResourceAsStream(manifest);
+        if(in == null)
+            return entries;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\\s+", 2);
+                if(parts.length == 2)
+                    entries.add(parts);
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Blocks until every asset is loaded
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public static void await() throws InterruptedException
+    {
+        finished.await();
+    }
+
+    /**
+     * Checks whether preloading started and is not over yet
+     */
+    public static boolean isLoading() { return workers != null && completed.get() < total; }
+
+    /**
+     * Returns the fraction of the assets already loaded (or given up on)
+     * @return value between 0 and 1, 1 if nothing has to be loaded
+     */
+    public static float getProgress() { return total == 0 ? 1f : completed.get() / (float) total; }
+
+    /**
+     * Returns the number of assets listed in the manifest
+     */
+    public static int getTotal() { return total; }
+
+    /**
+     * Returns the number of assets already loaded (or given up on)
+     */
+    public static int getCompleted() { return completed.get(); }
+
+    /**
+     * Returns the paths of the assets that could not be loaded
+     */
+    public static List<String> getFailed()
+    {
+        synchronized (failed)
+        {
+            return new ArrayList<>(failed);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.engine.resources;
+
+/**
+ *  Source of the images and sounds loaded by the {@link AssetManager}. Once set with
+ *  {@link AssetManager#setProvider(ResourceProvider)} every asset acquired is loaded through it.
+ *  Makes it possible to run the game without reading any image or audio data, see {@link StubResources}.
+ */
+public interface ResourceProvider
+{
+    /**
+     * Loads an image
+     * @param path path relative to the game folder
+     * @return image object, which holds no image if the file could not be read
+     */
+    ImageResource loadImage(String path);
+
+    /**
+     * Loads a sound
+     * @param path path relative to the game folder
+     * @return sound data, null if there is none
+     */
+    SoundData loadSound(String path);
+}
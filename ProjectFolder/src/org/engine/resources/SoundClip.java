@@ -1,66 +1,91 @@
 package org.engine.resources;
 
-import javax.sound.sampled.*;
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-
 /**
  *  This class provides the required functionality for using sounds and music.
  *  Only tested for compatibility with .wav sound files
+ *  Clips have no audio line of their own: they are played by the {@link AudioMixer}, which mixes a limited number of them
+ *  at once. When too many sounds play together, those of lower priority are cut first.
  */
 public class SoundClip
 {
-    private Clip clip;
-    private FloatControl gainControl;
+    /**
+     * Usual priorities: frequent, unimportant sounds (footsteps), clips created without a priority, and sounds that should
+     * never be cut (music)
+     */
+    public static final int LOW_PRIORITY = -1, DEFAULT_PRIORITY = 0, HIGH_PRIORITY = 1;
 
     /**
-     *  Creates a SoundClip from the .wav audio file at the given path. If reading/processing the given file failed,
-     *  an empty sound clip is created
-     * @param path path relative to the game folder
+     * Mixer playing the clip, null for empty clips
      */
-    public SoundClip (String path)
-    {
-        try
-        {
-            InputStream audioSrc = SoundClip.class.getResourceAsStream(path);
-            InputStream bufferedInput = new BufferedInputStream(audioSrc);
-            AudioInputStream ais = AudioSystem.getAudioInputStream(bufferedInput);
+    private AudioMixer mixer;
+    private AudioMixer.Sound sound;
 
-            //decode format
-            AudioFormat baseFormat = ais.getFormat();
+    /**
+     * Whether the sound was last started by {@link #loop()}, in which case it would never end by itself
+     */
+    private boolean looping = false;
 
-            AudioFormat decodeFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,baseFormat.getSampleRate(),16,
-                    baseFormat.getChannels(),baseFormat.getChannels()*2,baseFormat.getSampleRate(),false);
+    /**
+     * When set, new sound clips are created empty, without reading their file or opening an audio line (headless mode)
+     */
+    private static boolean silent = false;
 
-            AudioInputStream dais = AudioSystem.getAudioInputStream(decodeFormat,ais);
+    /**
+     * Makes all sound clips created from now on silent (or not). Silent clips accept every call and do nothing
+     * @param silent true to stop creating audio lines
+     */
+    public static void setSilent(boolean silent) { SoundClip.silent = silent; }
 
-            clip = AudioSystem.getClip();
-            clip.open(dais);
+    /**
+     * Checks whether sound clips are created silent
+     */
+    public static boolean isSilent() { return silent; }
 
-            gainControl= (FloatControl)clip.getControl(FloatControl.Type.MASTER_GAIN);
+    /**
+     * Path of the sound file, to give the sound data back to the {@link AssetManager} when closed. Null once closed
+     */
+    private String path;
 
-        }
-        catch(IOException | UnsupportedAudioFileException | LineUnavailableException e)
-        {
-            clip = null;
-            gainControl = null;
-        }
+    /**
+     *  Creates a SoundClip from the .wav audio file at the given path, with the default priority
+     * @param path path relative to the game folder
+     */
+    public SoundClip (String path)
+    {
+        this(path, DEFAULT_PRIORITY);
     }
 
     /**
-     *  Plays the sound. Start from beginning if it is already being played
+     *  Creates a SoundClip from the .wav audio file at the given path. The file is decoded only once, however many clips
+     *  play it (see {@link AssetManager}). If reading/processing the given file failed, or there is no audio device, an
+     *  empty sound clip is created
+     * @param path path relative to the game folder
+     * @param priority importance of the sound, when the mixer has no free voice it replaces a sound of lower priority
      */
-    public void play()
+    public SoundClip (String path, int priority)
     {
-        if(clip == null) return;
+        if(silent)
+            return;
 
-        stop();
-        clip.setFramePosition(0);
+        this.path = path;
+        SoundData data = AssetManager.acquireSound(path);
+        if(data == null)
+            return;
+
+        mixer = AudioMixer.getDefault();
+        if(mixer != null)
+            sound = new AudioMixer.Sound(data, priority);
+    }
 
-        while(!clip.isRunning()) //make sure the clip eventually starts in case something goes wrong in the start method
+    /**
+     *  Plays the sound. Start from beginning if it is already being played
+     */
+    public void play()
+    {
+        if(sound != null)
         {
-            clip.start();
+            looping = false;
+            mixer.play(sound, false);
         }
     }
 
@@ -69,17 +94,27 @@ public class SoundClip
      */
     public void stop()
     {
-        if(clip.isRunning())
-            clip.stop();
+        if(sound != null && sound.running)
+            mixer.stop(sound);
     }
 
     /**
-     * Closes the SoundCLip object
+     * Closes the SoundCLip object and gives back its sound data. If the sound is being played once it goes on until it
+     * ends, a looping sound is stopped. The clip stays silent afterwards
      */
     public void close()
     {
-        stop();
-        clip.close();
+        if(path != null)
+        {
+            AssetManager.release(path);
+            path = null;
+        }
+
+        //the mixer keeps the sound it is playing, unless it would play it forever
+        if(sound != null && looping && sound.running)
+            mixer.stop(sound);
+        sound = null;
+        mixer = null;
     }
 
     /**
@@ -87,30 +122,22 @@ public class SoundClip
      */
     public void loop()
     {
-        if(!clip.isRunning())
+        if(sound != null && !sound.running)
         {
-            clip.loop(Clip.LOOP_CONTINUOUSLY);
-            play();
+            looping = true;
+            mixer.play(sound, true);
         }
     }
 
     /**
      *  Adjusts the volume for the SoundClip. Negative values lower the volume, while positive values increase it.
      *  Setting the value to 0 changes nothing. Accounts for exceeding the maximum value
-     * @param value desired change in volume
+     * @param value desired change in volume, in decibels
      */
     public void setVolume(float value)
     {
-        if(gainControl == null)
-            return;
-
-        if(value > gainControl.getMaximum())
-            gainControl.setValue(gainControl.getMaximum());
-        else
-        if(value < gainControl.getMinimum())
-            gainControl.setValue(gainControl.getMinimum());
-        else
-            gainControl.setValue(value);
+        if(sound != null)
+            sound.gain = AudioMixer.toFactor(value);
     }
 
     /**
@@ -119,7 +146,7 @@ public class SoundClip
      */
     public boolean isRunning()
     {
-        return clip.isRunning();
+        return sound != null && sound.running;
     }
 
-}
\ No newline at end of file
+}
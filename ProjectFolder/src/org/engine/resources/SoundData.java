@@ -0,0 +1,129 @@
+package org.engine.resources;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ *  The decoded samples of a sound file, in the format of the {@link AudioMixer}, shared by every {@link SoundClip} playing
+ *  that file.
+ *  Sound data never changes once loaded, get it through the {@link AssetManager} so each file is only decoded once. When the
+ *  sound comes from an {@link AssetPack} it is not decoded at all, the samples are read from the mapped pack.
+ */
+public class SoundData
+{
+    private final AudioFormat format;
+
+    /**
+     * The samples, either read from the file into the heap or mapped from an {@link AssetPack}
+     */
+    private final ByteBuffer samples;
+
+    /**
+     * View of the samples as 16 bit values, read by the mixer with absolute gets so that it can be shared
+     */
+    private final ShortBuffer shorts;
+
+    SoundData(AudioFormat format, ByteBuffer samples)
+    {
+        this.format = format;
+        this.samples = samples;
+        this.shorts = samples.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the sound at the given path, straight out of the current {@link AssetPack} if it holds it, otherwise read
+     * and decoded from the .wav audio file
+     * @param path path relative to the game folder
+     * @return the decoded sound, null if the file could not be read or decoded
+     */
+    static SoundData load(String path)
+    {
+        AssetPack pack = AssetPack.getDefault();
+        if(pack != null && pack.contains(path))
+            return pack.getSound(path);
+
+        InputStream audioSrc = SoundData.class.getResourceAsStream(path);
+        if(audioSrc == null)
+            return null;
+
+        return decode(audioSrc);
+    }
+
+    /**
+     * Decodes a .wav audio file to the {@link AudioMixer#FORMAT}
+     * @param in contents of the file, closed once read
+     * @return the decoded sound, null if it could not be read or decoded
+     */
+    static SoundData decode(InputStream in)
+    {
+        try (AudioInputStream ais = openStream(in))
+        {
+            return new SoundData(AudioMixer.FORMAT, ByteBuffer.wrap(ais.readAllBytes()));
+        }
+        catch(IOException | UnsupportedAudioFileException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Opens a .wav audio file as a stream of samples in the {@link AudioMixer#FORMAT}, decoded as they are read: first to
+     * 16 bit signed little-endian PCM, then converted (sample rate and channels) if it is not in that format already
+     * @param in contents of the file, closed with the returned stream
+     * @return stream of samples
+     * @throws IOException if the file cannot be read
+     * @throws UnsupportedAudioFileException if the file is not a sound Java can decode
+     */
+    static AudioInputStream openStream(InputStream in) throws IOException, UnsupportedAudioFileException
+    {
+        AudioInputStream ais = AudioSystem.getAudioInputStream(new BufferedInputStream(in));
+
+        //decode format
+        AudioFormat baseFormat = ais.getFormat();
+
+        AudioFormat decodeFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,baseFormat.getSampleRate(),16,
+                baseFormat.getChannels(),baseFormat.getChannels()*2,baseFormat.getSampleRate(),false);
+
+        try
+        {
+            AudioInputStream dais = baseFormat.matches(decodeFormat) ? ais : AudioSystem.getAudioInputStream(decodeFormat,ais);
+            return decodeFormat.matches(AudioMixer.FORMAT) ? dais : AudioSystem.getAudioInputStream(AudioMixer.FORMAT,dais);
+        }
+        catch(IllegalArgumentException e)
+        {
+            //no converter for the format
+            ais.close();
+            throw new UnsupportedAudioFileException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the format of the samples
+     */
+    public AudioFormat getFormat() { return format; }
+
+    /**
+     * Returns the size of the samples in bytes
+     */
+    public int getLength() { return samples.capacity(); }
+
+    /**
+     * Returns a read-only view of the samples, little-endian like the samples themselves, which reads them where they are
+     * (possibly a mapped file) without copying them
+     */
+    public ByteBuffer getBuffer() { return samples.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN); }
+
+    /**
+     * Returns the samples as 16 bit values, interleaved by channel. The buffer is shared: it is read-only and must only
+     * be read with absolute gets
+     */
+    ShortBuffer getSamplesAsShorts() { return shorts; }
+}
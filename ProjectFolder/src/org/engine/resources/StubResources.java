@@ -0,0 +1,54 @@
+package org.engine.resources;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *  Provider of empty images and sounds, used when the game runs headless (see
+ *  {@link org.engine.GameLoop#setHeadless(boolean)}).
+ *  Images hold no pixels, only their dimensions, since the size of a sprite places objects (e.g. shadows) and sorts
+ *  them: they are read from the header of the .png file, so no image is ever decoded and neither ImageIO nor AWT is
+ *  used. Sounds are never loaded.
+ */
+public class StubResources implements ResourceProvider
+{
+    /**
+     * Signature of a .png file, followed by the length and type of its first chunk (IHDR) and then the width and height
+     */
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452;
+
+    /**
+     * Returns an image without pixels, of the size of the .png file at the given path
+     */
+    @Override
+    public ImageResource loadImage(String path)
+    {
+        try (InputStream in = StubResources.class.getResourceAsStream(path))
+        {
+            if(in == null)
+                return new ImageResource(0, 0);
+
+            DataInputStream header = new DataInputStream(in);
+            if(header.readLong() != PNG_SIGNATURE || header.skipBytes(4) != 4 || header.readInt() != IHDR)
+                throw new IOException(path + " is not a .png file");
+
+            return new ImageResource(header.readInt(), header.readInt());
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return new ImageResource(0, 0);
+        }
+    }
+
+    /**
+     * Returns null, as if the sound could not be read
+     */
+    @Override
+    public SoundData loadSound(String path)
+    {
+        return null;
+    }
+}
@@ -62,7 +62,7 @@ public class HUD
 
         Renderer.drawText(Integer.toString(GameLoop.getWorld().enemyCount),Renderer.SMALL_FONT,0,80,255,255,255,255);
 
-        if(GameLoop.getWorld().getTime() > 3/4f * GameLoop.getWorld().WAVE_DELAY && GameLoop.getWorld().getTime() < GameLoop.getWorld().WAVE_DELAY )
+        if(GameLoop.getWorld().getTime() > 3/4f * GameLoop.getWorld().getWaveDelay() && GameLoop.getWorld().getTime() < GameLoop.getWorld().getWaveDelay() )
             Renderer.drawText("WAVE " + GameLoop.getWorld().getWave(),Renderer.SMALL_FONT,0,30,255,255,255,255);
 
 
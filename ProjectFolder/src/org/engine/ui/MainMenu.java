@@ -3,7 +3,8 @@ package org.engine.ui;
 import org.engine.GameLoop;
 import org.engine.graphics.Renderer;
 import org.engine.input.KeyInput;
-import org.engine.resources.SoundClip;
+import org.engine.resources.MusicPlayer;
+import org.engine.resources.Preloader;
 
 /**
  *  The class implements the main menu of the game and represents the entry point of the application from the users's perspective.
@@ -11,6 +12,7 @@ import org.engine.resources.SoundClip;
  *  - The main menu proper which allows for starting a new game, accessing the settings and help sub-menus and quitting the application
  *  - The settings menu which currently only allows for changing the keyboard bindings
  *  - The help menu which should provide some explanation of the gameplay and various systems
+ *  While the {@link Preloader} is still loading assets a loading bar is shown instead, and no option can be chosen.
  */
 
 public class MainMenu
@@ -24,7 +26,15 @@ public class MainMenu
      */
     private static boolean settingsChanged;
 
-    private static SoundClip menuMusic;
+    /**
+     * Music of the menu, streamed by the {@link MusicPlayer}
+     */
+    private static final String MENU_MUSIC = "/resources/Music/ambience.wav";
+
+    /**
+     * Duration of the fade out of the menu's music when a game starts, in seconds
+     */
+    private static final float MUSIC_FADE = 1f;
 
     private static Menu mainMenu,settingsMenu,helpMenu;
 
@@ -40,6 +50,11 @@ public class MainMenu
 
     private static STATES state = STATES.MAIN;
 
+    /**
+     * Width of the loading bar shown while assets are preloaded
+     */
+    private static final int LOADING_BAR_WIDTH = 120;
+
     static {init();}
 
     /**
@@ -47,8 +62,7 @@ public class MainMenu
      */
     public static void init()
     {
-        menuMusic = new SoundClip("/resources/Music/ambience.wav");
-        menuMusic.setVolume(-5f);
+        MusicPlayer.setVolume(-5f);
 
         //configure main menu buttons and actions
         mainMenu = new Menu(4);
@@ -58,7 +72,7 @@ public class MainMenu
                                         {
                                             //start game
                                             GameLoop.newGame();
-                                            menuMusic.stop();
+                                            MusicPlayer.stop(MUSIC_FADE);
                                             GameLoop.setState(GameLoop.STATES.GAME);
                                         }
                                     };
@@ -116,6 +130,12 @@ public class MainMenu
 
     public static void render()
     {
+        if(Preloader.isLoading())
+        {
+            renderLoading();
+            return;
+        }
+
         if(state == STATES.MAIN)
         {
             Renderer.drawText("PERIHELION",Renderer.LARGE_FONT,0,60,255,255,255,255);
@@ -195,9 +215,30 @@ public class MainMenu
 
     }
 
+    /**
+     * Draws the loading bar, filled according to the preloader's progress
+     */
+    private static void renderLoading()
+    {
+        Renderer.drawText("LOADING",Renderer.MEDIUM_FONT,0,10,255,255,255,255);
+
+        float width = LOADING_BAR_WIDTH * Preloader.getProgress();
+
+        Renderer.setColor(255,255,255,255);
+        Renderer.fillRect(Renderer.drawCameraX,10 + Renderer.drawCameraY,LOADING_BAR_WIDTH + 2,8);
+        Renderer.setColor(0,0,0,255);
+        Renderer.fillRect(Renderer.drawCameraX,10 + Renderer.drawCameraY,LOADING_BAR_WIDTH,6);
+        Renderer.setColor(255,255,255,255);
+        Renderer.fillRect(-LOADING_BAR_WIDTH/2f + width/2 + Renderer.drawCameraX,10 + Renderer.drawCameraY,width,6);
+    }
+
     public static void update()
     {
-        menuMusic.loop();
+        MusicPlayer.play(MENU_MUSIC, true, MUSIC_FADE);
+
+        //nothing can be chosen until the assets are loaded
+        if(Preloader.isLoading())
+            return;
 
         switch (state)
         {
@@ -14,9 +14,9 @@ public class MenuOption
     void renderBox()
     {
         Renderer.setColor(255,255,255,255);
-        Renderer.fillRect(x + Renderer.cameraX ,y + Renderer.cameraY,text.length()*Renderer.SMALL_FONT_WIDTH + 4,17);
+        Renderer.fillRect(x + Renderer.drawCameraX ,y + Renderer.drawCameraY,text.length()*Renderer.SMALL_FONT_WIDTH + 4,17);
         Renderer.setColor(0,0,0,255);
-        Renderer.fillRect(x + Renderer.cameraX ,y + Renderer.cameraY,text.length()*Renderer.SMALL_FONT_WIDTH + 2,15);
+        Renderer.fillRect(x + Renderer.drawCameraX ,y + Renderer.drawCameraY,text.length()*Renderer.SMALL_FONT_WIDTH + 2,15);
     }
 
     void render()
@@ -13,11 +13,10 @@ public class ScoreCounter extends GameObject
 
     public  ScoreCounter()
     {
-        //attempt to load animations
-        loadAnimations();
         spriteSheetPath = "/resources/player/score.png";
 
-        System.out.println();
+        //attempt to load animations
+        loadAnimations();
 
         //if no animations are already present create them
         if(animations == null)
@@ -26,6 +25,7 @@ public class ScoreCounter extends GameObject
 
     public void update()
     {
+        savePreviousPosition();
         x = Renderer.cameraX + 128;
         y = Renderer.cameraY - 78;
     }
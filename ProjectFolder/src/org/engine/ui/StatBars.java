@@ -34,11 +34,10 @@ public class StatBars extends GameObject
     {
         owner = player;
 
-        //attempt to load animations
-        loadAnimations();
         spriteSheetPath = "/resources/player/health_bar.png";
 
-        System.out.println();
+        //attempt to load animations
+        loadAnimations();
 
         //if no animations are already present create them
         if(animations == null)
@@ -47,6 +46,8 @@ public class StatBars extends GameObject
 
     public void update()
     {
+        savePreviousPosition();
+
         if(healthTimeToDisappear == 0)
           oldHealthWidth = currentHealthWidth;
 
@@ -93,10 +94,10 @@ public class StatBars extends GameObject
        {
            if( oldHealthWidth > 0)
            {
-               float oldX = Renderer.cameraX - 145f + oldHealthWidth / 2;
+               float oldX = Renderer.drawCameraX - 145f + oldHealthWidth / 2;
 
                Renderer.setColor(255,255,0,255);
-               Renderer.fillRect(oldX,y - 15, oldHealthWidth, HEALTH_BAR_HEIGHT);
+               Renderer.fillRect(oldX,renderY() - 15, oldHealthWidth, HEALTH_BAR_HEIGHT);
                Renderer.setColor(255,255,255,255);
 
                if(healthTimeToDisappear <= TIME/4) //shrink gradually
@@ -110,10 +111,10 @@ public class StatBars extends GameObject
        {
            if(  oldStaminaWidth > 0)
            {
-               float oldX = Renderer.cameraX - 147f + oldStaminaWidth / 2;
+               float oldX = Renderer.drawCameraX - 147f + oldStaminaWidth / 2;
 
                Renderer.setColor(255, 255, 0, 255);
-               Renderer.fillRect(oldX, y - 4.5f, oldStaminaWidth, STAMINA_BAR_HEIGHT);
+               Renderer.fillRect(oldX, renderY() - 4.5f, oldStaminaWidth, STAMINA_BAR_HEIGHT);
                Renderer.setColor(255, 255, 255, 255);
 
                if (staminaTimeToDisappear <= TIME / 4) //shrink gradually
@@ -124,13 +125,13 @@ public class StatBars extends GameObject
        if(currentHealthWidth > 0)
        {
            Renderer.setColor(102,0,254,255);
-           Renderer.fillRect(Renderer.cameraX - 145f + currentHealthWidth / 2,y - 15, currentHealthWidth, HEALTH_BAR_HEIGHT);
+           Renderer.fillRect(Renderer.drawCameraX - 145f + currentHealthWidth / 2,renderY() - 15, currentHealthWidth, HEALTH_BAR_HEIGHT);
        }
 
        if(currentStaminaWidth > 0)
        {
            Renderer.setColor(0,153,90,255);
-           Renderer.fillRect(Renderer.cameraX - 147f + currentStaminaWidth / 2,y - 4.5f, currentStaminaWidth, STAMINA_BAR_HEIGHT);
+           Renderer.fillRect(Renderer.drawCameraX - 147f + currentStaminaWidth / 2,renderY() - 4.5f, currentStaminaWidth, STAMINA_BAR_HEIGHT);
        }
        Renderer.setColor(255,255,255,255);
    }
@@ -0,0 +1,234 @@
+package org.world;
+
+import java.util.Arrays;
+
+/**
+ *  Array backed storage for the game objects of a world.
+ *  It keeps two views of the same objects:
+ *  - the update order, a dense array from which objects flagged for removal are swap-removed in O(1)
+ *  - the depth order, an array kept sorted by the objects' y coordinate (see {@link GameObject#compareTo(GameObject)}).
+ *  Since objects only move a little between frames the depth order is almost sorted every time, so it is maintained with an
+ *  insertion sort which runs in close to linear time instead of a full sort each frame. Objects inserted since the last sort
+ *  are sorted on their own and merged in, as each one could otherwise be carried across the whole array.
+ *  Objects added to the store are buffered and only inserted, as a batch, when {@link #flushAdded()} is called.
+ */
+class EntityStore
+{
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Objects in update order
+     */
+    private GameObject[] objects = new GameObject[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Objects in depth order, may still hold removed objects until {@link #compactDepthOrder()} is called
+     */
+    private GameObject[] depthOrder = new GameObject[INITIAL_CAPACITY];
+    private int depthSize = 0;
+
+    /**
+     * Number of leading entries of the depth order that were in it at the last sort, the others were inserted since
+     */
+    private int depthSorted = 0;
+
+    /**
+     * Receives the objects inserted since the last sort while they are merged into the depth order
+     */
+    private GameObject[] merged = new GameObject[INITIAL_CAPACITY / 4];
+
+    /**
+     * Objects waiting to be inserted with the next call to {@link #flushAdded()}
+     */
+    private GameObject[] added = new GameObject[INITIAL_CAPACITY / 4];
+    private int addedSize = 0;
+
+    /**
+     * Set when objects were removed since the depth order was last compacted
+     */
+    private boolean removedSinceCompaction = false;
+
+    /**
+     * Buffers a game object to be inserted during the next {@link #flushAdded()} call
+     * @param go game object to be added
+     */
+    void add(GameObject go)
+    {
+        if(addedSize == added.length)
+            added = grow(added);
+        added[addedSize++] = go;
+    }
+
+    /**
+     * Inserts all the buffered objects into the store. Objects already present are skipped
+     * @return number of objects that were actually inserted
+     */
+    int flushAdded()
+    {
+        int inserted = 0;
+
+        //removed objects coming back must not appear twice in the depth order
+        compactDepthOrder();
+
+        for(int i = 0; i < addedSize; i++)
+        {
+            GameObject go = added[i];
+            added[i] = null;
+
+            if(go.stored)
+                continue;
+
+            if(size == objects.length)
+                objects = grow(objects);
+            objects[size++] = go;
+
+            if(depthSize == depthOrder.length)
+                depthOrder = grow(depthOrder);
+            depthOrder[depthSize++] = go;
+
+            go.stored = true;
+            inserted++;
+        }
+        addedSize = 0;
+
+        return inserted;
+    }
+
+    /**
+     * Returns the object at the given position in the update order
+     */
+    GameObject get(int index)
+    {
+        return objects[index];
+    }
+
+    /**
+     * Returns the number of objects in the store (buffered objects are not counted)
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes the object at the given position in the update order by moving the last object in its place.
+     * Callers iterating over the store should therefore visit the same index again after a removal.
+     * @param index position of the object in the update order
+     * @return the removed object
+     */
+    GameObject swapRemove(int index)
+    {
+        GameObject go = objects[index];
+        objects[index] = objects[--size];
+        objects[size] = null;
+
+        go.stored = false;
+        removedSinceCompaction = true;
+
+        return go;
+    }
+
+    /**
+     * Drops removed objects from the depth order, keeping the relative order of the remaining ones
+     */
+    void compactDepthOrder()
+    {
+        if(!removedSinceCompaction)
+            return;
+
+        int kept = 0, sorted = 0;
+        for(int i = 0; i < depthSize; i++)
+        {
+            if(depthOrder[i].stored)
+                depthOrder[kept++] = depthOrder[i];
+            if(i < depthSorted)
+                sorted = kept;
+        }
+        for(int i = kept; i < depthSize; i++)
+            depthOrder[i] = null;
+
+        depthSize = kept;
+        depthSorted = sorted;
+        removedSinceCompaction = false;
+    }
+
+    /**
+     * Restores the depth order after objects have moved. Uses a (stable) insertion sort, which only does work for the objects
+     * that actually changed places since the last call, then merges in the objects inserted since
+     */
+    void sortByDepth()
+    {
+        compactDepthOrder();
+
+        for(int i = 1; i < depthSorted; i++)
+        {
+            GameObject go = depthOrder[i];
+            float y = go.y;
+
+            if(depthOrder[i - 1].y <= y)
+                continue;
+
+            int j = i - 1;
+            while(j >= 0 && depthOrder[j].y > y)
+            {
+                depthOrder[j + 1] = depthOrder[j];
+                j--;
+            }
+            depthOrder[j + 1] = go;
+        }
+
+        if(depthSorted < depthSize)
+            mergeInserted();
+        depthSorted = depthSize;
+    }
+
+    /**
+     * Sorts the objects inserted since the last sort and merges them into the sorted part of the depth order, from the back
+     * so that they land after the objects of the same depth already there
+     */
+    private void mergeInserted()
+    {
+        int count = depthSize - depthSorted;
+        if(merged.length < count)
+            merged = new GameObject[Math.max(count, merged.length * 2)];
+
+        Arrays.sort(depthOrder, depthSorted, depthSize);
+        System.arraycopy(depthOrder, depthSorted, merged, 0, count);
+
+        int i = depthSorted - 1, j = count - 1;
+        for(int k = depthSize - 1; j >= 0; k--)
+        {
+            if(i >= 0 && depthOrder[i].y > merged[j].y)
+                depthOrder[k] = depthOrder[i--];
+            else
+                depthOrder[k] = merged[j--];
+        }
+
+        Arrays.fill(merged, 0, count, null);
+    }
+
+    /**
+     * Returns the object at the given position in the depth order
+     */
+    GameObject getByDepth(int index)
+    {
+        return depthOrder[index];
+    }
+
+    /**
+     * Returns the number of entries in the depth order. Only matches {@link #size()} after {@link #sortByDepth()} or
+     * {@link #compactDepthOrder()}
+     */
+    int depthSize()
+    {
+        return depthSize;
+    }
+
+    private static GameObject[] grow(GameObject[] array)
+    {
+        GameObject[] grown = new GameObject[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -4,6 +4,7 @@ import org.engine.GameLoop;
 import org.engine.graphics.Animation;
 import org.engine.graphics.AnimationInformation;
 import org.engine.graphics.Animator;
+import org.engine.graphics.DecalLayer;
 
 import org.engine.graphics.Renderer;
 import org.world.tiles.Tile;
@@ -118,7 +119,7 @@ public abstract class GameObject implements Comparable<GameObject>
     protected int previousAnimation;
 
     /**
-     * Saves the last time the current frame was changed. Used by {@link #playAnimation()};
+     * Saves the last time (in simulated time, see {@link GameLoop#getSimulationNanos()}) the current frame was changed. Used by {@link #playAnimation()};
      */
     private long lastFrameTime;
 
@@ -132,6 +133,36 @@ public abstract class GameObject implements Comparable<GameObject>
      */
     protected boolean flip = false;
 
+    /**
+     * Position of the object at the start of the current tick, used to interpolate between ticks when rendering
+     */
+    protected float previousX, previousY, previousZ;
+
+    /**
+     * Tick during which the previous position was last saved. The previous position is only used while it is still current
+     */
+    private long previousTick = -1;
+
+    /**
+     * Set while the object is part of a world's {@link EntityStore}
+     */
+    boolean stored = false;
+
+    /**
+     * Index of the {@link SpatialGrid} cell this object is filed under, -1 if it is not part of a world's grid
+     */
+    int gridCell = -1;
+
+    /**
+     * Position of this object inside of its grid cell
+     */
+    int gridSlot;
+
+    /**
+     * Maximum distance at which two objects can collide
+     */
+    private static final float COLLISION_RANGE = 30;
+
     /**
      * Computes the euclidean distance between this object and another given one
      * @param go game object to calculate distance to
@@ -139,7 +170,21 @@ public abstract class GameObject implements Comparable<GameObject>
      */
     protected double distanceTo(GameObject go)
     {
-        return Math.sqrt(Math.pow((go.x - this.x), 2) + Math.pow((go.y - this.y), 2) + Math.pow((go.z - this.z), 2));
+        return Math.sqrt(squaredDistanceTo(go));
+    }
+
+    /**
+     * Computes the squared euclidean distance between this object and another given one.
+     * Cheaper than {@link #distanceTo(GameObject)} when only comparing distances
+     * @param go game object to calculate distance to
+     * @return squared distance as a float
+     */
+    protected float squaredDistanceTo(GameObject go)
+    {
+        float dx = go.x - this.x;
+        float dy = go.y - this.y;
+        float dz = go.z - this.z;
+        return dx * dx + dy * dy + dz * dz;
     }
 
     /**
@@ -154,16 +199,54 @@ public abstract class GameObject implements Comparable<GameObject>
         double actualX = (x + y) * Tile.GROUND_TILE_WIDTH / 2f;
         double actualY = (y - x) * Tile.GROUND_TILE_HEIGHT / 2f;
         double actualZ = this.z;
-        return Math.sqrt(Math.pow((actualX - this.x), 2) + Math.pow((actualY - this.y), 2) + Math.pow((actualZ - this.z), 2));
+        return Math.sqrt((actualX - this.x) * (actualX - this.x) + (actualY - this.y) * (actualY - this.y) + (actualZ - this.z) * (actualZ - this.z));
+    }
+
+    /**
+     * Saves the current position as the previous one. Called at the start of every tick, before the object is moved, for
+     * all objects in the world. Objects that are updated by other objects (shadows, weapons) save their own position.
+     */
+    public void savePreviousPosition()
+    {
+        previousX = x;
+        previousY = y;
+        previousZ = z;
+        previousTick = GameLoop.getTickCount();
     }
 
     /**
-     * Attempts to load the animations from the Animator class
+     * Returns the x coordinate the object should be drawn at, between its previous and current position depending on
+     * how far the game loop is into the next tick
+     */
+    public float renderX() { return interpolate(previousX, x); }
+
+    /**
+     * Returns the y coordinate the object should be drawn at, see {@link #renderX()}
+     */
+    public float renderY() { return interpolate(previousY, y); }
+
+    /**
+     * Returns the z coordinate the object should be drawn at, see {@link #renderX()}
+     */
+    public float renderZ() { return interpolate(previousZ, z); }
+
+    private float interpolate(float previous, float current)
+    {
+        //objects that were not updated during the last tick are drawn where they are
+        if(previousTick != GameLoop.getTickCount())
+            return current;
+
+        return previous + (current - previous) * GameLoop.getInterpolationAlpha();
+    }
+
+    /**
+     * Attempts to load the animations from the Animator class, which holds them by sprite sheet path
+     * ({@link #spriteSheetPath} must be set first).
      * If no animation is present the reference is null after method call
      */
     protected void loadAnimations()
     {
-        this.animations = Animator.getAnimation(this.getClass().getSimpleName());
+        this.animations = spriteSheetPath == null ? null : Animator.getAnimation(spriteSheetPath);
         if(animations!=null)
         {
             spriteWidth = (int) animations[0].frames[0].getWidth();
@@ -206,7 +289,8 @@ public abstract class GameObject implements Comparable<GameObject>
      */
     protected void playAnimation()
     {
-        long currentTime = System.nanoTime();
+        //follow the simulation rather than the wall clock, so frame timing holds however fast the game is updated
+        long currentTime = GameLoop.getSimulationNanos();
 
         if(currentTime > lastFrameTime + 1000000000 / animations[currentAnimation].fps)
         {
@@ -222,6 +306,36 @@ public abstract class GameObject implements Comparable<GameObject>
         }
     }
 
+    /**
+     * Gives back the resources the object acquired (sounds, shared images, see {@link org.engine.resources.AssetManager}).
+     * Called by the world once the object is removed from it, or when the world itself is torn down. Does nothing by
+     * default
+     */
+    public void dispose() {}
+
+    /**
+     * First phase of an update, run for all objects before any of them is updated and possibly in parallel (see
+     * {@link World#update()}). Objects may look at the world, which does not change during this phase, and prepare
+     * their next update, but must not change anything other than their own plans. Does nothing by default
+     */
+    public void think() {}
+
+    /**
+     * Tells whether the object never moves nor changes once added to a world (decorations). The world keeps such objects
+     * out of its updates, see {@link StaticObjects}. False by default
+     */
+    public boolean isStatic() { return false; }
+
+    /**
+     * Advances the object's animations without drawing it. Drawing already does this, so this is only needed when the
+     * game runs without rendering (headless mode). Objects that draw other objects as part of themselves advance them too
+     */
+    public void animate()
+    {
+        if(animations != null)
+            playAnimation();
+    }
+
     /**
      * Update method called each update cycle as long the object is still present in the game world
      * Implemented in subclasses according to their respective needs
@@ -240,7 +354,7 @@ public abstract class GameObject implements Comparable<GameObject>
         if (previousAnimation != currentAnimation)
         {
             currentFrame = 0;
-            lastFrameTime = System.nanoTime();
+            lastFrameTime = GameLoop.getSimulationNanos();
         }
 
         previousAnimation = currentAnimation;
@@ -248,32 +362,75 @@ public abstract class GameObject implements Comparable<GameObject>
 
     /**
      *  Checks for collisions with nearby game objects. Each solid object has a "box" around it
-     *  defined by its x,y,and z dimensions. This function checks if they overlap
+     *  defined by its x,y,and z dimensions. This function checks if they overlap.
+     *  Only the objects filed in the world's {@link SpatialGrid} cells around this object, and the solid static objects of
+     *  the same cells (see {@link StaticObjects}), are considered.
      *
      * @param exception game object to ignore when considering collisions, can be occasionally useful
      */
     public boolean checkCollision(GameObject exception)
     {
-        for(GameObject go : GameLoop.getWorld().gameObjects)
-        {
-            if( !this.equals(go) && !go.equals(exception) && go.solid && distanceTo(go) <= 30 )
+        SpatialGrid grid = GameLoop.getWorld().getSpatialGrid();
+        StaticObjects statics = GameLoop.getWorld().getStaticObjects();
+
+        int cellX = grid.cellX(x, y);
+        int cellY = grid.cellY(x, y);
+
+        int minX = Math.max(0, cellX - SpatialGrid.QUERY_RADIUS);
+        int maxX = Math.min(grid.getWidth() - 1, cellX + SpatialGrid.QUERY_RADIUS);
+        int minY = Math.max(0, cellY - SpatialGrid.QUERY_RADIUS);
+        int maxY = Math.min(grid.getHeight() - 1, cellY + SpatialGrid.QUERY_RADIUS);
+
+        for(int i = minX; i <= maxX; i++)
+            for(int j = minY; j <= maxY; j++)
+            {
+                int cell = grid.index(i, j);
+                GameObject[] objects = grid.objects(cell);
+
+                for(int k = 0, count = grid.count(cell); k < count; k++)
                 {
-                boolean xCollision = (this.x + this.xWidth  >= go.x - go.xWidth) && (go.x - go.xWidth >= this.x - this.xWidth) || (this.x - this.xWidth  >= go.x - go.xWidth) && (go.x + go.xWidth >= this.x - this.xWidth) ;
-                boolean yCollision = (this.y >= go.y - go.yWidth) && (go.y - go.yWidth >= this.y - this.yWidth) || (this.y - this.yWidth  >= go.y - go.yWidth) && (go.y >= this.y - this.yWidth) ;
-                boolean zCollision = (this.z <= go.z + go.zWidth) && (go.z + go.zWidth <= this.z + this.zWidth) || (this.z + this.zWidth  >= go.z) && (go.z + go.zWidth >= this.z + this.zWidth) ;
+                    GameObject go = objects[k];
+                    if(go != this && go != exception && go.solid && collidesWith(go))
+                    {
+                        //report collision and save what the last collision was
+                        previousCollision = go;
+                        return true;
+                    }
+                }
 
-                if( xCollision && yCollision && zCollision)
+                GameObject[] solids = statics.cellObjects();
+                for(int k = statics.cellStart(cell), end = statics.cellEnd(cell); k < end; k++)
                 {
-                    //report collision and save what the last collision was
-                    previousCollision = go;
-                    return true;
+                    GameObject go = solids[k];
+                    if(go != this && go != exception && collidesWith(go))
+                    {
+                        previousCollision = go;
+                        return true;
+                    }
                 }
             }
-        }
+
         previousCollision = null;
         return false;
     }
 
+    /**
+     * Narrow-phase collision test between the boxes of this object and another one
+     * @param go game object to test against
+     * @return true if the objects are close enough and their boxes overlap
+     */
+    boolean collidesWith(GameObject go)
+    {
+        if(squaredDistanceTo(go) > COLLISION_RANGE * COLLISION_RANGE)
+            return false;
+
+        boolean xCollision = (this.x + this.xWidth  >= go.x - go.xWidth) && (go.x - go.xWidth >= this.x - this.xWidth) || (this.x - this.xWidth  >= go.x - go.xWidth) && (go.x + go.xWidth >= this.x - this.xWidth) ;
+        boolean yCollision = (this.y >= go.y - go.yWidth) && (go.y - go.yWidth >= this.y - this.yWidth) || (this.y - this.yWidth  >= go.y - go.yWidth) && (go.y >= this.y - this.yWidth) ;
+        boolean zCollision = (this.z <= go.z + go.zWidth) && (go.z + go.zWidth <= this.z + this.zWidth) || (this.z + this.zWidth  >= go.z) && (go.z + go.zWidth >= this.z + this.zWidth) ;
+
+        return xCollision && yCollision && zCollision;
+    }
+
     /**
      *  Renders the object when necessary, is overridden in some instances(ex. Player, Tiles) when more/different
      *  functionality is needed
@@ -284,11 +441,26 @@ public abstract class GameObject implements Comparable<GameObject>
             return;
 
         Renderer.setRotation(rotation);
-        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight,x,y - Tile.GROUND_TILE_Z_HEIGHT * z - spriteHeight / 2f,flip);
+        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, renderX(), renderY() - Tile.GROUND_TILE_Z_HEIGHT * renderZ() - spriteHeight / 2f, flip);
         Renderer.setRotation(0);
         playAnimation();
     }
 
+    /**
+     * Paints the object's current frame onto a decal layer, where {@link #render()} would draw it once the object stopped
+     * moving. Used for objects that are about to be removed but should stay visible (see {@link DecalLayer}).
+     * Rotation is not applied
+     * @param layer layer receiving the frame
+     */
+    public void paintOnto(DecalLayer layer)
+    {
+        if(!render || animations == null)
+            return;
+
+        layer.add(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, x,
+                y - Tile.GROUND_TILE_Z_HEIGHT * z - spriteHeight / 2f, flip);
+    }
+
     /**
      * //comparison for depth sorting when rendering
      * @param go object to be compared to
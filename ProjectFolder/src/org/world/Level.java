@@ -0,0 +1,409 @@
+package org.world;
+
+import org.world.decoratioms.SolidDecoration;
+import org.world.tiles.TileRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  A level read from a level file: the map's tiles, its decorations, the points enemies spawn at and the wave script.
+ *  Level files are binary, big-endian, and made of a fixed header followed by tables:
+ *  - header ({@value #HEADER_SIZE} bytes): magic "PLVL", version (short), chunk size (short), width and height of the map
+ *    (ints), then the offset and entry count (ints) of the texture, tile, decoration, spawn point and wave tables. The tile
+ *    table's count is its number of chunks
+ *  - textures: for each texture index used by the tiles (from 1), the length (short) and UTF-8 bytes of its name
+ *  - tiles: the {@link TileRecord}s of the map (shorts), chunk after chunk in the order of the terrain's chunk keys, each
+ *    chunk holding chunk size x chunk size records by first then second index (records of tiles outside of the map are
+ *    {@link TileRecord#EMPTY})
+ *  - decorations: x, y (ints), kind (byte, see {@link MapGenerator.DecorationKind}) and flip (byte) of each decoration
+ *  - spawn points: x, y (ints) and side (byte) of each point
+ *  - waves: number of enemies and delay before the wave in updates (ints) of each scripted wave
+ *  The tile table is not read up front: the file is mapped into memory, and the level's terrain generator copies a
+ *  chunk's records out of the mapping when the terrain loads it, so only the tiles in use are ever read.
+ *  Texture indices are never cut down to fit a record: a map whose textures do not fit is not written, and a tile of the
+ *  file whose texture is not in its texture table fails the loading of its chunk.
+ */
+public class Level implements TerrainGenerator
+{
+    /**
+     * "PLVL"
+     */
+    public static final int MAGIC = 0x504C564C;
+
+    /**
+     * Version written, the only one read
+     */
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 56;
+
+    private static final int DECORATION_SIZE = 10, SPAWN_SIZE = 9, WAVE_SIZE = 8;
+
+    private final int width, height;
+
+    /**
+     * Path of the file, to name it in errors
+     */
+    private final String path;
+
+    /**
+     * Tile table, mapped from the file
+     */
+    private final ShortBuffer tiles;
+
+    /**
+     * Texture index used by this process for each texture index of the file, null if they are the same
+     */
+    private final int[] textures;
+
+    /**
+     * Number of textures in the file's texture table
+     */
+    private final int textureCount;
+
+    private final List<MapGenerator.Decoration> decorations;
+    private final int[] spawnX, spawnY, spawnSide;
+    private final int[] waveEnemies, waveDelays;
+
+    private Level(String path, int width, int height, ShortBuffer tiles, int[] textures, int textureCount,
+                  List<MapGenerator.Decoration> decorations, int[] spawnX, int[] spawnY, int[] spawnSide, int[] waveEnemies,
+                  int[] waveDelays)
+    {
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+        this.textures = textures;
+        this.textureCount = textureCount;
+        this.decorations = decorations;
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnSide = spawnSide;
+        this.waveEnemies = waveEnemies;
+        this.waveDelays = waveDelays;
+    }
+
+    /**
+     * Finds a level and reads it. A level among the resources of the game is mapped where it is if it is a plain file,
+     * otherwise (e.g. inside of a jar) it is copied to a temporary file first
+     * @param path path of the level among the resources of the game (e.g. "/resources/Levels/test.lvl"), or absolute path
+     *             of a level file
+     * @return the level
+     * @throws IOException if there is no such level, or it cannot be read (see {@link #read(String)})
+     */
+    public static Level load(String path) throws IOException
+    {
+        URL url = path.startsWith("/") ? Level.class.getResource(path) : null;
+        if(url == null)
+        {
+            if(!Paths.get(path).isAbsolute())
+                throw new IOException(path + " is neither among the resources of the game nor an absolute path");
+            return read(path);
+        }
+
+        if(url.getProtocol().equals("file"))
+        {
+            try
+            {
+                return read(Paths.get(url.toURI()).toString());
+            }
+            catch (URISyntaxException e)
+            {
+                throw new IOException(path + " cannot be found", e);
+            }
+        }
+
+        Path copy = Files.createTempFile("level", ".lvl");
+        copy.toFile().deleteOnExit();
+        try (InputStream in = url.openStream())
+        {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return read(copy.toString());
+    }
+
+    /**
+     * Reads a level file, mapping it into memory
+     * @param path path of the file
+     * @return the level
+     * @throws IOException if the file cannot be read, is not a level file of this version, or names more textures than
+     * a record can refer to
+     */
+    public static Level read(String path) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try
+        {
+            if(buffer.getInt(0) != MAGIC)
+                throw new IOException(path + " is not a level file");
+            if(buffer.getShort(4) != VERSION)
+                throw new IOException(path + " is a level file of version " + buffer.getShort(4) + ", only version " + VERSION + " can be read");
+            if(buffer.getShort(6) != Terrain.CHUNK_SIZE)
+                throw new IOException(path + " holds chunks of " + buffer.getShort(6) + " tiles, " + Terrain.CHUNK_SIZE + " are needed");
+
+            int width = buffer.getInt(8), height = buffer.getInt(12);
+            int chunks = ((width + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE) * ((height + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE);
+            if(width <= 0 || height <= 0 || buffer.getInt(28) != chunks)
+                throw new IOException(path + " has a broken header");
+
+            //texture names, matched with the indices of this process
+            int textureCount = buffer.getInt(20);
+            if(textureCount >= TileRecord.MAX_TEXTURES)
+                throw new IOException(path + " names " + textureCount + " textures, a tile can only refer to "
+                        + (TileRecord.MAX_TEXTURES - 1));
+
+            ByteBuffer table = section(buffer, 16, 0);
+            int[] textures = new int[TileRecord.MAX_TEXTURES];
+            boolean same = true;
+            for(int i = 1; i <= textureCount; i++)
+            {
+                byte[] name = new byte[table.getShort()];
+                table.get(name);
+                try
+                {
+                    textures[i] = TileRecord.textureId(new String(name, StandardCharsets.UTF_8));
+                }
+                catch(IllegalStateException e)
+                {
+                    throw new IOException(path + " needs more tile textures than can be loaded", e);
+                }
+                same &= textures[i] == i;
+            }
+
+            ShortBuffer tiles = section(buffer, 24, (long) chunks * Terrain.CHUNK_SIZE * Terrain.CHUNK_SIZE * 2).asShortBuffer();
+
+            List<MapGenerator.Decoration> decorations = new ArrayList<>();
+            table = section(buffer, 32, (long) buffer.getInt(36) * DECORATION_SIZE);
+            for(int i = buffer.getInt(36); i > 0; i--)
+            {
+                int x = table.getInt(), y = table.getInt();
+                MapGenerator.DecorationKind kind = MapGenerator.DecorationKind.values()[table.get()];
+                decorations.add(new MapGenerator.Decoration(x, y, kind, table.get() != 0));
+                if(x < 0 || x >= width || y < 0 || y >= height)
+                    throw new IOException(path + " has a decoration outside of the map");
+            }
+
+            table = section(buffer, 40, (long) buffer.getInt(44) * SPAWN_SIZE);
+            int[] spawnX = new int[buffer.getInt(44)], spawnY = new int[spawnX.length], spawnSide = new int[spawnX.length];
+            for(int i = 0; i < spawnX.length; i++)
+            {
+                spawnX[i] = table.getInt();
+                spawnY[i] = table.getInt();
+                spawnSide[i] = table.get();
+                if(spawnX[i] < 0 || spawnX[i] >= width || spawnY[i] < 0 || spawnY[i] >= height)
+                    throw new IOException(path + " has a spawn point outside of the map");
+            }
+
+            table = section(buffer, 48, (long) buffer.getInt(52) * WAVE_SIZE);
+            int[] waveEnemies = new int[buffer.getInt(52)], waveDelays = new int[waveEnemies.length];
+            for(int i = 0; i < waveEnemies.length; i++)
+            {
+                waveEnemies[i] = table.getInt();
+                waveDelays[i] = table.getInt();
+            }
+
+            return new Level(path, width, height, tiles, same ? null : textures, textureCount, decorations, spawnX, spawnY,
+                    spawnSide, waveEnemies, waveDelays);
+        }
+        catch(IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e)
+        {
+            throw new IOException(path + " is cut short or broken", e);
+        }
+    }
+
+    /**
+     * Returns a buffer starting at a table of the file
+     * @param buffer the whole file
+     * @param header position of the table's offset in the header
+     * @param length size of the table in bytes, checked against the size of the file (0 if not known up front)
+     */
+    private static ByteBuffer section(ByteBuffer buffer, int header, long length)
+    {
+        int offset = buffer.getInt(header);
+        if(offset < HEADER_SIZE || length < 0 || offset + length > buffer.limit())
+            throw new IndexOutOfBoundsException();
+
+        ByteBuffer section = buffer.duplicate();
+        section.position(offset);
+        return section.slice();
+    }
+
+    /**
+     * Copies the records of a chunk out of the tile table
+     * @throws UncheckedIOException if a tile of the chunk refers to a texture missing from the file's texture table
+     */
+    @Override
+    public void generate(int firstX, int firstY, int width, int height, short[] records)
+    {
+        int yChunks = (height + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE;
+        int chunk = (firstX / Terrain.CHUNK_SIZE) * yChunks + firstY / Terrain.CHUNK_SIZE;
+
+        //absolute reads, so that chunks can be copied from several threads at once
+        ShortBuffer source = tiles.duplicate();
+        source.position(chunk * records.length);
+        source.get(records);
+
+        for(int i = 0; i < records.length; i++)
+        {
+            if(!TileRecord.isPresent(records[i]))
+                continue;
+
+            int texture = TileRecord.texture(records[i]);
+            if(texture > textureCount)
+                throw new UncheckedIOException(new IOException(path + ": tile " + (firstX + i / Terrain.CHUNK_SIZE) + ","
+                        + (firstY + i % Terrain.CHUNK_SIZE) + " has texture " + texture + ", the file names only "
+                        + textureCount));
+
+            if(textures != null)
+                records[i] = TileRecord.pack(textures[texture], TileRecord.height(records[i]), TileRecord.isTraversable(records[i]));
+        }
+    }
+
+    /**
+     * Writes the current state of a world into a level file: every tile of its terrain, its decorations, spawn points and
+     * wave script
+     * @param world the world
+     * @param path path of the file, replaced if it exists
+     * @throws IOException if the file cannot be written, or a tile's texture does not fit the texture field of a record
+     */
+    public static void write(World world, String path) throws IOException
+    {
+        Terrain terrain = world.getTerrain();
+        int width = terrain.getWidth(), height = terrain.getHeight();
+        int xChunks = (width + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE, yChunks = (height + Terrain.CHUNK_SIZE - 1) / Terrain.CHUNK_SIZE;
+        int chunkRecords = Terrain.CHUNK_SIZE * Terrain.CHUNK_SIZE;
+
+        //textures, from the records themselves so that only those in use are written
+        List<byte[]> names = new ArrayList<>();
+        int[] textures = new int[TileRecord.MAX_TEXTURES];
+        short[] records = new short[xChunks * yChunks * chunkRecords];
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+            {
+                short record = terrain.getTile(x, y);
+                int texture = TileRecord.texture(record);
+                if(texture != 0 && textures[texture] == 0)
+                {
+                    String name = TileRecord.textureName(texture);
+                    if(name == null || names.size() == TileRecord.MAX_TEXTURES - 1)
+                        throw new IOException("tile " + x + "," + y + " has texture " + texture + ", which does not fit "
+                                + "the texture table of a level, " + path + " is not written");
+
+                    names.add(name.getBytes(StandardCharsets.UTF_8));
+                    textures[texture] = names.size();
+                }
+
+                if(TileRecord.isPresent(record))
+                    record = TileRecord.pack(textures[texture], TileRecord.height(record), TileRecord.isTraversable(record));
+                records[((x / Terrain.CHUNK_SIZE) * yChunks + y / Terrain.CHUNK_SIZE) * chunkRecords
+                        + (x % Terrain.CHUNK_SIZE) * Terrain.CHUNK_SIZE + y % Terrain.CHUNK_SIZE] = record;
+            }
+
+        List<GameObject> decorations = new ArrayList<>();
+        for(int x = 0; x < width; x++)
+            for(int y = 0; y < height; y++)
+                if(world.getDecoration(x, y) != null)
+                    decorations.add(world.getDecoration(x, y));
+
+        int[][] spawns = world.getSpawnPoints();
+        int[][] waves = world.getWaveScript();
+
+        int namesSize = 0;
+        for(byte[] name : names)
+            namesSize += 2 + name.length;
+
+        int texturesOffset = HEADER_SIZE;
+        int tilesOffset = texturesOffset + namesSize;
+        int decorationsOffset = tilesOffset + records.length * 2;
+        int spawnsOffset = decorationsOffset + decorations.size() * DECORATION_SIZE;
+        int wavesOffset = spawnsOffset + spawns.length * SPAWN_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(wavesOffset + waves.length * WAVE_SIZE);
+
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) Terrain.CHUNK_SIZE).putInt(width).putInt(height)
+                .putInt(texturesOffset).putInt(names.size())
+                .putInt(tilesOffset).putInt(xChunks * yChunks)
+                .putInt(decorationsOffset).putInt(decorations.size())
+                .putInt(spawnsOffset).putInt(spawns.length)
+                .putInt(wavesOffset).putInt(waves.length);
+
+        for(byte[] name : names)
+            buffer.putShort((short) name.length).put(name);
+
+        buffer.asShortBuffer().put(records);
+        buffer.position(decorationsOffset);
+
+        for(GameObject decoration : decorations)
+        {
+            MapGenerator.DecorationKind kind = decoration instanceof SolidDecoration ? MapGenerator.DecorationKind.ROCK
+                    : MapGenerator.DecorationKind.GRASS;
+            buffer.putInt(decoration.isoX).putInt(decoration.isoY).put((byte) kind.ordinal()).put((byte) (decoration.flip ? 1 : 0));
+        }
+
+        for(int[] spawn : spawns)
+            buffer.putInt(spawn[0]).putInt(spawn[1]).put((byte) spawn[2]);
+
+        for(int[] wave : waves)
+            buffer.putInt(wave[0]).putInt(wave[1]);
+
+        Files.write(Paths.get(path), buffer.array());
+    }
+
+    /**
+     * Returns the width of the map, in tiles (first index)
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the height of the map, in tiles (second index)
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the decorations of the level
+     */
+    public List<MapGenerator.Decoration> getDecorations() { return decorations; }
+
+    /**
+     * Returns the points enemies spawn at, as {x, y, side}, see {@link World#getSpawnPoints()}
+     */
+    public int[][] getSpawnPoints()
+    {
+        int[][] spawns = new int[spawnX.length][];
+        for(int i = 0; i < spawns.length; i++)
+            spawns[i] = new int[] {spawnX[i], spawnY[i], spawnSide[i]};
+        return spawns;
+    }
+
+    /**
+     * Returns the scripted waves of the level, as {number of enemies, delay}, see {@link World#getWaveScript()}
+     */
+    public int[][] getWaveScript()
+    {
+        int[][] waves = new int[waveEnemies.length][];
+        for(int i = 0; i < waves.length; i++)
+            waves[i] = new int[] {waveEnemies[i], waveDelays[i]};
+        return waves;
+    }
+}
@@ -0,0 +1,211 @@
+package org.world;
+
+import org.world.tiles.TileRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  Seeded procedural generation of a map: the tiles of the terrain (ground with the odd cliff tile, and cliffs raised
+ *  along the first row and the last column) and where decorations are placed.
+ *  The map is split into regions the size of the terrain's chunks, each drawing from its own random streams (one for the
+ *  tiles, one for the decorations) seeded with the map's seed and the region's position only. A region therefore always
+ *  comes out the same, whichever thread generates it and in whichever order, whether alone (when the terrain loads a
+ *  chunk) or along with the whole map, and the same seed always gives the same map.
+ */
+public class MapGenerator implements TerrainGenerator
+{
+    /**
+     * Width/height of a region, in tiles
+     */
+    public static final int REGION_SIZE = Terrain.CHUNK_SIZE;
+
+    /**
+     * Number of regions below which decoration placement is not split any further between threads
+     */
+    private static final int REGION_BATCH = 4;
+
+    //streams of a region
+    private static final int TILES = 0, DECORATIONS = 1;
+
+    /**
+     * Kind of a placed decoration
+     */
+    public enum DecorationKind { GRASS, ROCK }
+
+    /**
+     * A decoration to be placed on a tile
+     */
+    public static class Decoration
+    {
+        public final int x, y;
+        public final DecorationKind kind;
+        public final boolean flip;
+
+        Decoration(int x, int y, DecorationKind kind, boolean flip)
+        {
+            this.x = x;
+            this.y = y;
+            this.kind = kind;
+            this.flip = flip;
+        }
+    }
+
+    private final long seed;
+    private final int dirt, cliff;
+
+    /**
+     * Creates a generator
+     * @param seed seed of every random choice made
+     */
+    public MapGenerator(long seed)
+    {
+        this.seed = seed;
+        dirt = TileRecord.textureId("dirt");
+        cliff = TileRecord.textureId("cliff");
+    }
+
+    /**
+     * Generates the tiles of a region: cliffs raised 3 levels along the first row and the last column, elsewhere ground at
+     * height 0 with one tile out of ten a cliff tile
+     */
+    @Override
+    public void generate(int firstX, int firstY, int width, int height, short[] records)
+    {
+        SplittableRandom random = stream(firstX, firstY, TILES);
+
+        for(int i = 0; i < REGION_SIZE; i++)
+            for(int j = 0; j < REGION_SIZE; j++)
+            {
+                int x = firstX + i, y = firstY + j;
+                if(x >= width || y >= height)
+                    continue;
+
+                if(y == 0 || x == width - 1)
+                    records[i * REGION_SIZE + j] = TileRecord.pack(cliff, 3, true);
+                else
+                    records[i * REGION_SIZE + j] = TileRecord.pack(random.nextInt(10) > 8 ? cliff : dirt, 0, true);
+            }
+    }
+
+    /**
+     * Places the decorations of a region, away from the edges of the map. The odds of a decoration shrink as the map gets
+     * wider, so that a 16 tiles wide map gets about one tile out of three decorated
+     * @param firstX first index of the region's first tile, a multiple of {@link #REGION_SIZE}
+     * @param firstY second index of the region's first tile, a multiple of {@link #REGION_SIZE}
+     * @param width number of tiles of the map along the first index
+     * @param height number of tiles of the map along the second index
+     * @param placed receives the decorations, by first then second index
+     */
+    public void decorate(int firstX, int firstY, int width, int height, List<Decoration> placed)
+    {
+        SplittableRandom random = stream(firstX, firstY, DECORATIONS);
+
+        for(int x = Math.max(1, firstX); x < Math.min(firstX + REGION_SIZE, width - 1); x++)
+            for(int y = Math.max(1, firstY); y < Math.min(firstY + REGION_SIZE, height - 1); y++)
+            {
+                int num = random.nextInt(width);
+
+                if(num > 6 && num < 12)
+                    placed.add(new Decoration(x, y, DecorationKind.GRASS, random.nextBoolean()));
+                else if(num == 5)
+                    placed.add(new Decoration(x, y, DecorationKind.ROCK, random.nextBoolean()));
+            }
+    }
+
+    /**
+     * Places the decorations of a whole map, the regions split between the threads of a pool
+     * @param width number of tiles of the map along the first index
+     * @param height number of tiles of the map along the second index
+     * @param pool pool generating the regions, null to generate them on the calling thread
+     * @return the decorations, region by region, the same for any pool
+     */
+    public List<Decoration> decorate(int width, int height, ForkJoinPool pool)
+    {
+        int yRegions = (height + REGION_SIZE - 1) / REGION_SIZE;
+        int regions = ((width + REGION_SIZE - 1) / REGION_SIZE) * yRegions;
+
+        //each region is placed into its own list, joined in order once all are done
+        List<List<Decoration>> placed = new ArrayList<>(regions);
+        for(int i = 0; i < regions; i++)
+            placed.add(new ArrayList<>());
+
+        if(pool == null)
+        {
+            for(int region = 0; region < regions; region++)
+                decorate((region / yRegions) * REGION_SIZE, (region % yRegions) * REGION_SIZE, width, height, placed.get(region));
+        }
+        else
+            pool.invoke(new DecorateTask(width, height, yRegions, placed, 0, regions));
+
+        List<Decoration> decorations = new ArrayList<>();
+        for(List<Decoration> region : placed)
+            decorations.addAll(region);
+        return decorations;
+    }
+
+    /**
+     * Places the decorations of a range of regions, splitting it in halves until it is small enough
+     */
+    private class DecorateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int width, height, yRegions;
+        private final List<List<Decoration>> placed;
+        private final int from, to;
+
+        DecorateTask(int width, int height, int yRegions, List<List<Decoration>> placed, int from, int to)
+        {
+            this.width = width;
+            this.height = height;
+            this.yRegions = yRegions;
+            this.placed = placed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= REGION_BATCH)
+            {
+                for(int region = from; region < to; region++)
+                    decorate((region / yRegions) * REGION_SIZE, (region % yRegions) * REGION_SIZE, width, height, placed.get(region));
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new DecorateTask(width, height, yRegions, placed, from, middle),
+                    new DecorateTask(width, height, yRegions, placed, middle, to));
+        }
+    }
+
+    /**
+     * Creates the random stream of a region, from the seed, the region and the kind of stream only
+     */
+    private SplittableRandom stream(int firstX, int firstY, int kind)
+    {
+        //mixed, as streams made from nearby seeds would be shifted copies of one another
+        long region = ((long) firstX << 32 | firstY & 0xffffffffL) * 2 + kind;
+        return new SplittableRandom(mix(seed ^ mix(region)));
+    }
+
+    /**
+     * Scrambles the bits of a value (the finalizer of SplitMix64)
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the seed of the map
+     */
+    public long getSeed() { return seed; }
+}
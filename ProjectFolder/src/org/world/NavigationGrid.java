@@ -0,0 +1,430 @@
+package org.world;
+
+import org.world.tiles.TileRecord;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *  A packed copy of what movement and pathfinding need to know about each tile of the {@link Terrain}: whether it is
+ *  traversable, whether a solid decoration stands on it and its height.
+ *  The grid is split into pages, one per chunk of the terrain. A page is read from its chunk's tiles the first time one of
+ *  its tiles is asked for (which generates the chunk if needed), and dropped when the terrain drops the chunk, so the
+ *  memory used follows the chunks the terrain keeps rather than the size of the map. Within a page, traversable tiles are
+ *  kept as a bitset and heights as shorts (in 1/{@value #HEIGHT_SCALE} of a tile), so the queries made for every step of
+ *  every moving object read a few words of flat arrays instead of following tile and decoration objects.
+ *  Tiles are indexed page by page (see {@link #index(int, int)}), like the search state of the pathfinders.
+ *  Solid decorations are kept apart, a bitset for each page loaded or holding any, since they are placed by the world and
+ *  cannot be read back from the chunks.
+ *  The grid is not read from the tiles on each query: {@link Terrain#setTile(int, int, short)} and
+ *  {@link World#setDecoration(int, int, GameObject)} update the cells they change. Every change bumps the
+ *  {@link #getVersion() version}, so that anything computed from the grid can tell when it is out of date. Pages being
+ *  read or dropped do not change the version, since they always hold the same tiles.
+ *  The grid also keeps its {@link NavigationRegions}, which answer whether two tiles are connected at all.
+ */
+public class NavigationGrid
+{
+    /**
+     * Number of height units per tile of height
+     */
+    public static final int HEIGHT_SCALE = 16;
+
+    /**
+     * Number of bits of a tile's coordinates giving its position within its page, the pages being the size of the
+     * terrain's chunks
+     */
+    static final int PAGE_BITS = Integer.numberOfTrailingZeros(Terrain.CHUNK_SIZE);
+
+    /**
+     * Width/height of a page, in tiles
+     */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * Number of tiles of a page: the index of a tile divided by it gives the key of the tile's page
+     */
+    public static final int PAGE_TILES = PAGE_SIZE * PAGE_SIZE;
+
+    /**
+     * Height of the cells without a tile, higher than any tile so that they are never walked into
+     */
+    private static final short NO_TILE = Short.MAX_VALUE;
+
+    /**
+     * The cells of a chunk of the terrain
+     */
+    static final class Page
+    {
+        /**
+         * One bit per tile: set if the tile exists and is traversable / if a solid decoration stands on it. The solid bits
+         * are those the grid keeps for the page, shared with it
+         */
+        final long[] traversable = new long[PAGE_TILES >> 6], solid;
+
+        /**
+         * Height of each tile, in height units
+         */
+        final short[] heights = new short[PAGE_TILES];
+
+        /**
+         * Regions of the page's free tiles, computed by the {@link NavigationRegions} when needed, null when out of date
+         */
+        NavigationRegions.Local regions;
+
+        /**
+         * Reads a page from the records of its chunk's tiles
+         */
+        Page(short[] records, long[] solid)
+        {
+            for(int i = 0; i < PAGE_TILES; i++)
+            {
+                setBit(traversable, i, TileRecord.isPresent(records[i]) && TileRecord.isTraversable(records[i]));
+                heights[i] = height(records[i]);
+            }
+            this.solid = solid;
+        }
+    }
+
+    private final Terrain terrain;
+    private final int width, height;
+
+    /**
+     * Number of pages along each dimension of the map
+     */
+    private final int xPages, yPages;
+
+    /**
+     * Pages read from the terrain's chunks, null for the chunks not loaded
+     */
+    private final Page[] pages;
+    private int loadedPages = 0;
+
+    /**
+     * Solid bits of the loaded pages and of the pages holding solid decorations
+     */
+    private final HashMap<Integer, long[]> solid = new HashMap<>();
+
+    private int version = 0;
+
+    /**
+     * Connected regions of the grid, told about every change
+     */
+    private final NavigationRegions regions;
+
+    /**
+     * Creates the grid of a terrain, reading its tiles as they are needed
+     * @param terrain terrain of the tiles, which tells the grid when it drops a chunk
+     */
+    NavigationGrid(Terrain terrain)
+    {
+        this.terrain = terrain;
+        width = terrain.getWidth();
+        height = terrain.getHeight();
+        xPages = (width + PAGE_SIZE - 1) >> PAGE_BITS;
+        yPages = (height + PAGE_SIZE - 1) >> PAGE_BITS;
+        pages = new Page[xPages * yPages];
+
+        regions = new NavigationRegions(this);
+    }
+
+    /**
+     * Returns the page with the given key (same as the terrain's chunks), reading it first if it is not loaded
+     */
+    Page page(int key)
+    {
+        Page page = pages[key];
+        return page != null ? page : load(key);
+    }
+
+    /**
+     * Returns the page with the given key if it is loaded, null otherwise
+     */
+    Page loadedPage(int key) { return pages[key]; }
+
+    /**
+     * Reads a page from the tiles of its chunk. Runs under the terrain's lock, like the terrain dropping chunks, so a
+     * page is never kept for a chunk that was dropped meanwhile
+     */
+    private Page load(int key)
+    {
+        synchronized(terrain)
+        {
+            Page page = pages[key];
+            if(page != null)
+                return page;
+
+            page = new Page(terrain.records(key), solid.computeIfAbsent(key, k -> new long[PAGE_TILES >> 6]));
+            pages[key] = page;
+            loadedPages++;
+            regions.pagesChanged();
+            return page;
+        }
+    }
+
+    /**
+     * Drops the page of a chunk the terrain dropped, called under the terrain's lock
+     */
+    void release(int key)
+    {
+        if(pages[key] != null)
+        {
+            pages[key] = null;
+            if(isEmpty(solid.get(key)))
+                solid.remove(key);
+            loadedPages--;
+            regions.pagesChanged();
+        }
+    }
+
+    /**
+     * Updates the cell of a tile that was set, if its page is loaded (otherwise the page will be read with the new tile)
+     * @param x isometric x coordinate of the tile
+     * @param y isometric y coordinate of the tile
+     * @param record record of the tile, {@link TileRecord#EMPTY} if there is none
+     */
+    void setTile(int x, int y, short record)
+    {
+        int key = key(x, y);
+        Page page = pages[key];
+        if(page != null)
+        {
+            int tile = local(x, y);
+            setBit(page.traversable, tile, TileRecord.isPresent(record) && TileRecord.isTraversable(record));
+            page.heights[tile] = height(record);
+            page.regions = null;
+        }
+        regions.pagesChanged();
+        version++;
+    }
+
+    /**
+     * Returns the height kept for a tile, in 1/{@value #HEIGHT_SCALE} of a tile
+     */
+    private static short height(short record)
+    {
+        return !TileRecord.isPresent(record) ? NO_TILE
+                : (short) Math.max(Short.MIN_VALUE, Math.min(NO_TILE - 1, TileRecord.height(record) * HEIGHT_SCALE));
+    }
+
+    /**
+     * Marks whether a solid obstacle stands on a tile
+     * @param x isometric x coordinate of the tile
+     * @param y isometric y coordinate of the tile
+     * @param solid true if nothing can move through the tile
+     */
+    void setSolid(int x, int y, boolean solid)
+    {
+        int key = key(x, y);
+        synchronized(terrain)
+        {
+            long[] bits = this.solid.get(key);
+            if(bits == null)
+            {
+                if(!solid)
+                    return;
+                bits = new long[PAGE_TILES >> 6];
+                this.solid.put(key, bits);
+            }
+            setBit(bits, local(x, y), solid);
+
+            Page page = pages[key];
+            if(page != null)
+                page.regions = null;
+        }
+        regions.pagesChanged();
+        version++;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value)
+    {
+        if(value)
+            bits[index >> 6] |= 1L << index;
+        else
+            bits[index >> 6] &= ~(1L << index);
+    }
+
+    private static boolean isEmpty(long[] bits)
+    {
+        for(long word : bits)
+            if(word != 0)
+                return false;
+        return true;
+    }
+
+    private static boolean getBit(long[] bits, int index)
+    {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks whether the given coordinates are those of a tile of the grid
+     */
+    public boolean inBounds(int x, int y)
+    {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Returns the key of the page of a tile, the coordinates must be in bounds
+     */
+    int key(int x, int y) { return (x >> PAGE_BITS) * yPages + (y >> PAGE_BITS); }
+
+    /**
+     * Returns the position of a tile within its page
+     */
+    static int local(int x, int y) { return (x & (PAGE_SIZE - 1)) << PAGE_BITS | y & (PAGE_SIZE - 1); }
+
+    /**
+     * Returns the index of a tile in the grid, the coordinates must be in bounds. Tiles are numbered page by page, the
+     * index being the key of the page times the number of tiles of a page plus the position of the tile in the page
+     */
+    public int index(int x, int y) { return key(x, y) << 2 * PAGE_BITS | local(x, y); }
+
+    /**
+     * Returns the isometric x coordinate of the tile at the given index
+     */
+    public int getX(int index) { return ((index >>> 2 * PAGE_BITS) / yPages) << PAGE_BITS | (index >> PAGE_BITS) & (PAGE_SIZE - 1); }
+
+    /**
+     * Returns the isometric y coordinate of the tile at the given index
+     */
+    public int getY(int index) { return ((index >>> 2 * PAGE_BITS) % yPages) << PAGE_BITS | index & (PAGE_SIZE - 1); }
+
+    /**
+     * Checks whether a tile exists and is traversable, false for coordinates out of bounds
+     */
+    public boolean isTraversable(int x, int y)
+    {
+        return inBounds(x, y) && getBit(page(key(x, y)).traversable, local(x, y));
+    }
+
+    /**
+     * Checks whether a solid decoration stands on a tile, false for coordinates out of bounds
+     */
+    public boolean isSolid(int x, int y)
+    {
+        return inBounds(x, y) && getBit(page(key(x, y)).solid, local(x, y));
+    }
+
+    /**
+     * Checks whether the tile at the given index is traversable and free of solid decorations
+     */
+    public boolean isFree(int index)
+    {
+        Page page = page(index >>> 2 * PAGE_BITS);
+        int tile = index & (PAGE_TILES - 1);
+        return ((page.traversable[tile >> 6] & ~page.solid[tile >> 6]) & (1L << tile)) != 0;
+    }
+
+    /**
+     * Checks whether a tile is traversable and free of solid decorations, false for coordinates out of bounds
+     */
+    public boolean isFree(int x, int y)
+    {
+        return inBounds(x, y) && isFree(index(x, y));
+    }
+
+    /**
+     * Returns the height of the tile at the given index, {@link Float#MAX_VALUE} if there is no tile
+     */
+    public float getZ(int index)
+    {
+        short z = page(index >>> 2 * PAGE_BITS).heights[index & (PAGE_TILES - 1)];
+        return z == NO_TILE ? Float.MAX_VALUE : z / (float) HEIGHT_SCALE;
+    }
+
+    /**
+     * Returns the height of a tile, {@link Float#MAX_VALUE} if there is no tile. The coordinates must be in bounds
+     */
+    public float getZ(int x, int y) { return getZ(index(x, y)); }
+
+    /**
+     * Returns the height of the tile at the given index in height units, higher than any tile if there is none.
+     * Heights compare the same way as with {@link #getZ(int)}, without converting them, for the inner loops of searches
+     */
+    public int getLevel(int index) { return page(index >>> 2 * PAGE_BITS).heights[index & (PAGE_TILES - 1)]; }
+
+    /**
+     * Checks whether something at height z can move into a tile: the tile is traversable, free of solid decorations and
+     * not higher than z. False for coordinates out of bounds
+     */
+    public boolean isValidMove(int x, int y, float z)
+    {
+        if(!inBounds(x, y))
+            return false;
+
+        int index = index(x, y);
+        return isFree(index) & getLevel(index) <= (int) Math.floor(z * HEIGHT_SCALE);
+    }
+
+    /**
+     * Checks whether something at height z can stand on a tile, whatever decorations are in it: the tile is traversable
+     * and not higher than z. False for coordinates out of bounds
+     */
+    public boolean canStand(int x, int y, float z)
+    {
+        if(!inBounds(x, y))
+            return false;
+
+        Page page = page(key(x, y));
+        int tile = local(x, y);
+        return getBit(page.traversable, tile) & page.heights[tile] <= (int) Math.floor(z * HEIGHT_SCALE);
+    }
+
+    /**
+     * Returns the number of tiles along the isometric x axis
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Returns the number of tiles along the isometric y axis
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Returns the number of pages along the isometric x axis
+     */
+    int getXPages() { return xPages; }
+
+    /**
+     * Returns the number of pages along the isometric y axis
+     */
+    int getYPages() { return yPages; }
+
+    /**
+     * Returns the number of pages of the map, loaded or not. Tile indices are below this times the number of tiles of a
+     * page
+     */
+    public int getPageCount() { return pages.length; }
+
+    /**
+     * Returns the number of pages loaded
+     */
+    public int getLoadedPageCount() { return loadedPages; }
+
+    /**
+     * Returns the connected regions of the grid, to tell whether a path exists between two tiles
+     */
+    public NavigationRegions getRegions() { return regions; }
+
+    /**
+     * Returns a number changing every time a cell of the grid changes
+     */
+    public int getVersion() { return version; }
+
+    /**
+     * Returns the lock held while pages are read or dropped
+     */
+    Object getLock() { return terrain; }
+
+    /**
+     * Fills an array with the levels of the tiles of a page, {@code blocked} for the tiles that are not free
+     */
+    static void levels(Page page, int[] cells, int blocked)
+    {
+        Arrays.fill(cells, blocked);
+        for(int i = 0; i < PAGE_TILES; i++)
+            if(((page.traversable[i >> 6] & ~page.solid[i >> 6]) & (1L << i)) != 0)
+                cells[i] = page.heights[i];
+    }
+}
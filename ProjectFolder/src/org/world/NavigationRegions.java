@@ -0,0 +1,461 @@
+package org.world;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *  Tells whether a path exists between two tiles, so that searches for unreachable destinations are rejected before they
+ *  explore everything that can be reached.
+ *  Movement follows the rules of {@link org.world.agents.enemies.AI.Pathfinder}: from a tile, only tiles that are free
+ *  (see {@link NavigationGrid#isFree(int)}) and not higher than the starting tile can be entered. Like the grid, the
+ *  regions are kept page by page, for the loaded pages only. Within a page, for every height level of its free tiles, the
+ *  free tiles at or below that level are labelled by connected region (8-connected), when the page is first needed after
+ *  it was read or changed. The labels of a page cost at most one flood of the page.
+ *  For a query from a given level, the regions of the loaded pages are joined across the edges of the pages (a union find
+ *  over the labels of every page at that level), once for all the queries from that level until a page is read, dropped or
+ *  changed. A region touching a page that is not loaded is open: it may go on through the tiles of that page. Two tiles are
+ *  connected when they are in the same joined region, and may be when both regions are open or when the destination is not
+ *  loaded and the start region is open, so the answer is never false for tiles that are connected (the search then
+ *  reads the pages it needs). Neither the labels nor the regions take memory for the pages that are not loaded.
+ *  Queries may be made from several threads at once (the parallel phase of the world's update), as long as the grid does
+ *  not change meanwhile.
+ */
+public class NavigationRegions
+{
+    /**
+     * Level of the tiles that are not free, above any height
+     */
+    private static final int BLOCKED = Integer.MAX_VALUE;
+
+    /**
+     * Node of a tile whose page was not loaded when the regions were joined, and of a tile in no region
+     */
+    private static final int NOT_LOADED = -2, NONE = -1;
+
+    private static final int SIZE = NavigationGrid.PAGE_SIZE, TILES = NavigationGrid.PAGE_TILES;
+
+    /**
+     * Offsets of the eight neighbours of a tile, going around it
+     */
+    private static final int[] RING_X = {-1, 0, 1, 1, 1, 0, -1, -1};
+    private static final int[] RING_Y = {-1, -1, -1, 0, 1, 1, 1, 0};
+
+    /**
+     * The regions of the free tiles of a page, for each height level of its free tiles
+     */
+    static final class Local
+    {
+        /**
+         * Distinct levels of the free tiles of the page, in increasing order, and for each of them the label of every
+         * tile of the page (from 1, 0 for the tiles that are not free or higher than the level) and the number of labels
+         */
+        final int[] levels;
+        final short[][] labels;
+        final int[] counts;
+
+        Local(int[] levels)
+        {
+            this.levels = levels;
+            labels = new short[levels.length][TILES];
+            counts = new int[levels.length];
+        }
+
+        /**
+         * Returns the index of the highest level not above the given height level, -1 if every free tile is higher
+         */
+        int find(int level)
+        {
+            int k = Arrays.binarySearch(levels, level);
+            return k >= 0 ? k : -k - 2;
+        }
+    }
+
+    /**
+     * The regions of the loaded pages for queries from one level, joined across the edges of the pages
+     */
+    private static final class Joined
+    {
+        /**
+         * Slot of each loaded page, by key
+         */
+        final HashMap<Integer, Integer> slots = new HashMap<>();
+
+        /**
+         * For each slot, the labels of its page at the level (null if no free tile of the page is low enough) and the node
+         * of its first label
+         */
+        short[][] labels;
+        int[] base;
+
+        /**
+         * For each node (a region of a page), the node of its joined region, and for the nodes of joined regions whether
+         * they are open
+         */
+        int[] root;
+        boolean[] open;
+
+        /**
+         * Returns the joined region of a tile, {@link #NOT_LOADED} or {@link #NONE}
+         */
+        int node(int key, int tile)
+        {
+            Integer slot = slots.get(key);
+            if(slot == null)
+                return NOT_LOADED;
+
+            short[] label = labels[slot];
+            if(label == null || label[tile] == 0)
+                return NONE;
+            return root[base[slot] + label[tile] - 1];
+        }
+    }
+
+    private final NavigationGrid grid;
+
+    /**
+     * Number of changes of the pages so far (read, dropped or changed), and when the joined regions were made
+     */
+    private volatile int changes = 0;
+    private int joinedAt = 0;
+
+    /**
+     * Joined regions by the level of the queries, made when first needed since the last change
+     */
+    private final HashMap<Integer, Joined> joined = new HashMap<>();
+
+    /**
+     * Level of each tile of the page being labelled, and tiles left to visit by a flood fill
+     */
+    private final int[] cells = new int[TILES], stack = new int[TILES];
+
+    /**
+     * Creates the regions of a grid, which reports to them each change of its pages
+     */
+    NavigationRegions(NavigationGrid grid)
+    {
+        this.grid = grid;
+    }
+
+    /**
+     * Records that a page of the grid was read, dropped or changed, the regions are joined again on the next query
+     */
+    void pagesChanged()
+    {
+        synchronized(grid.getLock())
+        {
+            changes++;
+        }
+    }
+
+    /**
+     * Checks whether {@link org.world.agents.enemies.AI.Pathfinder#find(int, int, int, int, org.world.agents.enemies.AI.Path)}
+     * can find a path between two tiles: whether a tile other than the start, next to or at the destination, can be
+     * reached from the start. Takes the same time however large the map, once the regions are joined
+     * @param xStart isometric coordinate of the starting tile, must be in the grid
+     * @param yStart isometric coordinate of the starting tile, must be in the grid
+     * @param xDest isometric coordinate of the destination tile
+     * @param yDest isometric coordinate of the destination tile
+     * @return true if a path exists or may exist through pages that are not loaded
+     */
+    public boolean canReach(int xStart, int yStart, int xDest, int yDest)
+    {
+        int start = grid.index(xStart, yStart);
+        Joined regions = join(grid.getLevel(start));
+
+        //the search enters the region of the start if it is free, those around it otherwise
+        int region = node(regions, xStart, yStart);
+        if(region == NOT_LOADED)
+            return true;
+        if(region != NONE)
+            return touches(regions, region, start, xDest, yDest);
+
+        for(int i = 0; i < 8; i++)
+        {
+            int x = xStart + RING_X[i];
+            int y = yStart + RING_Y[i];
+            if(!grid.inBounds(x, y))
+                continue;
+
+            region = node(regions, x, y);
+            if(region == NOT_LOADED || region != NONE && touches(regions, region, start, xDest, yDest))
+                return true;
+        }
+        return false;
+    }
+
+    private int node(Joined regions, int x, int y)
+    {
+        return regions.node(grid.key(x, y), NavigationGrid.local(x, y));
+    }
+
+    /**
+     * Checks whether a tile of a joined region, other than the start, lies next to or at the destination, or may do so
+     */
+    private boolean touches(Joined regions, int region, int start, int xDest, int yDest)
+    {
+        for(int x = xDest - 1; x <= xDest + 1; x++)
+            for(int y = yDest - 1; y <= yDest + 1; y++)
+            {
+                if(!grid.inBounds(x, y) || grid.index(x, y) == start)
+                    continue;
+
+                int other = node(regions, x, y);
+                if(other == NOT_LOADED ? regions.open[region]
+                        : other == region || other != NONE && regions.open[region] && regions.open[other])
+                    return true;
+            }
+        return false;
+    }
+
+    /**
+     * Returns the regions of the loaded pages joined for queries from a level, joining them if they are out of date
+     */
+    private Joined join(int level)
+    {
+        synchronized(grid.getLock())
+        {
+            if(joinedAt != changes)
+            {
+                joined.clear();
+                joinedAt = changes;
+            }
+
+            Joined regions = joined.get(level);
+            if(regions == null)
+            {
+                regions = join(level, new Joined());
+                joined.put(level, regions);
+            }
+            return regions;
+        }
+    }
+
+    /**
+     * Joins the regions of the loaded pages at a level: the regions of pages next to each other are joined where a tile of
+     * one is next to a tile of the other, and those next to a page of the map that is not loaded are open
+     */
+    private Joined join(int level, Joined regions)
+    {
+        int xPages = grid.getXPages(), yPages = grid.getYPages();
+
+        int[] keys = new int[grid.getLoadedPageCount()];
+        int count = 0;
+        for(int key = 0; key < grid.getPageCount() && count < keys.length; key++)
+            if(grid.loadedPage(key) != null)
+                keys[count++] = key;
+
+        regions.labels = new short[count][];
+        regions.base = new int[count];
+        int nodes = 0;
+        for(int slot = 0; slot < count; slot++)
+        {
+            regions.slots.put(keys[slot], slot);
+
+            Local local = local(grid.loadedPage(keys[slot]));
+            int k = local.find(level);
+            regions.base[slot] = nodes;
+            if(k >= 0)
+            {
+                regions.labels[slot] = local.labels[k];
+                nodes += local.counts[k];
+            }
+        }
+
+        int[] parent = new int[nodes];
+        for(int i = 0; i < nodes; i++)
+            parent[i] = i;
+        boolean[] open = new boolean[nodes];
+
+        for(int slot = 0; slot < count; slot++)
+        {
+            short[] label = regions.labels[slot];
+            if(label == null)
+                continue;
+            int i = keys[slot] / yPages, j = keys[slot] % yPages;
+
+            //pages further along either axis are joined from this one, the others join this one
+            for(int di = -1; di <= 1; di++)
+                for(int dj = -1; dj <= 1; dj++)
+                {
+                    if(di == 0 && dj == 0 || i + di < 0 || i + di >= xPages || j + dj < 0 || j + dj >= yPages)
+                        continue;
+
+                    Integer other = regions.slots.get((i + di) * yPages + j + dj);
+                    if(other == null)
+                        markOpen(label, regions.base[slot], di, dj, open);
+                    else if(di > 0 || di == 0 && dj > 0)
+                        joinEdge(regions, slot, other, di, dj, parent);
+                }
+        }
+
+        regions.root = new int[nodes];
+        regions.open = new boolean[nodes];
+        for(int i = 0; i < nodes; i++)
+        {
+            regions.root[i] = find(parent, i);
+            regions.open[regions.root[i]] |= open[i];
+        }
+        return regions;
+    }
+
+    /**
+     * Marks open the regions of a page with a tile on the edge (or corner) of the page facing another page
+     */
+    private static void markOpen(short[] label, int base, int di, int dj, boolean[] open)
+    {
+        int firstX = di > 0 ? SIZE - 1 : 0, lastX = di < 0 ? 0 : SIZE - 1;
+        int firstY = dj > 0 ? SIZE - 1 : 0, lastY = dj < 0 ? 0 : SIZE - 1;
+
+        for(int x = firstX; x <= lastX; x++)
+            for(int y = firstY; y <= lastY; y++)
+                if(label[x * SIZE + y] != 0)
+                    open[base + label[x * SIZE + y] - 1] = true;
+    }
+
+    /**
+     * Joins the regions of a page to those of the page after it along the first axis, the second axis or a diagonal,
+     * where their tiles are next to each other
+     */
+    private static void joinEdge(Joined regions, int slot, int other, int di, int dj, int[] parent)
+    {
+        short[] label = regions.labels[slot], otherLabel = regions.labels[other];
+        if(otherLabel == null)
+            return;
+        int base = regions.base[slot], otherBase = regions.base[other];
+
+        if(di == 0)
+        {
+            //last column of this page along the second axis, first one of the other
+            for(int a = 0; a < SIZE; a++)
+                if(label[a * SIZE + SIZE - 1] != 0)
+                    for(int b = Math.max(0, a - 1); b <= Math.min(SIZE - 1, a + 1); b++)
+                        if(otherLabel[b * SIZE] != 0)
+                            union(parent, base + label[a * SIZE + SIZE - 1] - 1, otherBase + otherLabel[b * SIZE] - 1);
+        }
+        else if(dj == 0)
+        {
+            //last row of this page along the first axis, first one of the other
+            for(int a = 0; a < SIZE; a++)
+                if(label[(SIZE - 1) * SIZE + a] != 0)
+                    for(int b = Math.max(0, a - 1); b <= Math.min(SIZE - 1, a + 1); b++)
+                        if(otherLabel[b] != 0)
+                            union(parent, base + label[(SIZE - 1) * SIZE + a] - 1, otherBase + otherLabel[b] - 1);
+        }
+        else
+        {
+            //corners facing each other across a diagonal
+            int tile = label[(SIZE - 1) * SIZE + (dj > 0 ? SIZE - 1 : 0)];
+            int otherTile = otherLabel[dj > 0 ? 0 : SIZE - 1];
+            if(tile != 0 && otherTile != 0)
+                union(parent, base + tile - 1, otherBase + otherTile - 1);
+        }
+    }
+
+    private static int find(int[] parent, int node)
+    {
+        while(parent[node] != node)
+        {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b)
+    {
+        a = find(parent, a);
+        b = find(parent, b);
+        if(a != b)
+            parent[Math.max(a, b)] = Math.min(a, b);
+    }
+
+    /**
+     * Returns the regions of a page, labelling them if the page was read or changed since. Called under the grid's lock
+     */
+    private Local local(NavigationGrid.Page page)
+    {
+        if(page.regions != null)
+            return page.regions;
+
+        NavigationGrid.levels(page, cells, BLOCKED);
+        int[] found = new int[TILES];
+        int count = 0;
+        for(int cell : cells)
+            if(cell != BLOCKED)
+                found[count++] = cell;
+
+        Arrays.sort(found, 0, count);
+        int distinct = 0;
+        for(int i = 0; i < count; i++)
+            if(distinct == 0 || found[i] != found[distinct - 1])
+                found[distinct++] = found[i];
+
+        Local local = new Local(Arrays.copyOf(found, distinct));
+        for(int k = 0; k < distinct; k++)
+            for(int i = 0; i < TILES; i++)
+                if(cells[i] <= local.levels[k] && local.labels[k][i] == 0)
+                    flood(local, k, i, ++local.counts[k]);
+
+        page.regions = local;
+        return local;
+    }
+
+    /**
+     * Gives a label to the region of a level of a page containing a tile
+     */
+    private void flood(Local local, int k, int seed, int region)
+    {
+        short[] label = local.labels[k];
+        int level = local.levels[k];
+
+        int size = 0;
+        label[seed] = (short) region;
+        stack[size++] = seed;
+
+        while(size > 0)
+        {
+            int current = stack[--size];
+            int x = current / SIZE, y = current % SIZE;
+
+            for(int i = 0; i < 8; i++)
+            {
+                int nx = x + RING_X[i], ny = y + RING_Y[i];
+                if(nx < 0 || nx >= SIZE || ny < 0 || ny >= SIZE)
+                    continue;
+
+                int neighbour = nx * SIZE + ny;
+                if(cells[neighbour] <= level && label[neighbour] != region)
+                {
+                    label[neighbour] = (short) region;
+                    stack[size++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distinct height levels of the free tiles of the loaded pages
+     */
+    public int getLevelCount()
+    {
+        synchronized(grid.getLock())
+        {
+            int[] levels = new int[0];
+            for(int key = 0; key < grid.getPageCount(); key++)
+            {
+                NavigationGrid.Page page = grid.loadedPage(key);
+                if(page == null)
+                    continue;
+
+                for(int level : local(page).levels)
+                    if(Arrays.binarySearch(levels, level) < 0)
+                    {
+                        levels = Arrays.copyOf(levels, levels.length + 1);
+                        levels[levels.length - 1] = level;
+                        Arrays.sort(levels);
+                    }
+            }
+            return levels.length;
+        }
+    }
+}
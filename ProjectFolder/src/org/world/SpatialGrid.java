@@ -0,0 +1,215 @@
+package org.world;
+
+import org.engine.graphics.Renderer;
+
+/**
+ *  Uniform grid laid over the isometric tile cells of a world, used as a broad-phase for collision detection.
+ *  Every game object of the world is filed under the cell its x/y position falls in, so collision checks only need to
+ *  look at the objects in the neighbouring cells instead of the whole game object list.
+ *  Objects outside of the map are filed under the closest border cell.
+ *  Cells are kept in pages of {@link Terrain#CHUNK_SIZE} x {@link Terrain#CHUNK_SIZE}, numbered page by page like the tiles
+ *  of the {@link NavigationGrid}. A page is allocated when an object is filed in it and given back when its last object
+ *  leaves, so the grid only takes memory where objects are.
+ *  The grid is owned and kept up to date by the {@link World} class.
+ */
+class SpatialGrid
+{
+    /**
+     * How many cells around an object's own cell are searched for collisions.
+     * Two cells are needed since the collision range (30 units) is larger than the distance between the edges of a tile
+     * and the edges of its direct neighbours (about 18 units)
+     */
+    static final int QUERY_RADIUS = 2;
+
+    /**
+     * Initial capacity of a cell, grown as needed
+     */
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    /**
+     * Number of bits of a cell's coordinates giving its position within its page, and number of cells of a page
+     */
+    private static final int PAGE_BITS = NavigationGrid.PAGE_BITS, PAGE_CELLS = NavigationGrid.PAGE_TILES;
+
+    private static final GameObject[] NO_OBJECTS = new GameObject[0];
+
+    /**
+     * The cells of a page, and the number of objects filed in them
+     */
+    private static final class Page
+    {
+        /**
+         * Objects filed in each cell
+         */
+        final GameObject[][] cells = new GameObject[PAGE_CELLS][];
+
+        /**
+         * Number of objects in each cell
+         */
+        final int[] counts = new int[PAGE_CELLS];
+        int total = 0;
+    }
+
+    /**
+     * Dimensions of the grid, same as the terrain's, and number of pages along the second dimension
+     */
+    private final int width, height, yPages;
+
+    /**
+     * Pages of cells, null for those without objects
+     */
+    private final Page[] pages;
+
+    /**
+     * Creates an empty grid with the given dimensions
+     * @param width width of the terrain (number of isometric x cells)
+     * @param height height of the terrain (number of isometric y cells)
+     */
+    SpatialGrid(int width, int height)
+    {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        yPages = (this.height + (1 << PAGE_BITS) - 1) >> PAGE_BITS;
+        pages = new Page[((this.width + (1 << PAGE_BITS) - 1) >> PAGE_BITS) * yPages];
+    }
+
+    /**
+     * Computes the (clamped) isometric x cell of a point in the game world
+     */
+    int cellX(float x, float y)
+    {
+        return Math.max(0, Math.min(width - 1, Renderer.isoX(x, y)));
+    }
+
+    /**
+     * Computes the (clamped) isometric y cell of a point in the game world
+     */
+    int cellY(float x, float y)
+    {
+        return Math.max(0, Math.min(height - 1, Renderer.isoY(x, y)));
+    }
+
+    /**
+     * Returns the index of the cell at the given (valid) cell coordinates
+     */
+    int index(int cellX, int cellY)
+    {
+        return ((cellX >> PAGE_BITS) * yPages + (cellY >> PAGE_BITS)) << 2 * PAGE_BITS
+                | NavigationGrid.local(cellX, cellY);
+    }
+
+    /**
+     * Files a game object under the cell of its current position. Does nothing if the object is already in the grid
+     * @param go game object to be added
+     */
+    void insert(GameObject go)
+    {
+        if(go.gridCell >= 0)
+            return;
+
+        add(go, index(cellX(go.x, go.y), cellY(go.x, go.y)));
+    }
+
+    /**
+     * Removes a game object from the grid. Does nothing if the object is not in the grid
+     * @param go game object to be removed
+     */
+    void remove(GameObject go)
+    {
+        if(go.gridCell < 0)
+            return;
+
+        int key = go.gridCell >>> 2 * PAGE_BITS, cell = go.gridCell & (PAGE_CELLS - 1);
+        Page page = pages[key];
+        int last = --page.counts[cell];
+
+        //swap the last object of the cell into the freed slot
+        GameObject moved = page.cells[cell][last];
+        page.cells[cell][go.gridSlot] = moved;
+        moved.gridSlot = go.gridSlot;
+        page.cells[cell][last] = null;
+
+        go.gridCell = -1;
+        if(--page.total == 0)
+            pages[key] = null;
+    }
+
+    /**
+     * Re-files a game object in case it moved to another cell since it was last filed. Objects not yet in the grid are inserted
+     * @param go game object that might have moved
+     */
+    void move(GameObject go)
+    {
+        int cell = index(cellX(go.x, go.y), cellY(go.x, go.y));
+
+        if(cell == go.gridCell)
+            return;
+
+        remove(go);
+        add(go, cell);
+    }
+
+    /**
+     * Returns the object array of a cell, only the first {@link #count(int)} entries are valid
+     */
+    GameObject[] objects(int cell)
+    {
+        Page page = pages[cell >>> 2 * PAGE_BITS];
+        return page == null ? NO_OBJECTS : page.cells[cell & (PAGE_CELLS - 1)];
+    }
+
+    /**
+     * Returns the number of objects filed in a cell
+     */
+    int count(int cell)
+    {
+        Page page = pages[cell >>> 2 * PAGE_BITS];
+        return page == null ? 0 : page.counts[cell & (PAGE_CELLS - 1)];
+    }
+
+    /**
+     * Returns the width of the grid
+     */
+    int getWidth() { return width; }
+
+    /**
+     * Returns the height of the grid
+     */
+    int getHeight() { return height; }
+
+    /**
+     * Returns the number of pages of cells holding objects
+     */
+    int getPageCount()
+    {
+        int count = 0;
+        for(Page page : pages)
+            if(page != null)
+                count++;
+        return count;
+    }
+
+    private void add(GameObject go, int index)
+    {
+        int key = index >>> 2 * PAGE_BITS, cell = index & (PAGE_CELLS - 1);
+        Page page = pages[key];
+        if(page == null)
+            page = pages[key] = new Page();
+        page.total++;
+
+        GameObject[][] cells = page.cells;
+        int[] counts = page.counts;
+        if(cells[cell] == null)
+            cells[cell] = new GameObject[INITIAL_CELL_CAPACITY];
+        else if(counts[cell] == cells[cell].length)
+        {
+            GameObject[] grown = new GameObject[cells[cell].length * 2];
+            System.arraycopy(cells[cell], 0, grown, 0, counts[cell]);
+            cells[cell] = grown;
+        }
+
+        cells[cell][counts[cell]] = go;
+        go.gridCell = index;
+        go.gridSlot = counts[cell]++;
+    }
+}
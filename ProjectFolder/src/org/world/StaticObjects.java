@@ -0,0 +1,127 @@
+package org.world;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  The game objects of a world that never move or change (decorations), kept apart from the ones updated every tick.
+ *  A StaticObjects instance never changes once built: adding objects builds a new one (see
+ *  {@link #with(List, SpatialGrid)}), which is meant for rare changes like setting up a level.
+ *  It holds the objects sorted in depth order once and for all, so rendering only has to merge them with the moving
+ *  objects' depth order, and files the solid ones by {@link SpatialGrid} cell for collision checks. The solid objects are
+ *  sorted by cell, each cell's objects stored next to each other in one array, from {@link #cellStart(int)} to
+ *  {@link #cellEnd(int)}, which are found by binary search over the cells of the objects so that nothing is kept for the
+ *  cells without any.
+ */
+final class StaticObjects
+{
+    /**
+     * Every object, sorted by y coordinate (see {@link GameObject#compareTo(GameObject)})
+     */
+    private final GameObject[] depthOrder;
+
+    /**
+     * Solid objects sorted by cell, and the cell of each
+     */
+    private final GameObject[] cellObjects;
+    private final int[] cells;
+
+    /**
+     * Creates an empty set of static objects for a grid
+     * @param grid collision grid of the world
+     */
+    StaticObjects(SpatialGrid grid)
+    {
+        this(new GameObject[0], grid);
+    }
+
+    private StaticObjects(GameObject[] objects, SpatialGrid grid)
+    {
+        //a stable sort, so objects at the same depth are drawn in the order they were added
+        depthOrder = objects;
+        Arrays.sort(depthOrder);
+
+        int solid = 0;
+        for(GameObject go : depthOrder)
+            if(go.solid)
+                solid++;
+
+        //sorted by cell then depth, the cell in the high bits and the position in the depth order in the low ones
+        long[] sorted = new long[solid];
+        solid = 0;
+        for(int i = 0; i < depthOrder.length; i++)
+            if(depthOrder[i].solid)
+                sorted[solid++] = (long) cell(depthOrder[i], grid) << 32 | i;
+        Arrays.sort(sorted);
+
+        cellObjects = new GameObject[solid];
+        cells = new int[solid];
+        for(int i = 0; i < solid; i++)
+        {
+            cells[i] = (int) (sorted[i] >>> 32);
+            cellObjects[i] = depthOrder[(int) sorted[i]];
+        }
+    }
+
+    private static int cell(GameObject go, SpatialGrid grid)
+    {
+        return grid.index(grid.cellX(go.x, go.y), grid.cellY(go.x, go.y));
+    }
+
+    /**
+     * Builds the static objects made of these and the given ones
+     * @param added objects to be added
+     * @param grid collision grid of the world
+     * @return a new instance, this one is left as it is
+     */
+    StaticObjects with(List<GameObject> added, SpatialGrid grid)
+    {
+        GameObject[] objects = Arrays.copyOf(depthOrder, depthOrder.length + added.size());
+        for(int i = 0; i < added.size(); i++)
+            objects[depthOrder.length + i] = added.get(i);
+
+        return new StaticObjects(objects, grid);
+    }
+
+    /**
+     * Returns the number of static objects
+     */
+    int size() { return depthOrder.length; }
+
+    /**
+     * Returns the object at the given position in the depth order
+     */
+    GameObject getByDepth(int index) { return depthOrder[index]; }
+
+    /**
+     * Returns the array holding the solid objects of every cell, see {@link #cellStart(int)}
+     */
+    GameObject[] cellObjects() { return cellObjects; }
+
+    /**
+     * Returns the position in {@link #cellObjects()} of the first solid object of a cell
+     */
+    int cellStart(int cell) { return firstAtOrAfter(cell); }
+
+    /**
+     * Returns the position in {@link #cellObjects()} following the last solid object of a cell
+     */
+    int cellEnd(int cell) { return firstAtOrAfter(cell + 1); }
+
+    /**
+     * Returns the position in {@link #cellObjects()} of the first solid object in the given cell or a later one
+     */
+    private int firstAtOrAfter(int cell)
+    {
+        int low = 0, high = cells.length;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(cells[middle] < cell)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
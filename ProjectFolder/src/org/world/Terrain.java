@@ -1,77 +1,556 @@
 package org.world;
 
-import org.world.tiles.GroundTile;
+import org.engine.graphics.OffscreenPages;
+import org.engine.graphics.Renderer;
+import org.engine.resources.AssetManager;
+import org.engine.resources.ImageResource;
 import org.world.tiles.Tile;
+import org.world.tiles.TileRecord;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- *  This class holds an array of Tile objects as well as information about the size of the playable area int the current world (level)
+ *  This class holds the tiles of the current world (level) as well as information about the size of the playable area.
+ *  Tiles are kept as {@link TileRecord}s (a short each) in chunks of {@link #CHUNK_SIZE} x {@link #CHUNK_SIZE} tiles,
+ *  which are created by the terrain's {@link TerrainGenerator} the first time one of their tiles is needed. Only a limited
+ *  number of chunks is kept (see {@link #setChunkCapacity(int)}): when more are needed the least recently used one is
+ *  dropped, to be generated again if it is needed later. Chunks in which a tile was set are kept for good, since they can
+ *  no longer be generated. {@link #prefetch(int, int, int)} loads the chunks around a point ahead of time, the world calls
+ *  it for the camera every update. Nothing is read for the whole map up front, so the memory used follows the number of
+ *  chunks kept rather than the size of the map.
+ *  Movement and pathfinding read the tiles through the terrain's {@link NavigationGrid}, which reads the chunks it needs
+ *  and drops its copy of a chunk along with the chunk, and is kept up to date as tiles are set.
+ *  The tiles are drawn a chunk at a time into offscreen pages (see {@link TerrainChunks}), and every frame only the pages
+ *  in view are drawn. Setting a tile draws its chunk's page again.
  */
 public class Terrain
 {
+    /**
+     * Width/height of a chunk, in tiles
+     */
+    public static final int CHUNK_SIZE = 32;
+
+    /**
+     * Default number of chunks kept, about 2 MB of tiles
+     */
+    public static final int DEFAULT_CHUNK_CAPACITY = 1024;
+
+    /**
+     * Number of levels a raised tile may rise above the ones in front of it and still be drawn when only its column is in
+     * view. Only used to find the chunks which might be in view
+     */
+    private static final int MAX_VISIBLE_RISE = 8;
+
     //dimensions of map
-    private static int height;
-    private  static int width;
+    private final int height;
+    private final int width;
+
+    /**
+     * Number of chunks along each dimension of the map
+     */
+    private final int xChunks, yChunks;
+
+    private final TerrainGenerator generator;
 
-    //holds tiles
-    private  Tile[][] tiles;
+    /**
+     * Chunks that can be generated again, in least recently used order
+     */
+    private final LinkedHashMap<Integer, short[]> loaded;
+
+    /**
+     * Chunks in which tiles were set, never dropped
+     */
+    private final HashMap<Integer, short[]> edited = new HashMap<>();
+
+    private int capacity = DEFAULT_CHUNK_CAPACITY;
+
+    /**
+     * Chunk of the last tile read, which is most often the chunk of the next one
+     */
+    private int lastKey = -1;
+    private short[] lastChunk = null;
+
+    //metrics
+    private long chunkLoads = 0, loadNanos = 0, maxLoadNanos = 0;
+
+    /**
+     * Packed copy of the tiles' traversability and height (and of the solid decorations, set by the world), read chunk by
+     * chunk as it is needed
+     */
+    private final NavigationGrid navigation;
 
     /**
-     *  Creates a terrain with give width and height and a tile array of default ground tiles at in-game height 0
+     * Chunks of the map as they are drawn, the pages they are drawn into, and the images of the tile textures
+     */
+    private final TerrainChunks chunks;
+    private final OffscreenPages pages;
+    private final ImageResource[] images = new ImageResource[TileRecord.MAX_TEXTURES];
+
+    /**
+     * Set for the chunks drawn into their page, and chunks whose tiles were dropped since then, whose pages are given
+     * back by the next render
+     */
+    private final BitSet drawn;
+    private final ArrayDeque<Integer> dropped = new ArrayDeque<>();
+
+    /**
+     *  Creates a terrain with given width and height, made of default ground tiles at in-game height 0, surrounded by
+     *  raised cliffs on two sides
      * @param h height of the terrain matrix
      * @param w width of the terrain matrix
      */
     public Terrain(int h, int w)
+    {
+        this(h, w, new MapGenerator(new Random().nextLong()));
+    }
+
+    /**
+     *  Creates a terrain with given width and height, whose tiles are made by a generator
+     * @param h height of the terrain matrix
+     * @param w width of the terrain matrix
+     * @param generator creates the tiles of the chunks
+     */
+    public Terrain(int h, int w, TerrainGenerator generator)
     {
         height = h;
         width = w;
-        tiles = new Tile[h][w];
+        xChunks = (w + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        yChunks = (h + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.generator = generator;
+
+        loaded = new LinkedHashMap<Integer, short[]>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, short[]> eldest)
+            {
+                if(size() <= capacity)
+                    return false;
+
+                unloaded(eldest.getKey());
+                return true;
+            }
+        };
+
+        chunks = new TerrainChunks(w, h);
+        pages = new OffscreenPages(chunks.getChunkCount());
+        drawn = new BitSet();
+        navigation = new NavigationGrid(this);
+    }
+
+    /**
+     * Returns the chunk with the given key (first chunk index * number of chunks along the second dimension + second
+     * chunk index), generating it if it is not loaded
+     */
+    private synchronized short[] chunk(int key)
+    {
+        if(key == lastKey)
+            return lastChunk;
+
+        short[] chunk = edited.get(key);
+        if(chunk == null)
+            chunk = loaded.get(key);
+        if(chunk == null)
+        {
+            long started = System.nanoTime();
+
+            chunk = new short[CHUNK_SIZE * CHUNK_SIZE];
+            generator.generate((key / yChunks) * CHUNK_SIZE, (key % yChunks) * CHUNK_SIZE, width, height, chunk);
+            loaded.put(key, chunk);
+
+            long took = System.nanoTime() - started;
+            chunkLoads++;
+            loadNanos += took;
+            maxLoadNanos = Math.max(maxLoadNanos, took);
+        }
 
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
     }
 
-    public void init()
+    /**
+     * Returns the records of the tiles of a chunk, generating it if it is not loaded. Tiles are at (x % size) * size +
+     * y % size, those outside of the map are {@link TileRecord#EMPTY}
+     */
+    short[] records(int key)
     {
-        for(int i = 0; i<height;i++)
-            for(int j = 0;j<width;j++)
+        return chunk(key);
+    }
+
+    /**
+     * Called when a chunk is dropped: the navigation grid drops its copy of the chunk, and the pages of the tiles it held
+     * are given back by the next render, to be drawn again if it comes back
+     */
+    private void unloaded(int key)
+    {
+        if(key == lastKey)
+        {
+            lastKey = -1;
+            lastChunk = null;
+        }
+        navigation.release(key);
+
+        int firstX = (key / yChunks) * CHUNK_SIZE, firstY = (key % yChunks) * CHUNK_SIZE;
+        for(int x = firstX; x < Math.min(firstX + CHUNK_SIZE, width); x += TerrainChunks.CHUNK_TILES)
+            for(int y = firstY; y < Math.min(firstY + CHUNK_SIZE, height); y += TerrainChunks.CHUNK_TILES)
             {
-                if(j == 0)
-                    tiles[i][j] = new GroundTile(i,j,3,"cliff");
-                else if(i == width - 1)
-                    tiles[i][j] = new GroundTile(i,j,3,"cliff");
-                else
+                int chunk = chunks.chunkOf(x, y);
+                if(drawn.get(chunk))
                 {
-                    Random rand = new Random();
-                    if(rand.nextInt(10) > 8)
-                        tiles[i][j] = new GroundTile(i,j,0,"cliff");
-                    else
-                        tiles[i][j] = new GroundTile(i,j,0,"dirt");
+                    drawn.clear(chunk);
+                    dropped.add(chunk);
                 }
             }
     }
 
+    private int key(int x, int y)
+    {
+        return (x / CHUNK_SIZE) * yChunks + y / CHUNK_SIZE;
+    }
+
     /**
-     * Calls the rendering function for each individual tile, in the order of their depth (so as to render the furthest tiles first)
+     * Returns the record of a tile (see {@link TileRecord}), generating its chunk if needed
+     * @param x isometric x coordinate, first index in the tile matrix
+     * @param y isometric y coordinate, second index in the tile matrix
+     * @return the record, {@link TileRecord#EMPTY} for a hole or a tile outside of the map
+     */
+    public short getTile(int x, int y)
+    {
+        if(x < 0 || x >= width || y < 0 || y >= height)
+            return TileRecord.EMPTY;
+
+        return chunk(key(x, y))[(x % CHUNK_SIZE) * CHUNK_SIZE + y % CHUNK_SIZE];
+    }
+
+    /**
+     * Returns the height of a tile, in levels. Movement should use the {@link NavigationGrid} instead
+     * @param x isometric x coordinate
+     * @param y isometric y coordinate
+     */
+    public float getZ(int x, int y)
+    {
+        return TileRecord.height(getTile(x, y));
+    }
+
+    /**
+     * Places a tile in the terrain, replacing the one at its coordinates. Tiles must be changed through this method for
+     * the navigation grid to see the change
+     * @param x isometric x coordinate, first index in the tile matrix
+     * @param y isometric y coordinate, second index in the tile matrix
+     * @param tile the new tile, null to leave a hole. Only its record is kept, see {@link TileRecord#of(Tile)}
+     */
+    public void setTile(int x, int y, Tile tile)
+    {
+        setTile(x, y, TileRecord.of(tile));
+    }
+
+    /**
+     * Places a tile in the terrain, replacing the one at its coordinates. Tiles must be changed through this method for
+     * the navigation grid to see the change
+     * @param x isometric x coordinate, first index in the tile matrix
+     * @param y isometric y coordinate, second index in the tile matrix
+     * @param record the new tile, see {@link TileRecord}
+     */
+    public void setTile(int x, int y, short record)
+    {
+        int key = key(x, y);
+
+        synchronized(this)
+        {
+            short[] chunk = chunk(key);
+            if(!edited.containsKey(key))
+            {
+                //changed chunks can no longer be generated, keep them for good
+                loaded.remove(key);
+                edited.put(key, chunk);
+            }
+            chunk[(x % CHUNK_SIZE) * CHUNK_SIZE + y % CHUNK_SIZE] = record;
+        }
+
+        navigation.setTile(x, y, record);
+        chunks.invalidate(x, y);
+    }
+
+    /**
+     * Loads the chunks around a tile that are not loaded yet
+     * @param x isometric x coordinate of the tile
+     * @param y isometric y coordinate of the tile
+     * @param radius distance from the tile, in tiles, up to which chunks are loaded
+     */
+    public void prefetch(int x, int y, int radius)
+    {
+        int firstX = Math.max(0, x - radius) / CHUNK_SIZE, lastX = Math.min(width - 1, x + radius) / CHUNK_SIZE;
+        int firstY = Math.max(0, y - radius) / CHUNK_SIZE, lastY = Math.min(height - 1, y + radius) / CHUNK_SIZE;
+
+        for(int i = firstX; i <= lastX; i++)
+            for(int j = firstY; j <= lastY; j++)
+                chunk(i * yChunks + j);
+    }
+
+    /**
+     * Draws the chunks in view, in the order of their depth (so as to render the furthest tiles first). Chunks whose tiles
+     * changed are drawn into their page first. If pages cannot be used the tiles of the chunk are drawn directly
      */
     public void render()
     {
-        for (int i = height- 1; i >= 0; i--)
-            for(int j = 0; j < width; j++)
+        synchronized(this)
+        {
+            while(!dropped.isEmpty())
+            {
+                int chunk = dropped.poll();
+                pages.release(chunk);
+                chunks.invalidate(chunks.firstX(chunk), chunks.firstY(chunk));
+            }
+        }
+
+        float viewLeft = Renderer.drawCameraX - Renderer.unitsWide / 2f, viewRight = Renderer.drawCameraX + Renderer.unitsWide / 2f;
+        float viewTop = Renderer.drawCameraY - Renderer.unitsHigh / 2f, viewBottom = Renderer.drawCameraY + Renderer.unitsHigh / 2f;
+
+        //tiles are drawn around x = (i + j) * width / 2 and y = (j - i) * height / 2, raised tiles further up
+        int sumMin = (int) Math.floor(viewLeft / (Tile.GROUND_TILE_WIDTH / 2f)) - 2;
+        int sumMax = (int) Math.ceil(viewRight / (Tile.GROUND_TILE_WIDTH / 2f)) + 2;
+        int differenceMin = (int) Math.floor(viewTop / (Tile.GROUND_TILE_HEIGHT / 2f)) - 4;
+        int differenceMax = (int) Math.ceil((viewBottom + MAX_VISIBLE_RISE * Tile.GROUND_TILE_Z_HEIGHT) / (Tile.GROUND_TILE_HEIGHT / 2f)) + 4;
+
+        int firstX = Math.max(0, Math.floorDiv(sumMin - differenceMax, 2));
+        int lastX = Math.min(width - 1, Math.floorDiv(sumMax - differenceMin, 2) + 1);
+        int firstY = Math.max(0, Math.floorDiv(sumMin + differenceMin, 2));
+        int lastY = Math.min(height - 1, Math.floorDiv(sumMax + differenceMax, 2) + 1);
+        if(firstX > lastX || firstY > lastY)
+            return;
+
+        for(int i = lastX / TerrainChunks.CHUNK_TILES; i >= firstX / TerrainChunks.CHUNK_TILES; i--)
+            for(int j = firstY / TerrainChunks.CHUNK_TILES; j <= lastY / TerrainChunks.CHUNK_TILES; j++)
+            {
+                int chunk = chunks.chunkAt(i, j);
+
+                if(chunks.isDirty(chunk) && !chunks.computeBounds(chunk, this))
+                {
+                    chunks.clean(chunk);
+                    continue;
+                }
+
+                if(!chunks.intersects(chunk, viewLeft, viewTop, viewRight, viewBottom))
+                    continue;
+
+                if(chunks.isDirty(chunk))
+                {
+                    if(!pages.begin(chunk, chunks.getLeft(chunk), chunks.getTop(chunk), chunks.getRight(chunk), chunks.getBottom(chunk)))
+                    {
+                        renderTiles(chunk);
+                        continue;
+                    }
+
+                    renderTiles(chunk);
+                    pages.end();
+                    chunks.clean(chunk);
+                    synchronized(this)
+                    {
+                        drawn.set(chunk);
+                    }
+                }
+
+                pages.draw(chunk);
+            }
+    }
+
+    /**
+     * Draws each individual tile of a chunk, in the order of their depth.
+     * If a tile is located at a height greater than 0, all the space below it is drawn with the same texture to create the
+     * illusion of multiple stacked tiles.
+     */
+    private void renderTiles(int chunk)
+    {
+        for (int i = chunks.lastX(chunk) - 1; i >= chunks.firstX(chunk); i--)
+            for(int j = chunks.firstY(chunk); j < chunks.lastY(chunk); j++)
+            {
+                short record = getTile(i, j);
+                ImageResource image = getTileImage(TileRecord.texture(record));
+                if(!TileRecord.isPresent(record) || image == null)
+                    continue;
+
+                float x = (i + j) * Tile.GROUND_TILE_WIDTH / 2f;
+                float y = (j - i + 1) * Tile.GROUND_TILE_HEIGHT / 2f;
+                int z = TileRecord.height(record);
+
+                for(int level = 0; level < z; level++)
+                    Renderer.drawImage(image, image.getWidth(), image.getHeight(), x, y - Tile.GROUND_TILE_Z_HEIGHT * level, false);
+                Renderer.drawImage(image, image.getWidth(), image.getHeight(), x, y - Tile.GROUND_TILE_Z_HEIGHT * z, false);
+            }
+    }
+
+    /**
+     * Returns the image of a tile texture, acquired from the {@link AssetManager} the first time it is needed
+     * @param texture index of the texture, see {@link TileRecord#textureId(String)}
+     * @return the image, null for texture 0
+     */
+    public ImageResource getTileImage(int texture)
+    {
+        if(images[texture] == null && texture != 0)
+            images[texture] = AssetManager.acquireImage(TileRecord.texturePath(texture));
+        return images[texture];
+    }
+
+    /**
+     * Gives back the pages the tiles are drawn into and the images of the textures
+     */
+    public void dispose()
+    {
+        pages.dispose();
+
+        for(int i = 0; i < images.length; i++)
+            if(images[i] != null)
+            {
+                AssetManager.release(TileRecord.texturePath(i));
+                images[i] = null;
+            }
+    }
+
+    /**
+     * Generates the chunks of the map that are not loaded, as many as there is room for, a column of chunks at a time split
+     * between the threads of a pool. Only a way to load a small map ahead of time: chunks are otherwise generated when
+     * first needed
+     * @param pool pool generating the chunks, null to generate them on the calling thread. Only changes the speed, as the
+     *             generator gives the same tiles for a chunk whichever thread asks for them
+     */
+    public void generate(ForkJoinPool pool)
+    {
+        short[][] column = new short[yChunks][];
+
+        for(int i = 0; i < xChunks; i++)
+        {
+            synchronized(this)
+            {
+                if(loaded.size() + yChunks > capacity)
+                    return;
+
+                for(int j = 0; j < yChunks; j++)
+                {
+                    int key = i * yChunks + j;
+                    column[j] = edited.containsKey(key) ? edited.get(key) : loaded.get(key);
+                }
+            }
+
+            if(pool == null)
+            {
+                for(int j = 0; j < yChunks; j++)
+                    generateChunk(i, j, column);
+            }
+            else
+                pool.invoke(new GenerateTask(i, column, 0, yChunks));
+
+            synchronized(this)
+            {
+                for(int j = 0; j < yChunks; j++)
+                {
+                    int key = i * yChunks + j;
+                    if(!edited.containsKey(key) && !loaded.containsKey(key))
+                        loaded.put(key, column[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a chunk of a column of chunks, unless it is there already
+     */
+    private void generateChunk(int xChunk, int yChunk, short[][] column)
+    {
+        if(column[yChunk] == null)
         {
-            if(tiles[i][j] != null)
-            tiles[i][j].render();
+            column[yChunk] = new short[CHUNK_SIZE * CHUNK_SIZE];
+            generator.generate(xChunk * CHUNK_SIZE, yChunk * CHUNK_SIZE, width, height, column[yChunk]);
         }
     }
 
     /**
-     * Returns the tile matrix
-     * @return a 2d Tile object array
+     * Generates the missing chunks of a range of a column of chunks, splitting it in halves until it is a single chunk
      */
-    public Tile[][] getTiles()
+    private class GenerateTask extends RecursiveAction
     {
-        return tiles;
+        private static final long serialVersionUID = 1L;
+
+        private final int xChunk;
+        private final short[][] column;
+        private final int from, to;
+
+        GenerateTask(int xChunk, short[][] column, int from, int to)
+        {
+            this.xChunk = xChunk;
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                generateChunk(xChunk, from, column);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new GenerateTask(xChunk, column, from, middle), new GenerateTask(xChunk, column, middle, to));
+        }
     }
 
+    /**
+     * Returns the navigation grid of the terrain, used for pathfinding and movement. Its pages are read from the chunks
+     * as they are needed
+     */
+    public NavigationGrid getNavigation() { return navigation; }
+
+    /**
+     * Returns the chunks the tiles are drawn in
+     */
+    public TerrainChunks getChunks() { return chunks; }
+
+    /**
+     * Sets the number of chunks that can be generated again (those in which no tile was set) kept at most
+     * @param capacity number of chunks, at least 1
+     */
+    public synchronized void setChunkCapacity(int capacity)
+    {
+        this.capacity = Math.max(1, capacity);
+
+        //dropping the least recently used chunks first
+        while(loaded.size() > this.capacity)
+        {
+            Integer eldest = loaded.keySet().iterator().next();
+            loaded.remove(eldest);
+            unloaded(eldest);
+        }
+    }
+
+    /**
+     * Returns the number of chunks kept, including those in which tiles were set
+     */
+    public synchronized int getLoadedChunkCount() { return loaded.size() + edited.size(); }
+
+    /**
+     * Returns the number of chunks generated so far
+     */
+    public synchronized long getChunkLoads() { return chunkLoads; }
+
+    /**
+     * Returns the average time taken to generate a chunk, in nanoseconds
+     */
+    public synchronized long getAverageLoadNanos() { return chunkLoads == 0 ? 0 : loadNanos / chunkLoads; }
+
+    /**
+     * Returns the longest time taken to generate a chunk, in nanoseconds
+     */
+    public synchronized long getMaxLoadNanos() { return maxLoadNanos; }
+
     /**
      * @return the height of the tiles matrix
      */
@@ -0,0 +1,289 @@
+package org.world;
+
+import org.engine.resources.ImageResource;
+import org.world.tiles.Tile;
+import org.world.tiles.TileRecord;
+
+import java.util.Arrays;
+
+/**
+ *  Splits the tiles of a terrain into square chunks of {@link #CHUNK_TILES} x {@link #CHUNK_TILES} tiles, each of which is
+ *  drawn once into an offscreen page and then drawn as a single quad (see {@link Terrain#render()}).
+ *  This class only does the bookkeeping, without touching OpenGL: which chunk a tile belongs to, which chunks changed
+ *  since they were last drawn into their page and the area each chunk covers on screen. A chunk is outdated when one of
+ *  its tiles is set, and stays so until {@link #clean(int)} is called.
+ *  The state of the chunks is kept in blocks covering a chunk of the {@link Terrain} each, a block only existing while one
+ *  of its chunks is up to date or had its bounds computed, so that the bookkeeping of a large map follows the part of it
+ *  that was drawn.
+ *  Chunks are drawn in the same order as the tiles inside of them (first index descending, then second index ascending),
+ *  which keeps every tile behind the ones that overlap it from the front, even across chunks.
+ */
+public class TerrainChunks
+{
+    /**
+     * Width/height of a chunk, in tiles
+     */
+    public static final int CHUNK_TILES = 8;
+
+    /**
+     * Width/height of a block, in chunks
+     */
+    private static final int BLOCK_CHUNKS = Math.max(1, Terrain.CHUNK_SIZE / CHUNK_TILES);
+
+    /**
+     * State of the chunks of a block, those without a block being outdated
+     */
+    private static final class Block
+    {
+        final boolean[] dirty = new boolean[BLOCK_CHUNKS * BLOCK_CHUNKS];
+        int clean = 0;
+
+        /**
+         * Area covered on screen by each chunk's tiles, in world units, set by {@link #computeBounds(int, Terrain)}
+         */
+        final float[] left = new float[dirty.length], top = new float[dirty.length], right = new float[dirty.length],
+                bottom = new float[dirty.length];
+
+        /**
+         * Set for the chunks found to hold no tile by the last {@link #computeBounds(int, Terrain)}
+         */
+        final boolean[] empty = new boolean[dirty.length];
+
+        Block()
+        {
+            Arrays.fill(dirty, true);
+        }
+    }
+
+    /**
+     * Size of the tile matrix, and number of chunks and blocks along each of its dimensions
+     */
+    private final int xTiles, yTiles, xChunks, yChunks, yBlocks;
+
+    private final Block[] blocks;
+    private int dirtyCount;
+
+    /**
+     * Creates the chunks of a tile matrix, all of them outdated
+     * @param xTiles size of the first dimension of the tile matrix
+     * @param yTiles size of the second dimension of the tile matrix
+     */
+    public TerrainChunks(int xTiles, int yTiles)
+    {
+        this.xTiles = xTiles;
+        this.yTiles = yTiles;
+        xChunks = (xTiles + CHUNK_TILES - 1) / CHUNK_TILES;
+        yChunks = (yTiles + CHUNK_TILES - 1) / CHUNK_TILES;
+
+        yBlocks = (yChunks + BLOCK_CHUNKS - 1) / BLOCK_CHUNKS;
+        blocks = new Block[((xChunks + BLOCK_CHUNKS - 1) / BLOCK_CHUNKS) * yBlocks];
+
+        invalidateAll();
+    }
+
+    /**
+     * Returns the chunk holding a tile
+     * @param x first index of the tile
+     * @param y second index of the tile
+     */
+    public int chunkOf(int x, int y)
+    {
+        return (x / CHUNK_TILES) * yChunks + y / CHUNK_TILES;
+    }
+
+    /**
+     * Returns the chunk at a position in the grid of chunks
+     * @param i first index of the chunk, the first index of its tiles divided by {@link #CHUNK_TILES}
+     * @param j second index of the chunk, the second index of its tiles divided by {@link #CHUNK_TILES}
+     */
+    public int chunkAt(int i, int j)
+    {
+        return i * yChunks + j;
+    }
+
+    /**
+     * Marks the chunk of a tile as outdated, called when the tile changes. Tiles outside of the matrix are ignored
+     * @param x first index of the tile
+     * @param y second index of the tile
+     */
+    public void invalidate(int x, int y)
+    {
+        if(x < 0 || x >= xTiles || y < 0 || y >= yTiles)
+            return;
+
+        int chunk = chunkOf(x, y);
+        Block block = blocks[block(chunk)];
+        if(block != null && !block.dirty[slot(chunk)])
+        {
+            block.dirty[slot(chunk)] = true;
+            dirtyCount++;
+
+            //a block of outdated chunks holds nothing that will be used
+            if(--block.clean == 0)
+                blocks[block(chunk)] = null;
+        }
+    }
+
+    /**
+     * Marks every chunk as outdated, for example once their pages were lost
+     */
+    public void invalidateAll()
+    {
+        Arrays.fill(blocks, null);
+        dirtyCount = getChunkCount();
+    }
+
+    /**
+     * Checks whether a chunk changed since it was last drawn into its page
+     */
+    public boolean isDirty(int chunk)
+    {
+        Block block = blocks[block(chunk)];
+        return block == null || block.dirty[slot(chunk)];
+    }
+
+    /**
+     * Marks a chunk as up to date, once it was drawn into its page
+     */
+    public void clean(int chunk)
+    {
+        Block block = blockOf(chunk);
+        if(block.dirty[slot(chunk)])
+        {
+            block.dirty[slot(chunk)] = false;
+            block.clean++;
+            dirtyCount--;
+        }
+    }
+
+    /**
+     * Returns the number of outdated chunks
+     */
+    public int getDirtyCount() { return dirtyCount; }
+
+    /**
+     * Computes the area a chunk's tiles cover on screen (including the stacked columns of raised tiles, see
+     * {@link Tile#render()}), rounded outwards to whole units
+     * @param chunk the chunk
+     * @param terrain terrain holding the tiles
+     * @return false if the chunk holds no tile, in which case it intersects nothing until its bounds are computed again
+     */
+    public boolean computeBounds(int chunk, Terrain terrain)
+    {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+
+        for(int x = firstX(chunk); x < lastX(chunk); x++)
+            for(int y = firstY(chunk); y < lastY(chunk); y++)
+            {
+                short record = terrain.getTile(x, y);
+                ImageResource image = terrain.getTileImage(TileRecord.texture(record));
+                if(!TileRecord.isPresent(record) || image == null)
+                    continue;
+
+                float tileX = (x + y) * Tile.GROUND_TILE_WIDTH / 2f, tileY = (y - x + 1) * Tile.GROUND_TILE_HEIGHT / 2f;
+                minX = Math.min(minX, tileX - image.getWidth() / 2f);
+                maxX = Math.max(maxX, tileX + image.getWidth() / 2f);
+                minY = Math.min(minY, tileY - Tile.GROUND_TILE_Z_HEIGHT * TileRecord.height(record) - image.getHeight() / 2f);
+                maxY = Math.max(maxY, tileY + image.getHeight() / 2f);
+            }
+
+        Block block = blockOf(chunk);
+        int slot = slot(chunk);
+        block.empty[slot] = minX > maxX;
+        if(block.empty[slot])
+            return false;
+
+        block.left[slot] = (float) Math.floor(minX);
+        block.top[slot] = (float) Math.floor(minY);
+        block.right[slot] = (float) Math.ceil(maxX);
+        block.bottom[slot] = (float) Math.ceil(maxY);
+        return true;
+    }
+
+    /**
+     * Checks whether the last computed bounds of a chunk intersect a rectangle, false if they were never computed
+     */
+    public boolean intersects(int chunk, float left, float top, float right, float bottom)
+    {
+        Block block = blocks[block(chunk)];
+        int slot = slot(chunk);
+        return block != null && !block.empty[slot] && block.left[slot] < right && block.right[slot] > left
+                && block.top[slot] < bottom && block.bottom[slot] > top;
+    }
+
+    /**
+     * Returns the left edge of the last computed bounds of a chunk
+     */
+    public float getLeft(int chunk) { return blockOf(chunk).left[slot(chunk)]; }
+
+    /**
+     * Returns the top edge of the last computed bounds of a chunk
+     */
+    public float getTop(int chunk) { return blockOf(chunk).top[slot(chunk)]; }
+
+    /**
+     * Returns the right edge of the last computed bounds of a chunk
+     */
+    public float getRight(int chunk) { return blockOf(chunk).right[slot(chunk)]; }
+
+    /**
+     * Returns the bottom edge of the last computed bounds of a chunk
+     */
+    public float getBottom(int chunk) { return blockOf(chunk).bottom[slot(chunk)]; }
+
+    /**
+     * Returns the block of a chunk, and its position in the block
+     */
+    private int block(int chunk) { return (chunk / yChunks / BLOCK_CHUNKS) * yBlocks + (chunk % yChunks) / BLOCK_CHUNKS; }
+    private int slot(int chunk) { return (chunk / yChunks % BLOCK_CHUNKS) * BLOCK_CHUNKS + chunk % yChunks % BLOCK_CHUNKS; }
+
+    /**
+     * Returns the block of a chunk, creating it if there is none
+     */
+    private Block blockOf(int chunk)
+    {
+        Block block = blocks[block(chunk)];
+        if(block == null)
+            block = blocks[block(chunk)] = new Block();
+        return block;
+    }
+
+    /**
+     * Returns the number of blocks holding the state of chunks
+     */
+    public int getBlockCount()
+    {
+        int count = 0;
+        for(Block block : blocks)
+            if(block != null)
+                count++;
+        return count;
+    }
+
+    /**
+     * Returns the range of first tile indices covered by a chunk, from this one (inclusive) to {@link #lastX(int)}
+     * (exclusive). Tiles of a chunk must be drawn with the first index descending
+     */
+    public int firstX(int chunk) { return (chunk / yChunks) * CHUNK_TILES; }
+
+    /**
+     * Returns the first index following the tiles of a chunk, see {@link #firstX(int)}
+     */
+    public int lastX(int chunk) { return Math.min(firstX(chunk) + CHUNK_TILES, xTiles); }
+
+    /**
+     * Returns the range of second tile indices covered by a chunk, from this one (inclusive) to {@link #lastY(int)}
+     * (exclusive). Tiles of a chunk must be drawn with the second index ascending
+     */
+    public int firstY(int chunk) { return (chunk % yChunks) * CHUNK_TILES; }
+
+    /**
+     * Returns the second index following the tiles of a chunk, see {@link #firstY(int)}
+     */
+    public int lastY(int chunk) { return Math.min(firstY(chunk) + CHUNK_TILES, yTiles); }
+
+    /**
+     * Returns the number of chunks
+     */
+    public int getChunkCount() { return xChunks * yChunks; }
+}
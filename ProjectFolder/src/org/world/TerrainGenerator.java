@@ -0,0 +1,24 @@
+package org.world;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *  Creates the tiles of the chunks of a {@link Terrain} whenever they are needed. Since chunks that were never changed
+ *  are dropped when they are far away and created again when they are needed later, a generator must always produce the
+ *  same tiles for the same chunk. {@link Terrain#generate(ForkJoinPool)} asks for several chunks at once from different
+ *  threads, so a generator must not share state between calls either.
+ */
+public interface TerrainGenerator
+{
+    /**
+     * Fills in the tiles of a chunk
+     * @param firstX first index of the chunk's first tile
+     * @param firstY second index of the chunk's first tile
+     * @param width number of tiles of the map along the first index
+     * @param height number of tiles of the map along the second index
+     * @param records receives the {@link org.world.tiles.TileRecord}s of the chunk, the tile at firstX + i, firstY + j going
+     *                at index i * {@link Terrain#CHUNK_SIZE} + j. Holds only {@link org.world.tiles.TileRecord#EMPTY} when
+     *                called, and the entries of tiles outside of the map are ignored
+     */
+    void generate(int firstX, int firstY, int width, int height, short[] records);
+}
@@ -1,14 +1,21 @@
 package org.world;
 
+import org.engine.GameLoop;
+import org.engine.graphics.DecalLayer;
 import org.engine.graphics.Renderer;
+import org.engine.resources.AssetManager;
 import org.world.agents.enemies.Enemy;
 import org.world.agents.enemies.SecurityBot;
+import org.world.agents.enemies.AI.FlowField;
+import org.world.agents.enemies.AI.PathfindingService;
 import org.world.agents.player.Player;
 import org.world.decoratioms.NonSolidDecoration;
 import org.world.decoratioms.SolidDecoration;
 import org.engine.ui.HUD;
-import java.io.*;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  *  The World class groups information about the various game objects currently present and active.
@@ -17,7 +24,7 @@ import java.util.*;
  *  Currently implements a wave based/survival-type 16x16 tiles level in which the player's goal is to survive for as long as possible
  */
 
-public class World implements Serializable
+public class World
 {
 
     private  Terrain terrain ;
@@ -59,22 +66,60 @@ public class World implements Serializable
  //   private  boolean terrain_modified = true;
 
     /**
-     * Array holding all of the game objects
+     * Holds all of the game objects, as well as the ones that will be added in the next update cycle
      */
-    LinkedList<GameObject> gameObjects = new  LinkedList<>();
+    private EntityStore gameObjects = new EntityStore();
 
     /**
-     * Buffer holding game objects that will be added in the next update cycle
+     * Objects that never move (decorations), kept out of the updates. Replaced as a whole when objects are added
      */
-    private  LinkedList<GameObject> gameObjectsToBeAdded = new  LinkedList<>();
+    private StaticObjects staticObjects;
 
     /**
-     * 2D Array holding decoration objects for easy access based on their positions
+     * Static objects waiting to be added with the next update
      */
-    private  GameObject[][] decorations;
+    private final ArrayList<GameObject> addedStatic = new ArrayList<>();
+
+    /**
+     * Decoration objects by the index of their tile (first index * height of the map + second index), for easy access
+     * based on their positions. Most tiles have none, so only the decorated ones are kept
+     */
+    private final HashMap<Integer, GameObject> decorations = new HashMap<>();
+
+    /**
+     * Broad-phase collision grid holding every game object of the world, indexed by isometric cell
+     */
+    private SpatialGrid spatialGrid;
 
     private  Player player;
 
+    /**
+     * Flow field leading the enemies towards the player, updated once per update cycle
+     */
+    private final FlowField playerField = new FlowField();
+
+    /**
+     * Runs the paths asked for by the objects of the world, a limited time per update cycle
+     */
+    private final PathfindingService pathfinding = new PathfindingService();
+
+    /**
+     * Bodies of dead enemies, painted onto the ground once their death animation is over
+     */
+    private final DecalLayer decals = new DecalLayer();
+
+    /**
+     * Number of objects below which the thinking phase is not split any further between threads
+     */
+    private static final int THINK_BATCH = 64;
+
+    /**
+     * Distance from the camera, in tiles, up to which terrain chunks are loaded ahead of time. Covers a screen around the
+     * camera (16 tiles for the default 320 units wide view) and a chunk beyond, so chunks are loaded well before they come
+     * into view
+     */
+    private static final int PREFETCH_RADIUS = 16 + Terrain.CHUNK_SIZE;
+
     // for camera shake
     private  int shakeTime = 0;
     private  int intensity = 0;
@@ -94,9 +139,21 @@ public class World implements Serializable
      */
     private boolean waveDone = true;
 
+    /**
+     * Points enemies spawn at, as {x, y, side}: the first half of each wave spawns at random points of side 0, the second
+     * half at points of side 1. In the corners of the default 16 x 16 map unless a level sets them
+     */
+    private int[][] spawnPoints = {{0, 1, 0}, {1, 1, 0}, {0, 2, 0}, {2, 2, 0}, {13, 13, 1}, {13, 14, 1}, {12, 14, 1}, {12, 12, 1}};
+
+    /**
+     * Scripted waves, as {number of enemies, delay before the wave in updates}. Waves past the script have two enemies
+     * more than the one before and start {@link #WAVE_DELAY} updates apart
+     */
+    private int[][] waveScript = new int[0][];
+
     /**
      * Applies camera shake to screen
-     * @param duration in 1/60ths of a second
+     * @param duration in updates (1/60ths of a second at the default tick rate)
      * @param intensit values of 1 or 2 should be enough
      */
     public void CameraShake(int duration, int intensit)
@@ -111,50 +168,117 @@ public class World implements Serializable
      */
     public void initialiseWorld()
     {
-        terrain = new Terrain(16, 16);
-        terrain.init();
+        initialiseWorld(16, 16);
+    }
 
-        //add random decorations
-        decorations = new GameObject[terrain.getWidth()][terrain.getHeight()];
-        for(int i = 1; i < terrain.getWidth(); i++)
-            for(int j = 0; j < terrain.getHeight() - 1; j++)
-            if(j != 0 && i != terrain.getWidth() -1){
-                int num = random.nextInt(terrain.getWidth());
+    /**
+     * Initialize all the game world objects and other needed variables for a functioning world, on a random map of the
+     * given size.
+     * Enemies still spawn in the corners of the default 16 x 16 map
+     * @param width width of the map in tiles
+     * @param height height of the map in tiles
+     */
+    public void initialiseWorld(int width, int height)
+    {
+        initialiseWorld(width, height, random.nextLong());
+    }
 
-                if(num > 6 && num < 12)
-                {
-                    decorations[i][j] = new NonSolidDecoration(i ,j ,random.nextBoolean(),3,3,20,20,"/resources/Decorations/grass.png");
-                    gameObjects.add(decorations[i][j]);
-                }
-                else
-                if(num == 5)
-                {
-                    decorations[i][j] = new SolidDecoration(i,j,random.nextBoolean(),10,2,1,1,1,20,20,"/resources/Decorations/rock.png");
-                    gameObjects.add(decorations[i][j]);
-                }
-                else
-                    decorations[i][j] = null;
-            }
+    /**
+     * Initialize all the game world objects and other needed variables for a functioning world, on a map of the given size
+     * generated from a seed (see {@link MapGenerator}). The same seed always gives the same map. The terrain's chunks are
+     * generated as they are needed, only the decorations are placed up front, split between the threads of the game
+     * loop's update pool when there is one
+     * @param width width of the map in tiles
+     * @param height height of the map in tiles
+     * @param seed seed of the map
+     */
+    public void initialiseWorld(int width, int height, long seed)
+    {
+        MapGenerator generator = new MapGenerator(seed);
+        terrain = new Terrain(height, width, generator);
+
+        spatialGrid = new SpatialGrid(terrain.getWidth(), terrain.getHeight());
+        staticObjects = new StaticObjects(spatialGrid);
+
+        //add the decorations
+        decorations.clear();
+        for(MapGenerator.Decoration placed : generator.decorate(width, height, GameLoop.getUpdatePool()))
+            placeDecoration(placed);
+
+        flushStaticObjects();
+    }
+
+    /**
+     * Initialize all the game world objects and other needed variables for a functioning world, from a level read from a
+     * file (see {@link Level}). Tiles are copied out of the file as the terrain needs them
+     * @param level the level
+     */
+    public void initialiseWorld(Level level)
+    {
+        terrain = new Terrain(level.getHeight(), level.getWidth(), level);
+
+        spatialGrid = new SpatialGrid(terrain.getWidth(), terrain.getHeight());
+        staticObjects = new StaticObjects(spatialGrid);
+
+        decorations.clear();
+        for(MapGenerator.Decoration placed : level.getDecorations())
+            placeDecoration(placed);
+
+        if(level.getSpawnPoints().length > 0)
+            spawnPoints = level.getSpawnPoints();
+        waveScript = level.getWaveScript();
+        newEnemies = new Enemy[getWaveSize(wave)];
+
+        flushStaticObjects();
     }
 
-   /* public World readWorld(String path)
+    /**
+     * Writes the world's map, decorations, spawn points and wave script into a level file (see {@link Level})
+     * @param path path of the file, replaced if it exists
+     */
+    public void saveWorld(String path)
     {
         try
         {
-            ObjectInputStream in = new ObjectInputStream(new FileInputStream(path));
-            World w = (World) in.readObject();
+            Level.write(this, path);
         }
-        catch (IOException | ClassNotFoundException e)
+        catch (IOException e)
         {
             e.printStackTrace();
         }
-        return null;
-    }*/
+    }
+
+    /**
+     * Creates the object of a generated or loaded decoration and places it on its tile
+     */
+    private void placeDecoration(MapGenerator.Decoration placed)
+    {
+        if(placed.kind == MapGenerator.DecorationKind.GRASS)
+            setDecoration(placed.x, placed.y, new NonSolidDecoration(placed.x, placed.y, placed.flip, 3, 3, 20, 20, "/resources/Decorations/grass.png"));
+        else
+            setDecoration(placed.x, placed.y, new SolidDecoration(placed.x, placed.y, placed.flip, 10, 2, 1, 1, 1, 20, 20, "/resources/Decorations/rock.png"));
+        addGameObject(getDecoration(placed.x, placed.y));
+    }
+
+    /**
+     * Adds the static objects waiting since the last call, building the world's static objects again
+     */
+    private void flushStaticObjects()
+    {
+        if(addedStatic.isEmpty())
+            return;
+
+        staticObjects = staticObjects.with(addedStatic, spatialGrid);
+        addedStatic.clear();
+    }
 
     /**
      * Handles every update related action during a normal game loop.
      * It iterates through the list of game objects, updating them , removes ones that are no longer needed and
      * inserts new game objects as needed.
+     * Objects are updated in two phases: first they all think (see {@link GameObject#think()}), possibly in parallel,
+     * looking at the world as the previous update left it; then they are updated one at a time, which is where they move,
+     * collide and change the world.
      */
     public void update()
     {
@@ -170,17 +294,10 @@ public class World implements Serializable
             }*/
 
          //create new enemies each update cycle to improve performance
-            if(waveDone && addedEnemies < wave * 2)
+            if(waveDone && addedEnemies < getWaveSize(wave))
             {
-                int[] enemyXCoords = {0 ,1,0,2,13,13,12,12};
-                int[] enemyYCoords = {1,1,2,2,12,14,14,12};
-                int ran = random.nextInt(5);
-                if (addedEnemies < (wave * 2) / 2)
-                {
-                    newEnemies[addedEnemies] = new SecurityBot(enemyXCoords[ran],  enemyYCoords[ran]);
-                }
-                else
-                    newEnemies[addedEnemies] = new SecurityBot(enemyXCoords[3 + ran],  enemyYCoords[3 + ran] );
+                int[] spawn = spawnPoint(addedEnemies < getWaveSize(wave) / 2 ? 0 : 1);
+                newEnemies[addedEnemies] = new SecurityBot(spawn[0], spawn[1]);
                 addedEnemies++;
             }
 
@@ -197,14 +314,14 @@ public class World implements Serializable
             }
 
             // mark the start of the wave
-            if(time == WAVE_DELAY && addedEnemies > 0)
+            if(time == getWaveDelay() && addedEnemies > 0)
             {
 
                    waveDone = false;
                    time = 0;
             }
 
-            if(waveDone && time < WAVE_DELAY && enemyCount == 0)
+            if(waveDone && time < getWaveDelay() && enemyCount == 0)
             {
                 time++;
             }
@@ -213,7 +330,7 @@ public class World implements Serializable
             if(!waveDone && addedEnemies <= 0)
             {
                 wave++;
-                newEnemies = new Enemy[wave * 2];
+                newEnemies = new Enemy[getWaveSize(wave)];
                 addedEnemies = 0;
                 time = 0;
                 waveDone = true;
@@ -221,27 +338,62 @@ public class World implements Serializable
 
 
             //add new game objects from previous update cycle here, otherwise JVM throws a fit
-            if(!gameObjectsToBeAdded.isEmpty())
+            flushStaticObjects();
+            int firstAdded = gameObjects.size();
+            if(gameObjects.flushAdded() > 0)
             {
-                gameObjects.addAll(gameObjectsToBeAdded);
+                for(int i = firstAdded; i < gameObjects.size(); i++)
+                    spatialGrid.insert(gameObjects.get(i));
             }
 
-            //clear game object buffer
-            gameObjectsToBeAdded.clear();
+            //enemies chasing the player all read the same field, rebuilt only when the player reaches another tile
+            if(player != null)
+                playerField.update(player.isoX, player.isoY);
 
-            // update stuff
-            ListIterator<GameObject> it = gameObjects.listIterator();
+            //let every object plan its update first, in parallel, then apply the updates one at a time
+            think();
+
+            //searches asked for by the objects in the previous update (or still waiting from earlier ones), within this
+            //update's budget
+            pathfinding.tick();
 
-            while (it.hasNext())
+            // update stuff
+            int i = 0;
+            while (i < gameObjects.size())
             {
-                GameObject go = it.next();
+                GameObject go = gameObjects.get(i);
 
+                go.savePreviousPosition();
                 go.update();
 
-                //remove garbage
+                //remove garbage, the last object is swapped into this slot so the index stays the same
                 if (go.remove)
-                    it.remove();
+                {
+                    gameObjects.swapRemove(i);
+                    spatialGrid.remove(go);
+                    go.dispose();
+                }
+                else
+                {
+                    spatialGrid.move(go);
+                    i++;
+                }
             }
+
+            gameObjects.compactDepthOrder();
+
+            //shake the camera once the player has placed it, so the shake is interpolated like any other movement
+            if( shakeTime > 0)
+            {
+                shakeTime--;
+                Renderer.cameraX += intensity;
+                Renderer.cameraY += intensity;
+                intensity = -intensity;
+            }
+
+            //load the tiles around the camera before they come into view
+            terrain.prefetch(Renderer.isoX(Renderer.cameraX, Renderer.cameraY), Renderer.isoY(Renderer.cameraX, Renderer.cameraY),
+                    PREFETCH_RADIUS);
         }
 
         if(hud != null)
@@ -250,27 +402,105 @@ public class World implements Serializable
     }
 
     /**
-     * Renders all the game objects and the terrain contained in the world object.
-     * Before the actual rendering objects are sorted based on their distance to the screen, so that the furthest objects are
-     * render first (behind objects in the foreground).
+     * Tears the world down once it is no longer used: gives back the resources of every object left in it (including
+     * enemies waiting to be spawned) and unloads the assets nothing else uses anymore
      */
-    public void render()
+    public void dispose()
     {
-        if( shakeTime > 0)
+        gameObjects.flushAdded();
+        for(int i = 0; i < gameObjects.size(); i++)
+            gameObjects.get(i).dispose();
+
+        for(Enemy enemy : newEnemies)
+            if(enemy != null)
+                enemy.dispose();
+
+        if(staticObjects != null)
         {
-            shakeTime--;
-            Renderer.cameraX += intensity;
-            Renderer.cameraY += intensity;
-            intensity = -intensity;
+            flushStaticObjects();
+            for(int i = 0; i < staticObjects.size(); i++)
+                staticObjects.getByDepth(i).dispose();
         }
 
+        decals.dispose();
+        if(terrain != null)
+            terrain.dispose();
+        AssetManager.unloadUnused();
+    }
+
+    /**
+     * First phase of an update: calls {@link GameObject#think()} on every object, split between the threads of the
+     * game loop's update pool when there is one (see {@link GameLoop#setUpdateThreads(int)}).
+     * Thinking only writes to each object's own plans and nothing in the world changes until every object is done, so
+     * the outcome is the same whichever thread runs which object and in what order
+     */
+    private void think()
+    {
+        ForkJoinPool pool = GameLoop.getUpdatePool();
+
+        if(pool == null || gameObjects.size() <= THINK_BATCH)
+        {
+            for(int i = 0; i < gameObjects.size(); i++)
+                gameObjects.get(i).think();
+        }
+        else
+            pool.invoke(new ThinkTask(0, gameObjects.size()));
+    }
+
+    /**
+     * Calls {@link GameObject#think()} on a range of game objects, splitting it in halves until it is small enough
+     */
+    private class ThinkTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        ThinkTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= THINK_BATCH)
+            {
+                for(int i = from; i < to; i++)
+                    gameObjects.get(i).think();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ThinkTask(from, middle), new ThinkTask(middle, to));
+        }
+    }
+
+    /**
+     * Renders all the game objects and the terrain contained in the world object.
+     * Before the actual rendering objects are sorted based on their distance to the screen, so that the furthest objects are
+     * render first (behind objects in the foreground). Static objects are already sorted, the two orders are merged as
+     * they are drawn.
+     */
+    public void render()
+    {
         terrain.render();
+        decals.render();
 
         //sort and render according to depth
-        Collections.sort(gameObjects);
+        gameObjects.sortByDepth();
+        StaticObjects statics = staticObjects;
 
-        for (GameObject go : gameObjects)
+        for (int i = 0, j = 0; i < gameObjects.depthSize() || j < statics.size(); )
         {
+            //static objects first at the same depth, like when they were added to the game objects before anything else
+            GameObject go;
+            if(j < statics.size() && (i == gameObjects.depthSize() || statics.getByDepth(j).y <= gameObjects.getByDepth(i).y))
+                go = statics.getByDepth(j++);
+            else
+                go = gameObjects.getByDepth(i++);
+
             try
             {
                 go.render();
@@ -289,7 +519,18 @@ public class World implements Serializable
     }
 
     /**
-     * Adds a game object to a buffer to be added next update cycle.
+     * Advances the animations of all the game objects without drawing them. Used instead of {@link #render()} when the game
+     * runs headless, since objects' animation frames (and therefore attacks) only progress when they are played
+     */
+    public void animate()
+    {
+        for (int i = 0; i < gameObjects.size(); i++)
+            gameObjects.get(i).animate();
+    }
+
+    /**
+     * Adds a game object to a buffer to be added next update cycle, static objects (see {@link GameObject#isStatic()})
+     * to their own buffer.
      * Checks the object's coordinates to make sure it has a valid position (isometric coordinates).
      * If the object does not pass the check it is discarded. Also increases the world's enemy count when the added object was an enemy.
      * @param go game object to be added
@@ -301,7 +542,12 @@ public class World implements Serializable
             System.out.println("Given " + go.getClass().getSimpleName() + " object does not have a valid position " + go.isoX + " " + go.isoY + ". Was not added.");
             return;
         }
-        gameObjectsToBeAdded.add(go);
+        if(go.isStatic())
+        {
+            addedStatic.add(go);
+            return;
+        }
+        gameObjects.add(go);
         if(go instanceof Enemy)
             enemyCount++;
     }
@@ -319,40 +565,76 @@ public class World implements Serializable
             return;
         player = p;
         hud = new HUD(p);
-        gameObjectsToBeAdded.add(p);
+        gameObjects.add(p);
     }
 
-   /* public void saveWorld()
-    {
-        try
-        {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("test.lvl"));
-            World w = new World();
-            out.writeObject(w);
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-        }
-    }*/
-
     /**
      * Returns the terrain, used for pathfinding and movement
      */
     public Terrain getTerrain() { return terrain; }
 
+    /**
+     * Returns the broad-phase collision grid of the world
+     */
+    SpatialGrid getSpatialGrid() { return spatialGrid; }
+
+    /**
+     * Returns the objects of the world that never move
+     */
+    StaticObjects getStaticObjects() { return staticObjects; }
+
     /**
      * Returns the player object
      */
     public Player getPlayer() { return player; }
 
     /**
-     *  Returns the decoration array.
+     * Returns the flow field leading towards the player
+     */
+    public FlowField getPlayerField() { return playerField; }
+
+    /**
+     * Returns the service running the path searches of the world's objects
+     */
+    public PathfindingService getPathfinding() { return pathfinding; }
+
+    /**
+     * Returns the layer the bodies of dead enemies are painted onto
+     */
+    public DecalLayer getDecals() { return decals; }
+
+    /**
+     * Returns the number of game objects updated every tick (decorations and objects added since the last update are not
+     * counted)
+     */
+    public int getObjectCount() { return gameObjects.size(); }
+
+    /**
+     *  Returns the decoration placed on a tile.
      *  "Decorations" are passive game objects that can serve as obstacles in movement
+     * @param isoX isometric x coordinate of the tile
+     * @param isoY isometric y coordinate of the tile
+     * @return the decoration, null if there is none
+     */
+    public GameObject getDecoration(int isoX, int isoY)
+    {
+        return decorations.get(isoX * terrain.getHeight() + isoY);
+    }
+
+    /**
+     * Places a decoration on a tile, replacing the one there. Decorations must be changed through this method for the
+     * terrain's {@link NavigationGrid} to see whether the tile is blocked. The decoration is not added to the game objects
+     * @param isoX isometric x coordinate of the tile
+     * @param isoY isometric y coordinate of the tile
+     * @param decoration the decoration, null to clear the tile
      */
-    public GameObject[][] getDecorations()
+    public void setDecoration(int isoX, int isoY, GameObject decoration)
     {
-        return decorations;
+        if(decoration == null)
+            decorations.remove(isoX * terrain.getHeight() + isoY);
+        else
+            decorations.put(isoX * terrain.getHeight() + isoY, decoration);
+        terrain.getNavigation().setSolid(isoX, isoY, decoration != null && decoration.solid);
     }
 
     /**
@@ -394,6 +676,58 @@ public class World implements Serializable
         return time;
     }
 
+    /**
+     * Returns the number of enemies of a wave, from the wave script as long as it lasts
+     * @param wave number of the wave, from 1
+     */
+    public int getWaveSize(int wave)
+    {
+        if(wave <= waveScript.length)
+            return Math.max(1, waveScript[wave - 1][0]);
+
+        int last = waveScript.length == 0 ? 0 : Math.max(1, waveScript[waveScript.length - 1][0]);
+        return last + (wave - waveScript.length) * 2;
+    }
+
+    /**
+     * Returns the number of updates between the end of the last wave and the start of the current one
+     */
+    public int getWaveDelay()
+    {
+        return wave <= waveScript.length ? Math.max(0, waveScript[wave - 1][1]) : WAVE_DELAY;
+    }
+
+    /**
+     * Picks a random spawn point on one side, any spawn point if there is none on that side
+     * @return the point, as {x, y, side}
+     */
+    private int[] spawnPoint(int side)
+    {
+        int count = 0;
+        for(int[] point : spawnPoints)
+            if(point[2] == side)
+                count++;
+
+        if(count == 0)
+            return spawnPoints[random.nextInt(spawnPoints.length)];
+
+        int pick = random.nextInt(count);
+        for(int[] point : spawnPoints)
+            if(point[2] == side && pick-- == 0)
+                return point;
+        return null;
+    }
+
+    /**
+     * Returns the points enemies spawn at, as {x, y, side}, see {@link #spawnPoints}
+     */
+    public int[][] getSpawnPoints() { return spawnPoints; }
+
+    /**
+     * Returns the scripted waves, as {number of enemies, delay before the wave in updates}, see {@link #waveScript}
+     */
+    public int[][] getWaveScript() { return waveScript; }
+
     /**
      * Checks whether the given isometric coordinate are valid given the current size of the game world
      * @param isoX isometric coordinate
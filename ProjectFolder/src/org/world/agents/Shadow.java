@@ -2,6 +2,7 @@ package org.world.agents;
 
 import org.engine.GameLoop;
 import org.engine.graphics.Animation;
+import org.engine.resources.AssetManager;
 import org.engine.resources.ImageResource;
 import org.world.GameObject;
 
@@ -17,6 +18,13 @@ public class Shadow extends GameObject
      */
     GameObject parent;
 
+    private static final String IMAGE_PATH = "/resources/player/shadow.png";
+
+    /**
+     * Set once the shared image was given back
+     */
+    private boolean released = false;
+
     /**
      * Creates a shadow for the supplied parent object.
      * @param parent parent game object the shadow belongs to
@@ -27,7 +35,7 @@ public class Shadow extends GameObject
 
         animations[0] = new Animation();
         animations[0].frames = new ImageResource[1];
-        animations[0].frames[0] = new ImageResource("/resources/player/shadow.png");
+        animations[0].frames[0] = AssetManager.acquireImage(IMAGE_PATH);
 
         spriteWidth = (int) animations[currentAnimation].getImage(currentFrame).getWidth();
         spriteHeight = (int) animations[currentAnimation].getImage(currentFrame).getHeight();
@@ -38,13 +46,27 @@ public class Shadow extends GameObject
     @Override
     public void update()
     {
+        savePreviousPosition();
+
         this.x = parent.x;
         this.y = parent.y + this.spriteHeight /2f;
-        this.z = GameLoop.getWorld().getTerrain().getTiles()[parent.isoX][parent.isoY].z ;
+        this.z = GameLoop.getWorld().getTerrain().getNavigation().getZ(parent.isoX, parent.isoY);
 
         //make shadow size inversely proportional to distance to object
         spriteHeight = (int) (animations[currentAnimation].getImage(currentFrame).getHeight() / (1 + Math.abs(this.z - parent.z)));
         spriteWidth = (int) (animations[currentAnimation].getImage(currentFrame).getWidth()  / (1 + Math.abs(this.z - parent.z)));
     }
 
+    /**
+     * Gives back the shared shadow image
+     */
+    @Override
+    public void dispose()
+    {
+        if(!released)
+        {
+            AssetManager.release(IMAGE_PATH);
+            released = true;
+        }
+    }
 }
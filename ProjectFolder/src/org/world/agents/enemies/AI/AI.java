@@ -2,10 +2,9 @@ package org.world.agents.enemies.AI;
 
 import org.engine.GameLoop;
 
-import java.util.*;
-
 /**
  *  Abstract class to implement some AI-related methods, currently only used for one type of pathfinding
+ *  Tiles are checked through the terrain's {@link org.world.NavigationGrid}.
  */
 public  interface AI
 {
@@ -17,18 +16,8 @@ public  interface AI
      */
     static boolean isValidMove(int x, int y, float z)
     {
-        //if out of map's bounds
-        if(x < 0 || x >= GameLoop.getWorld().getTerrain().getWidth() || y < 0 || y >= GameLoop.getWorld().getTerrain().getHeight())
-            return false;
-
-        //if tile at p.x, p.y is traversable and no solid decoration is present and height is same or below
-        if(GameLoop.getWorld().getTerrain().getTiles()[x][y] != null && GameLoop.getWorld().getTerrain().getTiles()[x][y].traversable  && (GameLoop.getWorld().getDecorations()[x][y]== null || !GameLoop.getWorld().getDecorations()[x][y].solid)
-        && GameLoop.getWorld().getTerrain().getTiles()[x][y].z <= z)
-        {
-            return true;
-        }
-
-        return false;
+        //tile in bounds, traversable, no solid decoration present and height is same or below
+        return GameLoop.getWorld().getTerrain().getNavigation().isValidMove(x, y, z);
     }
 
     /**
@@ -40,17 +29,7 @@ public  interface AI
      */
     static boolean isTraversable(int x, int y)
     {
-        //if out of map's bounds
-        if(x < 0 || x >= GameLoop.getWorld().getTerrain().getWidth() || y < 0 || y >= GameLoop.getWorld().getTerrain().getHeight())
-            return false;
-
-        //if tile at p.x, p.y is traversable and no solid decoration is present
-        if(GameLoop.getWorld().getTerrain().getTiles()[x][y] != null && GameLoop.getWorld().getTerrain().getTiles()[x][y].traversable)
-        {
-            return true;
-        }
-
-        return false;
+        return GameLoop.getWorld().getTerrain().getNavigation().isTraversable(x, y);
     }
 
     /**
@@ -60,82 +39,43 @@ public  interface AI
             {1, -1, 0, 0,-1, 1, 1,-1}};
 
     /**
-     *  Given a destination point, builds a path to the original source by going along the parent chain
-     * @param dest destination point
-     * @return an array list of point from the destination to the source
+     * Pathfinder used by each thread, see {@link #aStar(int, int, int, int, Path)}
      */
-    private static ArrayList<Point> buildPath(Point dest)
-    {
-        ArrayList<Point> route = new ArrayList<>();
-
-        // route.add(dest);
-
-        while(dest != null)
-        {
-            //dest = dest.parent;
-            route.add(dest);
-            dest = dest.parent;
-        }
-
-        return route;
-    }
+    ThreadLocal<Pathfinder> PATHFINDERS = ThreadLocal.withInitial(Pathfinder::new);
 
     /**
      * Applies the A* search algorithm on the current game world, with the given start and destination coordinates.
      * It is essentially a "guided" extension of Dijkstra's algorithm, employing a heuristic to improve performance
-     * It only considers tiles to be traversable when they are marked as such and there are no obstacles present
+     * It only considers tiles to be traversable when they are marked as such and there are no obstacles present.
+     * The search state is kept in a {@link Pathfinder} reused by the calling thread, and the result is written into the
+     * given path, so searching does not allocate.
      *
      * @param xStart isometric coordinate of the starting point
      * @param yStart isometric coordinate of the starting point
-     * @param xDest  isometric coordinate of the starting point
-     * @param yDest  isometric coordinate of the starting point
-     * @return an array list of the points along the path from destination to the source
+     * @param xDest  isometric coordinate of the destination point
+     * @param yDest  isometric coordinate of the destination point
+     * @param path receives the points along the path, from the source towards the destination
+     * @return true if a path was found, false (with an empty path) otherwise
      */
-     static  ArrayList<Point> aStar(int xStart, int yStart, int xDest, int yDest)
+    static boolean aStar(int xStart, int yStart, int xDest, int yDest, Path path)
     {
+        return PATHFINDERS.get().find(xStart, yStart, xDest, yDest, path);
+    }
 
-        Queue<Point> discovered = new PriorityQueue<>();
-        Point current = new Point(xStart, yStart,null);
-        discovered.add(current);
-        boolean[][] closed = new boolean[GameLoop.getWorld().getTerrain().getWidth()][GameLoop.getWorld().getTerrain().getHeight()];
-
-        while(discovered.peek() != null)
-        {
-            current = discovered.poll();
-            //check all neighbouring points and add the ones that can be traversed
-           for(int i = 0;i < 8; i++)
-           {
-               int newX = current.x + PARAMS[0][i];
-               int newY = current.y + PARAMS[1][i];
-
-               //add possible moves and calculate their cost
-               if(isValidMove(newX, newY, GameLoop.getWorld().getTerrain().getTiles()[xStart][yStart].z) && !closed[newX][newY])
-               {
-                   //System.out.println("in");
-                   Point p = new Point(newX, newY,current);
-                   p.cost = current.cost;
-
-                   //add proper cost depending on whether the move is straight or diagonal
-                   if(i < 4)
-                   {
-                       p.cost += Point.STRAIGHT_COST;
-                   }
-                   else p.cost += Point.DIAGONAL_COST;
-
-                   p.cost = p.cost + Point.hScore(p,xDest,yDest);
-                   discovered.add(p);
-               }
-
-           }
-
-            closed[current.x][current.y] = true;
-
-            current = discovered.poll();
-
-           if(current != null && Math.abs(current.x - xDest) <= 1 && Math.abs(current.y - yDest) <=1)
-               return buildPath(current);
-        }
-
-    return null;
+    /**
+     * Asks the current world's {@link PathfindingService} for a path, searched within the budget of the next update
+     * cycles rather than right away. Asking for the same path as another object, while it is still waiting, shares its
+     * search. Must be called while the objects update, not while they think (see
+     * {@link org.world.GameObject#think()})
+     *
+     * @param xStart isometric coordinate of the starting point
+     * @param yStart isometric coordinate of the starting point
+     * @param xDest  isometric coordinate of the destination point
+     * @param yDest  isometric coordinate of the destination point
+     * @return the request, to be checked on the next updates
+     */
+    static PathfindingService.Request requestPath(int xStart, int yStart, int xDest, int yDest)
+    {
+        return GameLoop.getWorld().getPathfinding().request(xStart, yStart, xDest, yDest);
     }
 }
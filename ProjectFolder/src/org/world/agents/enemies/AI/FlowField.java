@@ -0,0 +1,284 @@
+package org.world.agents.enemies.AI;
+
+import org.engine.GameLoop;
+import org.world.NavigationGrid;
+import org.world.World;
+
+import java.util.Arrays;
+
+/**
+ *  A flow field towards a single target tile, shared by every enemy heading there (usually the player).
+ *  Instead of every enemy searching for its own path, the cost of reaching the target is computed once for every tile
+ *  within {@link #RADIUS} tiles of it (Dijkstra's algorithm run outwards from the target), and is only recomputed when
+ *  the target moves to another tile. An enemy then finds its next step by looking at the tiles around it, in constant
+ *  time. The field only covers the square around the target so that its cost does not grow with the map: enemies further
+ *  away, or whose only way to the target leaves the square, get no step and search for a path of their own.
+ *  Movement follows the same rules as {@link AI#aStar(int, int, int, int, Path)}: tiles must be traversable, free of solid
+ *  decorations and not higher than the one being left. The target's own tile and its neighbours are always part of the
+ *  field, so a target standing on a blocked or raised tile can still be approached.
+ */
+public class FlowField
+{
+    /**
+     * Cost of the tiles from which the target cannot be reached
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Distance from the target, in tiles along each axis, up to which the field reaches
+     */
+    public static final int RADIUS = 32;
+
+    /**
+     * First tile and size of the part of the map covered by the field, within {@link #RADIUS} of the target
+     */
+    private int originX, originY, width, height;
+
+    /**
+     * Cost of reaching the target from each covered tile, by first then second index relative to the origin
+     */
+    private int[] cost = new int[0];
+
+    /**
+     * Number of buckets of the queue, costs of all the queued tiles lie within one step of each other
+     */
+    private static final int BUCKETS = Pathfinder.DIAGONAL_COST + 1;
+
+    /**
+     * Queue of tiles to visit, a ring of buckets holding the tiles of equal cost as linked lists of entries
+     * (Dial's algorithm). A tile whose cost improves is added again and its outdated entry is skipped, so every tile
+     * is added at most once per neighbour
+     */
+    private final int[] bucketHead = new int[BUCKETS];
+    private int[] entryTile = new int[0], entryNext = new int[0];
+    private int entries, queued;
+
+    /**
+     * World, target tile and version of the navigation grid the field was built for
+     */
+    private World world;
+    private int targetX, targetY;
+    private NavigationGrid grid;
+    private int gridVersion;
+
+    /**
+     * Set when the field has to be rebuilt even if the target did not move
+     */
+    private boolean dirty = true;
+
+    /**
+     * Number of times the field was built
+     */
+    private int builds = 0;
+
+    /**
+     * Makes sure the field leads to the given tile of the current world, rebuilding it only if the target moved since the
+     * last call (or the world or its {@link NavigationGrid} changed, or the field was {@link #invalidate() invalidated})
+     * @param x isometric x coordinate of the target
+     * @param y isometric y coordinate of the target
+     */
+    public void update(int x, int y)
+    {
+        World current = GameLoop.getWorld();
+        NavigationGrid currentGrid = current.getTerrain().getNavigation();
+        if(!dirty && current == world && x == targetX && y == targetY && currentGrid == grid
+                && currentGrid.getVersion() == gridVersion)
+            return;
+
+        world = current;
+        grid = currentGrid;
+        gridVersion = currentGrid.getVersion();
+        targetX = x;
+        targetY = y;
+        dirty = false;
+        build();
+    }
+
+    /**
+     * Forces the field to be rebuilt on the next {@link #update(int, int)}. Changes to tiles and solid decorations are
+     * seen through the navigation grid, this is only needed for changes it does not track
+     */
+    public void invalidate()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Finds the next tile to move to from the given tile in order to get closer to the target.
+     * The tile itself does not need to be free (an enemy may stand inside of an obstacle's tile)
+     * @param x isometric x coordinate of the tile
+     * @param y isometric y coordinate of the tile
+     * @param step receives the isometric coordinates of the next tile
+     * @return true if a next tile was found, false if the target is unreachable from this tile or was already reached
+     */
+    public boolean nextStep(int x, int y, int[] step)
+    {
+        if(world == null || !covers(x, y))
+            return false;
+
+        int own = grid.index(x, y);
+        if(grid.getZ(own) == Float.MAX_VALUE)
+            return false; //no tile
+
+        int ownCost = cost[(x - originX) * height + y - originY];
+        int level = grid.getLevel(own);
+        int bestX = -1, bestY = -1;
+        long bestCost = UNREACHABLE;
+
+        //move to the neighbour closest to the target, among the ones closer to it than this tile
+        for(int i = 0; i < 8; i++)
+        {
+            int nx = x + AI.PARAMS[0][i];
+            int ny = y + AI.PARAMS[1][i];
+            if(!covers(nx, ny))
+                continue;
+
+            int neighbourCost = cost[(nx - originX) * height + ny - originY];
+            if(neighbourCost >= ownCost || grid.getLevel(grid.index(nx, ny)) > level)
+                continue;
+
+            long total = (long) neighbourCost + (i < 4 ? Pathfinder.STRAIGHT_COST : Pathfinder.DIAGONAL_COST);
+            if(total < bestCost)
+            {
+                bestX = nx;
+                bestY = ny;
+                bestCost = total;
+            }
+        }
+
+        if(bestX == -1)
+            return false;
+
+        step[0] = bestX;
+        step[1] = bestY;
+        return true;
+    }
+
+    /**
+     * Checks whether a tile lies within the part of the map covered by the field
+     * @param x isometric x coordinate of the tile
+     * @param y isometric y coordinate of the tile
+     */
+    public boolean covers(int x, int y)
+    {
+        return x >= originX && x < originX + width && y >= originY && y < originY + height;
+    }
+
+    /**
+     * Returns the cost of reaching the target from the given tile, {@link #UNREACHABLE} if it cannot be reached
+     * (or the tile is blocked itself)
+     */
+    public int getCost(int x, int y)
+    {
+        if(!covers(x, y))
+            return UNREACHABLE;
+        return cost[(x - originX) * height + y - originY];
+    }
+
+    /**
+     * Returns the number of times the field was built, for measuring how often it is recomputed
+     */
+    public int getBuildCount() { return builds; }
+
+    /**
+     * Computes the cost of every covered tile, walking outwards from the target. A tile is entered from a neighbour only
+     * if an enemy standing on that neighbour could move into it, i.e. the neighbour is free and not lower than the tile
+     */
+    private void build()
+    {
+        builds++;
+
+        if(!grid.inBounds(targetX, targetY))
+        {
+            originX = originY = width = height = 0;
+            return;
+        }
+
+        originX = Math.max(0, targetX - RADIUS);
+        originY = Math.max(0, targetY - RADIUS);
+        ensureSize(Math.min(grid.getWidth(), targetX + RADIUS + 1) - originX,
+                Math.min(grid.getHeight(), targetY + RADIUS + 1) - originY);
+
+        Arrays.fill(cost, 0, width * height, UNREACHABLE);
+
+        int target = (targetX - originX) * height + targetY - originY;
+        cost[target] = 0;
+        Arrays.fill(bucketHead, -1);
+        entries = queued = 0;
+        push(0, target);
+
+        for(int currentCost = 0; queued > 0; currentCost++)
+        {
+            int bucket = currentCost % BUCKETS;
+            while(bucketHead[bucket] != -1)
+            {
+                int current = pop(bucket);
+                if(cost[current] < currentCost)
+                    continue; //outdated entry
+
+                int currentX = current / height;
+                int currentY = current % height;
+                int level = grid.getLevel(grid.index(originX + currentX, originY + currentY));
+
+                for(int i = 0; i < 8; i++)
+                {
+                    int x = currentX + AI.PARAMS[0][i];
+                    int y = currentY + AI.PARAMS[1][i];
+                    if(x < 0 || x >= width || y < 0 || y >= height)
+                        continue;
+
+                    int neighbour = x * height + y;
+                    int tile = grid.index(originX + x, originY + y);
+
+                    //being next to the target is enough, whatever its height, further away tiles can only step down or level
+                    if(!grid.isFree(tile) || (current != target && grid.getLevel(tile) < level))
+                        continue;
+
+                    int newCost = currentCost + (i < 4 ? Pathfinder.STRAIGHT_COST : Pathfinder.DIAGONAL_COST);
+                    if(newCost < cost[neighbour])
+                    {
+                        cost[neighbour] = newCost;
+                        push(newCost, neighbour);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Grows the arrays to fit a part of the map of the given size
+     */
+    private void ensureSize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+
+        int tiles = width * height;
+        if(tiles <= cost.length)
+            return;
+
+        cost = new int[tiles];
+        entryTile = new int[tiles * 8 + 1];
+        entryNext = new int[tiles * 8 + 1];
+    }
+
+    //=================================== bucket queue ===================================//
+
+    private void push(int key, int tile)
+    {
+        int bucket = key % BUCKETS;
+        entryTile[entries] = tile;
+        entryNext[entries] = bucketHead[bucket];
+        bucketHead[bucket] = entries;
+        entries++;
+        queued++;
+    }
+
+    private int pop(int bucket)
+    {
+        int entry = bucketHead[bucket];
+        bucketHead[bucket] = entryNext[entry];
+        queued--;
+        return entryTile[entry];
+    }
+}
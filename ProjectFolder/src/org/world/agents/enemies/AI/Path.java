@@ -0,0 +1,90 @@
+package org.world.agents.enemies.AI;
+
+/**
+ *  A path across the terrain, as a sequence of tile (isometric) coordinates from the start towards the destination.
+ *  The path is walked by taking its points one at a time with {@link #next()}.
+ *  A Path object is meant to be reused: the pathfinder overwrites it on every query, and its storage only grows when a
+ *  longer path than any before it is found, so following paths does not allocate.
+ */
+public class Path
+{
+    private int[] xs = new int[32];
+    private int[] ys = new int[32];
+
+    /**
+     * Number of points in the path
+     */
+    private int length = 0;
+
+    /**
+     * Index of the next point to be taken
+     */
+    private int cursor = 0;
+
+    /**
+     * Removes all the points of the path
+     */
+    public void clear()
+    {
+        length = 0;
+        cursor = 0;
+    }
+
+    /**
+     * Checks whether all the points of the path were taken (or there were none)
+     */
+    public boolean isEmpty() { return cursor >= length; }
+
+    /**
+     * Takes the next point of the path. Its coordinates are then given by {@link #getX()} and {@link #getY()}
+     */
+    public void next() { cursor++; }
+
+    /**
+     * Returns the isometric x coordinate of the last point taken with {@link #next()}
+     */
+    public int getX() { return xs[cursor - 1]; }
+
+    /**
+     * Returns the isometric y coordinate of the last point taken with {@link #next()}
+     */
+    public int getY() { return ys[cursor - 1]; }
+
+    /**
+     * Returns the number of points in the path, including the ones already taken
+     */
+    public int length() { return length; }
+
+    /**
+     * Returns the isometric x coordinate of the point at the given index
+     */
+    public int getX(int index) { return xs[index]; }
+
+    /**
+     * Returns the isometric y coordinate of the point at the given index
+     */
+    public int getY(int index) { return ys[index]; }
+
+    /**
+     * Makes room for a path of the given length and empties the path. Used by the {@link Pathfinder}, which then fills
+     * it back to front with {@link #set(int, int, int)}
+     */
+    void reset(int length)
+    {
+        if(length > xs.length)
+        {
+            int capacity = Math.max(length, xs.length * 2);
+            xs = new int[capacity];
+            ys = new int[capacity];
+        }
+
+        this.length = length;
+        this.cursor = 0;
+    }
+
+    void set(int index, int x, int y)
+    {
+        xs[index] = x;
+        ys[index] = y;
+    }
+}
@@ -0,0 +1,422 @@
+package org.world.agents.enemies.AI;
+
+import org.engine.GameLoop;
+import org.world.NavigationGrid;
+
+import java.util.Arrays;
+
+/**
+ *  A* search over the tiles of the current world, which does not allocate once it has been used on a map of a given size.
+ *  The per-tile search state (cost so far, parent, heap position) lives in blocks of flat arrays, one block for each page
+ *  of the {@link NavigationGrid} (see {@link NavigationGrid#index(int, int)}) the search has reached, so the memory used
+ *  follows the area searched rather than the size of the map. Blocks are kept from one search to the next, up to
+ *  {@value #KEPT_BLOCKS} of them. Instead of clearing them for every query, each query gets a new generation number and a
+ *  tile's state only counts when it was stamped with the current generation.
+ *  Open tiles are kept in an indexed binary min-heap, so a tile reached again through a cheaper route has its key
+ *  lowered in place (decrease-key) rather than being added a second time.
+ *  Since all of its state is kept between calls, a search can also be run a slice at a time ({@link #begin(int, int, int,
+ *  int)}, then {@link #resume(int, Path)} until it is over), which is how the {@link PathfindingService} spreads searches
+ *  over several updates.
+ *  A Pathfinder is not thread-safe; {@link AI#aStar(int, int, int, int, Path)} keeps one per thread.
+ */
+public class Pathfinder
+{
+    /**
+     * Cost of moving to a neighbouring tile, diagonal moves are considered to take longer than straight ones
+     */
+    static final int STRAIGHT_COST = 10, DIAGONAL_COST = 14;
+
+    /**
+     * Number of blocks of search state kept between searches, beyond which they are given back when the next search
+     * starts (about 24 KB each)
+     */
+    static final int KEPT_BLOCKS = 64;
+
+    /**
+     * Number of bits of a tile's index giving its position within its page
+     */
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(NavigationGrid.PAGE_TILES);
+    private static final int PAGE_MASK = NavigationGrid.PAGE_TILES - 1;
+
+    /**
+     * Search state of the tiles of a page
+     */
+    private static final class Block
+    {
+        /**
+         * Cost of the best known route from the start to each tile
+         */
+        final int[] g = new int[NavigationGrid.PAGE_TILES];
+
+        /**
+         * Tile preceding each tile on its best known route, -1 for the start
+         */
+        final int[] parent = new int[NavigationGrid.PAGE_TILES];
+
+        /**
+         * Generation in which each tile was last reached / closed
+         */
+        final int[] seen = new int[NavigationGrid.PAGE_TILES], closed = new int[NavigationGrid.PAGE_TILES];
+
+        /**
+         * Position of each open tile in the heap
+         */
+        final int[] heapIndex = new int[NavigationGrid.PAGE_TILES];
+    }
+
+    /**
+     * Block of each page of the map, null for the pages without one, and the keys of the pages with one
+     */
+    private Block[] blocks = new Block[0];
+    private int[] used = new int[16];
+    private int usedCount = 0;
+
+    /**
+     * Binary min-heap of open tiles, with the estimated total cost of a route through each (the key of the heap) and the
+     * cost so far of each
+     */
+    private int[] heap = new int[256], heapF = new int[256], heapG = new int[256];
+    private int heapSize;
+
+    private int generation = 0;
+
+    /**
+     * Outcome of {@link #resume(int, Path)}
+     */
+    public enum Status { SEARCHING, FOUND, NOT_FOUND }
+
+    /**
+     * The search in progress: its grid (and the version of the grid it started on), starting tile, height level and
+     * destination
+     */
+    private NavigationGrid grid;
+    private int gridVersion;
+    private int start, level, xDest, yDest;
+    private boolean searching = false;
+
+    /**
+     * Number of tiles expanded by the last call to {@link #resume(int, Path)}
+     */
+    private int expanded = 0;
+
+    /**
+     * Searches for a path between two tiles of the current world, moving only through tiles that are traversable, free of
+     * solid decorations and not higher than the starting tile (see {@link AI#isValidMove(int, int, float)}).
+     * The search ends as soon as a tile next to (or at) the destination is reached, which allows reaching destinations
+     * blocked by an obstacle. Destinations that cannot be reached are rejected right away (see
+     * {@link org.world.NavigationRegions#canReach(int, int, int, int)}).
+     * @param xStart isometric coordinate of the starting tile
+     * @param yStart isometric coordinate of the starting tile
+     * @param xDest isometric coordinate of the destination tile
+     * @param yDest isometric coordinate of the destination tile
+     * @param path receives the path, from the starting tile to the last tile of the route. Emptied if no path exists
+     * @return true if a path was found
+     */
+    public boolean find(int xStart, int yStart, int xDest, int yDest, Path path)
+    {
+        begin(xStart, yStart, xDest, yDest);
+        return resume(Integer.MAX_VALUE, path) == Status.FOUND;
+    }
+
+    /**
+     * Starts a search, run by {@link #resume(int, Path)} a few tiles at a time (see
+     * {@link #find(int, int, int, int, Path)} for the rules). Abandons the search in progress, if any
+     * @param xStart isometric coordinate of the starting tile
+     * @param yStart isometric coordinate of the starting tile
+     * @param xDest isometric coordinate of the destination tile
+     * @param yDest isometric coordinate of the destination tile
+     */
+    public void begin(int xStart, int yStart, int xDest, int yDest)
+    {
+        grid = GameLoop.getWorld().getTerrain().getNavigation();
+        gridVersion = grid.getVersion();
+        this.xDest = xDest;
+        this.yDest = yDest;
+
+        //without a path the search would explore everything reachable before giving up
+        searching = grid.getRegions().canReach(xStart, yStart, xDest, yDest);
+        if(!searching)
+            return;
+
+        ensureSize(grid.getPageCount());
+        nextGeneration();
+        heapSize = 0;
+
+        start = grid.index(xStart, yStart);
+        level = grid.getLevel(start);
+        Block block = block(start);
+        block.seen[start & PAGE_MASK] = generation;
+        block.g[start & PAGE_MASK] = 0;
+        block.parent[start & PAGE_MASK] = -1;
+        push(start, heuristic(xStart, yStart, xDest, yDest), 0);
+    }
+
+    /**
+     * Goes on with the search started by {@link #begin(int, int, int, int)}, until it ends or has expanded the given
+     * number of tiles
+     * @param maxTiles number of tiles expanded at most before returning
+     * @param path receives the path once one is found, emptied if there is none
+     * @return whether the path was found, does not exist, or the search is not over
+     */
+    public Status resume(int maxTiles, Path path)
+    {
+        for(expanded = 0; searching && heapSize > 0; expanded++)
+        {
+            if(expanded == maxTiles)
+                return Status.SEARCHING;
+
+            int current = pop();
+            Block currentBlock = block(current);
+            currentBlock.closed[current & PAGE_MASK] = generation;
+
+            int currentX = grid.getX(current);
+            int currentY = grid.getY(current);
+
+            //the starting tile never counts as arrived, the path should always lead somewhere
+            if(current != start && Math.abs(currentX - xDest) <= 1 && Math.abs(currentY - yDest) <= 1)
+            {
+                expanded++;
+                searching = false;
+                buildPath(current, path);
+                return Status.FOUND;
+            }
+
+            int currentG = currentBlock.g[current & PAGE_MASK];
+            for(int i = 0; i < 8; i++)
+            {
+                int x = currentX + AI.PARAMS[0][i];
+                int y = currentY + AI.PARAMS[1][i];
+
+                //same test as AI.isValidMove
+                if(!grid.inBounds(x, y))
+                    continue;
+                int neighbour = grid.index(x, y);
+                if(!grid.isFree(neighbour) || grid.getLevel(neighbour) > level)
+                    continue;
+
+                Block block = block(neighbour);
+                int tile = neighbour & PAGE_MASK;
+                if(block.closed[tile] == generation)
+                    continue;
+
+                int cost = currentG + (i < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+
+                if(block.seen[tile] != generation)
+                {
+                    block.seen[tile] = generation;
+                    block.g[tile] = cost;
+                    block.parent[tile] = current;
+                    push(neighbour, cost + heuristic(x, y, xDest, yDest), cost);
+                }
+                else if(cost < block.g[tile])
+                {
+                    block.g[tile] = cost;
+                    block.parent[tile] = current;
+                    decreaseKey(block.heapIndex[tile], cost + heuristic(x, y, xDest, yDest), cost);
+                }
+            }
+        }
+
+        searching = false;
+        path.clear();
+        return Status.NOT_FOUND;
+    }
+
+    /**
+     * Returns the number of tiles expanded by the last call to {@link #resume(int, Path)}, never more than the number it
+     * was allowed to
+     */
+    public int getExpanded() { return expanded; }
+
+    /**
+     * Checks whether the world's tiles or solid decorations changed since the search in progress started, in which case
+     * it should be started again
+     */
+    public boolean isStale()
+    {
+        NavigationGrid current = GameLoop.getWorld().getTerrain().getNavigation();
+        return current != grid || current.getVersion() != gridVersion;
+    }
+
+    /**
+     * Estimates the cost of moving between two tiles when nothing is in the way (octile distance), never more than the
+     * actual cost so the paths found are the cheapest ones
+     */
+    private static int heuristic(int x, int y, int xDest, int yDest)
+    {
+        int dx = Math.abs(x - xDest);
+        int dy = Math.abs(y - yDest);
+        return STRAIGHT_COST * (dx + dy) + (DIAGONAL_COST - 2 * STRAIGHT_COST) * Math.min(dx, dy);
+    }
+
+    /**
+     * Follows the parent chain from the last tile back to the start and writes it into the path, start first
+     */
+    private void buildPath(int last, Path path)
+    {
+        int length = 0;
+        for(int tile = last; tile != -1; tile = block(tile).parent[tile & PAGE_MASK])
+            length++;
+
+        path.reset(length);
+        for(int tile = last, i = length - 1; tile != -1; tile = block(tile).parent[tile & PAGE_MASK], i--)
+            path.set(i, grid.getX(tile), grid.getY(tile));
+    }
+
+    /**
+     * Returns the block of search state of a tile's page, taking a new one if the page has none
+     */
+    private Block block(int tile)
+    {
+        int key = tile >>> PAGE_SHIFT;
+        Block block = blocks[key];
+        if(block == null)
+        {
+            block = blocks[key] = new Block();
+            if(usedCount == used.length)
+                used = Arrays.copyOf(used, usedCount * 2);
+            used[usedCount++] = key;
+        }
+        return block;
+    }
+
+    /**
+     * Makes room for the blocks of a map with the given number of pages, and gives back the blocks beyond those kept
+     */
+    private void ensureSize(int pages)
+    {
+        if(pages != blocks.length)
+        {
+            blocks = new Block[pages];
+            usedCount = 0;
+            generation = 0;
+        }
+        else if(usedCount > KEPT_BLOCKS)
+        {
+            for(int i = 0; i < usedCount; i++)
+                blocks[used[i]] = null;
+            usedCount = 0;
+        }
+    }
+
+    /**
+     * Returns the number of blocks of search state held
+     */
+    public int getBlockCount() { return usedCount; }
+
+    /**
+     * Starts a new query, invalidating the state left by the previous one
+     */
+    private void nextGeneration()
+    {
+        generation++;
+
+        //on overflow clear the stamps, so that no stale stamp can match a reused generation number
+        if(generation == Integer.MAX_VALUE)
+        {
+            for(int i = 0; i < usedCount; i++)
+            {
+                Arrays.fill(blocks[used[i]].seen, 0);
+                Arrays.fill(blocks[used[i]].closed, 0);
+            }
+            generation = 1;
+        }
+    }
+
+    //=================================== indexed min-heap ===================================//
+
+    /**
+     * Orders the open tiles at two positions of the heap by estimated total cost, then by cost so far (further along
+     * first) when the estimates are equal
+     */
+    private boolean less(int a, int b)
+    {
+        return heapF[a] < heapF[b] || (heapF[a] == heapF[b] && heapG[a] > heapG[b]);
+    }
+
+    private void push(int tile, int key, int cost)
+    {
+        if(heapSize == heap.length)
+        {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+            heapF = Arrays.copyOf(heapF, heapSize * 2);
+            heapG = Arrays.copyOf(heapG, heapSize * 2);
+        }
+
+        heap[heapSize] = tile;
+        heapF[heapSize] = key;
+        heapG[heapSize] = cost;
+        heapSize++;
+        siftUp(heapSize - 1);
+    }
+
+    private int pop()
+    {
+        int top = heap[0];
+        heapSize--;
+        if(heapSize > 0)
+        {
+            move(heapSize, 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void decreaseKey(int index, int key, int cost)
+    {
+        heapF[index] = key;
+        heapG[index] = cost;
+        siftUp(index);
+    }
+
+    /**
+     * Moves the entry at a position of the heap to another, updating the position kept for its tile
+     */
+    private void move(int from, int to)
+    {
+        heap[to] = heap[from];
+        heapF[to] = heapF[from];
+        heapG[to] = heapG[from];
+        block(heap[to]).heapIndex[heap[to] & PAGE_MASK] = to;
+    }
+
+    private void siftUp(int index)
+    {
+        int tile = heap[index], key = heapF[index], cost = heapG[index];
+        while(index > 0)
+        {
+            int parentIndex = (index - 1) >> 1;
+            if(!(key < heapF[parentIndex] || (key == heapF[parentIndex] && cost > heapG[parentIndex])))
+                break;
+
+            move(parentIndex, index);
+            index = parentIndex;
+        }
+        heap[index] = tile;
+        heapF[index] = key;
+        heapG[index] = cost;
+        block(tile).heapIndex[tile & PAGE_MASK] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        int tile = heap[index], key = heapF[index], cost = heapG[index];
+        while(true)
+        {
+            int child = 2 * index + 1;
+            if(child >= heapSize)
+                break;
+            if(child + 1 < heapSize && less(child + 1, child))
+                child++;
+            if(!(heapF[child] < key || (heapF[child] == key && heapG[child] > cost)))
+                break;
+
+            move(child, index);
+            index = child;
+        }
+        heap[index] = tile;
+        heapF[index] = key;
+        heapG[index] = cost;
+        block(tile).heapIndex[tile & PAGE_MASK] = index;
+    }
+}
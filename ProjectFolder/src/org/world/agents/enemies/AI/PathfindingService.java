@@ -0,0 +1,224 @@
+package org.world.agents.enemies.AI;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ *  Runs the A* searches asked for by the objects of a world within a budget of expanded tiles per update, so that many
+ *  objects asking for a path in the same update (for example right after the player moved to another tile) cannot make
+ *  that update late.
+ *  Searches are queued as {@link Request}s and run in order by {@link #tick()}, called once per update, until the budget
+ *  is spent. A search that did not end is picked up where it stopped on the next tick, or started again if the tiles or
+ *  solid decorations changed meanwhile. Requests between the same two tiles made while the first one is still waiting
+ *  share a single search.
+ *  The budget counts tiles rather than time, and requests are only made from the serial phase of an update (see
+ *  {@link org.world.World#update()}), so which searches end in which update does not depend on the speed of the machine
+ *  or on the number of threads, and games stay deterministic.
+ *  Objects waiting for their path are expected to go on with what they were doing (following their previous path, or
+ *  heading straight for their destination), checking their request on their next updates.
+ *  The service keeps track of the length of its queue, of how much of the budget it used in the last tick, and of the
+ *  number of ticks requests wait for their path.
+ */
+public class PathfindingService
+{
+    /**
+     * Default number of tiles expanded per tick
+     */
+    public static final int DEFAULT_BUDGET = 8192;
+
+    /**
+     * A path asked for, filled in once its search is over
+     */
+    public static class Request
+    {
+        final int xStart, yStart, xDest, yDest;
+        final long key;
+
+        /**
+         * Tick in which the request was made
+         */
+        final long tick;
+
+        private final Path path = new Path();
+        private boolean done = false;
+        private boolean found = false;
+
+        Request(int xStart, int yStart, int xDest, int yDest, long tick)
+        {
+            this.xStart = xStart;
+            this.yStart = yStart;
+            this.xDest = xDest;
+            this.yDest = yDest;
+            this.tick = tick;
+            key = key(xStart, yStart, xDest, yDest);
+        }
+
+        /**
+         * Checks whether the search is over, then {@link #isFound()} tells whether a path exists
+         */
+        public boolean isDone() { return done; }
+
+        /**
+         * Checks whether a path was found, false while the search is not over
+         */
+        public boolean isFound() { return done && found; }
+
+        /**
+         * Copies the path found into the given one, from the starting tile to the last tile of the route, so that several
+         * objects sharing the request can each follow it. Empties the given path if no path was found (yet)
+         */
+        public void copyPath(Path into)
+        {
+            if(!isFound())
+            {
+                into.clear();
+                return;
+            }
+
+            into.reset(path.length());
+            for(int i = 0; i < path.length(); i++)
+                into.set(i, path.getX(i), path.getY(i));
+        }
+    }
+
+    private final Pathfinder pathfinder = new Pathfinder();
+
+    private final Queue<Request> queue = new ArrayDeque<>();
+
+    /**
+     * Requests not done yet, by start and destination
+     */
+    private final Map<Long, Request> waiting = new HashMap<>();
+
+    /**
+     * Request whose search was started and is not over
+     */
+    private Request active = null;
+
+    private int budget = DEFAULT_BUDGET;
+    private long ticks = 0;
+
+    //metrics
+    private int lastUsed = 0;
+    private long completed = 0, totalLatency = 0;
+    private int maxLatency = 0;
+
+    /**
+     * Asks for a path between two tiles of the current world (see {@link Pathfinder#find(int, int, int, int, Path)} for the
+     * rules), returning the request already waiting for the same path if there is one. Must not be called while the
+     * objects of the world think in parallel, the order of the requests deciding the order of the searches
+     * @param xStart isometric coordinate of the starting tile
+     * @param yStart isometric coordinate of the starting tile
+     * @param xDest isometric coordinate of the destination tile
+     * @param yDest isometric coordinate of the destination tile
+     * @return the request, done after one of the next ticks
+     */
+    public Request request(int xStart, int yStart, int xDest, int yDest)
+    {
+        Request request = waiting.get(key(xStart, yStart, xDest, yDest));
+        if(request == null)
+        {
+            request = new Request(xStart, yStart, xDest, yDest, ticks);
+            waiting.put(request.key, request);
+            queue.add(request);
+        }
+        return request;
+    }
+
+    /**
+     * Packs the coordinates of a request into the key of {@link #waiting}
+     */
+    private static long key(int xStart, int yStart, int xDest, int yDest)
+    {
+        return (long) (xStart & 0xffff) << 48 | (long) (yStart & 0xffff) << 32 | (long) (xDest & 0xffff) << 16
+                | (yDest & 0xffff);
+    }
+
+    /**
+     * Runs the waiting searches until they are all over or the budget of the tick is spent
+     */
+    public void tick()
+    {
+        int remaining = budget;
+
+        while(remaining > 0)
+        {
+            if(active == null)
+            {
+                active = queue.poll();
+                if(active == null)
+                    break;
+                pathfinder.begin(active.xStart, active.yStart, active.xDest, active.yDest);
+            }
+            else if(pathfinder.isStale())
+                pathfinder.begin(active.xStart, active.yStart, active.xDest, active.yDest);
+
+            Pathfinder.Status status = pathfinder.resume(remaining, active.path);
+            remaining -= pathfinder.getExpanded();
+            if(status != Pathfinder.Status.SEARCHING)
+            {
+                complete(active, status == Pathfinder.Status.FOUND);
+                active = null;
+            }
+        }
+
+        lastUsed = budget - remaining;
+        ticks++;
+    }
+
+    private void complete(Request request, boolean found)
+    {
+        request.found = found;
+        request.done = true;
+        waiting.remove(request.key);
+
+        int latency = (int) (ticks - request.tick);
+        completed++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+    }
+
+    /**
+     * Sets the number of tiles expanded per tick
+     * @param tiles budget in expanded tiles, at least 1
+     */
+    public void setBudget(int tiles) { budget = Math.max(1, tiles); }
+
+    /**
+     * Returns the number of tiles expanded per tick
+     */
+    public int getBudget() { return budget; }
+
+    /**
+     * Returns the number of requests waiting for their path, including the one being searched
+     */
+    public int getQueueDepth() { return queue.size() + (active != null ? 1 : 0); }
+
+    /**
+     * Returns the number of tiles expanded in the last tick as a fraction of the budget, never above 1
+     */
+    public float getBudgetUtilisation() { return lastUsed / (float) budget; }
+
+    /**
+     * Returns the number of tiles expanded in the last tick
+     */
+    public int getLastUsed() { return lastUsed; }
+
+    /**
+     * Returns the average number of ticks requests waited for their path: 0 for those done by the first tick after they
+     * were made, 1 for those that waited for another tick...
+     */
+    public float getAverageLatency() { return completed == 0 ? 0 : totalLatency / (float) completed; }
+
+    /**
+     * Returns the largest number of ticks a request waited for its path
+     */
+    public int getMaxLatency() { return maxLatency; }
+
+    /**
+     * Returns the number of requests done since the service was created
+     */
+    public long getCompleted() { return completed; }
+}
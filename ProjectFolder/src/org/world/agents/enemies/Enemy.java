@@ -1,16 +1,17 @@
 package org.world.agents.enemies;
 
 import org.engine.graphics.Renderer;
-import org.world.agents.enemies.AI.AI;
-import org.world.agents.enemies.AI.Point;
 import org.world.agents.Shadow;
 import org.world.agents.player.melee.AttackNode;
 import org.world.agents.player.melee.HitBox;
 import org.engine.GameLoop;
 import org.world.GameObject;
+import org.world.NavigationGrid;
+import org.world.agents.enemies.AI.AI;
+import org.world.agents.enemies.AI.Path;
+import org.world.agents.enemies.AI.PathfindingService;
 import org.world.tiles.Tile;
 
-import java.util.ArrayList;
 
 /**
  *  Basic enemy template, adds some useful variables and methods to the GameObject superclass.
@@ -117,19 +118,30 @@ public abstract class Enemy extends GameObject
     boolean moving;
 
     /**
-     * Currently used path
+     * Current destination point, not the final one
      */
-    ArrayList<Point> path = null;
+    int[] currentDestination = new int[2]; //current destination (a point on the path)
 
     /**
-     * Current destination point, not the final one
+     * Is set while the enemy is heading towards {@link #currentDestination}
+     */
+    boolean hasDestination = false;
+
+    /**
+     * Tick in which the enemy last planned (see {@link #think()}), and the tile it planned from
      */
-    Point currentDestination = null; //current destination (a point on the path)
+    long plannedTick = -1;
+    int plannedX, plannedY;
 
     /**
-     * Coordinates of the currently set final destination
+     * Path followed by {@link #nextPathStep(int, int, int[])}, the tile it leads to and whether it was found, and the
+     * request for the next path with the tile it should lead to (null when none is waiting)
      */
-    int[] finalDestination = new int[2];
+    private final Path path = new Path();
+    private int pathX = -1, pathY = -1;
+    private boolean pathFound;
+    private PathfindingService.Request pathRequest = null;
+    private int requestX, requestY;
 
 
     Shadow shadow;
@@ -155,7 +167,8 @@ public abstract class Enemy extends GameObject
             isoCoords = Renderer.IsoCoordinates(newX,y);
 
             //check for out of bounds
-            if(isoCoords[0] < 0 || isoCoords[0] >= GameLoop.getWorld().getTerrain().getWidth() || isoCoords[1] < 0 || isoCoords[1] >= GameLoop.getWorld().getTerrain().getHeight() || GameLoop.getWorld().getTerrain().getTiles()[isoCoords[0]][isoCoords[1]].z > this.z)
+            NavigationGrid grid = GameLoop.getWorld().getTerrain().getNavigation();
+            if(!grid.inBounds(isoCoords[0], isoCoords[1]) || grid.getZ(isoCoords[0], isoCoords[1]) > this.z)
                 xInertia = 1;
             else
                 x = newX;
@@ -233,21 +246,109 @@ public abstract class Enemy extends GameObject
      */
     abstract void ai();
 
+    /**
+     *  Implemented in subclasses.
+     *  Prepares the decisions {@link #ai()} acts on (where to go next, etc.), using only the world as the previous update
+     *  left it. Runs in parallel with other enemies, so it must not change anything but this enemy's own plan fields.
+     *  Does nothing by default
+     */
+    void plan() {}
+
+    /**
+     *  Plans the enemy's next update via {@link #plan()}, unless it is dead or being thrown, in which case it has no say
+     */
+    @Override
+    public void think()
+    {
+        if(dead || thrown)
+            return;
+
+        plan();
+        plannedTick = GameLoop.getTickCount();
+        plannedX = isoX;
+        plannedY = isoY;
+    }
+
+    /**
+     * Checks whether the plan made in {@link #think()} still applies, i.e. it was made in the current tick and the enemy
+     * has not been pushed onto another tile since
+     */
+    boolean isPlanCurrent()
+    {
+        return plannedTick == GameLoop.getTickCount() && plannedX == isoX && plannedY == isoY;
+    }
+
+    /**
+     * Finds the next tile on a path from the enemy's tile to the given tile, searched by the world's
+     * {@link PathfindingService}. A new path is asked for whenever the destination is not the one of the current path
+     * (or the current path is over), and until it arrives the enemy keeps following the current one. A destination found
+     * to be out of reach is not asked for again until it changes. Must be called from {@link #ai()}, not while
+     * thinking, so that requests are made in the order of the objects' updates
+     * @param x isometric x coordinate of the destination
+     * @param y isometric y coordinate of the destination
+     * @param step receives the isometric coordinates of the next tile
+     * @return false if there is no path to follow (yet)
+     */
+    boolean nextPathStep(int x, int y, int[] step)
+    {
+        if(pathRequest != null && pathRequest.isDone())
+        {
+            pathRequest.copyPath(path);
+            pathX = requestX;
+            pathY = requestY;
+            pathFound = pathRequest.isFound();
+            pathRequest = null;
+
+            //the enemy may have moved on while waiting, follow the new path from where it stands now
+            while(!path.isEmpty())
+            {
+                path.next();
+                if(path.getX() == isoX && path.getY() == isoY)
+                    break;
+            }
+        }
+
+        if(pathRequest == null && (pathX != x || pathY != y || (path.isEmpty() && pathFound)))
+        {
+            pathRequest = AI.requestPath(isoX, isoY, x, y);
+            requestX = x;
+            requestY = y;
+        }
+
+        if(path.isEmpty())
+            return false;
+
+        path.next();
+        step[0] = path.getX();
+        step[1] = path.getY();
+        return true;
+    }
+
+    /**
+     * Drops the path followed by {@link #nextPathStep(int, int, int[])}, for example once the enemy moved off of it
+     */
+    void clearPath()
+    {
+        path.clear();
+        pathX = pathY = -1;
+    }
+
     /**
      * Checks whether moving to a given tile is possible. Accounts for the current height difference.
-     * Validity of the coordinates is checked by a call to the {@link org.world.agents.enemies.AI.AI#isTraversable(int x, int y)} method
+     * Validity of the coordinates is checked by the {@link NavigationGrid}
      * @param x isometric coordinate of the tile
      * @param y isometric coordinate of the tile
      */
     private boolean canMove(int x,int y)
     {
-        return AI.isTraversable(x,y) &&  (z - GameLoop.getWorld().getTerrain().getTiles()[x][y].z  >= 0);
+        return GameLoop.getWorld().getTerrain().getNavigation().canStand(x, y, z);
     }
 
     /**
      *  Does all the relevant updates.
      *  It is modular, subclasses should override the various behaviour methods instead of this to implement the actual functionality.
-     *  In case the enemy is dead, the method returns instantly.
+     *  In case the enemy is dead, the method returns instantly, except once the last frame of the death animation is reached:
+     *  the body is then painted onto the world's {@link org.engine.graphics.DecalLayer} and the enemy is marked for removal.
      *  The override-able sub-method call order is: {@link #deathBehaviour()} and {@link #freeResources()}, if health less than 0; {@link #damageBehaviour()} if damaged;
      *  {@link #ai()} if not moving and not attacking or {@link #attack()} otherwise.
      *  Only one of the groups of methods above can be executed in on update cycle, the method returns after entering one execution branch.
@@ -255,7 +356,16 @@ public abstract class Enemy extends GameObject
     public void update()
     {
         if(dead)
-            return; // don't do anything after death
+        {
+            //once the death animation is over the body (lying on the ground, so without its shadow) becomes part of the
+            //ground and the enemy leaves the world
+            if(currentFrame == animations[currentAnimation].frames.length - 1)
+            {
+                paintOnto(GameLoop.getWorld().getDecals());
+                remove = true;
+            }
+            return; // don't do anything else after death
+        }
 
         updateShadow();
 
@@ -404,6 +514,7 @@ public abstract class Enemy extends GameObject
         moving = true;
         flip = this.x > x; //set flip according to movement direction
         int[] isoCoords;
+        NavigationGrid grid = GameLoop.getWorld().getTerrain().getNavigation();
 
         if (Math.abs(x - this.x) > 1) //if distance to
         {
@@ -419,12 +530,12 @@ public abstract class Enemy extends GameObject
             else
             {
                 //tile above not traversable
-                if(isoY < GameLoop.getWorld().getTerrain().getHeight() && GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY + 1] == null || !GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY + 1].traversable)
+                if(!grid.isTraversable(isoX, isoY + 1))
                 {
                     this.y += 1;
                 }
                 //tile below not traversable
-                else if( isoY > 0 && (GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY - 1] == null || !GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY - 1].traversable))
+                else if( isoY > 0 && !grid.isTraversable(isoX, isoY - 1))
 
                 {
                     this.y -= 1;
@@ -471,12 +582,12 @@ public abstract class Enemy extends GameObject
             else
             {
                 //tile to the left non-traversable
-                if((isoX > 0 && isoY > 0) && (GameLoop.getWorld().getTerrain().getTiles()[isoX - 1][isoY - 1] == null || !GameLoop.getWorld().getTerrain().getTiles()[isoX - 1][isoY - 1].traversable ))
+                if((isoX > 0 && isoY > 0) && !grid.isTraversable(isoX - 1, isoY - 1))
                 {
                     this.x+=1;
                 }
                 else //tile to the right non-traversable
-                    if((isoX < GameLoop.getWorld().getTerrain().getWidth() - 1 && isoY < GameLoop.getWorld().getTerrain().getHeight() - 1) && (GameLoop.getWorld().getTerrain().getTiles()[isoX + 1][isoY + 1] == null || !GameLoop.getWorld().getTerrain().getTiles()[isoX + 1][isoY + 1].traversable ))
+                    if((isoX < grid.getWidth() - 1 && isoY < grid.getHeight() - 1) && !grid.isTraversable(isoX + 1, isoY + 1))
 
                 {
                     this.x-=1;
@@ -546,6 +657,16 @@ public abstract class Enemy extends GameObject
     //frees unnecessary resources after dying
     abstract void freeResources();
 
+    /**
+     *  Gives back the enemy's shadow image, subclasses give back their own resources too
+     */
+    @Override
+    public void dispose()
+    {
+        if(shadow != null)
+            shadow.dispose();
+    }
+
     /**
      * Returns the enemy's stab animation index
      * @return index in the animation array
@@ -63,10 +63,9 @@ public class Projectile extends GameObject
             y += stepY  * speed;
             z += stepZ  * speed;
 
-        int isoX = Renderer.IsoCoordinates(x,y)[0];
-        int isoY = Renderer.IsoCoordinates(x,y)[1];
+        int[] iso = Renderer.IsoCoordinates(x,y);
 
-        if(isoX < 0 || isoY < 0 || isoY >= GameLoop.getWorld().getTerrain().getHeight() || isoX >= GameLoop.getWorld().getTerrain().getWidth())
+        if(!GameLoop.getWorld().getTerrain().getNavigation().inBounds(iso[0], iso[1]))
         {
             collision = true;
             return;
@@ -82,4 +81,10 @@ public class Projectile extends GameObject
         super.render();
         shadow.render();
     }
+
+    @Override
+    public void dispose()
+    {
+        shadow.dispose();
+    }
 }
@@ -1,6 +1,5 @@
 package org.world.agents.enemies;
 
-import org.world.agents.enemies.AI.AI;
 import org.world.agents.player.melee.AttackNode;
 import org.engine.GameLoop;
 import org.engine.graphics.AnimationInformation;
@@ -16,7 +15,7 @@ public class SecurityBot extends Enemy
 
     private SoundClip hurtSound = new SoundClip("/resources/Enemies/clang.wav");
     private SoundClip deathSound = new SoundClip("/resources/Enemies/bot_dead.wav");
-    private SoundClip stepSound = new SoundClip("/resources/Enemies/step_clang.wav");
+    private SoundClip stepSound = new SoundClip("/resources/Enemies/step_clang.wav", SoundClip.LOW_PRIORITY);
     private SoundClip attackSound = new SoundClip("/resources/Enemies/swing.wav");
 
     /**
@@ -36,6 +35,12 @@ public class SecurityBot extends Enemy
 
     private final int DAMAGE_STATE_INVULNERABILITY = 50;
 
+    /**
+     * Plan made by {@link #plan()}: whether the player was out of reach and the next step towards them, if any
+     */
+    private boolean playerFar, hasStep;
+    private final int[] step = new int[2];
+
     private enum ANIMATIONS
     {
         IDLE(5,5,true),
@@ -79,6 +84,8 @@ public class SecurityBot extends Enemy
 
         stabAnimation = 3;
 
+        spriteSheetPath = "/resources/Enemies/security_bot.png";
+
         //attempt to load animations
         loadAnimations();
 
@@ -86,7 +93,6 @@ public class SecurityBot extends Enemy
         if (animations == null)
         {
             AnimationInformation[] animationInfo = new AnimationInformation[ANIMATIONS.values().length];
-            spriteSheetPath = "/resources/Enemies/security_bot.png";
 
             for (ANIMATIONS a : ANIMATIONS.values())
             {
@@ -106,7 +112,7 @@ public class SecurityBot extends Enemy
             isoY = 1;
         }
 
-        this.z = GameLoop.getWorld().getTerrain().getTiles()[x][y].z;
+        this.z = GameLoop.getWorld().getTerrain().getZ(x, y);
 
         this.x = (isoX + isoY) * Tile.GROUND_TILE_WIDTH / 2f;
         this.y = (isoY - isoX) * Tile.GROUND_TILE_HEIGHT / 2f;
@@ -115,43 +121,65 @@ public class SecurityBot extends Enemy
     }
 
     /**
-     *  Checks the distance to the player. If too far away to attack,  attempt to find a path via the {@link org.world.agents.enemies.AI.AI#aStar(int, int, int, int)}
-     *  algorithm. If close enough, initiate attack.
+     *  Checks whether the player is too far away to attack, and if so finds the next step towards them given by the
+     *  world's {@link org.world.agents.enemies.AI.FlowField} (shared by all enemies). Bots outside of the field's reach
+     *  follow a path of their own instead, see {@link #ai()}
+     */
+    @Override
+    void plan()
+    {
+        playerFar = distanceTo(GameLoop.getWorld().getPlayer()) > 25;
+        hasStep = playerFar && GameLoop.getWorld().getPlayerField().nextStep(isoX, isoY, step);
+    }
+
+    /**
+     *  Follows the plan: if the player is too far away to attack, move towards them. If close enough, initiate attack.
+     *  When the flow field gives no step the bot follows its own path to the player's tile instead, asked for from the
+     *  world's {@link org.world.agents.enemies.AI.PathfindingService} here rather than while planning, since planning
+     *  runs in parallel
      */
     @Override
     void ai()
     {
-       if (distanceTo(GameLoop.getWorld().getPlayer()) > 25 && currentDestination == null) //find path towards player
+       //plan again if pushed around since planning
+       if (!isPlanCurrent())
+           think();
+
+       if (playerFar && !hasDestination) //take next step towards player
         {
-            if (path == null ||  ( finalDestination[0] != GameLoop.getWorld().getPlayer().isoX ||  finalDestination[1] != GameLoop.getWorld().getPlayer().isoY ))
+            //get back to the middle of the current tile first, so that moving on does not cut through obstacles
+            if (!isAtTile(isoX, isoY))
             {
-                //if no path or player changed location
-                finalDestination[0] = GameLoop.getWorld().getPlayer().isoX ;
-                finalDestination[1] = GameLoop.getWorld().getPlayer().isoY ;
-                if(!AI.isTraversable(finalDestination[0],finalDestination[1]))
-                    return;
-
-                path = AI.aStar(this.isoX, this.isoY, finalDestination[0],  finalDestination[1]);
+                currentDestination[0] = isoX;
+                currentDestination[1] = isoY;
+                hasDestination = true;
             }
-            if (path != null && !path.isEmpty())
+            else if (hasStep)
             {
-                currentDestination = path.remove(path.size() - 1);
+                clearPath();
+                currentDestination[0] = step[0];
+                currentDestination[1] = step[1];
+                hasDestination = true;
+            }
+            else if (nextPathStep(GameLoop.getWorld().getPlayer().isoX, GameLoop.getWorld().getPlayer().isoY, step))
+            {
+                currentDestination[0] = step[0];
+                currentDestination[1] = step[1];
+                hasDestination = true;
             }
         }
 
-        else //has a path or is close enough to the player
+        else //has a destination or is close enough to the player
         {
-            if (currentDestination != null) //move towards player
+            if (hasDestination) //move towards player
             {
-                double xDist = Math.abs(x - (currentDestination.x + currentDestination.y) * Tile.GROUND_TILE_WIDTH/2f);
-                double yDist = Math.abs(y - (currentDestination.y - currentDestination.x) * Tile.GROUND_TILE_HEIGHT/2f);
-                if (xDist <= 2 && yDist <= 2)
+                if (isAtTile(currentDestination[0], currentDestination[1]))
                 {
-                    currentDestination = null;
+                    hasDestination = false;
                 }
                 else
                     {
-                      moveToPoint(currentDestination.x , currentDestination.y);
+                      moveToPoint(currentDestination[0] , currentDestination[1]);
                       currentAnimation = ANIMATIONS.WALK.ordinal();
                       if((currentFrame == 5 || currentFrame == 13) && !stepSound.isRunning())
                           stepSound.play();
@@ -161,21 +189,30 @@ public class SecurityBot extends Enemy
             {
                 currentAnimation = ANIMATIONS.MELEE.ordinal();
             }
-            if (path != null && path.isEmpty())
-                path = null;
         }
 
-        //if close enough to the player set the path to null and attack
+        //if close enough to the player stop moving and attack
         if(distanceTo(GameLoop.getWorld().getPlayer()) < 25 )
             {
                 flip = this.x > GameLoop.getWorld().getPlayer().x;
-                currentDestination = null;
-                path = null;
+                hasDestination = false;
                 attacking = true;
                 currentAttackTime = 0;
             }
     }
 
+    /**
+     * Checks whether the enemy stands (close enough to) the middle of the given tile
+     * @param isoX isometric x coordinate of the tile
+     * @param isoY isometric y coordinate of the tile
+     */
+    private boolean isAtTile(int isoX, int isoY)
+    {
+        double xDist = Math.abs(x - (isoX + isoY) * Tile.GROUND_TILE_WIDTH/2f);
+        double yDist = Math.abs(y - (isoY - isoX) * Tile.GROUND_TILE_HEIGHT/2f);
+        return xDist <= 2 && yDist <= 2;
+    }
+
     @Override
     void deathBehaviour()
     {
@@ -221,14 +258,11 @@ public class SecurityBot extends Enemy
     public void render()
     {
         super.render();
-     /*   if (path != null && !path.isEmpty())
+     /*   if (hasDestination)
         {
-            for (Point p : path)
-            {
-                Graphics.setColor(255,0,0,255);
-                Graphics.fillRect((p.x + p.y)* Tile.GROUND_TILE_WIDTH/2f,(p.y - p.x)* Tile.GROUND_TILE_HEIGHT/2f,1,1);
-                Graphics.setColor(255,255,255,255);
-            }
+            Graphics.setColor(255,0,0,255);
+            Graphics.fillRect((currentDestination[0] + currentDestination[1])* Tile.GROUND_TILE_WIDTH/2f,(currentDestination[1] - currentDestination[0])* Tile.GROUND_TILE_HEIGHT/2f,1,1);
+            Graphics.setColor(255,255,255,255);
         }*/
 
     }
@@ -270,14 +304,20 @@ public class SecurityBot extends Enemy
     @Override
     void freeResources()
     {
+        //the death sound is still being played, it is closed once it ends
+        hurtSound.close();
+        stepSound.close();
+        deathSound.close();
+        attackSound.close();
 
-        hurtSound = null;
-        stepSound = null;
-        deathSound = null;
-        attackSound = null;
+        hasDestination = false;
+    }
 
-        path = null;
-        currentDestination = null;
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+        freeResources();
     }
 
 }
@@ -71,7 +71,7 @@ public class AttackSpeed extends Pickup
         
         this.x = Tile.GROUND_TILE_WIDTH * (x + y);
         this.y = Tile.GROUND_TILE_WIDTH * (y - x);
-        this.z = GameLoop.getWorld().getTerrain().getTiles()[x][y].z + 0.6f;
+        this.z = GameLoop.getWorld().getTerrain().getZ(x, y) + 0.6f;
 
         spriteSheetPath = "/resources/attackspeed.png";
 
@@ -136,4 +136,12 @@ public class AttackSpeed extends Pickup
         shadow.render();
         super.render();
     }
+
+    @Override
+    public void dispose()
+    {
+        pickup.close();
+        expired.close();
+        shadow.dispose();
+    }
 }
@@ -9,6 +9,7 @@ import org.engine.input.MouseInput;
 import org.engine.resources.SoundClip;
 import org.world.agents.Shadow;
 import org.world.GameObject;
+import org.world.NavigationGrid;
 import org.world.agents.player.melee.DodgeNode;
 import org.world.agents.player.melee.IdleNode;
 import org.world.tiles.Tile;
@@ -133,7 +134,7 @@ public final class Player extends GameObject {
         isoY = 7;
         x = (isoX + isoY) * Tile.GROUND_TILE_WIDTH/2f;
         y = (isoY - isoX) * Tile.GROUND_TILE_WIDTH/2f;
-        z = GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY].z;
+        z = GameLoop.getWorld().getTerrain().getZ(isoX, isoY);
         xWidth = 10;
         yWidth = 5;
         zWidth = 2;
@@ -145,9 +146,9 @@ public final class Player extends GameObject {
         spriteSheetPath = "/resources/player/player_anim.png";
 
         // load sounds
-        steps[0] = new SoundClip("/resources/sfx/metallic_step_1.wav");
+        steps[0] = new SoundClip("/resources/sfx/metallic_step_1.wav", SoundClip.LOW_PRIORITY);
         steps[0].setVolume(-30f);
-        steps[1] = new SoundClip("/resources/sfx/metallic_step_2.wav");
+        steps[1] = new SoundClip("/resources/sfx/metallic_step_2.wav", SoundClip.LOW_PRIORITY);
         steps[1].setVolume(-30f);
 
         //attempt to load animations
@@ -287,6 +288,8 @@ public final class Player extends GameObject {
             float oldX = x;
             float oldY = y;
 
+            NavigationGrid grid = GameLoop.getWorld().getTerrain().getNavigation();
+
             //play sounds
             if (!steps[step].isRunning()) {
                 step = (step++) % 2;
@@ -306,9 +309,8 @@ public final class Player extends GameObject {
             int[] tempIso = Renderer.IsoCoordinates(x, y);
 
             //if move is valid
-            if (!(solid && checkCollision(null)) && GameLoop.getWorld().inBounds(tempIso[0],tempIso[1]) &&
-                    (GameLoop.getWorld().getTerrain().getTiles()[Math.abs(tempIso[0])][Math.abs(tempIso[1])].traversable || jump) &&
-                    GameLoop.getWorld().getTerrain().getTiles()[Math.abs(tempIso[0])][Math.abs(tempIso[1])].z <= z)
+            if (!(solid && checkCollision(null)) && grid.inBounds(tempIso[0],tempIso[1]) &&
+                    (grid.isTraversable(tempIso[0],tempIso[1]) || jump) && grid.getZ(tempIso[0],tempIso[1]) <= z)
             {
 
                 //update position
@@ -333,9 +335,8 @@ public final class Player extends GameObject {
             tempIso = Renderer.IsoCoordinates(x, y);
 
             //if move is valid
-            if ( !(solid && checkCollision(null)) &&  GameLoop.getWorld().inBounds(tempIso[0],tempIso[1]) &&
-                    (GameLoop.getWorld().getTerrain().getTiles()[Math.abs(tempIso[0])][Math.abs(tempIso[1])].traversable || jump) &&
-                    GameLoop.getWorld().getTerrain().getTiles()[Math.abs(tempIso[0])][Math.abs(tempIso[1])].z <= z )
+            if (!(solid && checkCollision(null)) && grid.inBounds(tempIso[0],tempIso[1]) &&
+                    (grid.isTraversable(tempIso[0],tempIso[1]) || jump) && grid.getZ(tempIso[0],tempIso[1]) <= z)
             {
                 //update position
                 isoX = tempIso[0];
@@ -385,7 +386,8 @@ public final class Player extends GameObject {
 
         //fall
         if (!jump) {
-            if (z > GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY].z + PLAYER_HEIGHT_OFFSET) {
+            float groundZ = GameLoop.getWorld().getTerrain().getNavigation().getZ(isoX, isoY);
+            if (z > groundZ + PLAYER_HEIGHT_OFFSET) {
                 z -= FALL_SPEED / (MAX_JUMP_TIME);
                 falling = true;
             }
@@ -394,7 +396,7 @@ public final class Player extends GameObject {
             else {
                 jumpTime = 0;
                 canJump = true;
-                z = GameLoop.getWorld().getTerrain().getTiles()[isoX][isoY].z + PLAYER_HEIGHT_OFFSET;
+                z = groundZ + PLAYER_HEIGHT_OFFSET;
                 falling = false;
             }
         }
@@ -431,6 +433,7 @@ public final class Player extends GameObject {
             weapon.y = this.y - 10;
             weapon.rotation = 90;
             weapon.getComboGraph().setIdle();
+            weapon.doingDamage = false; //an attack interrupted by death must not keep hitting
             weapon.currentAnimation = Weapon.ANIMATIONS.SHEATHED.ordinal();
             return;
         }
@@ -510,6 +513,13 @@ public final class Player extends GameObject {
         }
     }
 
+    @Override
+    public void animate()
+    {
+        super.animate();
+        weapon.animate();
+    }
+
     @Override
     public void render()
     {
@@ -521,7 +531,7 @@ public final class Player extends GameObject {
            weapon.render();
 
         Renderer.setRotation(rotation);
-        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, x, y - Tile.GROUND_TILE_Z_HEIGHT * z - spriteHeight / 2f, flip);
+        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, renderX(), renderY() - Tile.GROUND_TILE_Z_HEIGHT * renderZ() - spriteHeight / 2f, flip);
         Renderer.setRotation(0);
         playAnimation();
 
@@ -773,4 +783,15 @@ public final class Player extends GameObject {
         if(stamina > 0)
             stamina -= amount;
     }
+
+    /**
+     * Gives back the player's step sounds and shadow image
+     */
+    @Override
+    public void dispose()
+    {
+        for(SoundClip step : steps)
+            step.close();
+        shadow.dispose();
+    }
 }
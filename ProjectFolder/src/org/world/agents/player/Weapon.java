@@ -97,7 +97,7 @@ public class Weapon extends GameObject
     }
 
     //helps select proper hitbox
-    private final int PASSIVE_ANIMATION_COUNT = 9;
+    public static final int PASSIVE_ANIMATION_COUNT = 9;
 
     //flag to update attack animation speed
     private boolean attackSpeedChanged = true;
@@ -217,6 +217,7 @@ public class Weapon extends GameObject
 
         spriteWidth = 120;
         spriteHeight = 90;
+        spriteSheetPath = "/resources/player/Weapons/sword.png";
 
         loadAnimations();
 
@@ -224,7 +225,6 @@ public class Weapon extends GameObject
         if(animations == null)
         {
             AnimationInformation[] animationInfo = new AnimationInformation[ANIMATIONS.values().length];
-            spriteSheetPath = "/resources/player/Weapons/sword.png";
             for ( ANIMATIONS a: ANIMATIONS.values() )
             {
                 animationInfo[a.ordinal()] = new AnimationInformation(a.frames,a.fps,spriteWidth,spriteHeight,a.loop);
@@ -318,6 +318,8 @@ public class Weapon extends GameObject
         //handle stabbed enemy
         if(stabVictim != null)
         {
+            stabVictim.savePreviousPosition();
+
             if(flip)
             stabVictim.x = this.x - stabbedEnemyParameters[currentAnimation][currentFrame][0];
             else
@@ -350,11 +352,33 @@ public class Weapon extends GameObject
         }
     }
 
+    /**
+     * The weapon is placed relative to its owner every tick, so it is drawn relative to the owner's interpolated position
+     * rather than interpolating its own (which jumps whenever the animation changes)
+     */
+    @Override
+    public float renderX() { return x + owner.renderX() - owner.x; }
+
+    @Override
+    public float renderY() { return y + owner.renderY() - owner.y; }
+
+    @Override
+    public float renderZ() { return z + owner.renderZ() - owner.z; }
+
+    @Override
+    public void animate()
+    {
+        super.animate();
+
+        if(stabVictim != null)
+            stabVictim.animate();
+    }
+
     @Override
     public void render()
     {
         Renderer.setRotation(rotation);
-        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, x, y  - Tile.GROUND_TILE_Z_HEIGHT * z  ,flip);
+        Renderer.drawImage(animations[currentAnimation].getImage(currentFrame), spriteWidth, spriteHeight, renderX(), renderY() - Tile.GROUND_TILE_Z_HEIGHT * renderZ(), flip);
         Renderer.setRotation(0);
         playAnimation();
 
@@ -60,4 +60,10 @@ public class NonSolidDecoration extends GameObject
      */
     public void update()
     {}
+
+    /**
+     * Decorations never move, the world keeps them out of its updates
+     */
+    @Override
+    public boolean isStatic() { return true; }
 }
@@ -74,4 +74,10 @@ public class SolidDecoration extends GameObject
      */
     public void update()
     {}
+
+    /**
+     * Decorations never move, the world keeps them out of its updates
+     */
+    @Override
+    public boolean isStatic() { return true; }
 }
@@ -36,6 +36,11 @@ public abstract class Tile extends GameObject
         Renderer.setRotation(0);
     }
 
+    /**
+     * Returns the path of the tile's image, which tells its texture (see {@link TileRecord#of(Tile)})
+     */
+    public String getSpriteSheetPath() { return spriteSheetPath; }
+
     /**
      *  constants used for computing isometric coordinates
      */
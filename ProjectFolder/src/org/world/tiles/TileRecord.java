@@ -0,0 +1,129 @@
+package org.world.tiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Packs everything the terrain keeps about a tile into a single short, so that maps can hold millions of tiles:
+ *  - bits 0-7: height, in whole levels (-128 to 127)
+ *  - bits 8-13: texture, an index into a shared list of texture names (0 for none, up to {@link #MAX_TEXTURES} - 1)
+ *  - bit 14: traversable
+ *  - bit 15: present, {@link #EMPTY} (0) stands for a hole in the map
+ *  Tile objects ({@link GroundTile}, ...) can still be used to describe a tile, {@link #of(Tile)} turns them into a record.
+ */
+public final class TileRecord
+{
+    /**
+     * Record of a missing tile
+     */
+    public static final short EMPTY = 0;
+
+    /**
+     * Number of distinct textures records can refer to, texture 0 meaning none
+     */
+    public static final int MAX_TEXTURES = 64;
+
+    private static final int TEXTURE_SHIFT = 8;
+    private static final int TRAVERSABLE = 1 << 14, PRESENT = 1 << 15;
+
+    /**
+     * Texture names by index, the paths of the images being "/resources/Tiles/" + name + ".png"
+     */
+    private static final List<String> textures = new ArrayList<>();
+
+    static
+    {
+        textures.add(null);
+    }
+
+    private TileRecord() {}
+
+    /**
+     * Packs a tile into a record
+     * @param texture index of the texture, see {@link #textureId(String)}
+     * @param height height of the tile in levels, clamped to what a record can hold
+     * @param traversable whether the tile can be walked on
+     * @return the record
+     */
+    public static short pack(int texture, int height, boolean traversable)
+    {
+        height = Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, height));
+        return (short) (PRESENT | (traversable ? TRAVERSABLE : 0) | (texture & (MAX_TEXTURES - 1)) << TEXTURE_SHIFT | height & 0xff);
+    }
+
+    /**
+     * Turns a tile object into a record, its height rounded to whole levels
+     * @param tile the tile, null for a hole
+     */
+    public static short of(Tile tile)
+    {
+        if(tile == null)
+            return EMPTY;
+
+        String path = tile.getSpriteSheetPath();
+        String name = null;
+        if(path != null && path.startsWith("/resources/Tiles/") && path.endsWith(".png"))
+            name = path.substring("/resources/Tiles/".length(), path.length() - ".png".length());
+
+        return pack(textureId(name), Math.round(tile.z), tile.traversable);
+    }
+
+    /**
+     * Checks whether a record holds a tile rather than a hole
+     */
+    public static boolean isPresent(short record) { return (record & PRESENT) != 0; }
+
+    /**
+     * Checks whether the tile of a record can be walked on
+     */
+    public static boolean isTraversable(short record) { return (record & TRAVERSABLE) != 0; }
+
+    /**
+     * Returns the height of the tile of a record, in levels
+     */
+    public static int height(short record) { return (byte) record; }
+
+    /**
+     * Returns the texture index of a record, 0 if it has none
+     */
+    public static int texture(short record) { return (record >> TEXTURE_SHIFT) & (MAX_TEXTURES - 1); }
+
+    /**
+     * Returns the index of a texture, registering it the first time it is asked for
+     * @param name name of the texture file in the /resources/Tiles/ folder, without the format. Null for none
+     * @return index of the texture, 0 for none
+     * @throws IllegalStateException if {@link #MAX_TEXTURES} textures are registered already
+     */
+    public static synchronized int textureId(String name)
+    {
+        if(name == null)
+            return 0;
+
+        int index = textures.indexOf(name);
+        if(index >= 0)
+            return index;
+
+        if(textures.size() == MAX_TEXTURES)
+            throw new IllegalStateException("Too many tile textures, " + name + " cannot be added");
+
+        textures.add(name);
+        return textures.size() - 1;
+    }
+
+    /**
+     * Returns the name of a texture, null for texture 0
+     */
+    public static synchronized String textureName(int texture)
+    {
+        return texture > 0 && texture < textures.size() ? textures.get(texture) : null;
+    }
+
+    /**
+     * Returns the path of the image of a texture, null for texture 0
+     */
+    public static String texturePath(int texture)
+    {
+        String name = textureName(texture);
+        return name == null ? null : "/resources/Tiles/" + name + ".png";
+    }
+}